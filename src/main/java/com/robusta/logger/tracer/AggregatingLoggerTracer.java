@@ -0,0 +1,46 @@
+package com.robusta.logger.tracer;
+
+/**
+ * A logger-tracer decorator that aggregates the lap and execution
+ * latencies into the {@link TracePoint} being traced, then delegates
+ * to the decorated logger-tracer. Decorates a no-op logger-tracer when
+ * only latencies are aggregated, trace logging being disabled.
+ *
+ * <p>The execution latency is aggregated on the first stop only.</p>
+ *
+ * @see LatencyAggregation
+ * @since 1.3
+ */
+class AggregatingLoggerTracer implements LoggerTracer {
+    private final TracePoint tracePoint;
+    private final LoggerTracer delegate;
+    private final Ticker ticker;
+    private final long startNanos;
+    private boolean stopped;
+
+    AggregatingLoggerTracer(TracePoint tracePoint, Ticker ticker, LoggerTracer delegate) {
+        this.tracePoint = tracePoint;
+        this.delegate = delegate;
+        this.ticker = ticker;
+        this.startNanos = ticker.read();
+    }
+
+    @Override
+    public LoggerTracer lap(String lapDescription) {
+        if(!stopped) {
+            tracePoint.recordLap(lapDescription, ticker.read() - startNanos);
+        }
+        delegate.lap(lapDescription);
+        return this;
+    }
+
+    @Override
+    public LoggerTracer stop() {
+        if(!stopped) {
+            stopped = true;
+            tracePoint.recordExecution(ticker.read() - startNanos);
+        }
+        delegate.stop();
+        return this;
+    }
+}
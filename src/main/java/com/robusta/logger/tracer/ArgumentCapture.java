@@ -0,0 +1,25 @@
+package com.robusta.logger.tracer;
+
+/**
+ * Captures a method argument, on the traced thread, into what is
+ * rendered in the method arguments trace message.
+ *
+ * <p>Trace messages are rendered later, by the asynchronous logging
+ * thread, with {@link String#valueOf(Object)}. By then a mutable argument
+ * may have changed, or be changing under the renderer; a capture decides
+ * what, of the argument, is kept for rendering and how much that costs
+ * the traced thread. Implementations must be thread-safe, and should not
+ * throw, {@link #capture(Object)} is called for every argument of every
+ * traced execution whose method arguments are logged.</p>
+ *
+ * @see ArgumentCaptures
+ * @since 1.3
+ */
+public interface ArgumentCapture {
+    /**
+     * @param argument a method argument, may be null.
+     * @return Object to render in place of the argument, the argument
+     * itself when it is kept as it is.
+     */
+    Object capture(Object argument);
+}
@@ -0,0 +1,254 @@
+package com.robusta.logger.tracer;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An {@link ArgumentCapture} factory class which provides the built-in
+ * captures:
+ * <ul>
+ *     <li>{@link #passThrough()} keeps every argument as it is</li>
+ *     <li>{@link #snapshot(int)} (the default) keeps the size and the first
+ *     elements of collections, maps and arrays</li>
+ *     <li>{@link #deepCopy()} copies collections, maps and arrays entirely</li>
+ * </ul>
+ *
+ * <p>Immutable values (strings, boxed primitives, enums, ...) are always
+ * kept as they are. Any other object is kept as it is too, and is rendered
+ * with its own {@link Object#toString()} when the trace message is.</p>
+ *
+ * @since 1.3
+ */
+public abstract class ArgumentCaptures {
+    public static final int DEFAULT_MAX_ELEMENTS = 32;
+    /** Levels of nested collections a snapshot descends into. */
+    static final int MAX_SNAPSHOT_DEPTH = 3;
+    /** Levels of nested collections a deep copy descends into, deeper ones are kept as they are. */
+    static final int MAX_DEEP_COPY_DEPTH = 16;
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, Class.class));
+
+    private static final ArgumentCapture PASS_THROUGH = new ArgumentCapture() {
+        @Override
+        public Object capture(Object argument) {
+            return argument;
+        }
+
+        @Override
+        public String toString() {
+            return "passThrough";
+        }
+    };
+    private static final ArgumentCapture DEEP_COPY = new DeepCopyArgumentCapture();
+    private static final ArgumentCapture DEFAULT_SNAPSHOT = new SnapshotArgumentCapture(DEFAULT_MAX_ELEMENTS);
+
+    /**
+     * Get the {@link ArgumentCapture} that keeps the arguments as they are,
+     * for methods whose arguments are immutable. Mutable arguments are
+     * rendered as they are when the trace message is rendered, and a
+     * collection being modified meanwhile may fail to render.
+     *
+     * @return ArgumentCapture
+     */
+    public static ArgumentCapture passThrough() {
+        return PASS_THROUGH;
+    }
+
+    /**
+     * Get the default {@link ArgumentCapture}, a snapshot of up to
+     * {@value #DEFAULT_MAX_ELEMENTS} elements per argument.
+     *
+     * @return ArgumentCapture
+     * @see #snapshot(int)
+     */
+    public static ArgumentCapture snapshot() {
+        return DEFAULT_SNAPSHOT;
+    }
+
+    /**
+     * Get an {@link ArgumentCapture} that replaces collection, map and array
+     * arguments by a snapshot of their size and their first elements, up to
+     * the given number of elements per argument, nested collections included.
+     * The cost to the traced thread is bounded by the number of elements,
+     * whatever the size of the argument.
+     *
+     * @param maxElements the elements captured per argument, 0 for the sizes only.
+     * @return ArgumentCapture
+     */
+    public static ArgumentCapture snapshot(int maxElements) {
+        Assert.checkArgument(maxElements >= 0, "Captured elements must not be negative");
+        return new SnapshotArgumentCapture(maxElements);
+    }
+
+    /**
+     * Get an {@link ArgumentCapture} that replaces collection, map and array
+     * arguments by a copy of all their elements, nested collections
+     * included. The cost to the traced thread is linear in the size of the
+     * arguments, for methods whose complete arguments must be logged.
+     *
+     * @return ArgumentCapture
+     */
+    public static ArgumentCapture deepCopy() {
+        return DEEP_COPY;
+    }
+
+    static boolean isImmutable(Object argument) {
+        return argument == null || IMMUTABLE_TYPES.contains(argument.getClass()) || argument instanceof Enum;
+    }
+
+    /**
+     * Captures the arguments of a traced execution. The arguments array is
+     * copied when a capture replaces an argument, never modified; a capture
+     * that fails keeps the argument as it is.
+     */
+    static Object[] capture(ArgumentCapture argumentCapture, Object[] arguments) {
+        if(arguments == null || argumentCapture == PASS_THROUGH) {
+            return arguments;
+        }
+        Object[] captured = arguments;
+        for (int index = 0; index < arguments.length; index++) {
+            Object argument = arguments[index];
+            if(isImmutable(argument)) {
+                continue;
+            }
+            Object capturedArgument;
+            try {
+                capturedArgument = argumentCapture.capture(argument);
+            } catch (RuntimeException e) {
+                capturedArgument = argument;
+            }
+            if(capturedArgument != argument) {
+                if(captured == arguments) {
+                    captured = Arrays.copyOf(arguments, arguments.length, Object[].class);
+                }
+                captured[index] = capturedArgument;
+            }
+        }
+        return captured;
+    }
+
+    static class SnapshotArgumentCapture implements ArgumentCapture {
+        private final int maxElements;
+
+        SnapshotArgumentCapture(int maxElements) {
+            this.maxElements = maxElements;
+        }
+
+        @Override
+        public Object capture(Object argument) {
+            if(isImmutable(argument) || !isContainer(argument)) {
+                return argument;
+            }
+            return snapshot(argument, MAX_SNAPSHOT_DEPTH, new int[]{maxElements});
+        }
+
+        private static boolean isContainer(Object argument) {
+            return argument instanceof Collection || argument instanceof Map || argument.getClass().isArray();
+        }
+
+        /**
+         * @param budget the elements that may still be captured, shared
+         * by the nested collections of an argument.
+         */
+        private Object snapshot(Object argument, int depth, int[] budget) {
+            if(isImmutable(argument) || !isContainer(argument)) {
+                return argument;
+            }
+            if(argument instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) argument;
+                int size = map.size();
+                Object[] entries = new Object[2 * elementsToCapture(size, depth, budget)];
+                Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+                int captured = 0;
+                while (captured < entries.length && iterator.hasNext()) {
+                    Map.Entry<?, ?> entry = iterator.next();
+                    entries[captured++] = snapshot(entry.getKey(), depth - 1, budget);
+                    entries[captured++] = snapshot(entry.getValue(), depth - 1, budget);
+                }
+                return new ArgumentSnapshot(true, size, captured < entries.length ? Arrays.copyOf(entries, captured) : entries);
+            }
+            if(argument instanceof Collection) {
+                Collection<?> collection = (Collection<?>) argument;
+                int size = collection.size();
+                Object[] elements = new Object[elementsToCapture(size, depth, budget)];
+                Iterator<?> iterator = collection.iterator();
+                int captured = 0;
+                while (captured < elements.length && iterator.hasNext()) {
+                    elements[captured++] = snapshot(iterator.next(), depth - 1, budget);
+                }
+                return new ArgumentSnapshot(false, size, captured < elements.length ? Arrays.copyOf(elements, captured) : elements);
+            }
+            int length = Array.getLength(argument);
+            Object[] elements = new Object[elementsToCapture(length, depth, budget)];
+            for (int index = 0; index < elements.length; index++) {
+                elements[index] = snapshot(Array.get(argument, index), depth - 1, budget);
+            }
+            return new ArgumentSnapshot(false, length, elements);
+        }
+
+        private static int elementsToCapture(int size, int depth, int[] budget) {
+            int elements = depth > 0 ? Math.min(size, budget[0]) : 0;
+            budget[0] -= elements;
+            return elements;
+        }
+
+        @Override
+        public String toString() {
+            return "snapshot(" + maxElements + ")";
+        }
+    }
+
+    static class DeepCopyArgumentCapture implements ArgumentCapture {
+
+        @Override
+        public Object capture(Object argument) {
+            return copy(argument, MAX_DEEP_COPY_DEPTH);
+        }
+
+        private static Object copy(Object argument, int depth) {
+            if(depth == 0 || isImmutable(argument)) {
+                return argument;
+            }
+            if(argument instanceof Map) {
+                Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) argument).entrySet()) {
+                    copy.put(copy(entry.getKey(), depth - 1), copy(entry.getValue(), depth - 1));
+                }
+                return copy;
+            }
+            if(argument instanceof Collection) {
+                List<Object> copy = new ArrayList<Object>(((Collection<?>) argument).size());
+                for (Object element : (Collection<?>) argument) {
+                    copy.add(copy(element, depth - 1));
+                }
+                return copy;
+            }
+            if(argument.getClass().isArray()) {
+                int length = Array.getLength(argument);
+                List<Object> copy = new ArrayList<Object>(length);
+                for (int index = 0; index < length; index++) {
+                    copy.add(copy(Array.get(argument, index), depth - 1));
+                }
+                return copy;
+            }
+            return argument;
+        }
+
+        @Override
+        public String toString() {
+            return "deepCopy";
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.robusta.logger.tracer;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Renders method arguments into trace messages, within a budget.
+ *
+ * <p>Each argument is rendered into at most {@link #getMaxLength()}
+ * chars, rendering stops as soon as they are spent and the argument is
+ * then cut with {@value #TRUNCATED}. Collections, maps, arrays (primitive
+ * arrays included, instead of their {@code [I@hash} identity) and
+ * {@link ArgumentSnapshot}s are rendered element by element, up to
+ * {@link #getMaxElements()} elements each, the rest being counted
+ * ({@code [1, 2, ... 998 more]}), and nested up to {@link #getMaxDepth()}
+ * levels. A collection that contains itself, directly or not, is rendered
+ * as {@value #CYCLE} where it recurs. Any other object is rendered with
+ * its {@link Object#toString()}, cut to the budget.</p>
+ *
+ * <p>Rendering streams into the given {@link StringBuilder}, or into a
+ * reusable, per thread, builder when rendering to a String. An argument
+ * that fails to render is rendered as the failure.</p>
+ *
+ * <p>Thread-safe, immutable.</p>
+ *
+ * @see LoggerTracerFactory#argumentRendering(int, int, int)
+ * @since 1.3
+ */
+final class ArgumentRenderer {
+    static final int DEFAULT_MAX_LENGTH = 1024;
+    static final int DEFAULT_MAX_ELEMENTS = 32;
+    static final int DEFAULT_MAX_DEPTH = 4;
+    static final String TRUNCATED = "...";
+    static final String CYCLE = "(cycle)";
+    private static final String SEPARATOR = ", ";
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    private static final int INITIAL_BUILDER_CAPACITY = 256;
+
+    private final int maxLength;
+    private final int maxElements;
+    private final int maxDepth;
+    /** Builders that grew beyond twice the budget of an argument are not kept. */
+    private final int maxRetainedCapacity;
+    private final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(INITIAL_BUILDER_CAPACITY);
+        }
+    };
+
+    ArgumentRenderer() {
+        this(DEFAULT_MAX_LENGTH, DEFAULT_MAX_ELEMENTS, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param maxLength chars an argument is rendered into.
+     * @param maxElements elements rendered per collection, map or array.
+     * @param maxDepth levels of nested collections, maps or arrays rendered.
+     */
+    ArgumentRenderer(int maxLength, int maxElements, int maxDepth) {
+        Assert.checkArgument(maxLength > 0, "Rendered argument length must be positive");
+        Assert.checkArgument(maxElements >= 0, "Rendered elements must not be negative");
+        Assert.checkArgument(maxDepth > 0, "Rendered depth must be positive");
+        this.maxLength = maxLength;
+        this.maxElements = maxElements;
+        this.maxDepth = maxDepth;
+        this.maxRetainedCapacity = Math.max(INITIAL_BUILDER_CAPACITY, 2 * maxLength);
+    }
+
+    /**
+     * @return String the arguments rendered as a list, {@code [a, b]}.
+     */
+    String render(Object[] arguments) {
+        StringBuilder builder = acquire();
+        try {
+            renderArguments(builder, arguments);
+            return builder.toString();
+        } finally {
+            release(builder);
+        }
+    }
+
+    /**
+     * @return String the argument rendered.
+     */
+    String render(Object argument) {
+        StringBuilder builder = acquire();
+        try {
+            renderArgument(builder, argument);
+            return builder.toString();
+        } finally {
+            release(builder);
+        }
+    }
+
+    /**
+     * @return StringBuilder the builder of the thread, or a new one when
+     * it is in use already (an argument whose toString renders arguments).
+     */
+    private StringBuilder acquire() {
+        StringBuilder builder = builders.get();
+        if(builder == null) {
+            return new StringBuilder(INITIAL_BUILDER_CAPACITY);
+        }
+        builders.set(null);
+        return builder;
+    }
+
+    private void release(StringBuilder builder) {
+        if(builder.capacity() <= maxRetainedCapacity) {
+            builder.setLength(0);
+            builders.set(builder);
+        }
+    }
+
+    /**
+     * Renders the arguments as a list, {@code [a, b]}, each within
+     * its own budget. Null arguments render as {@code []}.
+     */
+    void renderArguments(StringBuilder builder, Object[] arguments) {
+        Object[] toRender = arguments == null ? NO_ARGUMENTS : arguments;
+        builder.append('[');
+        for (int index = 0; index < toRender.length; index++) {
+            if(index > 0) {
+                builder.append(SEPARATOR);
+            }
+            renderArgument(builder, toRender[index]);
+        }
+        builder.append(']');
+    }
+
+    void renderArgument(StringBuilder builder, Object argument) {
+        int start = builder.length();
+        try {
+            render(builder, argument, 0, start + maxLength, new Object[maxDepth + 1]);
+        } catch (RuntimeException e) {
+            builder.setLength(start);
+            append(builder, "(" + e.getClass().getSimpleName() + " rendering " + argument.getClass().getName() + ")", start + maxLength);
+        }
+    }
+
+    /**
+     * @param path the collections being rendered, outermost first, to detect cycles.
+     * @return boolean false once the budget is spent, the rendering is then cut at the limit.
+     */
+    private boolean render(StringBuilder builder, Object value, int depth, int limit, Object[] path) {
+        if(value == null) {
+            return append(builder, "null", limit);
+        }
+        if(value instanceof CharSequence) {
+            return append(builder, (CharSequence) value, limit);
+        }
+        boolean snapshot = value instanceof ArgumentSnapshot;
+        boolean map = value instanceof Map || snapshot && ((ArgumentSnapshot) value).isMap();
+        if(!snapshot && !map && !(value instanceof Collection) && !value.getClass().isArray()) {
+            return append(builder, String.valueOf(value), limit);
+        }
+        for (int level = 0; level < depth; level++) {
+            if(path[level] == value) {
+                return append(builder, CYCLE, limit);
+            }
+        }
+        int size = snapshot ? ((ArgumentSnapshot) value).getSize()
+                : value instanceof Map ? ((Map<?, ?>) value).size()
+                : value instanceof Collection ? ((Collection<?>) value).size()
+                : Array.getLength(value);
+        int toRender = depth < maxDepth ? Math.min(size, maxElements) : 0;
+        if(snapshot) {
+            toRender = Math.min(toRender, ((ArgumentSnapshot) value).getCaptured());
+        }
+        if(!append(builder, map ? "{" : "[", limit)) {
+            return false;
+        }
+        path[depth] = value;
+        Iterator<?> iterator = value instanceof Map ? ((Map<?, ?>) value).entrySet().iterator()
+                : value instanceof Collection ? ((Collection<?>) value).iterator() : null;
+        int rendered = 0;
+        for (; rendered < toRender; rendered++) {
+            if(rendered > 0 && !append(builder, SEPARATOR, limit)) {
+                return false;
+            }
+            if(!renderElement(builder, value, iterator, rendered, map, depth + 1, limit, path)) {
+                return false;
+            }
+        }
+        path[depth] = null;
+        if(rendered < size) {
+            if(!append(builder, rendered > 0 ? ", ... " : "... ", limit) || !append(builder, Integer.toString(size - rendered), limit)
+                    || !append(builder, " more", limit)) {
+                return false;
+            }
+        }
+        return append(builder, map ? "}" : "]", limit);
+    }
+
+    private boolean renderElement(StringBuilder builder, Object container, Iterator<?> iterator, int index, boolean map,
+                                  int depth, int limit, Object[] path) {
+        if(container instanceof ArgumentSnapshot) {
+            Object[] elements = ((ArgumentSnapshot) container).elements();
+            if(map) {
+                return render(builder, elements[2 * index], depth, limit, path) && append(builder, "=", limit)
+                        && render(builder, elements[2 * index + 1], depth, limit, path);
+            }
+            return render(builder, elements[index], depth, limit, path);
+        }
+        if(iterator == null) {
+            return render(builder, Array.get(container, index), depth, limit, path);
+        }
+        if(!iterator.hasNext()) {
+            return true;
+        }
+        Object element = iterator.next();
+        if(map) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) element;
+            return render(builder, entry.getKey(), depth, limit, path) && append(builder, "=", limit)
+                    && render(builder, entry.getValue(), depth, limit, path);
+        }
+        return render(builder, element, depth, limit, path);
+    }
+
+    /**
+     * Appends what fits before the limit, cut with {@value #TRUNCATED}.
+     */
+    private static boolean append(StringBuilder builder, CharSequence chars, int limit) {
+        int room = limit - builder.length();
+        if(chars.length() <= room) {
+            builder.append(chars);
+            return true;
+        }
+        builder.append(chars, 0, Math.max(room, 0)).append(TRUNCATED);
+        return false;
+    }
+
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    int getMaxElements() {
+        return maxElements;
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "maxLength: " + maxLength + ", maxElements: " + maxElements + ", maxDepth: " + maxDepth;
+    }
+}
@@ -0,0 +1,56 @@
+package com.robusta.logger.tracer;
+
+/**
+ * A bounded, structural snapshot of a collection, map or array argument:
+ * its size and its first elements (entries of a map), taken on the traced
+ * thread and rendered, later, as the collection would render itself with
+ * the elements that were left out counted.
+ *
+ * <p>Renders as {@code [1, 2, 3, ... 997 more]}, or {@code {a=1, ... 9 more}}
+ * for a map; a snapshot of all the elements renders exactly as the
+ * collection (or {@link java.util.Arrays#toString(Object[])}) does, within
+ * the budget of the {@link ArgumentRenderer}.</p>
+ *
+ * @see ArgumentCaptures#snapshot(int)
+ * @since 1.3
+ */
+final class ArgumentSnapshot {
+    private final boolean map;
+    private final int size;
+    /** The captured elements, keys and values alternating for a map. */
+    private final Object[] elements;
+
+    ArgumentSnapshot(boolean map, int size, Object[] elements) {
+        this.map = map;
+        this.size = size;
+        this.elements = elements;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @return int the number of elements (entries of a map) captured.
+     */
+    int getCaptured() {
+        return map ? elements.length / 2 : elements.length;
+    }
+
+    boolean isMap() {
+        return map;
+    }
+
+    /**
+     * @return Object[] the captured elements, keys and values alternating
+     * for a map. Not copied, must not be modified.
+     */
+    Object[] elements() {
+        return elements;
+    }
+
+    @Override
+    public String toString() {
+        return LoggerTracerFactory.argumentRenderer().render(this);
+    }
+}
@@ -7,6 +7,12 @@ public class Assert {
         }
     }
 
+    public static void checkArgument(boolean argumentIsValid, String whatToRaiseWhenArgumentIsInvalid) {
+        if(!argumentIsValid) {
+            throw new IllegalArgumentException(whatToRaiseWhenArgumentIsInvalid);
+        }
+    }
+
     public static void notNull(Object whatNeedsToBeCheckedForNull, String whatToRaiseWhenNull) {
         if(whatNeedsToBeCheckedForNull == null) {
             throw new IllegalArgumentException(whatToRaiseWhenNull);
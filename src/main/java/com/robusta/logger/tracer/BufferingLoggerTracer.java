@@ -0,0 +1,194 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A logger-tracer that logs the trace of an execution only when the
+ * execution is slower than a threshold, reused from a {@link LoggerTracerPool}
+ * when pooled logger tracers are enabled.
+ *
+ * <p>The method arguments and the laps are kept in buffers preallocated
+ * with the tracer, not logged, until the execution is stopped. An
+ * execution that took longer than the threshold is then logged completely
+ * (method arguments, laps and execution completion, under a trace id of
+ * its own); the buffers of a faster one are discarded. Up to
+ * {@value #MAX_LAPS} laps are kept, later laps of a slow execution are not
+ * logged.</p>
+ *
+ * <p>Serves the slow-call-only mode and the executions that were sampled
+ * out but are logged when slow. With pooled logger tracers enabled, like a
+ * {@link PooledLoggerTracer}, {@link #stop()} hands the tracer back to its
+ * pool, and it must not be used afterwards. Stop returns a no-op
+ * logger-tracer either way.</p>
+ *
+ * <p>Traced nested, the execution is on the thread's {@link SpanStack}
+ * while it runs, so that its children know their parent, and is logged
+ * with its parent, its depth and its self time. When the call tree is
+ * profiled the execution is recorded into its {@link CallTreeProfile}
+ * node, slow or not.</p>
+ *
+ * @see SlowCallThresholds
+ * @see LoggerTracerFactory#sampling(Sampler, long, TimeUnit)
+ * @since 1.3
+ */
+final class BufferingLoggerTracer implements LoggerTracer {
+    static final int MAX_LAPS = 64;
+
+    private final LoggerTracerPool pool;
+    private final TraceEvent synchronousEvent = new TraceEvent();
+    private final String[] lapDescriptions = new String[MAX_LAPS];
+    private final long[] lapNanos = new long[MAX_LAPS];
+    private Logger logger;
+    private TracePoint tracePoint;
+    private TraceIdGenerator traceIdGenerator;
+    private Ticker ticker;
+    private TimeUnit timeUnit;
+    private TraceEventDispatcher dispatcher;
+    private long thresholdNanos;
+    private Object[] arguments;
+    private SpanStack spanStack;
+    private CallTreeProfile.Node node;
+    private boolean nested;
+    private int depth;
+    private int nestingDepth;
+    private long traceId;
+    private long parentTraceId;
+    private long startNanos;
+    private int laps;
+    private boolean aggregating;
+    private boolean started;
+
+    /**
+     * @param pool the pool to hand the tracer back to, null for a tracer that is not reused.
+     */
+    BufferingLoggerTracer(LoggerTracerPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Starts tracing a call, keeps the method arguments.
+     *
+     * @param dispatcher asynchronous dispatcher to log through, null for synchronous logging.
+     * @param aggregating whether to aggregate the latencies into the TracePoint.
+     * @param nested whether to trace the call nested in the calls being traced on the thread.
+     * @param profile the call tree to record the call into, null when not profiled.
+     * @param sampled whether the call was sampled in, which the calls nested in it follow.
+     * @param thresholdNanos execution time above which the trace is logged.
+     * @param arguments the method arguments, captured.
+     */
+    BufferingLoggerTracer start(Logger logger, TracePoint tracePoint, TraceIdGenerator traceIdGenerator, Ticker ticker, TimeUnit timeUnit,
+                                TraceEventDispatcher dispatcher, boolean aggregating, boolean nested, CallTreeProfile profile,
+                                boolean sampled, long thresholdNanos, Object[] arguments) {
+        this.logger = logger;
+        this.tracePoint = tracePoint;
+        this.traceIdGenerator = traceIdGenerator;
+        this.ticker = ticker;
+        this.timeUnit = timeUnit;
+        this.dispatcher = dispatcher;
+        this.aggregating = aggregating;
+        this.thresholdNanos = thresholdNanos;
+        this.arguments = arguments;
+        this.laps = 0;
+        this.started = true;
+        this.traceId = traceIdGenerator.nextTraceId();
+        this.nested = nested;
+        this.spanStack = nested || profile != null ? SpanStack.current() : null;
+        this.node = profile != null ? profile.child(spanStack.top(), tracePoint) : null;
+        this.depth = spanStack != null ? spanStack.push(this, traceId, node, sampled) : 0;
+        this.parentTraceId = nested ? spanStack.parentTraceId(depth) : SpanStack.NO_PARENT;
+        this.nestingDepth = nested ? spanStack.nestingDepth(depth) : 0;
+        this.startNanos = ticker.read();
+        return this;
+    }
+
+    @Override
+    public LoggerTracer lap(String lapDescription) {
+        if(started) {
+            long nanos = ticker.read() - startNanos;
+            if(aggregating) {
+                tracePoint.recordLap(lapDescription, nanos);
+            }
+            if(laps < MAX_LAPS) {
+                lapDescriptions[laps] = lapDescription;
+                lapNanos[laps++] = nanos;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public LoggerTracer stop() {
+        if(started) {
+            long executionNanos = ticker.read() - startNanos;
+            started = false;
+            if(aggregating) {
+                tracePoint.recordExecution(executionNanos);
+            }
+            long selfNanos = TraceEvent.NO_SELF_TIME;
+            if(spanStack != null) {
+                selfNanos = executionNanos - spanStack.pop(this, depth, executionNanos);
+                spanStack = null;
+                if(node != null) {
+                    node.record(executionNanos, selfNanos);
+                    node = null;
+                }
+                if(!nested) {
+                    selfNanos = TraceEvent.NO_SELF_TIME;
+                }
+            }
+            if(executionNanos > thresholdNanos) {
+                log(executionNanos, selfNanos);
+            }
+            Arrays.fill(lapDescriptions, 0, laps, null);
+            logger = null;
+            tracePoint = null;
+            traceIdGenerator = null;
+            ticker = null;
+            timeUnit = null;
+            dispatcher = null;
+            arguments = null;
+            if(pool != null) {
+                pool.release(this);
+            }
+        }
+        return LoggerTracerFactory.NO_OP_TRACER;
+    }
+
+    private void log(long executionNanos, long selfNanos) {
+        if(dispatcher != null) {
+            dispatcher.dispatchArguments(logger, traceIdGenerator, traceId, tracePoint, arguments, parentTraceId, nestingDepth);
+            for (int lap = 0; lap < laps; lap++) {
+                dispatcher.dispatchLap(logger, traceIdGenerator, traceId, lapDescriptions[lap], lapNanos[lap], split(lap), timeUnit);
+            }
+            dispatcher.dispatchExecution(logger, traceIdGenerator, traceId, tracePoint, executionNanos, selfNanos, timeUnit);
+            return;
+        }
+        synchronousEvent.arguments(logger, traceIdGenerator, traceId, tracePoint, arguments, parentTraceId, nestingDepth);
+        logSynchronously();
+        for (int lap = 0; lap < laps; lap++) {
+            synchronousEvent.lap(logger, traceIdGenerator, traceId, lapDescriptions[lap], lapNanos[lap], split(lap), timeUnit);
+            logSynchronously();
+        }
+        synchronousEvent.execution(logger, traceIdGenerator, traceId, tracePoint, executionNanos, selfNanos, timeUnit);
+        logSynchronously();
+    }
+
+    private long split(int lap) {
+        return lap == 0 ? lapNanos[0] : lapNanos[lap] - lapNanos[lap - 1];
+    }
+
+    private void logSynchronously() {
+        try {
+            synchronousEvent.log();
+        } finally {
+            synchronousEvent.clear();
+        }
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+}
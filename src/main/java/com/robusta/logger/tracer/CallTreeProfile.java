@@ -0,0 +1,245 @@
+package com.robusta.logger.tracer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory profile of the traced methods: the call tree of the traced
+ * executions, merged across executions and threads. A node per traced
+ * call path (the traced methods that were being executed when it was
+ * called, outermost first) aggregates the invocation count, the total,
+ * self (not spent in traced children) and maximum execution times of the
+ * method on that path.
+ *
+ * <p>The tree holds up to {@link #getMaxNodes()} nodes. Once they are all
+ * taken, the calls on paths that have no node yet are aggregated into an
+ * {@value #OTHER} node of their parent, which also aggregates whatever
+ * they call.</p>
+ *
+ * <p>The profile is dumped as collapsed stacks, a line per node of its
+ * path, the names separated by {@code ;}, and its self time in
+ * microseconds, the input of flame graph tools.</p>
+ *
+ * <p>Nodes refer to the {@link TracePoint}s of their methods, a profile
+ * keeps them reachable until it is dropped.</p>
+ *
+ * <p>Thread-safe, the counters of a node are updated atomically but
+ * independently, a dump taken while executions complete may be off by
+ * the executions being recorded.</p>
+ *
+ * @see LoggerTracerFactory#callTreeProfiling(boolean, int)
+ * @see SpanStack
+ * @since 1.3
+ */
+final class CallTreeProfile {
+    static final int DEFAULT_MAX_NODES = 4096;
+    static final String OTHER = "(other)";
+    private static final Comparator<Node> BY_NAME = new Comparator<Node>() {
+        @Override
+        public int compare(Node node, Node other) {
+            return node.getName().compareTo(other.getName());
+        }
+    };
+
+    private final int maxNodes;
+    private final AtomicInteger nodes = new AtomicInteger();
+    private final Node root = new Node(this, null, false);
+
+    CallTreeProfile(int maxNodes) {
+        Assert.checkArgument(maxNodes > 0, "Call tree nodes must be positive");
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * @param parent the node of the caller, null for a call without traced caller.
+     * @return Node the node of the traced method called by the parent.
+     */
+    Node child(Node parent, TracePoint tracePoint) {
+        return (parent != null ? parent : root).child(tracePoint);
+    }
+
+    /**
+     * @return Node the root of the tree, whose children are the traced
+     * methods called without traced caller. The root itself records nothing.
+     */
+    Node root() {
+        return root;
+    }
+
+    int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * @return int the nodes of the tree, {@value #OTHER} nodes excluded.
+     */
+    int nodeCount() {
+        return nodes.get();
+    }
+
+    private boolean reserveNode() {
+        while (true) {
+            int count = nodes.get();
+            if(count >= maxNodes) {
+                return false;
+            }
+            if(nodes.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Writes the profile as collapsed stacks, the nodes of each level in
+     * name order, skipping the nodes without self time.
+     */
+    void dumpCollapsedStacks(Appendable out) throws IOException {
+        StringBuilder path = new StringBuilder();
+        for (Node child : root.sortedChildren()) {
+            dump(child, path, out);
+        }
+    }
+
+    private static void dump(Node node, StringBuilder path, Appendable out) throws IOException {
+        int length = path.length();
+        if(length > 0) {
+            path.append(';');
+        }
+        path.append(node.getName());
+        long selfMicros = TimeUnit.NANOSECONDS.toMicros(node.getSelfNanos());
+        if(selfMicros > 0) {
+            out.append(path).append(' ').append(Long.toString(selfMicros)).append('\n');
+        }
+        for (Node child : node.sortedChildren()) {
+            dump(child, path, out);
+        }
+        path.setLength(length);
+    }
+
+    /**
+     * A node of the call tree, the aggregated executions of a traced
+     * method on a call path.
+     */
+    static final class Node {
+        private final CallTreeProfile profile;
+        private final String name;
+        private final boolean other;
+        private final ConcurrentMap<TracePoint, Node> children = new ConcurrentHashMap<TracePoint, Node>();
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong selfNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile Node otherChild;
+
+        private Node(CallTreeProfile profile, String name, boolean other) {
+            this.profile = profile;
+            this.name = name;
+            this.other = other;
+        }
+
+        private Node child(TracePoint tracePoint) {
+            if(other) {
+                return this;
+            }
+            Node child = children.get(tracePoint);
+            if(child == null) {
+                if(!profile.reserveNode()) {
+                    return otherChild();
+                }
+                Node created = new Node(profile, tracePoint.getName(), false);
+                child = children.putIfAbsent(tracePoint, created);
+                if(child == null) {
+                    child = created;
+                } else {
+                    profile.nodes.decrementAndGet();
+                }
+            }
+            return child;
+        }
+
+        private Node otherChild() {
+            Node child = otherChild;
+            if(child == null) {
+                synchronized (this) {
+                    child = otherChild;
+                    if(child == null) {
+                        otherChild = child = new Node(profile, OTHER, true);
+                    }
+                }
+            }
+            return child;
+        }
+
+        /**
+         * Aggregates an execution of the method on the path of the node.
+         */
+        void record(long executionNanos, long selfNanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(executionNanos);
+            this.selfNanos.addAndGet(selfNanos);
+            long max = maxNanos.get();
+            while (executionNanos > max && !maxNanos.compareAndSet(max, executionNanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        long getSelfNanos() {
+            return selfNanos.get();
+        }
+
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @return Node the child of the traced method, null when it has none.
+         */
+        Node getChild(TracePoint tracePoint) {
+            return children.get(tracePoint);
+        }
+
+        /**
+         * @return Node the {@value #OTHER} child, null when it has none.
+         */
+        Node getOtherChild() {
+            return otherChild;
+        }
+
+        Collection<Node> sortedChildren() {
+            List<Node> sorted = new ArrayList<Node>(children.values());
+            Collections.sort(sorted, BY_NAME);
+            Node child = otherChild;
+            if(child != null) {
+                sorted.add(child);
+            }
+            return sorted;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": count " + getCount() + ", total " + getTotalNanos() + " ns, self " + getSelfNanos()
+                    + " ns, max " + getMaxNanos() + " ns";
+        }
+    }
+}
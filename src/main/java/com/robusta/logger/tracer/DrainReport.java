@@ -0,0 +1,50 @@
+package com.robusta.logger.tracer;
+
+/**
+ * The outcome of shutting a {@link TraceEventDispatcher} down: how many of
+ * the events still pending were logged before the drain deadline, and how
+ * many were abandoned when it passed.
+ *
+ * @see LoggerTracerFactory#shutdownAsync(long, java.util.concurrent.TimeUnit)
+ * @since 1.3
+ */
+final class DrainReport {
+    static final DrainReport NOTHING_TO_DRAIN = new DrainReport(0L, 0L, false);
+
+    private final long flushedEvents;
+    private final long abandonedEvents;
+    private final boolean timedOut;
+
+    DrainReport(long flushedEvents, long abandonedEvents, boolean timedOut) {
+        this.flushedEvents = flushedEvents;
+        this.abandonedEvents = abandonedEvents;
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * @return long events logged after the shutdown began.
+     */
+    long getFlushedEvents() {
+        return flushedEvents;
+    }
+
+    /**
+     * @return long events left unlogged when the drain deadline passed.
+     */
+    long getAbandonedEvents() {
+        return abandonedEvents;
+    }
+
+    /**
+     * @return boolean whether the drain deadline passed before the
+     * dispatcher's thread(s) were done.
+     */
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public String toString() {
+        return "DrainReport{flushed=" + flushedEvents + ", abandoned=" + abandonedEvents + ", timedOut=" + timedOut + "}";
+    }
+}
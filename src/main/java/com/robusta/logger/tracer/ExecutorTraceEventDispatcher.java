@@ -0,0 +1,101 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TraceEventDispatcher} that submits every event as a
+ * callable into an {@link ExecutorService}.
+ *
+ * <p>This is how asynchronous trace logging worked before the
+ * {@link RingBufferTraceEventDispatcher}; it allocates an event and a
+ * task per dispatch. Per thread ordering holds only when the executor
+ * runs its tasks from a FIFO queue on a single thread.</p>
+ *
+ * <p>Shutting down waits for the executor to terminate up to the drain
+ * deadline, then cancels the tasks it has not run yet. An event the
+ * executor rejects because it is shut down is logged on the caller's
+ * thread; one rejected by a saturated executor is dropped.</p>
+ *
+ * @since 1.3
+ */
+class ExecutorTraceEventDispatcher extends TraceEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutorTraceEventDispatcher.class);
+    private final ExecutorService executor;
+    private final AtomicLong loggedEvents = new AtomicLong();
+
+    ExecutorTraceEventDispatcher(ExecutorService executor) {
+        Assert.notNull(executor, "Non-null executor service is mandatory");
+        this.executor = executor;
+    }
+
+    @Override
+    protected TraceEvent claim() {
+        return new TraceEvent();
+    }
+
+    @Override
+    protected void publish(final TraceEvent event) {
+        try {
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        event.log();
+                    } finally {
+                        loggedEvents.incrementAndGet();
+                        TracerMetrics.written(1);
+                    }
+                    return null;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if(executor.isShutdown()) {
+                event.log();
+                return;
+            }
+            dropped();
+            LOGGER.warn("Logging async request submission into the executor service has failed with RejectedExecutionException, logging will be impacted.", e);
+        }
+    }
+
+    /**
+     * @return int number of tasks queued in the executor, -1 when it is not a ThreadPoolExecutor.
+     */
+    @Override
+    int pendingEvents() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : -1;
+    }
+
+    @Override
+    int eventCapacity() {
+        if(!(executor instanceof ThreadPoolExecutor)) {
+            return -1;
+        }
+        BlockingQueue<Runnable> queue = ((ThreadPoolExecutor) executor).getQueue();
+        long capacity = (long) queue.size() + queue.remainingCapacity();
+        return capacity >= Integer.MAX_VALUE ? -1 : (int) capacity;
+    }
+
+    @Override
+    DrainReport shutdown(long timeout, TimeUnit unit) {
+        long loggedBefore = loggedEvents.get();
+        executor.shutdown();
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long abandoned = terminated ? 0L : executor.shutdownNow().size();
+        return new DrainReport(loggedEvents.get() - loggedBefore, abandoned, !terminated);
+    }
+}
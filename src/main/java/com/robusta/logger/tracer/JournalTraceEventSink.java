@@ -0,0 +1,361 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TraceEventSink} that appends trace events, as binary records,
+ * to a journal of memory-mapped segment files. No trace message is
+ * formatted: trace points, lap descriptions and trace ids are written as
+ * numbers, and the {@link TraceJournalDecoder} turns the journal back
+ * into the trace messages, offline.
+ *
+ * <p>A journal is a directory of segments named {@code trace-<sequence>.journal},
+ * each a file of a fixed size that is mapped once and written through the
+ * mapping. When a record does not fit the rest of the current segment the
+ * next segment is started, and the oldest segments beyond the retained
+ * count are deleted. A sink never appends to the segments of a previous
+ * sink, it starts with the sequence following the last of them.</p>
+ *
+ * <p>A segment starts with the {@link #MAGIC} int, the {@link #VERSION} int
+ * and the creation time (milliseconds since the epoch) as a long. Records
+ * follow, each a header of {@value #RECORD_HEADER_BYTES} bytes:
+ * <pre>
+ *  0 byte  record type, 0 ends the records of the segment
+ *  1 byte  ordinal of the time unit, or the trace id format of a definition
+ *  4 int   trace point (or name) id, -1 when the name is in the payload
+ *  8 int   trace id format id, -1 when the trace id is in the payload
+ * 12 int   length of the payload, in bytes, which follows the header
+ * 16 long  trace id
+ * 24 long  timestamp, nanoseconds since the epoch
+ * 32 long  duration, nanoseconds; parent trace id of method arguments
+ * 40 long  split, nanoseconds; self time of an execution, -1 when not
+ *          traced nested; nesting depth of method arguments
+ * </pre>
+ * The payload holds strings, each an int length followed by its chars,
+ * and the arguments of a method arguments event, as an int count followed
+ * by a string per argument. Names and trace id formats are defined by
+ * definition records the first time a segment refers to them, so that
+ * every segment decodes on its own. The type of a record is written last,
+ * a record cut short is never decoded.</p>
+ *
+ * <p>Method arguments are rendered into the payload, within the budget of
+ * the {@link ArgumentRenderer}, as are the trace ids of generators other than the
+ * built-in ones. Strings are truncated to {@value #MAX_STRING_CHARS} chars.</p>
+ *
+ * <p>Records are in the page cache as soon as they are written, which
+ * survives the process, so {@link #flush()} does nothing; the current
+ * segment is only forced to the storage device when the sink is closed.
+ * Failures to map a segment are reported (once) and the events are lost,
+ * the traced application is never affected.</p>
+ *
+ * @see TraceJournalDecoder
+ * @since 1.3
+ */
+class JournalTraceEventSink extends TraceEventSink {
+    static final int MAGIC = 0x4c54524a;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 48;
+    static final byte END = 0;
+    static final byte DEFINE_NAME = 1;
+    static final byte DEFINE_TRACE_ID_FORMAT = 2;
+    static final byte ARGUMENTS = 3;
+    static final byte LAP = 4;
+    static final byte EXECUTION = 5;
+    static final byte HEX_TRACE_ID_FORMAT = 0;
+    static final byte W3C_TRACE_ID_FORMAT = 1;
+    static final byte NO_TIME_UNIT = -1;
+    static final int NO_ID = -1;
+    static final String SEGMENT_PREFIX = "trace-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final int MIN_SEGMENT_BYTES = 64 * 1024;
+    static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    static final int DEFAULT_RETAINED_SEGMENTS = 16;
+    static final int MAX_STRING_CHARS = 4096;
+    /** Names defined per segment, beyond which names are written into the payload. */
+    static final int MAX_NAMES = 4096;
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalTraceEventSink.class);
+    private static final FileFilter SEGMENT_FILTER = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX);
+        }
+    };
+
+    private final File directory;
+    private final int segmentBytes;
+    private final int retainedSegments;
+    private final long epochNanos;
+    private final long startNanos;
+    private final Map<TracePoint, Integer> tracePointIds = new IdentityHashMap<TracePoint, Integer>();
+    private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+    private final Map<TraceIdGenerator, Integer> traceIdFormatIds = new IdentityHashMap<TraceIdGenerator, Integer>();
+    private int nextId;
+    private long sequence;
+    private MappedByteBuffer segment;
+    private boolean closed;
+    private boolean failed;
+
+    /**
+     * @param directory the journal directory, created when missing.
+     * @param segmentBytes the size of each segment file, at least {@value #MIN_SEGMENT_BYTES}.
+     * @param retainedSegments how many of the most recent segments are kept.
+     * @throws IllegalArgumentException when the directory cannot be created.
+     */
+    JournalTraceEventSink(File directory, int segmentBytes, int retainedSegments) {
+        Assert.notNull(directory, "Non-null journal directory is mandatory");
+        Assert.checkArgument(segmentBytes >= MIN_SEGMENT_BYTES, "Journal segments must be at least " + MIN_SEGMENT_BYTES + " bytes");
+        Assert.checkArgument(retainedSegments > 0, "At least one journal segment must be retained");
+        Assert.checkArgument(directory.isDirectory() || directory.mkdirs(), "Cannot create trace journal directory " + directory);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retainedSegments = retainedSegments;
+        File[] segments = segments(directory);
+        this.sequence = segments.length == 0 ? 0 : sequence(segments[segments.length - 1]) + 1;
+        this.epochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return File[] the segments of the journal in the directory, oldest first.
+     */
+    static File[] segments(File directory) {
+        File[] segments = directory.listFiles(SEGMENT_FILTER);
+        if(segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    static String segmentName(long sequence) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    private static long sequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    synchronized void write(TraceEvent event) {
+        append(event);
+    }
+
+    @Override
+    synchronized void writeSynchronously(TraceEvent event) {
+        append(event);
+    }
+
+    @Override
+    synchronized void close() {
+        closed = true;
+        if(segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    /**
+     * Appends the event to the current segment, or to the next one
+     * when it does not fit.
+     */
+    private void append(TraceEvent event) {
+        if(closed || failed) {
+            return;
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if(segment == null && !nextSegment()) {
+                return;
+            }
+            try {
+                appendEvent(event);
+                return;
+            } catch (BufferOverflowException e) {
+                segment = null;
+            }
+        }
+        LOGGER.warn("Trace event of '{}' does not fit a journal segment of {} bytes, it is lost.", name(event), segmentBytes);
+    }
+
+    private boolean nextSegment() {
+        tracePointIds.clear();
+        nameIds.clear();
+        traceIdFormatIds.clear();
+        nextId = 0;
+        File file = new File(directory, segmentName(sequence++));
+        try {
+            RandomAccessFile segmentFile = new RandomAccessFile(file, "rw");
+            try {
+                segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            } finally {
+                segmentFile.close();
+            }
+        } catch (IOException e) {
+            failed = true;
+            LOGGER.warn("Mapping trace journal segment " + file + " has failed, trace events will be lost.", e);
+            return false;
+        }
+        segment.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+        deleteExpiredSegments();
+        return true;
+    }
+
+    private void deleteExpiredSegments() {
+        File[] segments = segments(directory);
+        for (int index = 0; index < segments.length - retainedSegments; index++) {
+            if(!segments[index].delete()) {
+                LOGGER.warn("Cannot delete expired trace journal segment {}", segments[index]);
+            }
+        }
+    }
+
+    private void appendEvent(TraceEvent event) {
+        TracePoint tracePoint = event.getTracePoint();
+        int nameId = tracePoint != null ? tracePointId(tracePoint) : nameId(event.getName());
+        int traceIdFormatId = event.getUuid() == null ? traceIdFormatId(event.getTraceIdGenerator()) : NO_ID;
+        int start = beginRecord();
+        if(traceIdFormatId == NO_ID) {
+            putString(event.getUuid() != null ? event.getUuid() : event.getTraceIdGenerator().format(event.getTraceId()));
+        }
+        if(nameId == NO_ID) {
+            putString(event.getName());
+        }
+        byte type;
+        switch (event.getType()) {
+            case ARGUMENTS:
+                type = ARGUMENTS;
+                Object[] arguments = event.getArguments();
+                int count = arguments == null ? 0 : arguments.length;
+                segment.putInt(count);
+                ArgumentRenderer renderer = LoggerTracerFactory.argumentRenderer();
+                for (int index = 0; index < count; index++) {
+                    putString(renderer.render(arguments[index]));
+                }
+                break;
+            case LAP:
+                type = LAP;
+                break;
+            default:
+                type = EXECUTION;
+                break;
+        }
+        TimeUnit timeUnit = event.getTimeUnit();
+        long nanos = type == ARGUMENTS ? event.getParentTraceId() : event.getNanos();
+        long splitNanos = type == ARGUMENTS ? event.getDepth() : type == EXECUTION ? event.getSelfNanos() : event.getSplitNanos();
+        endRecord(start, type, timeUnit == null ? NO_TIME_UNIT : (byte) timeUnit.ordinal(), nameId, traceIdFormatId,
+                event.getTraceId(), epochNanos + System.nanoTime() - startNanos, nanos, splitNanos);
+    }
+
+    private int tracePointId(TracePoint tracePoint) {
+        Integer id = tracePointIds.get(tracePoint);
+        if(id == null) {
+            id = defineName(tracePoint.getName());
+            tracePointIds.put(tracePoint, id);
+        }
+        return id;
+    }
+
+    private int nameId(String name) {
+        if(name == null) {
+            return NO_ID;
+        }
+        Integer id = nameIds.get(name);
+        if(id == null) {
+            if(nameIds.size() >= MAX_NAMES) {
+                return NO_ID;
+            }
+            id = defineName(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return int the id of the format of the generator's trace ids,
+     * {@link #NO_ID} for generators that are not built-in.
+     */
+    private int traceIdFormatId(TraceIdGenerator traceIdGenerator) {
+        Integer id = traceIdFormatIds.get(traceIdGenerator);
+        if(id == null) {
+            if(traceIdGenerator instanceof TraceIdGenerators.W3cTraceparentTraceIdGenerator) {
+                id = defineTraceIdFormat(W3C_TRACE_ID_FORMAT, ((TraceIdGenerators.W3cTraceparentTraceIdGenerator) traceIdGenerator).getProcessHalf());
+            } else if(traceIdGenerator instanceof TraceIdGenerators.SequentialTraceIdGenerator) {
+                id = defineTraceIdFormat(HEX_TRACE_ID_FORMAT, 0L);
+            } else {
+                id = NO_ID;
+            }
+            traceIdFormatIds.put(traceIdGenerator, id);
+        }
+        return id;
+    }
+
+    private int defineName(String name) {
+        int start = beginRecord();
+        putString(name);
+        endRecord(start, DEFINE_NAME, NO_TIME_UNIT, nextId, NO_ID, 0L, 0L, 0L, 0L);
+        return nextId++;
+    }
+
+    private int defineTraceIdFormat(byte format, long processHalf) {
+        int start = beginRecord();
+        endRecord(start, DEFINE_TRACE_ID_FORMAT, format, NO_ID, nextId, processHalf, 0L, 0L, 0L);
+        return nextId++;
+    }
+
+    private int beginRecord() {
+        if(segment.remaining() < RECORD_HEADER_BYTES) {
+            throw new BufferOverflowException();
+        }
+        int start = segment.position();
+        segment.position(start + RECORD_HEADER_BYTES);
+        return start;
+    }
+
+    private void endRecord(int start, byte type, byte unitOrFormat, int nameId, int traceIdFormatId,
+                           long traceId, long timestamp, long nanos, long splitNanos) {
+        segment.put(start + 1, unitOrFormat)
+                .putInt(start + 4, nameId)
+                .putInt(start + 8, traceIdFormatId)
+                .putInt(start + 12, segment.position() - start - RECORD_HEADER_BYTES)
+                .putLong(start + 16, traceId)
+                .putLong(start + 24, timestamp)
+                .putLong(start + 32, nanos)
+                .putLong(start + 40, splitNanos)
+                .put(start, type);
+    }
+
+    private void putString(String value) {
+        if(value == null) {
+            segment.putInt(-1);
+            return;
+        }
+        int length = Math.min(value.length(), MAX_STRING_CHARS);
+        segment.putInt(length);
+        for (int index = 0; index < length; index++) {
+            segment.putChar(value.charAt(index));
+        }
+    }
+
+    private static String name(TraceEvent event) {
+        return event.getTracePoint() != null ? event.getTracePoint().getName() : event.getName();
+    }
+}
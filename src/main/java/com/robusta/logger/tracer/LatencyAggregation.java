@@ -0,0 +1,102 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation of the lap and execution latencies of the traced
+ * methods into per {@link TracePoint} {@link LatencyHistogram}s.
+ *
+ * <p>Aggregation does not depend on the trace logging, with the
+ * LOGGER_TRACER logger not trace enabled the traced methods are
+ * still timed, only nothing is logged per call.</p>
+ *
+ * <p>A summary line per traced method is logged periodically, at info
+ * level, on the {@value #SUMMARY_LOGGER_NAME} logger. The TracePoints
+ * that have recorded latencies are kept reachable by the aggregation,
+ * for the summary.</p>
+ *
+ * @since 1.3
+ */
+final class LatencyAggregation {
+    static final String SUMMARY_LOGGER_NAME = LoggerTracerFactory.LOGGER_NAME + ".LATENCY";
+    static final String SUMMARY_MSG = "Latency: '{}' {}";
+    static final String LAP_SUMMARY_MSG = "Latency: '{}', Lap: '{}' {}";
+    static final long DEFAULT_SUMMARY_INTERVAL_SECONDS = 60;
+    private static final String REPORTER_THREAD_NAME = "logger-tracer-latency";
+    private static final Logger SUMMARY_LOGGER = LoggerFactory.getLogger(SUMMARY_LOGGER_NAME);
+
+    private static final Queue<TracePoint> AGGREGATED = new ConcurrentLinkedQueue<TracePoint>();
+    private static ScheduledExecutorService reporter;
+
+    private LatencyAggregation() {}
+
+    /**
+     * Schedules the summary log lines while aggregation is on, whether it
+     * is on being a setting of the {@link TracerConfig}.
+     *
+     * @param summaryIntervalSeconds interval of the summary log lines, 0 for none.
+     */
+    static synchronized void configure(boolean enabled, long summaryIntervalSeconds) {
+        Assert.checkArgument(summaryIntervalSeconds >= 0, "Latency summary interval must not be negative");
+        stopReporter();
+        if(enabled && summaryIntervalSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, REPORTER_THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            reporter.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    logSummary();
+                }
+            }, summaryIntervalSeconds, summaryIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    static synchronized void stopReporter() {
+        if(reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    static void aggregated(TracePoint tracePoint) {
+        AGGREGATED.add(tracePoint);
+    }
+
+    static Iterable<TracePoint> aggregatedTracePoints() {
+        return AGGREGATED;
+    }
+
+    /**
+     * Logs a summary line for the executions and for each lap
+     * of every TracePoint that has recorded latencies.
+     */
+    static void logSummary() {
+        if(!SUMMARY_LOGGER.isInfoEnabled()) {
+            return;
+        }
+        for (TracePoint tracePoint : AGGREGATED) {
+            LatencyHistogram.Snapshot executionLatency = tracePoint.getExecutionLatency();
+            if(executionLatency.getCount() > 0) {
+                SUMMARY_LOGGER.info(SUMMARY_MSG, tracePoint.getName(), executionLatency);
+            }
+            for (Map.Entry<String, LatencyHistogram.Snapshot> lapLatency : tracePoint.getLapLatencies().entrySet()) {
+                SUMMARY_LOGGER.info(LAP_SUMMARY_MSG, tracePoint.getName(), lapLatency.getKey(), lapLatency.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies, in nanoseconds.
+ *
+ * <p>Buckets are log-linear: every power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so a recorded latency is
+ * accounted to within 1/{@value #SUB_BUCKETS} of its value, from one
+ * nanosecond up to {@link #MAX_TRACKABLE_NANOS} (larger latencies are
+ * accounted to the last bucket, the maximum is kept exactly).</p>
+ *
+ * <p>Recording is a single atomic increment, on a stripe of the bucket
+ * array picked by the recording thread, so that threads tracing the same
+ * method do not contend on the same counters. The stripes are merged
+ * when a {@link #snapshot()} is taken.</p>
+ *
+ * @since 1.3
+ */
+public final class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 42;
+    /** About two and a half hours. */
+    public static final long MAX_TRACKABLE_NANOS = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKETS = bucketIndex(MAX_TRACKABLE_NANOS) + 1;
+    private static final int MAX_STRIPES = 4;
+    /** Longs between two stripes' maximum and sum, keeps them on separate cache lines. */
+    private static final int PADDING = 8;
+
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray maxima;
+    private final AtomicLongArray sums;
+
+    LatencyHistogram() {
+        this(Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors())));
+    }
+
+    LatencyHistogram(int stripes) {
+        Assert.checkArgument(stripes > 0 && Integer.bitCount(stripes) == 1, "Histogram stripes must be a positive power of two");
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+        this.maxima = new AtomicLongArray(stripes * PADDING);
+        this.sums = new AtomicLongArray(stripes * PADDING);
+    }
+
+    /**
+     * @param nanos latency to record, negative latencies are recorded as zero.
+     */
+    void record(long nanos) {
+        long latency = nanos < 0 ? 0 : nanos;
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.incrementAndGet(stripe * BUCKETS + bucketIndex(Math.min(latency, MAX_TRACKABLE_NANOS)));
+        sums.addAndGet(stripe * PADDING, latency);
+        int maxIndex = stripe * PADDING;
+        long max;
+        while (latency > (max = maxima.get(maxIndex)) && !maxima.compareAndSet(maxIndex, max, latency)) {
+            // retry, another thread of the stripe raised the maximum
+        }
+    }
+
+    /**
+     * @return Snapshot of the latencies recorded so far. Not atomic with
+     * respect to concurrent recording, which may or may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        long max = 0;
+        long sum = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long bucketCount = counts.get(stripe * BUCKETS + bucket);
+                merged[bucket] += bucketCount;
+                count += bucketCount;
+            }
+            max = Math.max(max, maxima.get(stripe * PADDING));
+            sum += sums.get(stripe * PADDING);
+        }
+        return new Snapshot(merged, count, max, sum);
+    }
+
+    static int bucketIndex(long nanos) {
+        if(nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (subBucket - SUB_BUCKETS);
+    }
+
+    /**
+     * @return long the highest latency accounted to the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = SUB_BUCKETS + index % SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * An immutable copy of the latencies of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+        private final long sum;
+
+        Snapshot(long[] counts, long count, long max, long sum) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100.
+         * @return long the latency, in nanoseconds, at or below which the
+         * given percentile of the recorded latencies fall, 0 when nothing
+         * was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            Assert.checkArgument(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100");
+            if(count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long cumulative = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                cumulative += counts[bucket];
+                if(cumulative >= rank) {
+                    return Math.min(bucketUpperBound(bucket), max);
+                }
+            }
+            return max;
+        }
+
+        public long getP50Nanos() {
+            return getValueAtPercentile(50);
+        }
+
+        public long getP90Nanos() {
+            return getValueAtPercentile(90);
+        }
+
+        public long getP99Nanos() {
+            return getValueAtPercentile(99);
+        }
+
+        public long getP999Nanos() {
+            return getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count: %d, p50: %.3f ms, p90: %.3f ms, p99: %.3f ms, p999: %.3f ms, max: %.3f ms",
+                    count, millis(getP50Nanos()), millis(getP90Nanos()), millis(getP99Nanos()), millis(getP999Nanos()), millis(max));
+        }
+
+        private static double millis(long nanos) {
+            return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.robusta.logger.tracer;
+
+/**
+ * The default {@link TraceEventSink}, logs every trace event through
+ * its own SLF4J logger, with the same messages as the synchronous
+ * logger-tracers.
+ *
+ * @since 1.3
+ */
+class LoggerTraceEventSink extends TraceEventSink {
+
+    @Override
+    void write(TraceEvent event) {
+        event.log();
+    }
+
+    @Override
+    void writeSynchronously(TraceEvent event) {
+        event.log();
+    }
+}
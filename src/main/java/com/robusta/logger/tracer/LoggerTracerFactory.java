@@ -1,13 +1,12 @@
 package com.robusta.logger.tracer;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import static java.util.UUID.randomUUID;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A factory for getting {@link LoggerTracer} implementation.
@@ -19,21 +18,80 @@ import static java.util.UUID.randomUUID;
  * <p>Asynchronous logging support since version 1.2+. To
  * enable async logging, web application must register
  * {@link LoggerTracerServletContextListener} in the
- * application context {@code web.xml}. Async logging for non
- * web application is not supported.</p>
+ * application context {@code web.xml}. Other applications
+ * start a {@link TracerRuntime}, or have one started with
+ * the {@code loggerTracer.autoStart} system property.</p>
+ *
+ * <p>Asynchronous trace logging uses a {@link TraceEventDispatcher},
+ * by default a pre-allocated, bounded ring buffer with a single
+ * consumer thread. This ensure that trace logging done from a single
+ * execution flow (thread) appear in the logs in the right sequence.</p>
+ *
+ * <p>Pooled logger tracers since version 1.3. When enabled,
+ * logger tracers are reused from a per-thread pool and keep
+ * their timing and trace id as primitives, so that together
+ * with asynchronous logging a traced call allocates nothing but
+ * the varargs array of its method arguments.
+ * See {@link #pooledTracers(boolean)}.</p>
+ *
+ * <p>Nested tracing since version 1.3, executions traced within traced
+ * executions are logged as their children, see {@link #nestedTracing(boolean)},
+ * and can be profiled into a call tree, see {@link #dumpCallTree(Appendable)}.
+ * Tasks handed to other threads stay children of the execution that handed
+ * them, when wrapped by {@link TraceContexts}.</p>
+ *
+ * <p>Trace ids come from a pluggable {@link TraceIdGenerator},
+ * {@link TraceIdGenerators#sequential()} by default.</p>
+ *
+ * <p>Executions and laps are timed by a {@link Ticker}, in nanoseconds,
+ * and logged in milliseconds unless configured otherwise. A lap logs
+ * the time since start and the split since the previous lap.</p>
+ *
+ * <p>Lap and execution latencies can be aggregated into per method
+ * histograms, with or without trace logging, see
+ * {@link #executionLatencies()}.</p>
+ *
+ * <p>Latency sensitive code can hold a {@link TracePoint} per traced
+ * method, see {@link #tracePoint(Class, String)}.</p>
+ *
+ * <p>Method arguments are captured on the traced thread by an
+ * {@link ArgumentCapture}, {@link ArgumentCaptures#snapshot()} by default,
+ * and rendered when the trace message is, within a budget, see
+ * {@link #argumentRendering(int, int, int)}.</p>
  *
- * <p>Asynchronous trace logging uses an executor service
- * with a single thread and a FIFO queue. This ensure that
- * trace logging done from a single execution flow (thread)
- * appear in the logs in the right sequence.</p>
+ * <p>Trace logging can be sampled: a {@link Sampler} decides, when an
+ * execution starts, whether its trace is logged at all, and slow
+ * executions can be logged regardless, see
+ * {@link #sampling(Sampler, long, TimeUnit)}, or logged only when slower
+ * than a per method threshold, see
+ * {@link #slowCallThreshold(String, long, TimeUnit)}.</p>
+ *
+ * <p>The factory can be reconfigured at any time, while executions are
+ * traced: its settings are kept in an immutable {@link TracerConfig}
+ * snapshot, replaced as a whole on every change. An execution reads the
+ * snapshot once, when it starts, and is traced according to it until it
+ * stops.</p>
+ *
+ * <p>Tracing can be switched on and off, and sampled, per package, class
+ * or method at runtime, with trace rules, see
+ * {@link #traceRule(String, String)}, set as well through the
+ * {@link TracerControlMBean} or a watched rules file.</p>
+ *
+ * <p>What tracing costs and how asynchronous logging keeps up is counted
+ * by the {@link TracerMetrics}.</p>
  *
  * @see LoggerTracerServletContextListener
  * @since 1.0
  */
 public final class LoggerTracerFactory {
 
-    private static ExecutorService executor;
-    private static boolean asyncEnabled = false;
+    static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 5000L;
+    static final String SHUTDOWN_HOOK_THREAD_NAME = "logger-tracer-shutdown";
+
+    private static volatile TracerConfig config = TracerConfig.DEFAULTS;
+    private static volatile boolean traceEnabled = true;
+    private static long drainTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_DRAIN_TIMEOUT_MILLIS);
+    private static Thread shutdownHook;
     private static final Logger LOGGER = LoggerFactory.getLogger(LoggerTracerFactory.class);
 
     private LoggerTracerFactory() {}
@@ -41,57 +99,613 @@ public final class LoggerTracerFactory {
      * Sets up the factory to produce logger tracers
      * with asynchronous logging support.
      *
-     * <p>Only for invocation from the
+     * <p>Only for invocation from the {@link TracerRuntime},
+     * when it is started, directly or by the
      * {@link LoggerTracerServletContextListener}
-     * for web application asynchronous trace logging
-     * support. During web application start up.</p>
+     * during web application start up.</p>
      *
-     * <p>Non listener invocations are not supported and
+     * <p>Other invocations are not supported and
      * the effects can be unknown.</p>
      */
     static void startAsync() {
-        if(!asyncEnabled) {
-            LOGGER.trace("Starting asynchronous logging, initializing executor service with a single thread executor");
-            executor = Executors.newSingleThreadExecutor();
-            asyncEnabled = true;
+        startAsync(RingBufferTraceEventDispatcher.DEFAULT_CAPACITY, WaitStrategy.PARK);
+    }
+
+    /**
+     * Sets up the factory to produce logger tracers with
+     * asynchronous logging through a ring buffer of the
+     * given capacity (a power of two) whose threads wait
+     * using the given wait strategy.
+     *
+     * @see #startAsync()
+     */
+    static void startAsync(int capacity, WaitStrategy waitStrategy) {
+        startAsync(capacity, waitStrategy, RingBufferTraceEventDispatcher.DEFAULT_OVERFLOW_POLICY,
+                RingBufferTraceEventDispatcher.DEFAULT_BLOCK_TIMEOUT_MILLIS, RingBufferTraceEventDispatcher.DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Sets up the factory to produce logger tracers with
+     * asynchronous logging through a bounded ring buffer,
+     * which handles overflow according to the given policy.
+     *
+     * @see #startAsync()
+     * @see OverflowPolicy
+     */
+    static void startAsync(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, long blockTimeoutMillis, int sampleRate) {
+        startAsync(capacity, waitStrategy, overflowPolicy, blockTimeoutMillis, sampleRate,
+                RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS,
+                new LoggerTraceEventSink());
+    }
+
+    /**
+     * Sets up the factory to produce logger tracers with
+     * asynchronous logging through a bounded ring buffer,
+     * whose consumer drains events in batches into the given sink.
+     *
+     * @see #startAsync()
+     * @see TraceEventSink
+     */
+    static void startAsync(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, long blockTimeoutMillis, int sampleRate,
+                           int batchSize, long batchTimeBudgetMicros, TraceEventSink sink) {
+        startAsync(capacity, waitStrategy, overflowPolicy, blockTimeoutMillis, sampleRate, batchSize, batchTimeBudgetMicros, sink, 1);
+    }
+
+    /**
+     * Sets up the factory to produce logger tracers with
+     * asynchronous logging through the given number of ring
+     * buffers, each of the given capacity, the traced threads
+     * being spread over them, whose consumer merges them in
+     * publication order into the given sink.
+     *
+     * @see #startAsync()
+     * @see RingBufferTraceEventDispatcher
+     */
+    static synchronized void startAsync(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, long blockTimeoutMillis, int sampleRate,
+                                        int batchSize, long batchTimeBudgetMicros, TraceEventSink sink, int stripes) {
+        if(!config.isAsync()) {
+            LOGGER.trace("Starting asynchronous logging, initializing {} ring buffer(s) of capacity {} with {} wait strategy and {} overflow policy",
+                    stripes, capacity, waitStrategy, overflowPolicy);
+            startAsync(new RingBufferTraceEventDispatcher(capacity, waitStrategy, overflowPolicy, blockTimeoutMillis, sampleRate,
+                    batchSize, batchTimeBudgetMicros, sink, stripes));
+        } else {
+            LOGGER.trace("Factory is already setup for asynchronous logging, this invocation to startAsync will be a no-op.");
+        }
+    }
+
+    /**
+     * Sets up the factory to produce logger tracers with
+     * asynchronous logging through the given dispatcher.
+     *
+     * @see #startAsync()
+     */
+    static synchronized void startAsync(TraceEventDispatcher traceEventDispatcher) {
+        Assert.notNull(traceEventDispatcher, "Non-null trace event dispatcher is mandatory");
+        if(!config.isAsync()) {
+            config = config.withDispatcher(traceEventDispatcher);
             LOGGER.trace("Async mode enabled.");
         } else {
             LOGGER.trace("Factory is already setup for asynchronous logging, this invocation to startAsync will be a no-op.");
         }
     }
 
+    /**
+     * Switches asynchronous logging over to the given dispatcher while
+     * executions are traced, to change its sink, capacity or stripes.
+     * Executions that start afterwards log through the given dispatcher,
+     * the previous one is shut down, waiting for its pending trace events
+     * up to the drain timeout, see {@link #asyncShutdown(long, TimeUnit, boolean)}.
+     * Executions that started before the switch log their remaining
+     * events on their own thread. Starts asynchronous logging when it
+     * was not.
+     *
+     * @return DrainReport how many pending events of the previous dispatcher were logged and abandoned.
+     */
+    static synchronized DrainReport switchAsync(TraceEventDispatcher traceEventDispatcher) {
+        Assert.notNull(traceEventDispatcher, "Non-null trace event dispatcher is mandatory");
+        TraceEventDispatcher previous = config.getDispatcher();
+        config = config.withDispatcher(traceEventDispatcher);
+        LOGGER.trace("Async mode switched over to {}", traceEventDispatcher);
+        return previous != null ? drain(previous, drainTimeoutNanos, TimeUnit.NANOSECONDS) : DrainReport.NOTHING_TO_DRAIN;
+    }
+
+    /**
+     * Switches the factory to produce pooled logger tracers (or back).
+     *
+     * <p>A pooled logger tracer returns to its thread's pool when
+     * stopped, the reference must not be used after {@code stop()}.
+     * Chaining on the result of {@code stop()} is safe.</p>
+     *
+     * @param enabled whether to produce pooled logger tracers.
+     * @see LoggerTracerPool
+     */
+    static synchronized void pooledTracers(boolean enabled) {
+        LOGGER.trace("Pooled logger tracers enabled: {}", enabled);
+        config = config.withPooledTracers(enabled);
+    }
+
+    /**
+     * Switches the pooled logger tracers to the pools suited to traced code
+     * running on virtual threads (or back): a fixed number of pools shared
+     * by all threads, striped by thread, instead of a pool per thread,
+     * whose preallocated tracers would multiply with the virtual threads.
+     *
+     * <p>The tracing state that remains per thread is small: the stack of
+     * the nested executions, while nested tracing or call tree profiling is
+     * enabled, and the block of trace ids of the sequential generator.
+     * Traced threads never block on the tracing state, a thread that finds
+     * its striped pool in use is served a fresh tracer.</p>
+     *
+     * @param enabled whether the pooled logger tracers come from striped pools.
+     * @see LoggerTracerPool#striped()
+     */
+    static synchronized void virtualThreads(boolean enabled) {
+        LOGGER.trace("Virtual thread mode enabled: {}", enabled);
+        config = config.withVirtualThreads(enabled);
+    }
+
+    /**
+     * Turns nested tracing on or off. While on, an execution traced while
+     * another one is traced on the same thread is its child: its method
+     * arguments are logged with the trace id of its parent and its depth,
+     * and its completion with its self time, the time not spent in its
+     * children.
+     *
+     * <p>Nested executions are traced by the logger tracers that keep
+     * their trace id as a primitive, pooled or not, see
+     * {@link #pooledTracers(boolean)}.</p>
+     *
+     * @see SpanStack
+     * @see TraceContexts
+     */
+    static synchronized void nestedTracing(boolean enabled) {
+        LOGGER.trace("Nested tracing enabled: {}", enabled);
+        config = config.withNestedTracing(enabled);
+    }
+
+    /**
+     * Removes the calling thread's pool of logger tracers and stack of
+     * nested executions, which would otherwise live as long as the thread.
+     *
+     * <p>In a servlet container the worker threads outlive the web
+     * application, and their pools and stacks, instances of this library's
+     * classes, pin its class loader after it is undeployed. Call this when
+     * a worker thread is done with a request, from the finally block of a
+     * servlet filter say. Closing a {@link TracerRuntime} does it for the
+     * closing thread. Tracers still running on the thread keep working,
+     * they are just not pooled, nor nested, with those started later.</p>
+     */
+    public static void releaseThreadLocals() {
+        LoggerTracerPool.removeCurrent();
+        SpanStack.removeCurrent();
+    }
+
+    /**
+     * Turns the call tree profile of the traced methods on or off. While
+     * on, nested executions are merged into a call tree of up to the given
+     * number of nodes, and methods are traced even when the LOGGER_TRACER
+     * logger is not trace enabled, only nothing is logged per call.
+     *
+     * @see CallTreeProfile
+     */
+    static synchronized void callTreeProfiling(boolean enabled, int maxNodes) {
+        LOGGER.trace("Call tree profiling enabled: {}, up to {} nodes", enabled, maxNodes);
+        config = config.withCallTreeProfile(enabled ? new CallTreeProfile(maxNodes) : null);
+        refreshTraceEnabled();
+    }
+
+    /**
+     * Writes the call tree profile of the traced methods as collapsed
+     * stacks, a line per traced call path: the ClassName.methodName of the
+     * calls on the path separated by {@code ;}, and the self time of the
+     * last call, in microseconds. Writes nothing unless call tree profiling
+     * is enabled.
+     *
+     * @param out Appendable, written to as it is, no line is buffered.
+     * @throws IOException when writing fails.
+     * @since 1.3
+     */
+    public static void dumpCallTree(Appendable out) throws IOException {
+        CallTreeProfile profile = config.getCallTreeProfile();
+        if(profile != null) {
+            profile.dumpCollapsedStacks(out);
+        }
+    }
+
+    /**
+     * Starts the call tree profile of the traced methods over, empty.
+     * Does nothing unless call tree profiling is enabled.
+     *
+     * @since 1.3
+     */
+    public static synchronized void resetCallTree() {
+        CallTreeProfile profile = config.getCallTreeProfile();
+        if(profile != null) {
+            config = config.withCallTreeProfile(new CallTreeProfile(profile.getMaxNodes()));
+        }
+    }
+
+    static CallTreeProfile callTreeProfile() {
+        return config.getCallTreeProfile();
+    }
+
+    /**
+     * Sets the generator of the ids that correlate the trace
+     * log lines of an execution.
+     *
+     * @see TraceIdGenerators
+     */
+    static synchronized void traceIdGenerator(TraceIdGenerator generator) {
+        Assert.notNull(generator, "Non-null trace id generator is mandatory");
+        LOGGER.trace("Trace ids will be generated by {}", generator);
+        config = config.withTraceIdGenerator(generator);
+    }
+
+    /**
+     * Sets the time source of the logger tracers.
+     *
+     * @see Tickers
+     */
+    static synchronized void ticker(Ticker ticker) {
+        Assert.notNull(ticker, "Non-null ticker is mandatory");
+        LOGGER.trace("Logger tracers will be timed by {}", ticker);
+        config = config.withTicker(ticker);
+    }
+
+    /**
+     * Sets the unit lap and execution times are logged in, one of
+     * nanoseconds, microseconds or milliseconds (the default).
+     */
+    static synchronized void timeUnit(TimeUnit timeUnit) {
+        Assert.notNull(timeUnit, "Non-null time unit is mandatory");
+        LoggingStopWatch.unitSymbol(timeUnit);
+        LOGGER.trace("Lap and execution times will be logged in {}", timeUnit);
+        config = config.withTimeUnit(timeUnit);
+    }
+
+    /**
+     * Sets how the method arguments are captured, on the traced
+     * thread, for the method arguments trace message.
+     *
+     * @see ArgumentCaptures
+     */
+    static synchronized void argumentCapture(ArgumentCapture capture) {
+        Assert.notNull(capture, "Non-null argument capture is mandatory");
+        LOGGER.trace("Method arguments will be captured by {}", capture);
+        config = config.withArgumentCapture(capture);
+    }
+
+    /**
+     * Sets the budget method arguments are rendered within: the chars
+     * of each argument, the elements of each collection, map or array
+     * and the levels of nested collections, maps or arrays.
+     *
+     * @see ArgumentRenderer
+     */
+    static synchronized void argumentRendering(int maxLength, int maxElements, int maxDepth) {
+        ArgumentRenderer renderer = new ArgumentRenderer(maxLength, maxElements, maxDepth);
+        LOGGER.trace("Method arguments will be rendered within {}", renderer);
+        config = config.withArgumentRenderer(renderer);
+    }
+
+    /**
+     * Sets which executions are trace logged. The sampler decides when an
+     * execution starts, before its method arguments are captured, and its
+     * decision holds for all the laps of the execution. An execution that
+     * is sampled out costs about as much as trace logging disabled, unless
+     * latencies are aggregated or executions are traced nested.
+     *
+     * <p>With nested tracing, only the executions that start a trace, on
+     * their thread or in a restored {@link TraceContext}, are sampled; the
+     * executions nested in them follow their decision, so that a trace is
+     * logged whole or not at all.</p>
+     *
+     * <p>With a positive tail threshold, the trace of an execution that was
+     * sampled out is kept until the execution stops, and is logged if the
+     * execution took longer than the threshold. Every execution then pays
+     * for the capture of its arguments and the timing of its laps.</p>
+     *
+     * @param tailThreshold execution time above which sampled out executions are logged, 0 for never.
+     * @see Samplers
+     * @see BufferingLoggerTracer
+     */
+    static synchronized void sampling(Sampler sampler, long tailThreshold, TimeUnit tailThresholdUnit) {
+        Assert.notNull(sampler, "Non-null sampler is mandatory");
+        Assert.notNull(tailThresholdUnit, "Non-null tail threshold unit is mandatory");
+        Assert.checkArgument(tailThreshold >= 0, "Tail threshold must not be negative");
+        LOGGER.trace("Executions will be sampled by {}, sampled out executions logged above {} {}", sampler, tailThreshold, tailThresholdUnit);
+        config = config.withSampling(sampler, tailThresholdUnit.toNanos(tailThreshold));
+    }
+
+    /**
+     * Turns the slow-call-only mode on or off. In this mode the trace of an
+     * execution is kept until the execution stops, and is logged only if the
+     * execution took longer than the threshold of its method, the given
+     * default unless set otherwise with
+     * {@link #slowCallThreshold(String, long, TimeUnit)}.
+     *
+     * @param defaultThreshold threshold of the methods without one of their own.
+     * @see SlowCallThresholds
+     */
+    static synchronized void slowCallsOnly(boolean enabled, long defaultThreshold, TimeUnit unit) {
+        Assert.notNull(unit, "Non-null slow call threshold unit is mandatory");
+        Assert.checkArgument(defaultThreshold >= 0, "Slow call threshold must not be negative");
+        LOGGER.trace("Slow call only mode enabled: {}, default threshold {} {}", enabled, defaultThreshold, unit);
+        config = config.withSlowCallsOnly(enabled, unit.toNanos(defaultThreshold));
+    }
+
+    /**
+     * Sets the slow-call-only threshold of a traced method, at any time.
+     * The executions of the method that start afterwards are logged only
+     * if they take longer than the threshold, while the slow-call-only
+     * mode is on.
+     *
+     * @param classDotMethodName the traced method, as it appears in the trace logs.
+     * @see TracePoint#getName()
+     * @since 1.3
+     */
+    public static void slowCallThreshold(String classDotMethodName, long threshold, TimeUnit unit) {
+        Assert.notNull(unit, "Non-null slow call threshold unit is mandatory");
+        LOGGER.trace("Slow call threshold of {} set to {} {}", classDotMethodName, threshold, unit);
+        SlowCallThresholds.threshold(classDotMethodName, unit.toNanos(threshold));
+    }
+
+    /**
+     * Removes the slow-call-only threshold of a traced method, which gets
+     * the default threshold back.
+     *
+     * @param classDotMethodName the traced method, as it appears in the trace logs.
+     * @since 1.3
+     */
+    public static void removeSlowCallThreshold(String classDotMethodName) {
+        LOGGER.trace("Slow call threshold of {} removed", classDotMethodName);
+        SlowCallThresholds.removeThreshold(classDotMethodName);
+    }
+
+    /**
+     * Sets the {@link TraceRule} of a pattern, at any time, in place of the
+     * rule of the same pattern if any: the traced methods the pattern
+     * matches are traced, or not, and sampled, as the action says. The
+     * executions that start afterwards follow the rule, without a restart.
+     *
+     * <p>The pattern is {@code *}, a {@code package.*}, a class or a
+     * {@code ClassName.methodName}, the action {@code on}, {@code off},
+     * {@code always}, {@code oneIn:n} or {@code rate:r}. A method follows the
+     * most specific rule that matches it, and is traced as the factory is
+     * set when none does.</p>
+     *
+     * <p>A rule set at runtime outlives the changes of a watched rules
+     * file, and overrides the rule of the same pattern of the file, see
+     * {@link TracerRuntime}.</p>
+     *
+     * @throws IllegalArgumentException when the pattern or the action is invalid.
+     * @see TraceRule
+     * @see TracerControlMBean
+     * @since 1.3
+     */
+    public static synchronized void traceRule(String pattern, String action) {
+        TraceRule rule = TraceRule.parse(pattern, action);
+        LOGGER.trace("Trace rule {} set", rule);
+        config = config.withTraceRules(config.getTraceRules().with(rule));
+    }
+
+    /**
+     * Removes the {@link TraceRule} of a pattern set at runtime, the
+     * methods it matched follow the remaining rules again, the configured
+     * rule of the pattern included.
+     *
+     * @since 1.3
+     */
+    public static synchronized void removeTraceRule(String pattern) {
+        LOGGER.trace("Trace rule of {} removed", pattern);
+        config = config.withTraceRules(config.getTraceRules().without(pattern));
+    }
+
+    /**
+     * Replaces all the {@link TraceRule}s set at runtime at once, none
+     * being applied unless all are valid. The configured rules stay.
+     *
+     * @param actions the actions by pattern, none to remove every rule set at runtime.
+     * @throws IllegalArgumentException when a pattern or an action is invalid.
+     */
+    static synchronized void traceRules(Map<String, String> actions) {
+        Assert.notNull(actions, "Non-null trace rules are mandatory");
+        TraceRules rules = config.getTraceRules().withRuntime(actions);
+        LOGGER.trace("Trace rules set at runtime replaced, rules in force {}", rules);
+        config = config.withTraceRules(rules);
+    }
+
+    /**
+     * Replaces the configured {@link TraceRule}s, those of the properties
+     * and of the rules file of the {@link TracerRuntime}, at once, none
+     * being applied unless all are valid. The rules set at runtime stay.
+     *
+     * @param actions the actions by pattern, none to remove every configured rule.
+     * @throws IllegalArgumentException when a pattern or an action is invalid.
+     */
+    static synchronized void configuredTraceRules(Map<String, String> actions) {
+        Assert.notNull(actions, "Non-null trace rules are mandatory");
+        TraceRules rules = config.getTraceRules().withConfigured(actions);
+        LOGGER.trace("Configured trace rules replaced, rules in force {}", rules);
+        config = config.withTraceRules(rules);
+    }
+
+    /**
+     * @return Map of the actions of the trace rules in force, by pattern.
+     */
+    static Map<String, String> traceRules() {
+        return config.getTraceRules().actions();
+    }
+
+    static ArgumentRenderer argumentRenderer() {
+        return config.getArgumentRenderer();
+    }
+
+    /**
+     * @return TracerConfig the current configuration of the factory.
+     */
+    static TracerConfig configuration() {
+        return config;
+    }
+
+    /**
+     * Replaces the settings of the factory with the given ones at once,
+     * asynchronous logging aside, which stays as it is.
+     *
+     * @see TracerRuntime#close()
+     */
+    static synchronized void configure(TracerConfig settings) {
+        Assert.notNull(settings, "Non-null configuration is mandatory");
+        LOGGER.trace("Factory reconfigured to {}", settings);
+        if(!settings.isAggregating()) {
+            LatencyAggregation.stopReporter();
+        }
+        config = settings.withDispatcher(config.getDispatcher());
+        refreshTraceEnabled();
+    }
+
+    /**
+     * Turns aggregation of the lap and execution latencies of the
+     * traced methods on or off. While on, methods are traced even when
+     * the LOGGER_TRACER logger is not trace enabled, only nothing is
+     * logged per call.
+     *
+     * @param summaryIntervalSeconds interval of the latency summary log lines, 0 for none.
+     * @see LatencyAggregation
+     */
+    static synchronized void latencyAggregation(boolean enabled, long summaryIntervalSeconds) {
+        LOGGER.trace("Latency aggregation enabled: {}, summary every {} seconds", enabled, summaryIntervalSeconds);
+        LatencyAggregation.configure(enabled, summaryIntervalSeconds);
+        config = config.withAggregating(enabled);
+        refreshTraceEnabled();
+    }
+
+    /**
+     * Get the aggregated execution latencies of the traced methods, by
+     * ClassName.methodName. Empty unless latency aggregation is enabled.
+     *
+     * @return Map
+     * @see TracePoint#getExecutionLatency()
+     * @since 1.3
+     */
+    public static Map<String, LatencyHistogram.Snapshot> executionLatencies() {
+        Map<String, LatencyHistogram.Snapshot> latencies = new LinkedHashMap<String, LatencyHistogram.Snapshot>();
+        for (TracePoint tracePoint : LatencyAggregation.aggregatedTracePoints()) {
+            latencies.put(tracePoint.getName(), tracePoint.getExecutionLatency());
+        }
+        return latencies;
+    }
+
+    /**
+     * Turns detection of logger tracers that are never stopped
+     * on or off. One in {@code sampleInterval} tracers is tracked.
+     *
+     * @see TracerLeakDetector
+     */
+    static void leakDetection(boolean enabled, int sampleInterval) {
+        LOGGER.trace("Logger tracer leak detection enabled: {}, sampling one in {}", enabled, sampleInterval);
+        TracerLeakDetector.configure(enabled, sampleInterval);
+    }
+
+    /**
+     * Sets how asynchronous logging is shut down: how long
+     * {@link #shutdownAsync()} waits for the pending trace events
+     * to be logged, and whether it is run by a JVM shutdown hook,
+     * for applications that are not shut down by the
+     * {@link LoggerTracerServletContextListener}.
+     *
+     * <p>The shutdown hook stays registered across restarts of
+     * asynchronous logging, until it is turned off.</p>
+     *
+     * @param drainTimeout longest wait for the pending events, 0 not to wait.
+     * @param shutdownHookEnabled whether to shut asynchronous logging down when the JVM shuts down.
+     */
+    static synchronized void asyncShutdown(long drainTimeout, TimeUnit unit, boolean shutdownHookEnabled) {
+        Assert.checkArgument(drainTimeout >= 0, "Drain timeout must not be negative");
+        Assert.notNull(unit, "Non-null drain timeout unit is mandatory");
+        drainTimeoutNanos = unit.toNanos(drainTimeout);
+        if(shutdownHookEnabled && shutdownHook == null) {
+            shutdownHook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownAsync();
+                }
+            }, SHUTDOWN_HOOK_THREAD_NAME);
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else if(!shutdownHookEnabled && shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                LOGGER.trace("JVM is shutting down already, the shutdown hook stays.");
+            }
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * @return boolean whether asynchronous logging is shut down by a JVM shutdown hook.
+     */
+    static synchronized boolean isShutdownHookEnabled() {
+        return shutdownHook != null;
+    }
+
     /**
      * Stops the factory from producing asynchronous
-     * logger tracers.
+     * logger tracers, waiting for the pending trace events
+     * to be logged up to the drain timeout, see
+     * {@link #asyncShutdown(long, TimeUnit, boolean)}.
      *
-     * <p>Only for invocation from the
+     * <p>Only for invocation from the {@link TracerRuntime},
+     * when it is closed, directly or by the
      * {@link LoggerTracerServletContextListener}
-     * for factory tear down operations. During web
-     * application shutdown</p>
+     * during web application shutdown, and from the
+     * shutdown hook.</p>
      *
-     * <p>Non listener invocations are not supported and
+     * <p>Other invocations are not supported and
      * the effects can be unknown.</p>
+     *
+     * @return DrainReport how many pending events were logged and abandoned.
      */
-    static void shutdownAsync() {
-        try {
-            if(asyncEnabled) {
-                if(executor != null) {
-                    LOGGER.trace("Shutting down asynchronous logging, shutting down the executor service.");
-                    executor.shutdown();
-                    while (!executor.isTerminated()) {}
-                    LOGGER.trace("Executor service has been terminated. No running jobs and no queued jobs either");
-                } else {
-                    LOGGER.trace("Executor service is null but async is enabled, this is not expected scenario. " +
-                            "Skipping executor service shutdown operations");
-                }
-                LOGGER.trace("Async mode disabled");
-            } else {
-                LOGGER.trace("Factory is NOT setup for asynchronous logging, this invocation to shutdownAsync will be a no-op.");
-            }
-        } finally {
-            executor = null;
-            asyncEnabled = false;
+    static synchronized DrainReport shutdownAsync() {
+        return shutdownAsync(drainTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the factory from producing asynchronous
+     * logger tracers, waiting for the pending trace events
+     * to be logged up to the given timeout. Events still
+     * pending then are abandoned. Asynchronous logging can
+     * be started again afterwards.
+     *
+     * @return DrainReport how many pending events were logged and abandoned.
+     * @see #shutdownAsync()
+     */
+    static synchronized DrainReport shutdownAsync(long drainTimeout, TimeUnit unit) {
+        TraceEventDispatcher dispatcher = config.getDispatcher();
+        if(dispatcher == null) {
+            LOGGER.trace("Factory is NOT setup for asynchronous logging, this invocation to shutdownAsync will be a no-op.");
+            return DrainReport.NOTHING_TO_DRAIN;
         }
+        config = config.withDispatcher(null);
+        LOGGER.trace("Async mode disabled");
+        return drain(dispatcher, drainTimeout, unit);
+    }
+
+    /**
+     * Shuts down a dispatcher the factory no longer logs through. The
+     * executions that were traced through it when it was replaced log
+     * their remaining events on their own thread.
+     */
+    private static DrainReport drain(TraceEventDispatcher dispatcher, long drainTimeout, TimeUnit unit) {
+        LOGGER.trace("Shutting down asynchronous logging, shutting down the trace event dispatcher.");
+        DrainReport report = dispatcher.shutdown(drainTimeout, unit);
+        if(report.isTimedOut()) {
+            LOGGER.warn("Asynchronous trace logging did not drain in time, {} pending trace events were logged, {} abandoned.",
+                    report.getFlushedEvents(), report.getAbandonedEvents());
+        } else {
+            LOGGER.trace("Trace event dispatcher has been shut down, {} pending trace events were logged.", report.getFlushedEvents());
+        }
+        return report;
     }
 
     /**
@@ -106,41 +720,181 @@ public final class LoggerTracerFactory {
      * @param methodBeingTraced String
      * @param methodArguments Object...
      * @return LoggerTracer
+     * @see #tracePoint(Class, String)
      */
     public static LoggerTracer loggerTracer(Class classBeingTraced, String methodBeingTraced, Object... methodArguments) {
         Assert.notNull(classBeingTraced, "Argument: Class being traced is mandatory to obtain logger tracer");
         Assert.notNullOrEmpty(methodBeingTraced, "Argument: Method name being traced is mandatory to obtain logger tracer");
+        TracerRuntime.autoStartOnce();
         Logger logger = loggerToUse();
-        if(logger.isTraceEnabled()) {
-            LOGGER.trace("LOGGER_TRACER trace logging is enabled. An operative logger tracer will be instantiated");
-            String classDotMethodName = classDotMethodName(classBeingTraced, methodBeingTraced);
-            String uuid = randomUUID().toString();
-            (asyncEnabled ?
-                    asyncHandler(logger, classDotMethodName, uuid) :
-                    defaultHandler(logger, classDotMethodName, uuid))
-                    .doWithMethodArguments(methodArguments);
-            return asyncEnabled ?
-                    asyncLoggerTracer(logger, classDotMethodName, uuid) :
-                    defaultLoggerTracer(logger, classDotMethodName, uuid);
+        TracerConfig config = LoggerTracerFactory.config;
+        if(traceEnabled(logger, config)) {
+            return loggerTracer(logger, config, TracePointRegistry.tracePoint(classBeingTraced, methodBeingTraced), methodArguments);
         }
         LOGGER.trace("LOGGER_TRACER trace logging is not enabled. A no-op logger will be returned");
         return NO_OP_TRACER;
     }
 
-    private static LoggingReStopWatch defaultLoggerTracer(Logger logger, String classDotMethodName, String uuid) {
-        return new LoggingReStopWatch(stopWatchImplementationToUse(), logger, classDotMethodName, uuid);
+    /**
+     * Gets the {@link TracePoint} of a traced method, to be held in a
+     * {@code static final} field and started on every invocation of the
+     * method, as in
+     * <pre>
+     *     private static final TracePoint TP = LoggerTracerFactory.tracePoint(Foo.class, "bar");
+     *     ...
+     *     LoggerTracer tracer = TP.start(arg1, arg2);
+     * </pre>
+     *
+     * <p>Unlike {@link #loggerTracer(Class, String, Object...)} a TracePoint
+     * resolves the ClassName.methodName once, and when trace logging is not
+     * enabled starting it costs a single volatile read, the method arguments
+     * are not even put in an array.</p>
+     *
+     * @param classBeingTraced Class
+     * @param methodBeingTraced String
+     * @return TracePoint
+     * @since 1.3
+     */
+    public static TracePoint tracePoint(Class<?> classBeingTraced, String methodBeingTraced) {
+        Assert.notNull(classBeingTraced, "Argument: Class being traced is mandatory to obtain a trace point");
+        Assert.notNullOrEmpty(methodBeingTraced, "Argument: Method name being traced is mandatory to obtain a trace point");
+        TracerRuntime.autoStartOnce();
+        return TracePointRegistry.tracePoint(classBeingTraced, methodBeingTraced);
+    }
+
+    /**
+     * Re-reads whether the LOGGER_TRACER logger is trace enabled.
+     *
+     * <p>{@link TracePoint}s rely on a cached flag (set as well while
+     * latencies are aggregated), which is switched off
+     * as soon as a started TracePoint finds trace logging disabled, and
+     * is refreshed on every {@link #loggerTracer(Class, String, Object...)}
+     * call. Applications that only use TracePoints and turn the
+     * LOGGER_TRACER logger to trace level at runtime should call this
+     * method afterwards.</p>
+     *
+     * @since 1.3
+     */
+    public static void refreshTraceEnabled() {
+        traceEnabled(loggerToUse(), config);
+    }
+
+    static boolean isTraceEnabled() {
+        return traceEnabled;
+    }
+
+    /**
+     * Starts tracing the given TracePoint, when trace logging is enabled.
+     */
+    static LoggerTracer loggerTracer(TracePoint tracePoint, Object[] methodArguments) {
+        TracerRuntime.autoStartOnce();
+        Logger logger = loggerToUse();
+        TracerConfig config = LoggerTracerFactory.config;
+        if(traceEnabled(logger, config)) {
+            return loggerTracer(logger, config, tracePoint, methodArguments);
+        }
+        return NO_OP_TRACER;
+    }
+
+    private static boolean traceEnabled(Logger logger, TracerConfig config) {
+        boolean enabled = logger.isTraceEnabled() || config.isAggregating() || config.getCallTreeProfile() != null;
+        if(enabled != traceEnabled) {
+            traceEnabled = enabled;
+        }
+        return enabled;
     }
 
-    private static AsyncLoggingReStopWatch asyncLoggerTracer(Logger logger, String classDotMethodName, String uuid) {
-        return new AsyncLoggingReStopWatch(stopWatchImplementationToUse(), logger, classDotMethodName, uuid, executor);
+    private static LoggerTracer loggerTracer(Logger logger, TracerConfig config, TracePoint tracePoint, Object[] methodArguments) {
+        TraceRules.Decision decision = tracePoint.decision(config.getTraceRules());
+        if(!decision.isEnabled()) {
+            TracerMetrics.ruledOut();
+            return NO_OP_TRACER;
+        }
+        TracerMetrics.tracerStarted();
+        boolean logging = logger.isTraceEnabled();
+        boolean aggregating = config.isAggregating();
+        CallTreeProfile profile = config.getCallTreeProfile();
+        Sampler sampler = decision.getSampler() != null ? decision.getSampler() : config.getSampler();
+        if(logging && !sampled(config, sampler, tracePoint)) {
+            TracerMetrics.sampledOut();
+            if(config.getTailThresholdNanos() > 0) {
+                return bufferingLoggerTracer(logger, config, tracePoint, false, config.getTailThresholdNanos(), methodArguments);
+            }
+            if(!aggregating && profile == null && !config.isNestedTracing()) {
+                return NO_OP_TRACER;
+            }
+            logging = false;
+        } else if(logging && config.isSlowCallsOnly()) {
+            return bufferingLoggerTracer(logger, config, tracePoint, true, config.slowCallThresholdNanos(tracePoint), methodArguments);
+        }
+        Object[] arguments = logging ? ArgumentCaptures.capture(config.getArgumentCapture(), methodArguments) : methodArguments;
+        TraceEventDispatcher dispatcher = config.getDispatcher();
+        if(config.isPooledTracers() || config.isNestedTracing() || profile != null) {
+            return (config.isPooledTracers() ? pool(config).acquire() : new PooledLoggerTracer(null))
+                    .start(logging ? logger : null, tracePoint, config.getTraceIdGenerator(), config.getTicker(), config.getTimeUnit(), dispatcher,
+                            aggregating, config.isNestedTracing(), profile, arguments);
+        }
+        if(!logging) {
+            return new AggregatingLoggerTracer(tracePoint, config.getTicker(), NO_OP_TRACER);
+        }
+        LOGGER.trace("LOGGER_TRACER trace logging is enabled. An operative logger tracer will be instantiated");
+        String classDotMethodName = tracePoint.getName();
+        TraceIdGenerator generator = config.getTraceIdGenerator();
+        String uuid = generator.format(generator.nextTraceId());
+        (dispatcher != null ?
+                asyncHandler(logger, classDotMethodName, uuid, dispatcher) :
+                defaultHandler(logger, classDotMethodName, uuid))
+                .doWithMethodArguments(arguments);
+        LoggerTracer loggerTracer = dispatcher != null ?
+                asyncLoggerTracer(config, logger, classDotMethodName, uuid) :
+                defaultLoggerTracer(config, logger, classDotMethodName, uuid);
+        return aggregating ? new AggregatingLoggerTracer(tracePoint, config.getTicker(), loggerTracer) : loggerTracer;
+    }
+
+    /**
+     * @return boolean whether the execution is sampled in: nested in a
+     * traced execution, as that execution was, so that the executions of a
+     * trace are logged together or not at all; otherwise as the sampler
+     * decides. A sampled out execution stays on the stack, to be followed
+     * by the executions nested in it.
+     */
+    private static boolean sampled(TracerConfig config, Sampler sampler, TracePoint tracePoint) {
+        if(config.isNestedTracing()) {
+            SpanStack spanStack = SpanStack.current();
+            if(spanStack.depth() > 0) {
+                return spanStack.isSampled();
+            }
+        }
+        return sampler.sample(tracePoint);
+    }
+
+    private static BufferingLoggerTracer bufferingLoggerTracer(Logger logger, TracerConfig config, TracePoint tracePoint, boolean sampled,
+                                                               long thresholdNanos, Object[] methodArguments) {
+        BufferingLoggerTracer tracer = config.isPooledTracers() ? pool(config).acquireBuffering() : new BufferingLoggerTracer(null);
+        return tracer.start(logger, tracePoint, config.getTraceIdGenerator(), config.getTicker(), config.getTimeUnit(), config.getDispatcher(),
+                config.isAggregating(), config.isNestedTracing(), config.getCallTreeProfile(), sampled, thresholdNanos,
+                ArgumentCaptures.capture(config.getArgumentCapture(), methodArguments));
+    }
+
+    private static LoggerTracerPool pool(TracerConfig config) {
+        return config.isVirtualThreads() ? LoggerTracerPool.striped() : LoggerTracerPool.current();
+    }
+
+    private static LoggingReStopWatch defaultLoggerTracer(TracerConfig config, Logger logger, String classDotMethodName, String uuid) {
+        return new LoggingReStopWatch(config.getTicker(), config.getTimeUnit(), logger, classDotMethodName, uuid);
+    }
+
+    private static AsyncLoggingReStopWatch asyncLoggerTracer(TracerConfig config, Logger logger, String classDotMethodName, String uuid) {
+        return new AsyncLoggingReStopWatch(config.getTicker(), config.getTimeUnit(), logger, classDotMethodName, uuid, config.getDispatcher());
     }
 
     private static LoggingMethodArgumentHandler defaultHandler(Logger logger, String classDotMethodName, String uuid) {
         return new LoggingMethodArgumentHandler(logger, classDotMethodName, uuid);
     }
 
-    private static AsyncLoggingMethodArgumentHandler asyncHandler(Logger logger, String classDotMethodName, String uuid) {
-        return new AsyncLoggingMethodArgumentHandler(logger, classDotMethodName, uuid, executor);
+    private static AsyncLoggingMethodArgumentHandler asyncHandler(Logger logger, String classDotMethodName, String uuid,
+                                                                  TraceEventDispatcher dispatcher) {
+        return new AsyncLoggingMethodArgumentHandler(logger, classDotMethodName, uuid, dispatcher);
     }
 
     static final LoggerTracer NO_OP_TRACER = new NoOpLoggerTracer();
@@ -159,14 +913,6 @@ public final class LoggerTracerFactory {
     }
 
 
-    private static String classDotMethodName(Class classBeingTraced, String methodBeingTraced) {
-        return String.format("%s.%s", classBeingTraced.getSimpleName(), methodBeingTraced);
-    }
-
-    private static StopWatch stopWatchImplementationToUse() {
-        return new StopWatch();
-    }
-
     public static final String LOGGER_NAME = "LOGGER_TRACER";
     private static final Logger TRACER_LOGGER = LoggerFactory.getLogger(LOGGER_NAME);
     private static Logger loggerToUse() {
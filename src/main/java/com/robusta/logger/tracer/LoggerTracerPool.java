@@ -0,0 +1,187 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A per-thread, or striped, pool of {@link PooledLoggerTracer}s and
+ * {@link BufferingLoggerTracer}s.
+ *
+ * <p>Each thread gets its own pool, so acquiring and releasing a tracer
+ * needs no synchronization. The pool holds up to {@value #DEFAULT_POOL_SIZE}
+ * free tracers, which covers that many nested traced calls; deeper nesting
+ * is served with fresh tracers, which are pooled on release while there
+ * is room. Buffering tracers, which are larger, are not preallocated,
+ * they are created on demand and pooled, up to as many, on release.</p>
+ *
+ * <p>A tracer stopped on a thread other than the one it was acquired on
+ * is not returned to the pool, it is left for the garbage collector.</p>
+ *
+ * <p>Pools per thread multiply with the threads, which does not suit
+ * virtual threads, a thread per task. The striped pools, {@link #striped()},
+ * are a fixed number of pools shared by all threads (the threads are spread
+ * over them by id), each guarded by a flag that is only ever tried: a
+ * thread that finds its stripe in use is served a fresh tracer, not pooled
+ * on release, rather than waiting. Tracers return to their stripe from any
+ * thread.</p>
+ *
+ * <p>A per-thread pool lives as long as its thread, unless removed with
+ * {@link LoggerTracerFactory#releaseThreadLocals()}.</p>
+ *
+ * @since 1.3
+ */
+final class LoggerTracerPool {
+    static final int DEFAULT_POOL_SIZE = 16;
+    private static final ThreadLocal<LoggerTracerPool> POOLS = new ThreadLocal<LoggerTracerPool>();
+
+    /** The owner thread of a per-thread pool, null for a striped pool. */
+    private final Thread owner;
+    /** Whether a striped pool is in use, null for a per-thread pool. */
+    private final AtomicBoolean inUse;
+    private final PooledLoggerTracer[] free;
+    private final BufferingLoggerTracer[] freeBuffering;
+    private int size;
+    private int bufferingSize;
+
+    LoggerTracerPool(int poolSize) {
+        this(poolSize, false);
+    }
+
+    /**
+     * @param striped whether the pool is shared by threads, rather than owned by the calling thread.
+     */
+    LoggerTracerPool(int poolSize, boolean striped) {
+        Assert.checkArgument(poolSize > 0, "Pool size must be positive");
+        this.owner = striped ? null : Thread.currentThread();
+        this.inUse = striped ? new AtomicBoolean() : null;
+        this.free = new PooledLoggerTracer[poolSize];
+        for (int index = 0; index < poolSize; index++) {
+            free[index] = new PooledLoggerTracer(this);
+        }
+        this.size = poolSize;
+        this.freeBuffering = new BufferingLoggerTracer[poolSize];
+    }
+
+    /**
+     * @return LoggerTracerPool the calling thread's pool.
+     */
+    static LoggerTracerPool current() {
+        LoggerTracerPool pool = POOLS.get();
+        if(pool == null) {
+            pool = new LoggerTracerPool(DEFAULT_POOL_SIZE);
+            POOLS.set(pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Removes the calling thread's pool, the next {@link #current()} creates one.
+     */
+    static void removeCurrent() {
+        POOLS.remove();
+    }
+
+    /**
+     * @return LoggerTracerPool the calling thread's pool, null when it has none yet.
+     */
+    static LoggerTracerPool currentIfAny() {
+        return POOLS.get();
+    }
+
+    /**
+     * @return LoggerTracerPool the striped pool of the calling thread.
+     */
+    static LoggerTracerPool striped() {
+        LoggerTracerPool[] stripes = StripedPools.POOLS;
+        return stripes[Stripes.index(stripes.length - 1)];
+    }
+
+    PooledLoggerTracer acquire() {
+        if(inUse != null && !inUse.compareAndSet(false, true)) {
+            return new PooledLoggerTracer(null);
+        }
+        try {
+            if(size > 0) {
+                PooledLoggerTracer tracer = free[--size];
+                free[size] = null;
+                return tracer;
+            }
+            return new PooledLoggerTracer(this);
+        } finally {
+            exit();
+        }
+    }
+
+    void release(PooledLoggerTracer tracer) {
+        if(enter()) {
+            if(size < free.length) {
+                free[size++] = tracer;
+            }
+            exit();
+        }
+    }
+
+    BufferingLoggerTracer acquireBuffering() {
+        if(inUse != null && !inUse.compareAndSet(false, true)) {
+            return new BufferingLoggerTracer(null);
+        }
+        try {
+            if(bufferingSize > 0) {
+                BufferingLoggerTracer tracer = freeBuffering[--bufferingSize];
+                freeBuffering[bufferingSize] = null;
+                return tracer;
+            }
+            return new BufferingLoggerTracer(this);
+        } finally {
+            exit();
+        }
+    }
+
+    void release(BufferingLoggerTracer tracer) {
+        if(enter()) {
+            if(bufferingSize < freeBuffering.length) {
+                freeBuffering[bufferingSize++] = tracer;
+            }
+            exit();
+        }
+    }
+
+    /**
+     * @return boolean whether the calling thread may use the pool: it owns
+     * it, or it is striped and was not in use.
+     */
+    private boolean enter() {
+        return inUse != null ? inUse.compareAndSet(false, true) : Thread.currentThread() == owner;
+    }
+
+    private void exit() {
+        if(inUse != null) {
+            inUse.set(false);
+        }
+    }
+
+    boolean isStriped() {
+        return inUse != null;
+    }
+
+    int available() {
+        return size;
+    }
+
+    int availableBuffering() {
+        return bufferingSize;
+    }
+
+    /**
+     * The striped pools, created on first use: twice as many as there are
+     * processors, rounded up to a power of two.
+     */
+    private static final class StripedPools {
+        static final LoggerTracerPool[] POOLS = new LoggerTracerPool[2 * Stripes.perProcessor()];
+
+        static {
+            for (int index = 0; index < POOLS.length; index++) {
+                POOLS[index] = new LoggerTracerPool(DEFAULT_POOL_SIZE, true);
+            }
+        }
+    }
+}
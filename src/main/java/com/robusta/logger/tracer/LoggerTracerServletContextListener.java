@@ -1,17 +1,63 @@
 package com.robusta.logger.tracer;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import java.util.Enumeration;
+import java.util.Properties;
 
+/**
+ * Enables asynchronous trace logging for the lifetime of a web application,
+ * by running a {@link TracerRuntime} from the start of the web application
+ * to its shutdown.
+ *
+ * <p>The runtime is configured with the optional context parameters, named
+ * as its properties, see {@link TracerRuntime}. System properties do not
+ * apply, the context parameters do. A context parameter with an invalid
+ * value is logged, and the runtime started with the defaults instead.</p>
+ *
+ * <p>When a runtime is running already as the web application starts, say
+ * one auto-started for the JVM, the listener leaves it as it is, and does
+ * not close it at shutdown.</p>
+ *
+ * <p>The container's worker threads outlive the web application. Those
+ * that ran traced code keep a pool of logger tracers, and a stack of the
+ * nested executions, that pin the class loader of the web application
+ * once it is undeployed, unless each request ends with
+ * {@link LoggerTracerFactory#releaseThreadLocals()}. The listener releases
+ * those of the thread that destroys the context only.</p>
+ *
+ * @see TracerRuntime
+ */
 public class LoggerTracerServletContextListener implements ServletContextListener {
+    private TracerRuntime runtime;
 
     @Override
     public void contextInitialized(ServletContextEvent servletContextEvent) {
-        LoggerTracerFactory.startAsync();
+        runtime = TracerRuntime.startUnlessRunning(initParameters(servletContextEvent.getServletContext()));
+    }
+
+    private static Properties initParameters(ServletContext servletContext) {
+        Properties properties = new Properties();
+        if(servletContext != null) {
+            Enumeration<String> names = servletContext.getInitParameterNames();
+            while (names != null && names.hasMoreElements()) {
+                String name = names.nextElement();
+                String value = servletContext.getInitParameter(name);
+                if(value != null) {
+                    properties.setProperty(name, value);
+                }
+            }
+        }
+        return properties;
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent servletContextEvent) {
-        LoggerTracerFactory.shutdownAsync();
+        if(runtime != null) {
+            runtime.close();
+            runtime = null;
+        }
+        LoggerTracerFactory.releaseThreadLocals();
     }
 }
@@ -2,8 +2,7 @@ package com.robusta.logger.tracer;
 
 import org.slf4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
 
 /**
@@ -18,6 +17,7 @@ import java.util.List;
  */
 class LoggingMethodArgumentHandler implements MethodArgumentHandler {
     static final String METHOD_ARGUMENT_TRACE_LOG_MESSAGE = "Execution: '{}' of '{}' started with arguments '{}'";
+    static final String NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE = "Execution: '{}' of '{}' started with arguments '{}' (parent '{}', depth {})";
     private final Logger logger;
     private final String methodName;
     private final String uuid;
@@ -41,11 +41,55 @@ class LoggingMethodArgumentHandler implements MethodArgumentHandler {
         logger.trace(METHOD_ARGUMENT_TRACE_LOG_MESSAGE, uuid, methodName, argumentsToList(arguments));
     }
 
+    protected Logger getLogger() {
+        return logger;
+    }
+
+    protected String getMethodName() {
+        return methodName;
+    }
+
+    protected String getUuid() {
+        return uuid;
+    }
+
     protected List<Object> argumentsToList(Object... arguments) {
-        List<Object> argumentList = new ArrayList<Object>();
-        if(arguments != null) {
-            Collections.addAll(argumentList, arguments);
+        return argumentList(arguments);
+    }
+
+    /**
+     * @return List a view of the arguments, without copying them, that
+     * renders within the budget of the {@link ArgumentRenderer}.
+     */
+    static List<Object> argumentList(Object[] arguments) {
+        return new ArgumentList(arguments);
+    }
+
+    /**
+     * The method arguments as they are handed to the logger, rendered
+     * only if and when the logger renders the trace message.
+     */
+    private static class ArgumentList extends AbstractList<Object> {
+        private static final Object[] NO_ARGUMENTS = new Object[0];
+        private final Object[] arguments;
+
+        ArgumentList(Object[] arguments) {
+            this.arguments = arguments == null ? NO_ARGUMENTS : arguments;
+        }
+
+        @Override
+        public Object get(int index) {
+            return arguments[index];
+        }
+
+        @Override
+        public int size() {
+            return arguments.length;
+        }
+
+        @Override
+        public String toString() {
+            return LoggerTracerFactory.argumentRenderer().render(arguments);
         }
-        return argumentList;
     }
 }
@@ -1,13 +1,14 @@
 package com.robusta.logger.tracer;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 
+import java.util.concurrent.TimeUnit;
+
 class LoggingReStopWatch extends LoggingStopWatch {
 
-	public LoggingReStopWatch(StopWatch stopWatch, Logger logger,
+	public LoggingReStopWatch(Ticker ticker, TimeUnit timeUnit, Logger logger,
 			String methodName, String uuid) {
-		super(stopWatch, logger, methodName, uuid);
+		super(ticker, timeUnit, logger, methodName, uuid);
 	}
 	
     @Override
@@ -1,81 +1,135 @@
 package com.robusta.logger.tracer;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 /**
- * A logger-tracer implementation that operates on a {@link StopWatch} and
+ * A logger-tracer implementation that operates on a {@link Ticker} and
  * a {@link Logger}.
  *
  * <p>When the logger is not trace enabled, becomes a no-op logger-tracer</p>
- * <p>Starts the {@link StopWatch} on initialization</p>
- * <p>Lap and Stop implementation that use the {@link StopWatch} for timing
- * and log execution (stop) and lap (lap) time info using the {@link Logger}</p>
+ * <p>Reads the start time mark from the {@link Ticker} on initialization</p>
+ * <p>Lap and Stop implementation that use the {@link Ticker} for timing
+ * and log execution (stop) and lap (lap) time info using the {@link Logger}.
+ * A lap logs the time since start and the split since the previous lap.
+ * Times are logged in the configured {@link TimeUnit}, one of
+ * nanoseconds, microseconds or milliseconds.</p>
  *
- * <p>The class is not thread-safe since the {@link StopWatch} being used isn't</p>
+ * <p>The class is not thread-safe, its time marks are plain fields</p>
+ *
+ * <p>Tracers that are garbage collected without being stopped are
+ * detected, on a sampling basis, by the {@link TracerLeakDetector}.</p>
  *
  * @author sudhir.ravindramohan
  * @since 1.0
  */
 class LoggingStopWatch implements LoggerTracer {
     static final String STOP_NOT_CALLED_ON_TRACER = "Stop not called on tracer : '{}'";
-    static final String LAP_COMPLETION_TRACE_MSG = "Execution: '{}', Lap: '{}' completed in '{}' ms";
-    static final String EXECUTION_COMPLETION_TRACE_MSG = "Execution: '{}' for '{}' completed in '{}' ms";
-    private final StopWatch stopWatch;
+    static final String LAP_COMPLETION_TRACE_MSG = "Execution: '{}', Lap: '{}' completed in '{}' {} (split '{}' {})";
+    static final String EXECUTION_COMPLETION_TRACE_MSG = "Execution: '{}' for '{}' completed in '{}' {}";
+    static final String NESTED_EXECUTION_COMPLETION_TRACE_MSG = "Execution: '{}' for '{}' completed in '{}' {} (self '{}' {})";
+    private final Ticker ticker;
+    private final TimeUnit timeUnit;
     private final Logger logger;
     private final String methodName;
     private final String uuid;
-    private boolean isStopped = false;
+    private long startNanos;
+    private long lastLapNanos;
+    private long stopNanos;
+    private boolean running;
+    private TracerLeakDetector.LeakTracker leakTracker;
 
 
-    public LoggingStopWatch(StopWatch stopWatch, Logger logger, String methodName, String uuid) {
+    public LoggingStopWatch(Ticker ticker, TimeUnit timeUnit, Logger logger, String methodName, String uuid) {
         this.uuid = uuid;
-        Assert.notNull(stopWatch, "Non-null stop watch is mandatory");
+        Assert.notNull(ticker, "Non-null ticker is mandatory");
+        Assert.notNull(timeUnit, "Non-null time unit is mandatory");
         Assert.notNull(logger, "Non-null logger is mandatory");
         Assert.notNullOrEmpty(methodName, "A valid (not null and not empty) method name is required");
-        this.stopWatch = stopWatch;
+        this.ticker = ticker;
+        this.timeUnit = timeUnit;
         this.logger = logger;
         this.methodName = methodName;
         if(logger.isTraceEnabled()) {
-            stopWatch.start();
+            startNanos = lastLapNanos = ticker.read();
+            running = true;
+            leakTracker = TracerLeakDetector.track(this, uuid, logger);
         }
     }
 
+    /**
+     * @throws IllegalStateException when the logger-tracer is not running,
+     * it is already stopped.
+     */
     @Override
     public LoggingStopWatch stop() {
         if(logger.isTraceEnabled()) {
-            stopWatch.stop();
-            logExecutionTime(stopWatch.getTime(), logger);
+            if(!running) {
+                throw new IllegalStateException("Logger tracer is not running.");
+            }
+            stopNanos = ticker.read();
+            running = false;
+            logExecutionTime(stopNanos - startNanos, logger);
+        }
+        if(leakTracker != null) {
+            leakTracker.close();
+            leakTracker = null;
         }
-        isStopped = true;
         return this;
     }
 
     @Override
     public LoggingStopWatch lap(String lapDescription) {
         if(logger.isTraceEnabled()) {
-            logLapTime(stopWatch.getTime(), lapDescription, logger);
+            long lapNanos = running ? ticker.read() : stopNanos;
+            logLapTime(lapNanos - startNanos, lapNanos - lastLapNanos, lapDescription, logger);
+            lastLapNanos = lapNanos;
         }
         return this;
     }
 
-    protected void logLapTime(long lapTime, String lapDescription, Logger logger) {
-        logger.trace(LAP_COMPLETION_TRACE_MSG, uuid, lapDescription, lapTime);
+    protected void logLapTime(long lapNanos, long splitNanos, String lapDescription, Logger logger) {
+        String unit = unitSymbol(timeUnit);
+        logger.trace(LAP_COMPLETION_TRACE_MSG, uuid, lapDescription, timeUnit.convert(lapNanos, NANOSECONDS), unit,
+                timeUnit.convert(splitNanos, NANOSECONDS), unit);
     }
 
-    protected void logExecutionTime(long executionTimeInMilliSeconds, Logger logger) {
-        logger.trace(EXECUTION_COMPLETION_TRACE_MSG, uuid, methodName, executionTimeInMilliSeconds);
+    protected void logExecutionTime(long executionNanos, Logger logger) {
+        logger.trace(EXECUTION_COMPLETION_TRACE_MSG, uuid, methodName, timeUnit.convert(executionNanos, NANOSECONDS), unitSymbol(timeUnit));
+    }
+
+    /**
+     * @return String the symbol a time unit is logged with.
+     */
+    static String unitSymbol(TimeUnit timeUnit) {
+        switch (timeUnit) {
+            case NANOSECONDS:
+                return "ns";
+            case MICROSECONDS:
+                return "\u00b5s";
+            case MILLISECONDS:
+                return "ms";
+            default:
+                throw new IllegalArgumentException("Trace times are logged in nanoseconds, microseconds or milliseconds, not " + timeUnit);
+        }
     }
 
     protected Logger getLogger() {
         return logger;
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        if (!isStopped) {
-            logger.warn(STOP_NOT_CALLED_ON_TRACER, uuid);
-        }
-        super.finalize();
+    protected String getMethodName() {
+        return methodName;
+    }
+
+    protected String getUuid() {
+        return uuid;
+    }
+
+    protected TimeUnit getTimeUnit() {
+        return timeUnit;
     }
 }
@@ -0,0 +1,46 @@
+package com.robusta.logger.tracer;
+
+/**
+ * What a {@link RingBufferTraceEventDispatcher} does with a trace event
+ * when its ring buffer is full, that is when the consumer thread cannot
+ * keep up with the traced threads (usually a slow appender).
+ *
+ * <p>Every policy guarantees that tracing never holds on to more memory
+ * than the ring buffer itself. Events that are not logged are counted
+ * as <em>dropped</em>, events that are logged at an extra cost to the
+ * traced thread (waiting or logging on the caller's thread) are counted
+ * as <em>degraded</em>, see {@link TraceEventDispatcher#droppedEventCount()}
+ * and {@link TraceEventDispatcher#degradedEventCount()}.</p>
+ *
+ * @since 1.3
+ */
+enum OverflowPolicy {
+    /**
+     * The event being dispatched is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The oldest event waiting in the ring buffer is dropped
+     * to make room for the event being dispatched. When the
+     * slot needed is held by the event being logged right
+     * now, the event being dispatched is dropped instead.
+     */
+    DROP_OLDEST,
+    /**
+     * The traced thread waits for room in the ring buffer,
+     * up to a timeout, after which the event is dropped.
+     */
+    BLOCK,
+    /**
+     * The event is logged synchronously on the traced thread.
+     * Nothing is lost, but the event is logged ahead of the
+     * events of the same thread that are still queued.
+     */
+    LOG_SYNCHRONOUSLY,
+    /**
+     * Once the ring buffer is half full, only one in every
+     * {@code sampleRate} events is accepted, the others are
+     * dropped. Events are dropped when the ring buffer is full.
+     */
+    SAMPLE
+}
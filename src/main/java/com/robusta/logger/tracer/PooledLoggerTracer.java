@@ -0,0 +1,173 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reusable logger-tracer, handed out by a {@link LoggerTracerPool}.
+ *
+ * <p>Keeps timing in primitive {@code long} nanosecond marks, a
+ * primitive trace id and the {@link TracePoint} of the traced method.
+ * The trace id is rendered only when an event is logged, so with
+ * asynchronous logging enabled tracing a call does not allocate on
+ * the traced thread, beyond the varargs array of the method arguments
+ * the caller passes, which the event holds until it is logged.</p>
+ *
+ * <p>{@link #stop()} hands the tracer back to its pool and returns a
+ * no-op logger-tracer, so that chained calls on the result of stop are
+ * harmless. A reference to the tracer itself must not be used after
+ * stop, it may already be tracing another call.</p>
+ *
+ * <p>Nested tracing is served by these tracers, pooled or not: the
+ * execution is pushed on the thread's {@link SpanStack} on start and
+ * popped on stop, its method arguments are logged with the trace id of
+ * its parent and its depth, and its completion with its self time. A
+ * tracer started without a logger is on the stack as sampled out. When
+ * the call tree is profiled the execution is recorded, on stop, into its
+ * {@link CallTreeProfile} node, logged or not.</p>
+ *
+ * @see LoggerTracerPool
+ * @since 1.3
+ */
+final class PooledLoggerTracer implements LoggerTracer {
+    private final LoggerTracerPool pool;
+    private final TraceEvent synchronousEvent = new TraceEvent();
+    private Logger logger;
+    private TracePoint tracePoint;
+    private TraceEventDispatcher dispatcher;
+    private TraceIdGenerator traceIdGenerator;
+    private Ticker ticker;
+    private TimeUnit timeUnit;
+    private SpanStack spanStack;
+    private CallTreeProfile.Node node;
+    private boolean nested;
+    private int depth;
+    private long traceId;
+    private long startNanos;
+    private long lastLapNanos;
+    private boolean aggregating;
+    private boolean started;
+
+    /**
+     * @param pool the pool to hand the tracer back to, null for a tracer that is not reused.
+     */
+    PooledLoggerTracer(LoggerTracerPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Starts tracing a call, logs the method arguments.
+     *
+     * @param logger logger to trace to, null when latencies are only aggregated.
+     * @param ticker time source of the start, lap and stop time marks.
+     * @param timeUnit unit the lap and execution times are logged in.
+     * @param dispatcher asynchronous dispatcher to log through, null for synchronous logging.
+     * @param aggregating whether to aggregate the latencies into the TracePoint.
+     * @param nested whether to trace the call nested in the calls being traced on the thread.
+     * @param profile the call tree to record the call into, null when not profiled.
+     */
+    PooledLoggerTracer start(Logger logger, TracePoint tracePoint, TraceIdGenerator traceIdGenerator, Ticker ticker, TimeUnit timeUnit,
+                             TraceEventDispatcher dispatcher, boolean aggregating, boolean nested, CallTreeProfile profile, Object[] arguments) {
+        this.logger = logger;
+        this.tracePoint = tracePoint;
+        this.dispatcher = dispatcher;
+        this.traceIdGenerator = traceIdGenerator;
+        this.ticker = ticker;
+        this.timeUnit = timeUnit;
+        this.aggregating = aggregating;
+        this.started = true;
+        this.traceId = logger != null ? traceIdGenerator.nextTraceId() : 0L;
+        this.nested = nested;
+        this.spanStack = nested || profile != null ? SpanStack.current() : null;
+        this.node = profile != null ? profile.child(spanStack.top(), tracePoint) : null;
+        this.depth = spanStack != null ? spanStack.push(this, traceId, node, logger != null) : 0;
+        if(logger != null) {
+            long parentTraceId = nested ? spanStack.parentTraceId(depth) : SpanStack.NO_PARENT;
+            int nestedDepth = nested ? spanStack.nestingDepth(depth) : 0;
+            if(dispatcher != null) {
+                dispatcher.dispatchArguments(logger, traceIdGenerator, traceId, tracePoint, arguments, parentTraceId, nestedDepth);
+            } else {
+                synchronousEvent.arguments(logger, traceIdGenerator, traceId, tracePoint, arguments, parentTraceId, nestedDepth);
+                logSynchronously();
+            }
+        }
+        this.startNanos = this.lastLapNanos = ticker.read();
+        return this;
+    }
+
+    @Override
+    public LoggerTracer lap(String lapDescription) {
+        if(started) {
+            long now = ticker.read();
+            long lapNanos = now - startNanos;
+            long splitNanos = now - lastLapNanos;
+            lastLapNanos = now;
+            if(aggregating) {
+                tracePoint.recordLap(lapDescription, lapNanos);
+            }
+            if(logger != null) {
+                if(dispatcher != null) {
+                    dispatcher.dispatchLap(logger, traceIdGenerator, traceId, lapDescription, lapNanos, splitNanos, timeUnit);
+                } else {
+                    synchronousEvent.lap(logger, traceIdGenerator, traceId, lapDescription, lapNanos, splitNanos, timeUnit);
+                    logSynchronously();
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public LoggerTracer stop() {
+        if(started) {
+            long executionNanos = ticker.read() - startNanos;
+            started = false;
+            if(aggregating) {
+                tracePoint.recordExecution(executionNanos);
+            }
+            long selfNanos = TraceEvent.NO_SELF_TIME;
+            if(spanStack != null) {
+                selfNanos = executionNanos - spanStack.pop(this, depth, executionNanos);
+                spanStack = null;
+                if(node != null) {
+                    node.record(executionNanos, selfNanos);
+                    node = null;
+                }
+                if(!nested) {
+                    selfNanos = TraceEvent.NO_SELF_TIME;
+                }
+            }
+            if(logger != null) {
+                if(dispatcher != null) {
+                    dispatcher.dispatchExecution(logger, traceIdGenerator, traceId, tracePoint, executionNanos, selfNanos, timeUnit);
+                } else {
+                    synchronousEvent.execution(logger, traceIdGenerator, traceId, tracePoint, executionNanos, selfNanos, timeUnit);
+                    logSynchronously();
+                }
+            }
+            logger = null;
+            tracePoint = null;
+            dispatcher = null;
+            traceIdGenerator = null;
+            ticker = null;
+            timeUnit = null;
+            if(pool != null) {
+                pool.release(this);
+            }
+        }
+        return LoggerTracerFactory.NO_OP_TRACER;
+    }
+
+    private void logSynchronously() {
+        try {
+            synchronousEvent.log();
+        } finally {
+            synchronousEvent.clear();
+        }
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+}
@@ -0,0 +1,419 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TraceEventDispatcher} backed by a pre-allocated
+ * {@link TraceEventRingBuffer} and a single consumer thread.
+ *
+ * <p>Producers populate ring buffer slots in place, dispatching an event
+ * does not allocate and does not take a lock. The consumer thread polls
+ * the slots in the order they were claimed, which keeps the events of
+ * any one traced thread in FIFO order.</p>
+ *
+ * <p>What happens when the ring buffer is full is decided by the
+ * configured {@link OverflowPolicy}, by default the traced thread waits
+ * (using the configured {@link WaitStrategy}) up to
+ * {@value #DEFAULT_BLOCK_TIMEOUT_MILLIS} ms for the consumer to free up
+ * a slot. Events that are dispatched after {@link #shutdown()} are logged
+ * synchronously on the caller's thread, as are the events of a producer
+ * that claimed its slot before the shutdown and published it after the
+ * consumer drained the ring buffers for the last time.</p>
+ *
+ * <p>A single ring buffer funnels all the traced threads through the same
+ * claim counter. Striped, the dispatcher has a ring buffer per stripe of
+ * threads (as many stripes as processors, say), a thread always
+ * publishing to the ring buffer of its stripe, so that threads contend
+ * only with the few others of their stripe. The consumer merges the ring
+ * buffers, taking the event published first among the oldest event of
+ * each: the events of any one thread stay in FIFO order, those of threads
+ * of different stripes are in publication order as far as they were
+ * published by the time the consumer got to them. Each stripe has the
+ * given capacity, overflow is handled per stripe.</p>
+ *
+ * <p>The consumer drains the ring buffers in batches of up to
+ * {@value #DEFAULT_BATCH_SIZE} events (by default), or as many as it drains
+ * within the batch time budget, into a {@link TraceEventSink}. The sink is
+ * flushed whenever the consumer runs out of events, and on shutdown.</p>
+ *
+ * <p>Shutting down lets the consumer drain the ring buffers, up to the drain
+ * deadline, then closes the sink. Past the deadline (a sink that cannot keep
+ * up, or is stuck) the events left are abandoned: the consumer is
+ * interrupted and stops draining once done with the event in hand, and it
+ * is the consumer that closes the sink, whenever it gets there.</p>
+ *
+ * @since 1.3
+ */
+class RingBufferTraceEventDispatcher extends TraceEventDispatcher implements Runnable {
+    static final int DEFAULT_CAPACITY = 8192;
+    static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+    static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 100L;
+    static final int DEFAULT_SAMPLE_RATE = 10;
+    static final int DEFAULT_BATCH_SIZE = 256;
+    static final long DEFAULT_BATCH_TIME_BUDGET_MICROS = 1000L;
+    static final String CONSUMER_THREAD_NAME = "logger-tracer-async";
+    private static final Logger LOGGER = LoggerFactory.getLogger(RingBufferTraceEventDispatcher.class);
+
+    private final TraceEventRingBuffer[] ringBuffers;
+    private final int stripeMask;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final int sampleRate;
+    private final int batchSize;
+    private final long batchTimeBudgetNanos;
+    private final TraceEventSink sink;
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private volatile boolean abandoned;
+    /** Set by the consumer once it has drained the ring buffers on shutdown. */
+    private volatile boolean drained;
+    /** Events written into the sink, by the consumer only. */
+    private volatile long writtenEvents;
+
+    RingBufferTraceEventDispatcher(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, DEFAULT_OVERFLOW_POLICY, DEFAULT_BLOCK_TIMEOUT_MILLIS, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param capacity ring buffer capacity, a power of two
+     * @param waitStrategy how the consumer (and blocked producers) wait
+     * @param overflowPolicy what to do with events when the ring buffer is full
+     * @param blockTimeoutMillis longest wait for room, for {@link OverflowPolicy#BLOCK}
+     * @param sampleRate one in how many events are kept under pressure, for {@link OverflowPolicy#SAMPLE}
+     */
+    RingBufferTraceEventDispatcher(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, long blockTimeoutMillis, int sampleRate) {
+        this(capacity, waitStrategy, overflowPolicy, blockTimeoutMillis, sampleRate,
+                DEFAULT_BATCH_SIZE, DEFAULT_BATCH_TIME_BUDGET_MICROS, new LoggerTraceEventSink());
+    }
+
+    /**
+     * @param batchSize most events drained into the sink per batch
+     * @param batchTimeBudgetMicros longest time spent draining a batch
+     * @param sink where the consumer writes the events
+     * @see #RingBufferTraceEventDispatcher(int, WaitStrategy, OverflowPolicy, long, int)
+     */
+    RingBufferTraceEventDispatcher(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, long blockTimeoutMillis, int sampleRate,
+                                   int batchSize, long batchTimeBudgetMicros, TraceEventSink sink) {
+        this(capacity, waitStrategy, overflowPolicy, blockTimeoutMillis, sampleRate, batchSize, batchTimeBudgetMicros, sink, 1);
+    }
+
+    /**
+     * @param capacity capacity of the ring buffer of each stripe, a power of two
+     * @param stripes number of ring buffers the threads are spread over, a power of two
+     * @see #RingBufferTraceEventDispatcher(int, WaitStrategy, OverflowPolicy, long, int, int, long, TraceEventSink)
+     */
+    RingBufferTraceEventDispatcher(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, long blockTimeoutMillis, int sampleRate,
+                                   int batchSize, long batchTimeBudgetMicros, TraceEventSink sink, int stripes) {
+        Assert.checkArgument(stripes > 0 && Integer.bitCount(stripes) == 1, "Ring buffer stripes must be a power of two");
+        Assert.notNull(waitStrategy, "Non-null wait strategy is mandatory");
+        Assert.notNull(overflowPolicy, "Non-null overflow policy is mandatory");
+        Assert.checkArgument(blockTimeoutMillis >= 0, "Block timeout must not be negative");
+        Assert.checkArgument(sampleRate > 0, "Sample rate must be positive");
+        Assert.checkArgument(batchSize > 0, "Batch size must be positive");
+        Assert.checkArgument(batchTimeBudgetMicros > 0, "Batch time budget must be positive");
+        Assert.notNull(sink, "Non-null trace event sink is mandatory");
+        this.batchSize = batchSize;
+        this.batchTimeBudgetNanos = TimeUnit.MICROSECONDS.toNanos(batchTimeBudgetMicros);
+        this.sink = sink;
+        this.ringBuffers = new TraceEventRingBuffer[stripes];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            ringBuffers[stripe] = new TraceEventRingBuffer(capacity);
+        }
+        this.stripeMask = stripes - 1;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        this.sampleRate = sampleRate;
+        this.consumer = new Thread(this, CONSUMER_THREAD_NAME);
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    @Override
+    protected TraceEvent claim() {
+        if(!running) {
+            return new TraceEvent();
+        }
+        TraceEventRingBuffer ringBuffer = ringBuffer();
+        if(overflowPolicy == OverflowPolicy.SAMPLE && isUnderPressure(ringBuffer) && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            dropped();
+            return null;
+        }
+        TraceEvent slot = ringBuffer.tryClaim();
+        return slot != null ? slot : claimOnOverflow(ringBuffer);
+    }
+
+    /**
+     * @return TraceEventRingBuffer the ring buffer of the calling thread's stripe.
+     */
+    private TraceEventRingBuffer ringBuffer() {
+        return stripeMask == 0 ? ringBuffers[0] : ringBuffers[Stripes.index(stripeMask)];
+    }
+
+    private static boolean isUnderPressure(TraceEventRingBuffer ringBuffer) {
+        return ringBuffer.size() >= ringBuffer.capacity() / 2;
+    }
+
+    private TraceEvent claimOnOverflow(TraceEventRingBuffer ringBuffer) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                return claimByDroppingOldest(ringBuffer);
+            case BLOCK:
+                return claimByBlocking(ringBuffer);
+            case LOG_SYNCHRONOUSLY:
+                degraded();
+                return new TraceEvent();
+            default:
+                dropped();
+                return null;
+        }
+    }
+
+    private TraceEvent claimByDroppingOldest(TraceEventRingBuffer ringBuffer) {
+        TraceEvent slot;
+        while ((slot = ringBuffer.tryClaim()) == null) {
+            dropped();
+            if(!ringBuffer.discardOldest()) {
+                return null;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * An event the traced thread waited for is degraded once it is
+     * delivered, dropped, and only dropped, when the wait timed out.
+     */
+    private TraceEvent claimByBlocking(TraceEventRingBuffer ringBuffer) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        int attempt = 0;
+        while (running) {
+            TraceEvent slot = ringBuffer.tryClaim();
+            if(slot != null) {
+                degraded();
+                return slot;
+            }
+            if(System.nanoTime() - deadline >= 0) {
+                dropped();
+                return null;
+            }
+            waitStrategy.idle(attempt++);
+        }
+        degraded();
+        return new TraceEvent();
+    }
+
+    @Override
+    protected void publish(TraceEvent event) {
+        if(event.isDetached()) {
+            if(running) {
+                sink.writeSynchronously(event);
+            } else {
+                event.log();
+            }
+        } else {
+            if(stripeMask != 0) {
+                event.publishedNanos = System.nanoTime();
+            }
+            TraceEventRingBuffer ringBuffer = ringBuffer();
+            ringBuffer.publish(event);
+            if(drained) {
+                logLate(ringBuffer);
+            }
+        }
+    }
+
+    /**
+     * Logs, on the caller's thread, the events published to the ring
+     * buffer after the consumer drained it for the last time. A producer
+     * that claimed its slot before the shutdown but published it after
+     * the consumer stopped would otherwise leave it there: either the
+     * consumer's last sweep, which follows {@code drained} being set, sees
+     * the event, or the producer, which checks {@code drained} after
+     * publishing, does. Each slot is polled once, by whichever gets it.
+     */
+    private static void logLate(TraceEventRingBuffer ringBuffer) {
+        TraceEvent slot;
+        while ((slot = ringBuffer.poll()) != null) {
+            try {
+                slot.log();
+            } finally {
+                ringBuffer.release(slot);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            consume();
+        } finally {
+            closeSink();
+        }
+    }
+
+    private void consume() {
+        int attempt = 0;
+        while ((running || !isEmpty()) && !abandoned) {
+            if(drainBatch() > 0) {
+                attempt = 0;
+                continue;
+            }
+            if(attempt == 0) {
+                flushSink();
+            }
+            waitStrategy.idle(attempt++);
+        }
+        if(!abandoned) {
+            drained = true;
+            while (drainBatch() > 0) {
+                // events published by producers that claimed their slot as the shutdown began
+            }
+        }
+        flushSink();
+    }
+
+    /**
+     * Drains up to a batch of events into the sink, within the batch time budget.
+     *
+     * @return int number of events drained.
+     */
+    private int drainBatch() {
+        long deadline = System.nanoTime() + batchTimeBudgetNanos;
+        int drained = 0;
+        int written = 0;
+        TraceEventRingBuffer ringBuffer;
+        while (drained < batchSize && !abandoned && (ringBuffer = oldest()) != null) {
+            TraceEvent slot = ringBuffer.poll();
+            if(slot == null) {
+                continue; // discarded by a producer, see OverflowPolicy.DROP_OLDEST
+            }
+            drained++;
+            try {
+                sink.write(slot);
+                writtenEvents++;
+                written++;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Asynchronous trace logging of an event has failed, the event is discarded.", e);
+            } finally {
+                ringBuffer.release(slot);
+            }
+            if(System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        TracerMetrics.written(written);
+        if(drained > 0) {
+            try {
+                sink.endBatch();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Asynchronous trace logging of a batch of events has failed, the events are discarded.", e);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * @return TraceEventRingBuffer the ring buffer whose oldest event was
+     * published first, null when they are all empty.
+     */
+    private TraceEventRingBuffer oldest() {
+        if(stripeMask == 0) {
+            return ringBuffers[0].peek() != null ? ringBuffers[0] : null;
+        }
+        TraceEventRingBuffer oldest = null;
+        long oldestNanos = 0L;
+        for (TraceEventRingBuffer ringBuffer : ringBuffers) {
+            TraceEvent head = ringBuffer.peek();
+            if(head != null && (oldest == null || head.publishedNanos - oldestNanos < 0)) {
+                oldest = ringBuffer;
+                oldestNanos = head.publishedNanos;
+            }
+        }
+        return oldest;
+    }
+
+    private boolean isEmpty() {
+        for (TraceEventRingBuffer ringBuffer : ringBuffers) {
+            if(!ringBuffer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void flushSink() {
+        try {
+            sink.flush();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Flushing the trace event sink has failed.", e);
+        }
+    }
+
+    private void closeSink() {
+        try {
+            sink.close();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Closing the trace event sink has failed.", e);
+        }
+    }
+
+    @Override
+    DrainReport shutdown(long timeout, TimeUnit unit) {
+        long writtenBefore = writtenEvents;
+        running = false;
+        try {
+            unit.timedJoin(consumer, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(!consumer.isAlive()) {
+            return new DrainReport(writtenEvents - writtenBefore, 0L, false);
+        }
+        abandoned = true;
+        consumer.interrupt();
+        return new DrainReport(writtenEvents - writtenBefore, size(), true);
+    }
+
+    @Override
+    int pendingEvents() {
+        return size();
+    }
+
+    @Override
+    int eventCapacity() {
+        return capacity() * stripes();
+    }
+
+    OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return int the capacity of the ring buffer of each stripe.
+     */
+    int capacity() {
+        return ringBuffers[0].capacity();
+    }
+
+    int stripes() {
+        return ringBuffers.length;
+    }
+
+    int size() {
+        int size = 0;
+        for (TraceEventRingBuffer ringBuffer : ringBuffers) {
+            size += ringBuffer.size();
+        }
+        return size;
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,25 @@
+package com.robusta.logger.tracer;
+
+/**
+ * Decides, when a traced execution starts, whether its trace is logged.
+ *
+ * <p>The decision is made once per execution, at its start (head based):
+ * the method arguments, all the laps and the execution completion of an
+ * execution are logged, or none are. An execution that is sampled out is
+ * traced by a no-op logger-tracer, unless latencies are aggregated or
+ * slow executions are kept regardless, see
+ * {@link LoggerTracerFactory#sampling(Sampler, long, java.util.concurrent.TimeUnit)}.</p>
+ *
+ * <p>Implementations must be thread-safe and cheap, {@link #sample(TracePoint)}
+ * is called for every traced execution while trace logging is enabled.</p>
+ *
+ * @see Samplers
+ * @since 1.3
+ */
+public interface Sampler {
+    /**
+     * @param tracePoint the traced method.
+     * @return boolean whether the trace of the execution that starts is logged.
+     */
+    boolean sample(TracePoint tracePoint);
+}
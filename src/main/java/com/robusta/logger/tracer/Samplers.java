@@ -0,0 +1,173 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Sampler} factory class which provides the built-in samplers.
+ *
+ * @since 1.3
+ */
+public abstract class Samplers {
+    private static final Sampler ALWAYS = new Sampler() {
+        @Override
+        public boolean sample(TracePoint tracePoint) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "always";
+        }
+    };
+
+    /**
+     * Get the default {@link Sampler}, which samples every execution.
+     *
+     * @return Sampler
+     */
+    public static Sampler always() {
+        return ALWAYS;
+    }
+
+    /**
+     * Get a {@link Sampler} that samples one in every {@code n} executions,
+     * at random.
+     *
+     * @param n 1 or more.
+     * @return Sampler
+     */
+    public static Sampler oneIn(int n) {
+        Assert.checkArgument(n > 0, "Sampling one in n executions requires a positive n");
+        return n == 1 ? ALWAYS : new OneInSampler(n);
+    }
+
+    /**
+     * Get a {@link Sampler} that samples, per traced method, up to the given
+     * number of executions per second, allowing bursts of up to the given
+     * number of executions.
+     *
+     * @param permitsPerSecond executions sampled per second and traced method.
+     * @param burst executions sampled in a burst, at least 1.
+     * @return Sampler
+     */
+    public static Sampler rateLimited(double permitsPerSecond, int burst) {
+        return rateLimited(permitsPerSecond, burst, Tickers.system());
+    }
+
+    static Sampler rateLimited(double permitsPerSecond, int burst, Ticker ticker) {
+        Assert.checkArgument(permitsPerSecond > 0, "Sampled executions per second must be positive");
+        Assert.checkArgument(burst > 0, "Sampled burst must be at least 1");
+        Assert.notNull(ticker, "Non-null ticker is mandatory");
+        return new RateLimitingSampler(permitsPerSecond, burst, ticker);
+    }
+
+    /**
+     * Get a {@link Sampler} that samples the executions that all the given
+     * samplers sample, consulted in order until one does not.
+     *
+     * @return Sampler
+     */
+    public static Sampler allOf(Sampler... samplers) {
+        Assert.checkArgument(samplers != null && samplers.length > 0, "At least one sampler is mandatory");
+        for (Sampler sampler : samplers) {
+            Assert.notNull(sampler, "Non-null samplers are mandatory");
+        }
+        return samplers.length == 1 ? samplers[0] : new AllOfSampler(samplers.clone());
+    }
+
+    static class OneInSampler implements Sampler {
+        private final int n;
+
+        OneInSampler(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public boolean sample(TracePoint tracePoint) {
+            return ThreadLocalRandom.current().nextInt(n) == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "oneIn(" + n + ")";
+        }
+    }
+
+    /**
+     * A token bucket per traced method, kept as the theoretical arrival
+     * time of the next execution (generic cell rate algorithm) in a single
+     * atomic long, so that sampling is a read and a compare-and-set.
+     */
+    static class RateLimitingSampler implements Sampler {
+        private final ConcurrentMap<TracePoint, AtomicLong> buckets = new ConcurrentHashMap<TracePoint, AtomicLong>();
+        private final double permitsPerSecond;
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final Ticker ticker;
+
+        RateLimitingSampler(double permitsPerSecond, int burst, Ticker ticker) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.burstNanos = intervalNanos * (burst - 1);
+            this.ticker = ticker;
+        }
+
+        @Override
+        public boolean sample(TracePoint tracePoint) {
+            AtomicLong bucket = buckets.get(tracePoint);
+            long now = ticker.read();
+            if(bucket == null) {
+                AtomicLong created = new AtomicLong(now);
+                bucket = buckets.putIfAbsent(tracePoint, created);
+                if(bucket == null) {
+                    bucket = created;
+                }
+            }
+            while (true) {
+                long arrival = bucket.get();
+                if(arrival - now > burstNanos) {
+                    return false;
+                }
+                if(bucket.compareAndSet(arrival, Math.max(arrival, now) + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "rateLimited(" + permitsPerSecond + "/s, burst " + (burstNanos / intervalNanos + 1) + ")";
+        }
+    }
+
+    static class AllOfSampler implements Sampler {
+        private final Sampler[] samplers;
+
+        AllOfSampler(Sampler[] samplers) {
+            this.samplers = samplers;
+        }
+
+        @Override
+        public boolean sample(TracePoint tracePoint) {
+            for (Sampler sampler : samplers) {
+                if(!sampler.sample(tracePoint)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("allOf(");
+            for (int index = 0; index < samplers.length; index++) {
+                builder.append(index > 0 ? ", " : "").append(samplers[index]);
+            }
+            return builder.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The execution time thresholds of the slow-call-only mode, in which the
+ * trace of an execution is logged only when the execution is slower than
+ * the threshold of its method.
+ *
+ * <p>Every traced method has the default threshold, unless a threshold of
+ * its own was set by its ClassName.methodName (as it appears in the trace
+ * logs). Thresholds can be set and removed at any time, they apply to the
+ * executions that start afterwards. The mode and the default threshold are
+ * settings of the {@link TracerConfig}, the thresholds of the methods are
+ * kept here across configurations.</p>
+ *
+ * @see LoggerTracerFactory#slowCallsOnly(boolean, long, java.util.concurrent.TimeUnit)
+ * @see BufferingLoggerTracer
+ * @since 1.3
+ */
+final class SlowCallThresholds {
+    private static final ConcurrentMap<String, Long> THRESHOLDS = new ConcurrentHashMap<String, Long>();
+
+    private SlowCallThresholds() {}
+
+    static void threshold(String classDotMethodName, long thresholdNanos) {
+        Assert.notNullOrEmpty(classDotMethodName, "ClassName.methodName is mandatory to set a slow call threshold");
+        Assert.checkArgument(thresholdNanos >= 0, "Slow call threshold must not be negative");
+        THRESHOLDS.put(classDotMethodName, thresholdNanos);
+    }
+
+    static void removeThreshold(String classDotMethodName) {
+        THRESHOLDS.remove(classDotMethodName);
+    }
+
+    static void clear() {
+        THRESHOLDS.clear();
+    }
+
+    /**
+     * @param defaultThresholdNanos threshold of the methods without one of their own.
+     * @return long the threshold of the traced method, in nanoseconds.
+     */
+    static long thresholdNanos(TracePoint tracePoint, long defaultThresholdNanos) {
+        if(THRESHOLDS.isEmpty()) {
+            return defaultThresholdNanos;
+        }
+        Long threshold = THRESHOLDS.get(tracePoint.getName());
+        return threshold != null ? threshold : defaultThresholdNanos;
+    }
+}
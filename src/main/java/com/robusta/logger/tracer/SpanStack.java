@@ -0,0 +1,205 @@
+package com.robusta.logger.tracer;
+
+import java.util.Arrays;
+
+/**
+ * The per-thread stack of the executions being traced, for nested
+ * tracing: an execution started while another one is traced on the same
+ * thread is its child.
+ *
+ * <p>Each frame keeps the tracer of the execution, its trace id, whether
+ * it was sampled in, the time spent in its children so far and, when the
+ * call tree is profiled, its node of the {@link CallTreeProfile}, in
+ * parallel arrays that grow (by
+ * doubling) only when the nesting gets deeper than ever before on the
+ * thread, so pushing and popping do not allocate.</p>
+ *
+ * <p>An execution whose tracer is stopped while executions it started are
+ * still on the stack (tracers that were never stopped) pops them along
+ * with its own frame. A tracer that is stopped on another thread, or
+ * whose frame was popped that way, pops nothing.</p>
+ *
+ * <p>A trace context captured from the innermost frame of a thread can be
+ * restored on another thread, as a frame whose executions are the children
+ * of the captured execution, see {@link TraceContext}. The depth of the
+ * frames then continues from the captured one.</p>
+ *
+ * <p>Not thread-safe, a stack is only used by the thread that owns it. It
+ * lives as long as the thread, unless removed with
+ * {@link LoggerTracerFactory#releaseThreadLocals()}.</p>
+ *
+ * @see LoggerTracerFactory#nestedTracing(boolean)
+ * @see LoggerTracerFactory#callTreeProfiling(boolean, int)
+ * @since 1.3
+ */
+final class SpanStack {
+    static final int INITIAL_CAPACITY = 16;
+    /** The parent trace id of an execution without parent. */
+    static final long NO_PARENT = 0L;
+    private static final ThreadLocal<SpanStack> STACKS = new ThreadLocal<SpanStack>();
+
+    private final Thread owner;
+    private Object[] spans;
+    private long[] traceIds;
+    private boolean[] sampledIn;
+    private long[] childNanos;
+    private CallTreeProfile.Node[] nodes;
+    /** Per frame, the nesting depth of the frame minus its index. */
+    private int[] depthOffsets;
+    private int size;
+
+    SpanStack() {
+        this.owner = Thread.currentThread();
+        this.spans = new Object[INITIAL_CAPACITY];
+        this.traceIds = new long[INITIAL_CAPACITY];
+        this.sampledIn = new boolean[INITIAL_CAPACITY];
+        this.childNanos = new long[INITIAL_CAPACITY];
+        this.nodes = new CallTreeProfile.Node[INITIAL_CAPACITY];
+        this.depthOffsets = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return SpanStack the calling thread's stack.
+     */
+    static SpanStack current() {
+        SpanStack spanStack = STACKS.get();
+        if(spanStack == null) {
+            spanStack = new SpanStack();
+            STACKS.set(spanStack);
+        }
+        return spanStack;
+    }
+
+    /**
+     * @return SpanStack the calling thread's stack, null when the thread
+     * has none, without creating one.
+     */
+    static SpanStack currentIfAny() {
+        return STACKS.get();
+    }
+
+    /**
+     * Removes the calling thread's stack. The frames it holds pop nothing
+     * from the stack the next {@link #current()} creates.
+     */
+    static void removeCurrent() {
+        STACKS.remove();
+    }
+
+    /**
+     * Pushes the frame of an execution that starts.
+     *
+     * @param span the tracer of the execution, which identifies its frame.
+     * @param node the call tree node of the execution, null when not profiled.
+     * @param sampled whether the execution was sampled in, see {@link #isSampled()}.
+     * @return int the depth of the execution, 0 for an execution without parent.
+     */
+    int push(Object span, long traceId, CallTreeProfile.Node node, boolean sampled) {
+        return pushFrame(span, traceId, node, sampled, size > 0 ? depthOffsets[size - 1] : 0);
+    }
+
+    /**
+     * Pushes the frame of an execution of another thread, restored as the
+     * parent of the executions that start on this thread until it is popped.
+     *
+     * @param nestingDepth the depth of the execution on its own thread.
+     * @return int the index of the frame.
+     */
+    int pushRestored(Object span, long traceId, CallTreeProfile.Node node, boolean sampled, int nestingDepth) {
+        return pushFrame(span, traceId, node, sampled, nestingDepth - size);
+    }
+
+    private int pushFrame(Object span, long traceId, CallTreeProfile.Node node, boolean sampled, int depthOffset) {
+        if(size == spans.length) {
+            spans = Arrays.copyOf(spans, 2 * size);
+            traceIds = Arrays.copyOf(traceIds, 2 * size);
+            sampledIn = Arrays.copyOf(sampledIn, 2 * size);
+            childNanos = Arrays.copyOf(childNanos, 2 * size);
+            nodes = Arrays.copyOf(nodes, 2 * size);
+            depthOffsets = Arrays.copyOf(depthOffsets, 2 * size);
+        }
+        spans[size] = span;
+        traceIds[size] = traceId;
+        sampledIn[size] = sampled;
+        childNanos[size] = 0L;
+        nodes[size] = node;
+        depthOffsets[size] = depthOffset;
+        return size++;
+    }
+
+    /**
+     * @return TraceContext the context of the innermost execution, null
+     * when no execution is traced on the thread.
+     */
+    TraceContext capture() {
+        if(size == 0) {
+            return null;
+        }
+        int top = size - 1;
+        return new TraceContext(traceIds[top], nodes[top], sampledIn[top], top + depthOffsets[top]);
+    }
+
+    /**
+     * @return boolean whether the innermost execution was sampled in, true
+     * when no execution is traced on the thread. The executions nested in
+     * an execution follow its sampling decision, so that a trace is logged
+     * whole or not at all.
+     */
+    boolean isSampled() {
+        return size == 0 || sampledIn[size - 1];
+    }
+
+    /**
+     * @param depth the depth {@link #push(Object, long, CallTreeProfile.Node, boolean)} returned for a span.
+     * @return int the nesting depth of the span, which differs from its
+     * depth on this stack when it runs within a restored trace context.
+     */
+    int nestingDepth(int depth) {
+        return depth + depthOffsets[depth];
+    }
+
+    /**
+     * @return CallTreeProfile.Node the call tree node of the innermost
+     * execution, null when there is none or it is not profiled.
+     */
+    CallTreeProfile.Node top() {
+        return size > 0 ? nodes[size - 1] : null;
+    }
+
+    /**
+     * @return long the trace id of the parent of the execution at the
+     * given depth, {@link #NO_PARENT} at depth 0.
+     */
+    long parentTraceId(int depth) {
+        return depth > 0 ? traceIds[depth - 1] : NO_PARENT;
+    }
+
+    /**
+     * Pops the frame of an execution that stops, and accounts for its
+     * execution time in its parent.
+     *
+     * @param depth the depth {@link #push(Object, long, CallTreeProfile.Node, boolean)} returned for the span.
+     * @return long the time spent in the children of the execution, 0 when
+     * its frame is not on the stack.
+     */
+    long pop(Object span, int depth, long executionNanos) {
+        if(Thread.currentThread() != owner || depth >= size || spans[depth] != span) {
+            return 0L;
+        }
+        long children = childNanos[depth];
+        Arrays.fill(spans, depth, size, null);
+        Arrays.fill(nodes, depth, size, null);
+        size = depth;
+        if(depth > 0) {
+            childNanos[depth - 1] += executionNanos;
+        }
+        return children;
+    }
+
+    /**
+     * @return int the number of executions being traced on the thread.
+     */
+    int depth() {
+        return size;
+    }
+}
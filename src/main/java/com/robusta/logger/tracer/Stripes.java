@@ -0,0 +1,39 @@
+package com.robusta.logger.tracer;
+
+/**
+ * Spreads threads over a power of two number of stripes, by thread id,
+ * for the state that is shared by threads but split to keep them from
+ * contending: a thread always gets the same stripe.
+ *
+ * @see LoggerTracerPool#striped()
+ * @see RingBufferTraceEventDispatcher
+ * @since 1.3
+ */
+final class Stripes {
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private Stripes() {
+    }
+
+    /**
+     * @return int the smallest power of two that is at least the given count (and 1).
+     */
+    static int ceilingPowerOfTwo(int count) {
+        return count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    /**
+     * @return int as many stripes as there are processors, rounded up to a power of two.
+     */
+    static int perProcessor() {
+        return ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param mask the number of stripes minus one.
+     * @return int the stripe of the calling thread.
+     */
+    static int index(int mask) {
+        return (int) ((Thread.currentThread().getId() * GOLDEN_RATIO) >>> 32) & mask;
+    }
+}
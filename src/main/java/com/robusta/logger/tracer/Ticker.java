@@ -0,0 +1,19 @@
+package com.robusta.logger.tracer;
+
+/**
+ * A source of nanosecond time marks, used by the logger tracers to
+ * time executions and laps.
+ *
+ * <p>Time marks are only meaningful relative to one another, as the
+ * values of {@link System#nanoTime()} are. Implementations must be
+ * thread-safe.</p>
+ *
+ * @see Tickers
+ * @since 1.3
+ */
+public interface Ticker {
+    /**
+     * @return long the current time mark, in nanoseconds.
+     */
+    long read();
+}
@@ -0,0 +1,29 @@
+package com.robusta.logger.tracer;
+
+/**
+ * A {@link Ticker} factory class which provides the built-in tickers.
+ *
+ * @since 1.3
+ */
+public abstract class Tickers {
+    private static final Ticker SYSTEM_TICKER = new Ticker() {
+        @Override
+        public long read() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return "System.nanoTime()";
+        }
+    };
+
+    /**
+     * Get the default {@link Ticker}, reads {@link System#nanoTime()}.
+     *
+     * @return Ticker
+     */
+    public static Ticker system() {
+        return SYSTEM_TICKER;
+    }
+}
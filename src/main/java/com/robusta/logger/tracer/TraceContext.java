@@ -0,0 +1,113 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * The trace context of an execution being traced, captured on its thread
+ * to be restored on another one: its trace id, its {@link CallTreeProfile}
+ * node, whether it was sampled in and its depth, copied from the innermost
+ * frame of its thread's {@link SpanStack}.
+ *
+ * <p>While the context is restored on a thread, as a frame at the bottom
+ * of the thread's stack, the executions traced on the thread are the
+ * children of the captured execution: nested tracing logs them with its
+ * trace id as their parent and at the depths that follow its own, and the
+ * call tree records them under its node. They follow its sampling
+ * decision, rather than being sampled on their own. Their execution time is not
+ * subtracted from its self time, they ran concurrently with it.</p>
+ *
+ * <p>Immutable, a context can be restored on any number of threads, at
+ * the same time or not, including after the captured execution stopped.</p>
+ *
+ * @see TraceContexts
+ * @since 1.3
+ */
+final class TraceContext {
+    private final long traceId;
+    private final CallTreeProfile.Node node;
+    private final boolean sampled;
+    private final int depth;
+
+    TraceContext(long traceId, CallTreeProfile.Node node, boolean sampled, int depth) {
+        this.traceId = traceId;
+        this.node = node;
+        this.sampled = sampled;
+        this.depth = depth;
+    }
+
+    /**
+     * @return TraceContext the context of the innermost execution traced on
+     * the calling thread, null when none is traced (or neither nested
+     * tracing nor call tree profiling is enabled). Never creates a stack
+     * for the calling thread, which may only submit tasks.
+     */
+    static TraceContext capture() {
+        TracerConfig config = LoggerTracerFactory.configuration();
+        if(!config.isNestedTracing() && config.getCallTreeProfile() == null) {
+            return null;
+        }
+        SpanStack spanStack = SpanStack.currentIfAny();
+        return spanStack == null ? null : spanStack.capture();
+    }
+
+    /**
+     * Runs the task on the calling thread with the context restored.
+     */
+    void run(Runnable task) {
+        SpanStack spanStack = SpanStack.current();
+        int frame = spanStack.pushRestored(this, traceId, node, sampled, depth);
+        try {
+            task.run();
+        } finally {
+            spanStack.pop(this, frame, 0L);
+        }
+    }
+
+    /**
+     * Calls the task on the calling thread with the context restored.
+     */
+    <V> V call(Callable<V> task) throws Exception {
+        SpanStack spanStack = SpanStack.current();
+        int frame = spanStack.pushRestored(this, traceId, node, sampled, depth);
+        try {
+            return task.call();
+        } finally {
+            spanStack.pop(this, frame, 0L);
+        }
+    }
+
+    /**
+     * Gets a result from the supplier on the calling thread with the context restored.
+     */
+    <U> U get(Supplier<U> supplier) {
+        SpanStack spanStack = SpanStack.current();
+        int frame = spanStack.pushRestored(this, traceId, node, sampled, depth);
+        try {
+            return supplier.get();
+        } finally {
+            spanStack.pop(this, frame, 0L);
+        }
+    }
+
+    long getTraceId() {
+        return traceId;
+    }
+
+    CallTreeProfile.Node getNode() {
+        return node;
+    }
+
+    boolean isSampled() {
+        return sampled;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceContext{traceId=" + traceId + ", depth=" + depth + "}";
+    }
+}
@@ -0,0 +1,248 @@
+package com.robusta.logger.tracer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A factory class of wrappers that carry the trace context across
+ * asynchronous hand-offs: a task wrapped on a thread runs, wherever it
+ * runs, as a child of the execution that was being traced on that thread
+ * when it was wrapped.
+ *
+ * <p>With nested tracing enabled the executions traced by the task are
+ * logged with the trace id of that execution as their parent and at the
+ * depths that follow its own, and with the call tree profiled they are
+ * recorded under its node, rather than as executions without parent on
+ * the worker thread.</p>
+ *
+ * <p>Capturing copies the trace id, call tree node and depth of the
+ * innermost traced execution, restoring pushes them as a frame of the
+ * worker thread's span stack for the duration of the task. When no
+ * execution is traced on the wrapping thread, or neither nested tracing
+ * nor call tree profiling is enabled, the tasks are returned unwrapped.</p>
+ *
+ * <pre>
+ * ExecutorService executor = TraceContexts.propagating(Executors.newFixedThreadPool(4));
+ * CompletableFuture&lt;Quote&gt; quote = TraceContexts.supplyAsync(quoteSupplier, executor);
+ * </pre>
+ *
+ * @see LoggerTracerFactory#nestedTracing(boolean)
+ * @see LoggerTracerFactory#callTreeProfiling(boolean, int)
+ * @since 1.3
+ */
+public abstract class TraceContexts {
+    /**
+     * Wrap a task to run in the trace context of the calling thread.
+     *
+     * @return Runnable the wrapped task, the task itself when there is no context.
+     */
+    public static Runnable propagating(final Runnable task) {
+        Assert.notNull(task, "Non-null task is mandatory");
+        final TraceContext context = TraceContext.capture();
+        if(context == null) {
+            return task;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                context.run(task);
+            }
+
+            @Override
+            public String toString() {
+                return task.toString();
+            }
+        };
+    }
+
+    /**
+     * Wrap a task to be called in the trace context of the calling thread.
+     *
+     * @return Callable the wrapped task, the task itself when there is no context.
+     */
+    public static <V> Callable<V> propagating(final Callable<V> task) {
+        Assert.notNull(task, "Non-null task is mandatory");
+        final TraceContext context = TraceContext.capture();
+        if(context == null) {
+            return task;
+        }
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                return context.call(task);
+            }
+
+            @Override
+            public String toString() {
+                return task.toString();
+            }
+        };
+    }
+
+    /**
+     * Wrap an executor so that the tasks it is given run in the trace
+     * context of the thread that gives them. Suits the asynchronous stages
+     * of {@link CompletableFuture}s, whose tasks are given to the executor
+     * by the thread that completes the previous stage.
+     *
+     * @return Executor
+     */
+    public static Executor propagating(final Executor executor) {
+        Assert.notNull(executor, "Non-null executor is mandatory");
+        if(executor instanceof ExecutorService) {
+            return propagating((ExecutorService) executor);
+        }
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executor.execute(propagating(command));
+            }
+
+            @Override
+            public String toString() {
+                return "propagating(" + executor + ")";
+            }
+        };
+    }
+
+    /**
+     * Wrap an executor service so that the tasks submitted to it run in
+     * the trace context of the thread that submits them.
+     *
+     * @return ExecutorService
+     */
+    public static ExecutorService propagating(ExecutorService executorService) {
+        Assert.notNull(executorService, "Non-null executor service is mandatory");
+        if(executorService instanceof PropagatingExecutorService) {
+            return executorService;
+        }
+        return new PropagatingExecutorService(executorService);
+    }
+
+    /**
+     * {@link CompletableFuture#supplyAsync(Supplier, Executor)} with the
+     * supplier called in the trace context of the calling thread.
+     *
+     * @return CompletableFuture
+     */
+    public static <U> CompletableFuture<U> supplyAsync(Supplier<U> supplier, Executor executor) {
+        Assert.notNull(supplier, "Non-null supplier is mandatory");
+        final TraceContext context = TraceContext.capture();
+        if(context == null) {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        }
+        return CompletableFuture.supplyAsync(new Supplier<U>() {
+            @Override
+            public U get() {
+                return context.get(supplier);
+            }
+        }, executor);
+    }
+
+    /**
+     * {@link CompletableFuture#runAsync(Runnable, Executor)} with the task
+     * run in the trace context of the calling thread.
+     *
+     * @return CompletableFuture
+     */
+    public static CompletableFuture<Void> runAsync(Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(propagating(task), executor);
+    }
+
+    static <V> List<Callable<V>> propagating(Collection<? extends Callable<V>> tasks) {
+        List<Callable<V>> propagating = new ArrayList<Callable<V>>(tasks.size());
+        for (Callable<V> task : tasks) {
+            propagating.add(propagating(task));
+        }
+        return propagating;
+    }
+
+    static class PropagatingExecutorService implements ExecutorService {
+        private final ExecutorService delegate;
+
+        PropagatingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(propagating(command));
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return delegate.submit(propagating(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return delegate.submit(propagating(task), result);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return delegate.submit(propagating(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return delegate.invokeAll(propagating(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.invokeAll(propagating(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return delegate.invokeAny(propagating(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.invokeAny(propagating(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public String toString() {
+            return "propagating(" + delegate + ")";
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.robusta.logger.tracer.LoggingMethodArgumentHandler.METHOD_ARGUMENT_TRACE_LOG_MESSAGE;
+import static com.robusta.logger.tracer.LoggingMethodArgumentHandler.NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE;
+import static com.robusta.logger.tracer.LoggingStopWatch.EXECUTION_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.LAP_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.NESTED_EXECUTION_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.unitSymbol;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A reusable, mutable trace event. Carries everything that is
+ * required to render a method argument, lap or execution trace
+ * message away from the thread that produced it.
+ *
+ * <p>Instances are pre-allocated as slots of a {@link TraceEventRingBuffer}
+ * and re-populated by producers, so publishing an event does not
+ * allocate. An event that does not belong to a ring buffer is
+ * <em>detached</em> and is logged by whoever publishes it.</p>
+ *
+ * <p>With nested tracing, method arguments events of nested executions
+ * carry the trace id of the parent execution and their depth, and
+ * execution events carry the self time of the execution, see
+ * {@link SpanStack}.</p>
+ *
+ * <p>Not thread-safe, visibility between the producer and the consumer
+ * is established through the {@link #sequence} of the slot.</p>
+ *
+ * @see TraceEventDispatcher
+ * @since 1.3
+ */
+final class TraceEvent {
+    enum Type { ARGUMENTS, LAP, EXECUTION }
+    /** Self time of the executions that are not traced nested. */
+    static final long NO_SELF_TIME = -1L;
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private Type type;
+    private Logger logger;
+    private String uuid;
+    private TraceIdGenerator traceIdGenerator;
+    private long traceId;
+    private TracePoint tracePoint;
+    private String name;
+    private long nanos;
+    private long splitNanos;
+    private TimeUnit timeUnit;
+    private Object[] arguments;
+    private String parentUuid;
+    private long parentTraceId;
+    private int depth;
+    private long selfNanos = NO_SELF_TIME;
+
+    /** Ring buffer slot state, see {@link TraceEventRingBuffer}. */
+    volatile long sequence;
+    /** Ring buffer position this slot was last claimed for. */
+    long position;
+    /** When the slot was published, to merge striped ring buffers in order. */
+    long publishedNanos;
+    private final boolean detached;
+
+    TraceEvent() {
+        this(true);
+    }
+
+    TraceEvent(boolean detached) {
+        this.detached = detached;
+    }
+
+    void arguments(Logger logger, String uuid, String methodName, Object[] arguments) {
+        populate(Type.ARGUMENTS, logger, uuid, null, 0L, null, methodName, 0L, 0L, null, arguments);
+    }
+
+    void lap(Logger logger, String uuid, String lapDescription, long lapNanos, long splitNanos, TimeUnit timeUnit) {
+        populate(Type.LAP, logger, uuid, null, 0L, null, lapDescription, lapNanos, splitNanos, timeUnit, null);
+    }
+
+    void execution(Logger logger, String uuid, String methodName, long executionNanos, TimeUnit timeUnit) {
+        populate(Type.EXECUTION, logger, uuid, null, 0L, null, methodName, executionNanos, 0L, timeUnit, null);
+    }
+
+    /**
+     * Method arguments event of a nested execution, whose parent's
+     * trace id is already rendered.
+     */
+    void arguments(Logger logger, String uuid, String methodName, Object[] arguments, String parentUuid, int depth) {
+        arguments(logger, uuid, methodName, arguments);
+        this.parentUuid = parentUuid;
+        this.depth = depth;
+    }
+
+    /**
+     * Execution event of an execution traced nested, with its self time.
+     */
+    void execution(Logger logger, String uuid, String methodName, long executionNanos, long selfNanos, TimeUnit timeUnit) {
+        execution(logger, uuid, methodName, executionNanos, timeUnit);
+        this.selfNanos = selfNanos;
+    }
+
+    /**
+     * Method arguments event whose trace id is only rendered
+     * when the event is logged.
+     */
+    void arguments(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint, Object[] arguments) {
+        populate(Type.ARGUMENTS, logger, null, traceIdGenerator, traceId, tracePoint, null, 0L, 0L, null, arguments);
+    }
+
+    /**
+     * Method arguments event of a nested execution, whose trace id and
+     * parent trace id are only rendered when the event is logged.
+     *
+     * @param depth the nesting depth, 0 for an execution without parent.
+     */
+    void arguments(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint, Object[] arguments,
+                   long parentTraceId, int depth) {
+        arguments(logger, traceIdGenerator, traceId, tracePoint, arguments);
+        this.parentTraceId = parentTraceId;
+        this.depth = depth;
+    }
+
+    /**
+     * Lap event whose trace id is only rendered when the event is logged.
+     */
+    void lap(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, String lapDescription, long lapNanos, long splitNanos, TimeUnit timeUnit) {
+        populate(Type.LAP, logger, null, traceIdGenerator, traceId, null, lapDescription, lapNanos, splitNanos, timeUnit, null);
+    }
+
+    /**
+     * Execution event whose trace id is only rendered when
+     * the event is logged.
+     */
+    void execution(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint, long executionNanos, TimeUnit timeUnit) {
+        populate(Type.EXECUTION, logger, null, traceIdGenerator, traceId, tracePoint, null, executionNanos, 0L, timeUnit, null);
+    }
+
+    /**
+     * Execution event of an execution traced nested, with its self time,
+     * whose trace id is only rendered when the event is logged.
+     */
+    void execution(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint, long executionNanos,
+                   long selfNanos, TimeUnit timeUnit) {
+        execution(logger, traceIdGenerator, traceId, tracePoint, executionNanos, timeUnit);
+        this.selfNanos = selfNanos;
+    }
+
+    private void populate(Type type, Logger logger, String uuid, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint,
+                          String name, long nanos, long splitNanos, TimeUnit timeUnit, Object[] arguments) {
+        this.type = type;
+        this.logger = logger;
+        this.uuid = uuid;
+        this.traceIdGenerator = traceIdGenerator;
+        this.traceId = traceId;
+        this.tracePoint = tracePoint;
+        this.name = name;
+        this.nanos = nanos;
+        this.splitNanos = splitNanos;
+        this.timeUnit = timeUnit;
+        this.arguments = arguments;
+        this.parentUuid = null;
+        this.parentTraceId = 0L;
+        this.depth = 0;
+        this.selfNanos = NO_SELF_TIME;
+    }
+
+    /**
+     * Renders the event into its logger. Uses the same messages
+     * as the synchronous logger-tracer implementations, times are
+     * converted to the event's time unit here, on the logging thread.
+     */
+    void log() {
+        switch (type) {
+            case ARGUMENTS:
+                if(depth > 0) {
+                    logger.trace(NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE, uuid(), methodName(), LoggingMethodArgumentHandler.argumentList(arguments),
+                            parentUuid(), depth);
+                } else {
+                    logger.trace(METHOD_ARGUMENT_TRACE_LOG_MESSAGE, uuid(), methodName(), LoggingMethodArgumentHandler.argumentList(arguments));
+                }
+                break;
+            case LAP:
+                String unit = unitSymbol(timeUnit);
+                logger.trace(LAP_COMPLETION_TRACE_MSG, uuid(), name, timeUnit.convert(nanos, NANOSECONDS), unit,
+                        timeUnit.convert(splitNanos, NANOSECONDS), unit);
+                break;
+            case EXECUTION:
+                if(selfNanos != NO_SELF_TIME) {
+                    String executionUnit = unitSymbol(timeUnit);
+                    logger.trace(NESTED_EXECUTION_COMPLETION_TRACE_MSG, uuid(), methodName(), timeUnit.convert(nanos, NANOSECONDS), executionUnit,
+                            timeUnit.convert(selfNanos, NANOSECONDS), executionUnit);
+                } else {
+                    logger.trace(EXECUTION_COMPLETION_TRACE_MSG, uuid(), methodName(), timeUnit.convert(nanos, NANOSECONDS), unitSymbol(timeUnit));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Renders the event's trace message, as {@link #log()} would log it,
+     * into the given builder.
+     */
+    void render(StringBuilder builder) {
+        switch (type) {
+            case ARGUMENTS:
+                if(depth > 0) {
+                    format(builder, NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE, uuid(), methodName(), arguments == null ? NO_ARGUMENTS : arguments,
+                            parentUuid(), depth);
+                } else {
+                    format(builder, METHOD_ARGUMENT_TRACE_LOG_MESSAGE, uuid(), methodName(), arguments == null ? NO_ARGUMENTS : arguments);
+                }
+                break;
+            case LAP:
+                String unit = unitSymbol(timeUnit);
+                format(builder, LAP_COMPLETION_TRACE_MSG, uuid(), name, timeUnit.convert(nanos, NANOSECONDS), unit,
+                        timeUnit.convert(splitNanos, NANOSECONDS), unit);
+                break;
+            case EXECUTION:
+                if(selfNanos != NO_SELF_TIME) {
+                    String executionUnit = unitSymbol(timeUnit);
+                    format(builder, NESTED_EXECUTION_COMPLETION_TRACE_MSG, uuid(), methodName(), timeUnit.convert(nanos, NANOSECONDS), executionUnit,
+                            timeUnit.convert(selfNanos, NANOSECONDS), executionUnit);
+                } else {
+                    format(builder, EXECUTION_COMPLETION_TRACE_MSG, uuid(), methodName(), timeUnit.convert(nanos, NANOSECONDS), unitSymbol(timeUnit));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Substitutes the {@code {}} placeholders of a trace message, in order.
+     * The method arguments, an Object[] value, are rendered straight into
+     * the builder.
+     */
+    private static void format(StringBuilder builder, String message, Object... values) {
+        int from = 0;
+        for (Object value : values) {
+            int placeholder = message.indexOf("{}", from);
+            if(placeholder < 0) {
+                break;
+            }
+            builder.append(message, from, placeholder);
+            if(value instanceof Object[]) {
+                LoggerTracerFactory.argumentRenderer().renderArguments(builder, (Object[]) value);
+            } else {
+                builder.append(value);
+            }
+            from = placeholder + 2;
+        }
+        builder.append(message, from, message.length());
+    }
+
+    private String uuid() {
+        return uuid != null ? uuid : traceIdGenerator.format(traceId);
+    }
+
+    private String parentUuid() {
+        return parentUuid != null ? parentUuid : traceIdGenerator.format(parentTraceId);
+    }
+
+    private String methodName() {
+        return tracePoint != null ? tracePoint.getName() : name;
+    }
+
+    /**
+     * Drops the references held by the event, so that a recycled
+     * slot does not keep method arguments reachable.
+     */
+    void clear() {
+        populate(null, null, null, null, 0L, null, null, 0L, 0L, null, null);
+    }
+
+    boolean isDetached() {
+        return detached;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * @return String the trace id the event was populated with, null when
+     * its trace id is a {@link #getTraceId()} of a {@link #getTraceIdGenerator()}.
+     */
+    String getUuid() {
+        return uuid;
+    }
+
+    TraceIdGenerator getTraceIdGenerator() {
+        return traceIdGenerator;
+    }
+
+    long getTraceId() {
+        return traceId;
+    }
+
+    TracePoint getTracePoint() {
+        return tracePoint;
+    }
+
+    /**
+     * @return String the lap description, or the method name of an event
+     * without a {@link #getTracePoint()}.
+     */
+    String getName() {
+        return name;
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    long getSplitNanos() {
+        return splitNanos;
+    }
+
+    TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    Object[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * @return String the parent's trace id the event was populated with,
+     * null when it is a {@link #getParentTraceId()}.
+     */
+    String getParentUuid() {
+        return parentUuid;
+    }
+
+    long getParentTraceId() {
+        return parentTraceId;
+    }
+
+    /**
+     * @return int the nesting depth of a method arguments event, 0 for
+     * an execution without parent.
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return long the self time of an execution event, {@link #NO_SELF_TIME}
+     * for an execution that is not traced nested.
+     */
+    long getSelfNanos() {
+        return selfNanos;
+    }
+}
@@ -0,0 +1,180 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The asynchronous dispatch engine behind the async logger-tracers.
+ *
+ * <p>Trace events (method arguments, laps and execution completions)
+ * are handed to the dispatcher from the traced thread and logged later
+ * by the dispatcher's own thread(s). Implementations decide where a
+ * {@link TraceEvent} comes from ({@link #claim()}) and how it reaches
+ * the logging thread ({@link #publish(TraceEvent)}).</p>
+ *
+ * <p>Implementations must log the events published from a single
+ * thread in the order they were published.</p>
+ *
+ * <p>Events that could not be logged are counted as dropped, events
+ * that were logged at an extra cost to the traced thread are counted
+ * as degraded, see {@link OverflowPolicy}. Dispatched, dropped and
+ * degraded events are counted process wide as well, by the
+ * {@link TracerMetrics}.</p>
+ *
+ * @see RingBufferTraceEventDispatcher
+ * @see ExecutorTraceEventDispatcher
+ * @since 1.3
+ */
+abstract class TraceEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TraceEventDispatcher.class);
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder degradedEvents = new LongAdder();
+    private volatile boolean dropReported;
+
+    final void dispatchArguments(Logger logger, String uuid, String methodName, Object[] arguments) {
+        TraceEvent event = claim();
+        if(event != null) {
+            event.arguments(logger, uuid, methodName, arguments);
+            publish(event);
+            TracerMetrics.dispatched();
+        }
+    }
+
+    final void dispatchLap(Logger logger, String uuid, String lapDescription, long lapNanos, long splitNanos, TimeUnit timeUnit) {
+        TraceEvent event = claim();
+        if(event != null) {
+            event.lap(logger, uuid, lapDescription, lapNanos, splitNanos, timeUnit);
+            publish(event);
+            TracerMetrics.dispatched();
+        }
+    }
+
+    final void dispatchExecution(Logger logger, String uuid, String methodName, long executionNanos, TimeUnit timeUnit) {
+        TraceEvent event = claim();
+        if(event != null) {
+            event.execution(logger, uuid, methodName, executionNanos, timeUnit);
+            publish(event);
+            TracerMetrics.dispatched();
+        }
+    }
+
+    final void dispatchArguments(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint, Object[] arguments) {
+        dispatchArguments(logger, traceIdGenerator, traceId, tracePoint, arguments, SpanStack.NO_PARENT, 0);
+    }
+
+    final void dispatchArguments(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint, Object[] arguments,
+                                 long parentTraceId, int depth) {
+        TraceEvent event = claim();
+        if(event != null) {
+            event.arguments(logger, traceIdGenerator, traceId, tracePoint, arguments, parentTraceId, depth);
+            publish(event);
+            TracerMetrics.dispatched();
+        }
+    }
+
+    final void dispatchLap(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, String lapDescription,
+                           long lapNanos, long splitNanos, TimeUnit timeUnit) {
+        TraceEvent event = claim();
+        if(event != null) {
+            event.lap(logger, traceIdGenerator, traceId, lapDescription, lapNanos, splitNanos, timeUnit);
+            publish(event);
+            TracerMetrics.dispatched();
+        }
+    }
+
+    final void dispatchExecution(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint,
+                                 long executionNanos, TimeUnit timeUnit) {
+        dispatchExecution(logger, traceIdGenerator, traceId, tracePoint, executionNanos, TraceEvent.NO_SELF_TIME, timeUnit);
+    }
+
+    final void dispatchExecution(Logger logger, TraceIdGenerator traceIdGenerator, long traceId, TracePoint tracePoint,
+                                 long executionNanos, long selfNanos, TimeUnit timeUnit) {
+        TraceEvent event = claim();
+        if(event != null) {
+            event.execution(logger, traceIdGenerator, traceId, tracePoint, executionNanos, selfNanos, timeUnit);
+            publish(event);
+            TracerMetrics.dispatched();
+        }
+    }
+
+    /**
+     * @return TraceEvent an event to be populated by the caller, or
+     * {@code null} when the event must not be dispatched at all.
+     */
+    protected abstract TraceEvent claim();
+
+    /**
+     * Hands a populated event (obtained from {@link #claim()}) over
+     * for logging.
+     */
+    protected abstract void publish(TraceEvent event);
+
+    /**
+     * Accounts for an event that will not be logged. The first
+     * drop is reported, since it means trace logs are incomplete.
+     */
+    protected final void dropped() {
+        droppedEvents.increment();
+        TracerMetrics.dropped();
+        if(!dropReported) {
+            dropReported = true;
+            LOGGER.warn("Asynchronous trace logging cannot keep up, trace events are being dropped. Trace logs will be incomplete.");
+        }
+    }
+
+    /**
+     * Accounts for an event that is logged at an extra cost to the traced thread.
+     */
+    protected final void degraded() {
+        degradedEvents.increment();
+        TracerMetrics.degraded();
+    }
+
+    /**
+     * @return long number of events that were dispatched but not logged.
+     */
+    final long droppedEventCount() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * @return long number of events whose dispatch cost the traced thread
+     * a wait or a synchronous log operation.
+     */
+    final long degradedEventCount() {
+        return degradedEvents.sum();
+    }
+
+    /**
+     * @return int number of events published and not logged yet, -1 when unknown.
+     */
+    abstract int pendingEvents();
+
+    /**
+     * @return int number of events that can be pending, -1 when unbounded or unknown.
+     */
+    abstract int eventCapacity();
+
+    /**
+     * Stops accepting events and waits, for as long as it takes, until all
+     * the events published so far have been logged.
+     *
+     * @return DrainReport
+     */
+    final DrainReport shutdown() {
+        return shutdown(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops accepting events and waits, up to the given timeout, until all
+     * the events published so far have been logged. The events still
+     * pending when the timeout elapses are abandoned. Events dispatched
+     * after the shutdown began are logged on the caller's thread.
+     *
+     * @return DrainReport how many pending events were logged and abandoned.
+     */
+    abstract DrainReport shutdown(long timeout, TimeUnit unit);
+}
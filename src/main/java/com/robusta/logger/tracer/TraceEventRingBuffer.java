@@ -0,0 +1,143 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free, multi-producer single-consumer ring buffer
+ * of pre-allocated {@link TraceEvent} slots.
+ *
+ * <p>Every slot carries a sequence that tells producers and the consumer
+ * whose turn it is: a slot at position {@code p} is free to be claimed
+ * when its sequence is {@code p}, published when it is {@code p + 1}
+ * and free again, for the next lap around the ring, once the consumer
+ * releases it with a sequence of {@code p + capacity}.</p>
+ *
+ * <p>Producers claim positions in increasing order and the consumer
+ * polls them in the same order, which keeps events published from a
+ * single thread in FIFO order.</p>
+ *
+ * <p>All operations are safe for concurrent use. There is a single
+ * consumer thread, but a producer may also {@link #discardOldest()}
+ * when the ring buffer is full.</p>
+ *
+ * @since 1.3
+ */
+final class TraceEventRingBuffer {
+    private final TraceEvent[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    TraceEventRingBuffer(int capacity) {
+        Assert.checkArgument(capacity > 1 && Integer.bitCount(capacity) == 1, "Ring buffer capacity must be a power of two greater than one");
+        this.slots = new TraceEvent[capacity];
+        this.mask = capacity - 1;
+        for (int index = 0; index < capacity; index++) {
+            slots[index] = new TraceEvent(false);
+            slots[index].sequence = index;
+        }
+    }
+
+    /**
+     * Claims the next free slot.
+     *
+     * @return TraceEvent the claimed slot, or {@code null} when the ring buffer is full
+     */
+    TraceEvent tryClaim() {
+        long position = tail.get();
+        for (;;) {
+            TraceEvent slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    slot.position = position;
+                    return slot;
+                }
+                position = tail.get();
+            } else if(difference < 0) {
+                return null;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Makes a claimed and populated slot visible to the consumer.
+     */
+    void publish(TraceEvent slot) {
+        slot.sequence = slot.position + 1;
+    }
+
+    /**
+     * @return TraceEvent the next published slot, or {@code null} when there is none (yet)
+     */
+    TraceEvent poll() {
+        long position = head.get();
+        for (;;) {
+            TraceEvent slot = slots[(int) position & mask];
+            long difference = slot.sequence - (position + 1);
+            if(difference == 0) {
+                if(head.compareAndSet(position, position + 1)) {
+                    return slot;
+                }
+                position = head.get();
+            } else if(difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return TraceEvent the next published slot, left in the ring buffer,
+     * or {@code null} when there is none (yet)
+     */
+    TraceEvent peek() {
+        long position = head.get();
+        TraceEvent slot = slots[(int) position & mask];
+        return slot.sequence == position + 1 ? slot : null;
+    }
+
+    /**
+     * Discards the oldest published event when doing so frees up
+     * the slot the next claim needs, that is when the ring buffer
+     * is full and its oldest event is not being logged already.
+     *
+     * @return boolean whether an event was discarded
+     */
+    boolean discardOldest() {
+        long position = head.get();
+        if(tail.get() - position < slots.length) {
+            return false;
+        }
+        TraceEvent slot = slots[(int) position & mask];
+        if(slot.sequence != position + 1 || !head.compareAndSet(position, position + 1)) {
+            return false;
+        }
+        release(slot);
+        return true;
+    }
+
+    /**
+     * Hands a polled slot back to the producers. The slot still
+     * carries the position it was claimed for.
+     */
+    void release(TraceEvent slot) {
+        slot.clear();
+        slot.sequence = slot.position + slots.length;
+    }
+
+    int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    boolean isEmpty() {
+        return size() <= 0;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,54 @@
+package com.robusta.logger.tracer;
+
+/**
+ * Where the consumer of a {@link RingBufferTraceEventDispatcher} writes
+ * the trace events it drains.
+ *
+ * <p>The consumer drains events in batches: it {@link #write(TraceEvent)}s
+ * each event of a batch, then ends the batch with {@link #endBatch()}.
+ * A sink may render the events of a batch into a buffer and write the
+ * buffer out once per batch. The slot of an event is reused as soon as
+ * {@link #write(TraceEvent)} returns, so a sink must not hold on to
+ * the event itself.</p>
+ *
+ * <p>{@link #flush()} is called whenever the consumer runs out of events
+ * and when the dispatcher is shut down, after which the sink is
+ * {@link #close()}d. All of these are called from the consumer thread
+ * only. Events that are not queued (logged synchronously on overflow or
+ * after shutdown) are handed to {@link #writeSynchronously(TraceEvent)}
+ * from the traced thread.</p>
+ *
+ * @see LoggerTraceEventSink
+ * @see WriterTraceEventSink
+ * @since 1.3
+ */
+abstract class TraceEventSink {
+
+    /**
+     * Adds an event to the current batch.
+     */
+    abstract void write(TraceEvent event);
+
+    /**
+     * Writes an event that is not part of a batch, from any thread.
+     */
+    abstract void writeSynchronously(TraceEvent event);
+
+    /**
+     * Ends the current batch.
+     */
+    void endBatch() {
+    }
+
+    /**
+     * Pushes out whatever the sink buffers.
+     */
+    void flush() {
+    }
+
+    /**
+     * Releases the resources of the sink, nothing is written afterwards.
+     */
+    void close() {
+    }
+}
@@ -0,0 +1,27 @@
+package com.robusta.logger.tracer;
+
+/**
+ * Generates the ids that correlate the log lines of one traced
+ * execution (method arguments, laps and execution completion).
+ *
+ * <p>Ids are primitive {@code long}s, so that generating one does not
+ * allocate, and are only turned into text by {@link #format(long)} when
+ * a trace message is rendered. Implementations must be thread-safe and
+ * should not block, {@link #nextTraceId()} is called for every traced
+ * execution.</p>
+ *
+ * @see TraceIdGenerators
+ * @since 1.3
+ */
+public interface TraceIdGenerator {
+    /**
+     * @return long the id of a new traced execution.
+     */
+    long nextTraceId();
+
+    /**
+     * @param traceId an id obtained from {@link #nextTraceId()}
+     * @return String the trace id as it appears in the trace logs.
+     */
+    String format(long traceId);
+}
@@ -0,0 +1,130 @@
+package com.robusta.logger.tracer;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TraceIdGenerator} factory class which provides
+ * the built-in generators.
+ *
+ * <p>None of the generators go through {@link java.util.UUID#randomUUID()}
+ * (and so a synchronized {@link SecureRandom}) per traced execution, a
+ * {@link SecureRandom} is only used once per generator, to seed its
+ * process wide part.</p>
+ *
+ * @since 1.3
+ */
+public abstract class TraceIdGenerators {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int HEX_DIGITS_PER_LONG = 16;
+
+    /**
+     * Get the default, high throughput {@link TraceIdGenerator}. Ids are a
+     * random, per process, 16 bit prefix followed by a 48 bit counter. Each
+     * thread counts through a block of ids of its own, so generating an id
+     * is a thread local increment. Formatted as 16 hex digits.
+     *
+     * @return TraceIdGenerator
+     */
+    public static TraceIdGenerator sequential() {
+        return new SequentialTraceIdGenerator(new SecureRandom().nextLong());
+    }
+
+    /**
+     * Get a {@link TraceIdGenerator} whose ids are formatted as a W3C trace
+     * context {@code traceparent} ({@code 00-<trace-id>-<parent-id>-01}).
+     * The 128 bit trace-id is a random, per process, 64 bit half followed by
+     * a random, per execution, 64 bit half; the parent-id is derived from the
+     * per execution half.
+     *
+     * @return TraceIdGenerator
+     */
+    public static TraceIdGenerator w3cTraceparent() {
+        return new W3cTraceparentTraceIdGenerator(new SecureRandom().nextLong());
+    }
+
+    static String toHex(long value) {
+        return appendHex(new StringBuilder(HEX_DIGITS_PER_LONG), value).toString();
+    }
+
+    static StringBuilder appendHex(StringBuilder builder, long value) {
+        for (int shift = (HEX_DIGITS_PER_LONG - 1) * 4; shift >= 0; shift -= 4) {
+            builder.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+        }
+        return builder;
+    }
+
+    static class SequentialTraceIdGenerator implements TraceIdGenerator {
+        static final int BLOCK_SIZE = 1024;
+        private static final long COUNTER_MASK = (1L << 48) - 1;
+        private final long prefix;
+        private final AtomicLong blocks = new AtomicLong();
+        private final ThreadLocal<long[]> threadBlock = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[2]; // next, limit
+            }
+        };
+
+        SequentialTraceIdGenerator(long seed) {
+            this.prefix = (seed & 0xffffL) << 48;
+        }
+
+        @Override
+        public long nextTraceId() {
+            long[] block = threadBlock.get();
+            if(block[0] == block[1]) {
+                block[0] = blocks.getAndIncrement() * BLOCK_SIZE;
+                block[1] = block[0] + BLOCK_SIZE;
+            }
+            return prefix | (block[0]++ & COUNTER_MASK);
+        }
+
+        @Override
+        public String format(long traceId) {
+            return toHex(traceId);
+        }
+    }
+
+    static class W3cTraceparentTraceIdGenerator implements TraceIdGenerator {
+        private static final String VERSION = "00-";
+        private static final String SAMPLED = "-01";
+        private final long processHalf;
+
+        W3cTraceparentTraceIdGenerator(long seed) {
+            this.processHalf = seed == 0 ? 1 : seed;
+        }
+
+        @Override
+        public long nextTraceId() {
+            long traceId;
+            do {
+                traceId = ThreadLocalRandom.current().nextLong();
+            } while (traceId == 0);
+            return traceId;
+        }
+
+        @Override
+        public String format(long traceId) {
+            StringBuilder traceparent = new StringBuilder(55).append(VERSION);
+            appendHex(appendHex(traceparent, processHalf), traceId).append('-');
+            return appendHex(traceparent, parentId(traceId)).append(SAMPLED).toString();
+        }
+
+        long getProcessHalf() {
+            return processHalf;
+        }
+
+        /**
+         * A non-zero mix (splitmix64 finalizer) of the per execution half.
+         */
+        static long parentId(long traceId) {
+            long mixed = traceId;
+            mixed = (mixed ^ (mixed >>> 30)) * 0xbf58476d1ce4e5b9L;
+            mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+            mixed = mixed ^ (mixed >>> 31);
+            return mixed == 0 ? 1 : mixed;
+        }
+    }
+}
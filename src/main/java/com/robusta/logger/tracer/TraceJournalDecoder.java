@@ -0,0 +1,145 @@
+package com.robusta.logger.tracer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.robusta.logger.tracer.JournalTraceEventSink.*;
+
+/**
+ * Decodes a trace journal, written by a journal sink, back into the
+ * trace messages the logger-tracers log. Each event is decoded into a
+ * line of the time it was journaled (milliseconds since the epoch)
+ * followed by its trace message, as written by a text file sink.
+ *
+ * <p>Run as {@code java -cp logger-tracer.jar com.robusta.logger.tracer.TraceJournalDecoder
+ * <journal directory or segment file>...}, the lines are written to
+ * the standard output. The segments of a directory are decoded oldest
+ * first.</p>
+ *
+ * <p>The parent trace ids of nested executions traced with a trace id
+ * generator other than the built-in ones are decoded as 16 hex digits.</p>
+ *
+ * @see TracerRuntime#ASYNC_JOURNAL_DIRECTORY_PROPERTY
+ * @since 1.3
+ */
+public final class TraceJournalDecoder {
+    private static final TimeUnit[] TIME_UNITS = TimeUnit.values();
+    /** Formats a trace id as 16 hex digits, as the sequential generator does. */
+    private static final TraceIdGenerator HEX_TRACE_IDS = new TraceIdGenerators.SequentialTraceIdGenerator(0L);
+
+    private TraceJournalDecoder() {}
+
+    public static void main(String[] arguments) throws IOException {
+        if(arguments.length == 0) {
+            System.err.println("Usage: java " + TraceJournalDecoder.class.getName() + " <journal directory or segment file>...");
+            return;
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.forName("UTF-8")));
+        for (String argument : arguments) {
+            decode(new File(argument), out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Decodes a journal directory, or a single segment file.
+     */
+    static void decode(File journal, Appendable out) throws IOException {
+        if(journal.isDirectory()) {
+            for (File segment : segments(journal)) {
+                decodeSegment(segment, out);
+            }
+        } else {
+            decodeSegment(journal, out);
+        }
+    }
+
+    static void decodeSegment(File segment, Appendable out) throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile segmentFile = new RandomAccessFile(segment, "r");
+        try {
+            buffer = segmentFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, segmentFile.length());
+        } finally {
+            segmentFile.close();
+        }
+        if(buffer.remaining() < SEGMENT_HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a trace journal segment: " + segment);
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported trace journal version " + version + ": " + segment);
+        }
+        buffer.getLong();
+        Map<Integer, String> names = new HashMap<Integer, String>();
+        Map<Integer, TraceIdGenerator> traceIdFormats = new HashMap<Integer, TraceIdGenerator>();
+        TraceEvent event = new TraceEvent(true);
+        StringBuilder line = new StringBuilder();
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int start = buffer.position();
+            byte type = buffer.get(start);
+            if(type == END) {
+                break;
+            }
+            byte unitOrFormat = buffer.get(start + 1);
+            int nameId = buffer.getInt(start + 4);
+            int traceIdFormatId = buffer.getInt(start + 8);
+            int payloadLength = buffer.getInt(start + 12);
+            long traceId = buffer.getLong(start + 16);
+            long timestamp = buffer.getLong(start + 24);
+            long nanos = buffer.getLong(start + 32);
+            long splitNanos = buffer.getLong(start + 40);
+            buffer.position(start + RECORD_HEADER_BYTES);
+            if(type == DEFINE_NAME) {
+                names.put(nameId, getString(buffer));
+            } else if(type == DEFINE_TRACE_ID_FORMAT) {
+                traceIdFormats.put(traceIdFormatId, unitOrFormat == W3C_TRACE_ID_FORMAT
+                        ? new TraceIdGenerators.W3cTraceparentTraceIdGenerator(traceId) : HEX_TRACE_IDS);
+            } else {
+                TraceIdGenerator traceIdFormat = traceIdFormatId == NO_ID ? HEX_TRACE_IDS : traceIdFormats.get(traceIdFormatId);
+                String uuid = traceIdFormatId == NO_ID ? getString(buffer) : traceIdFormat.format(traceId);
+                String name = nameId == NO_ID ? getString(buffer) : names.get(nameId);
+                TimeUnit timeUnit = unitOrFormat == NO_TIME_UNIT ? null : TIME_UNITS[unitOrFormat];
+                if(type == ARGUMENTS) {
+                    String[] arguments = new String[buffer.getInt()];
+                    for (int index = 0; index < arguments.length; index++) {
+                        arguments[index] = getString(buffer);
+                    }
+                    event.arguments(null, uuid, name, arguments, traceIdFormat.format(nanos), (int) splitNanos);
+                } else if(type == LAP) {
+                    event.lap(null, uuid, name, nanos, splitNanos, timeUnit);
+                } else if(type == EXECUTION) {
+                    event.execution(null, uuid, name, nanos, splitNanos, timeUnit);
+                } else {
+                    throw new IOException("Unknown trace journal record type " + type + " at " + start + ": " + segment);
+                }
+                line.setLength(0);
+                line.append(TimeUnit.NANOSECONDS.toMillis(timestamp)).append(' ');
+                event.render(line);
+                out.append(line).append('\n');
+            }
+            buffer.position(start + RECORD_HEADER_BYTES + payloadLength);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if(length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int index = 0; index < length; index++) {
+            chars[index] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+}
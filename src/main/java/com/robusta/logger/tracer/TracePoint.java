@@ -0,0 +1,198 @@
+package com.robusta.logger.tracer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A traced method, identified by the class being traced and the
+ * method name. Obtained from {@link LoggerTracerFactory#tracePoint(Class, String)},
+ * which hands out one TracePoint per (Class, method name), so a TracePoint
+ * can be held in a {@code static final} field by the traced code.
+ *
+ * <p>The ClassName.methodName used in the trace logs is computed
+ * once, when the TracePoint is registered.</p>
+ *
+ * <p>Each invocation of the traced method starts the TracePoint with the
+ * method arguments, which logs them and returns the {@link LoggerTracer}
+ * of the invocation. When trace logging is not enabled, starting costs a
+ * single volatile read and returns a no-op logger tracer. Fixed-arity
+ * overloads cover methods of up to four arguments, so that no varargs
+ * array is allocated while trace logging is not enabled; once it is, the
+ * arguments are put in an array, which the trace event holds until it is
+ * logged.</p>
+ *
+ * <p>Whether the method is traced, and how it is sampled, can be
+ * changed at runtime with {@link TraceRule}s, see
+ * {@link LoggerTracerFactory#traceRule(String, String)}.</p>
+ *
+ * <p>With latency aggregation enabled, a TracePoint holds the
+ * {@link LatencyHistogram}s of its executions and of up to
+ * {@value #MAX_LAP_HISTOGRAMS} distinct laps, see
+ * {@link #getExecutionLatency()} and {@link #getLapLatencies()}.</p>
+ *
+ * @since 1.3
+ */
+public final class TracePoint {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    static final int MAX_LAP_HISTOGRAMS = 32;
+    private static final LatencyHistogram EMPTY_HISTOGRAM = new LatencyHistogram(1);
+    private final Class<?> tracedClass;
+    private final String methodName;
+    private final String name;
+    private volatile LatencyHistogram executionHistogram;
+    private volatile ConcurrentMap<String, LatencyHistogram> lapHistograms;
+    private volatile TraceRules.Decision decision = TraceRules.Decision.NONE;
+
+    TracePoint(Class<?> tracedClass, String methodName) {
+        this.tracedClass = tracedClass;
+        this.methodName = methodName;
+        this.name = tracedClass.getSimpleName() + '.' + methodName;
+    }
+
+    public LoggerTracer start() {
+        if(!LoggerTracerFactory.isTraceEnabled()) {
+            return LoggerTracerFactory.NO_OP_TRACER;
+        }
+        return LoggerTracerFactory.loggerTracer(this, NO_ARGUMENTS);
+    }
+
+    public LoggerTracer start(Object argument) {
+        if(!LoggerTracerFactory.isTraceEnabled()) {
+            return LoggerTracerFactory.NO_OP_TRACER;
+        }
+        return LoggerTracerFactory.loggerTracer(this, new Object[]{argument});
+    }
+
+    public LoggerTracer start(Object argument1, Object argument2) {
+        if(!LoggerTracerFactory.isTraceEnabled()) {
+            return LoggerTracerFactory.NO_OP_TRACER;
+        }
+        return LoggerTracerFactory.loggerTracer(this, new Object[]{argument1, argument2});
+    }
+
+    public LoggerTracer start(Object argument1, Object argument2, Object argument3) {
+        if(!LoggerTracerFactory.isTraceEnabled()) {
+            return LoggerTracerFactory.NO_OP_TRACER;
+        }
+        return LoggerTracerFactory.loggerTracer(this, new Object[]{argument1, argument2, argument3});
+    }
+
+    public LoggerTracer start(Object argument1, Object argument2, Object argument3, Object argument4) {
+        if(!LoggerTracerFactory.isTraceEnabled()) {
+            return LoggerTracerFactory.NO_OP_TRACER;
+        }
+        return LoggerTracerFactory.loggerTracer(this, new Object[]{argument1, argument2, argument3, argument4});
+    }
+
+    /**
+     * Starts the TracePoint for a method of more than four arguments.
+     * An array argument is logged as the method arguments, like
+     * {@link LoggerTracerFactory#loggerTracer(Class, String, Object...)} does.
+     */
+    public LoggerTracer start(Object... arguments) {
+        if(!LoggerTracerFactory.isTraceEnabled()) {
+            return LoggerTracerFactory.NO_OP_TRACER;
+        }
+        return LoggerTracerFactory.loggerTracer(this, arguments);
+    }
+
+    public Class<?> getTracedClass() {
+        return tracedClass;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return String ClassName.methodName as it appears in the trace logs.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return LatencyHistogram.Snapshot of the aggregated execution
+     * latencies, empty when none were aggregated.
+     */
+    public LatencyHistogram.Snapshot getExecutionLatency() {
+        LatencyHistogram histogram = executionHistogram;
+        return histogram != null ? histogram.snapshot() : EMPTY_HISTOGRAM.snapshot();
+    }
+
+    /**
+     * @return Map of the aggregated latencies of each lap, from the start
+     * of the execution, by lap description.
+     */
+    public Map<String, LatencyHistogram.Snapshot> getLapLatencies() {
+        ConcurrentMap<String, LatencyHistogram> histograms = lapHistograms;
+        if(histograms == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, LatencyHistogram.Snapshot> lapLatencies = new LinkedHashMap<String, LatencyHistogram.Snapshot>();
+        for (Map.Entry<String, LatencyHistogram> histogram : histograms.entrySet()) {
+            lapLatencies.put(histogram.getKey(), histogram.getValue().snapshot());
+        }
+        return lapLatencies;
+    }
+
+    /**
+     * @return TraceRules.Decision what the given rules decide for the
+     * method, cached until the rules change, so that the rules cost a
+     * comparison of their generation per execution.
+     */
+    TraceRules.Decision decision(TraceRules rules) {
+        TraceRules.Decision decision = this.decision;
+        if(decision.getGeneration() != rules.getGeneration()) {
+            this.decision = decision = rules.decide(this);
+        }
+        return decision;
+    }
+
+    void recordExecution(long nanos) {
+        LatencyHistogram histogram = executionHistogram;
+        if(histogram == null) {
+            histogram = initHistograms();
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Laps beyond the first {@value #MAX_LAP_HISTOGRAMS} distinct lap
+     * descriptions are not aggregated.
+     */
+    void recordLap(String lapDescription, long nanos) {
+        ConcurrentMap<String, LatencyHistogram> histograms = lapHistograms;
+        if(histograms == null) {
+            initHistograms();
+            histograms = lapHistograms;
+        }
+        LatencyHistogram histogram = histograms.get(lapDescription);
+        if(histogram == null && lapDescription != null && histograms.size() < MAX_LAP_HISTOGRAMS) {
+            LatencyHistogram registered = histograms.putIfAbsent(lapDescription, histogram = new LatencyHistogram());
+            if(registered != null) {
+                histogram = registered;
+            }
+        }
+        if(histogram != null) {
+            histogram.record(nanos);
+        }
+    }
+
+    private synchronized LatencyHistogram initHistograms() {
+        if(executionHistogram == null) {
+            lapHistograms = new ConcurrentHashMap<String, LatencyHistogram>();
+            executionHistogram = new LatencyHistogram();
+            LatencyAggregation.aggregated(this);
+        }
+        return executionHistogram;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,45 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link TracePoint}s, one per (Class, method name).
+ *
+ * <p>TracePoints are kept per class in a {@link ClassValue}, so a
+ * lookup is a {@link ClassValue#get(Class)} and a concurrent map
+ * read.</p>
+ *
+ * <p>A TracePoint references its class, and is itself held by the
+ * sampler rate buckets, the latency aggregation, the call tree profile
+ * and the slow call thresholds, so a traced class, and its class loader,
+ * stays loaded as long as the library does.</p>
+ *
+ * @since 1.3
+ */
+final class TracePointRegistry {
+    private static final ClassValue<ConcurrentMap<String, TracePoint>> TRACE_POINTS = new ClassValue<ConcurrentMap<String, TracePoint>>() {
+        @Override
+        protected ConcurrentMap<String, TracePoint> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<String, TracePoint>();
+        }
+    };
+
+    private TracePointRegistry() {}
+
+    /**
+     * @return TracePoint the TracePoint of the given class and method,
+     * registered on first request.
+     */
+    static TracePoint tracePoint(Class<?> tracedClass, String methodName) {
+        ConcurrentMap<String, TracePoint> tracePoints = TRACE_POINTS.get(tracedClass);
+        TracePoint tracePoint = tracePoints.get(methodName);
+        if(tracePoint == null) {
+            TracePoint registered = tracePoints.putIfAbsent(methodName, tracePoint = new TracePoint(tracedClass, methodName));
+            if(registered != null) {
+                tracePoint = registered;
+            }
+        }
+        return tracePoint;
+    }
+}
@@ -0,0 +1,138 @@
+package com.robusta.logger.tracer;
+
+/**
+ * A rule of the runtime control of trace logging: whether the traced
+ * methods that match a pattern are traced, and how their executions are
+ * sampled.
+ *
+ * <p>The pattern is one of
+ * <ul>
+ *     <li>{@code *} - every traced method</li>
+ *     <li>{@code com.acme.orders.*} - the methods of the classes of a package
+ *     and of its subpackages</li>
+ *     <li>{@code com.acme.orders.OrderService} or {@code OrderService} - the
+ *     methods of a class</li>
+ *     <li>{@code com.acme.orders.OrderService.place} or {@code OrderService.place}
+ *     - a method, the latter as it appears in the trace logs</li>
+ * </ul>
+ * and the action one of
+ * <ul>
+ *     <li>{@code on} - traced, sampled as set for the factory</li>
+ *     <li>{@code off} - not traced at all</li>
+ *     <li>{@code always} - every execution is logged, whatever the sampling of the factory</li>
+ *     <li>{@code oneIn:n} - one in n executions is logged, at random</li>
+ *     <li>{@code rate:r} - up to r executions per second and method are logged</li>
+ * </ul></p>
+ *
+ * <p>A method matched by several rules follows the most specific one: a
+ * method rule over a class rule, over a package rule (the longer package
+ * first), over the {@code *} rule.</p>
+ *
+ * @see TraceRules
+ * @see LoggerTracerFactory#traceRule(String, String)
+ * @since 1.3
+ */
+final class TraceRule {
+    static final String ALL = "*";
+    private static final String PACKAGE_SUFFIX = ".*";
+    private static final int NO_MATCH = -1;
+    private static final int PACKAGE_MATCH = 1 << 16;
+    private static final int CLASS_MATCH = 2 << 16;
+    private static final int METHOD_MATCH = 3 << 16;
+
+    private final String pattern;
+    private final String action;
+    private final boolean enabled;
+    private final Sampler sampler;
+
+    private TraceRule(String pattern, String action, boolean enabled, Sampler sampler) {
+        this.pattern = pattern;
+        this.action = action;
+        this.enabled = enabled;
+        this.sampler = sampler;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the pattern or the action is not one of the above.
+     */
+    static TraceRule parse(String pattern, String action) {
+        Assert.notNullOrEmpty(pattern, "A trace rule pattern is mandatory");
+        Assert.notNullOrEmpty(action, "A trace rule action is mandatory");
+        String trimmedPattern = pattern.trim();
+        String trimmedAction = action.trim();
+        Assert.checkArgument(!trimmedPattern.isEmpty() && (trimmedPattern.equals(ALL) || trimmedPattern.indexOf('*') < 0
+                || trimmedPattern.endsWith(PACKAGE_SUFFIX) && trimmedPattern.indexOf('*') == trimmedPattern.length() - 1),
+                "Trace rule pattern '" + trimmedPattern + "' is not *, a package.*, a class or a Class.method");
+        if("on".equalsIgnoreCase(trimmedAction)) {
+            return new TraceRule(trimmedPattern, trimmedAction, true, null);
+        }
+        if("off".equalsIgnoreCase(trimmedAction)) {
+            return new TraceRule(trimmedPattern, trimmedAction, false, null);
+        }
+        if("always".equalsIgnoreCase(trimmedAction)) {
+            return new TraceRule(trimmedPattern, trimmedAction, true, Samplers.always());
+        }
+        try {
+            if(trimmedAction.regionMatches(true, 0, "oneIn:", 0, 6)) {
+                return new TraceRule(trimmedPattern, trimmedAction, true, Samplers.oneIn(Integer.parseInt(trimmedAction.substring(6).trim())));
+            }
+            if(trimmedAction.regionMatches(true, 0, "rate:", 0, 5)) {
+                return new TraceRule(trimmedPattern, trimmedAction, true,
+                        Samplers.rateLimited(Double.parseDouble(trimmedAction.substring(5).trim()), 1));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Trace rule action '" + trimmedAction + "' has no valid number", e);
+        }
+        throw new IllegalArgumentException("Trace rule action '" + trimmedAction + "' is not on, off, always, oneIn:n or rate:r");
+    }
+
+    /**
+     * @return int how specifically the rule matches the traced method, the
+     * higher the more specific, negative when it does not match.
+     */
+    int specificity(TracePoint tracePoint) {
+        if(ALL.equals(pattern)) {
+            return 0;
+        }
+        String className = tracePoint.getTracedClass().getName();
+        if(pattern.endsWith(PACKAGE_SUFFIX)) {
+            String packagePrefix = pattern.substring(0, pattern.length() - 1);
+            return className.startsWith(packagePrefix) ? PACKAGE_MATCH + packagePrefix.length() : NO_MATCH;
+        }
+        if(pattern.equals(className) || pattern.equals(tracePoint.getTracedClass().getSimpleName())) {
+            return CLASS_MATCH;
+        }
+        if(pattern.equals(tracePoint.getName()) || pattern.length() == className.length() + 1 + tracePoint.getMethodName().length()
+                && pattern.startsWith(className) && pattern.charAt(className.length()) == '.' && pattern.endsWith(tracePoint.getMethodName())) {
+            return METHOD_MATCH;
+        }
+        return NO_MATCH;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    String getAction() {
+        return action;
+    }
+
+    /**
+     * @return boolean whether the matched methods are traced.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Sampler of the matched methods, null for the sampler of the factory.
+     */
+    Sampler getSampler() {
+        return sampler;
+    }
+
+    @Override
+    public String toString() {
+        return pattern + '=' + action;
+    }
+}
@@ -0,0 +1,195 @@
+package com.robusta.logger.tracer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link TraceRule}s in force, by pattern, as an immutable set
+ * stamped with a generation: every set of rules gets a generation of
+ * its own, from a process wide counter.
+ *
+ * <p>The rules come in two layers: the configured rules, of the
+ * {@link TracerRuntime} properties and of its watched rules file, which
+ * are replaced as a whole whenever the file changes, and the rules set
+ * at runtime, through the factory or the {@link TracerControlMBean},
+ * which are left alone by changes of the file. A method follows the most
+ * specific rule of either layer that matches it; of two rules of the same
+ * pattern, the one set at runtime applies.</p>
+ *
+ * <p>The rules are part of the {@link TracerConfig}. Each
+ * {@link TracePoint} caches the {@link Decision} the rules make for it,
+ * with their generation, so that a traced execution checks the rules
+ * with a single comparison of the generation of the cached decision
+ * and the generation of the rules of its configuration, and decides
+ * again only once per TracePoint when the rules change.</p>
+ *
+ * @see LoggerTracerFactory#traceRule(String, String)
+ * @since 1.3
+ */
+final class TraceRules {
+    private static final AtomicInteger GENERATIONS = new AtomicInteger();
+    static final TraceRules NONE = new TraceRules(Collections.<String, TraceRule>emptyMap(), Collections.<String, TraceRule>emptyMap());
+
+    private final int generation;
+    /** The configured rules, by pattern. */
+    private final Map<String, TraceRule> configured;
+    /** The rules set at runtime, by pattern. */
+    private final Map<String, TraceRule> runtime;
+    /** The rules in force: the configured ones, overridden by those set at runtime. */
+    private final Map<String, TraceRule> rules;
+    private final Decision undecided;
+
+    private TraceRules(Map<String, TraceRule> configured, Map<String, TraceRule> runtime) {
+        this.generation = GENERATIONS.incrementAndGet();
+        this.configured = configured;
+        this.runtime = runtime;
+        Map<String, TraceRule> rules = new LinkedHashMap<String, TraceRule>(configured);
+        rules.putAll(runtime);
+        this.rules = Collections.unmodifiableMap(rules);
+        this.undecided = new Decision(generation, true, null);
+    }
+
+    /**
+     * @return TraceRules these rules with the given one set at runtime,
+     * in place of the rule of the same pattern set at runtime if any.
+     */
+    TraceRules with(TraceRule rule) {
+        Map<String, TraceRule> changed = new LinkedHashMap<String, TraceRule>(runtime);
+        changed.put(rule.getPattern(), rule);
+        return new TraceRules(configured, Collections.unmodifiableMap(changed));
+    }
+
+    /**
+     * @return TraceRules these rules without the rule of the given pattern
+     * set at runtime; a configured rule of the pattern applies again.
+     */
+    TraceRules without(String pattern) {
+        Map<String, TraceRule> changed = new LinkedHashMap<String, TraceRule>(runtime);
+        changed.remove(pattern == null ? null : pattern.trim());
+        return new TraceRules(configured, Collections.unmodifiableMap(changed));
+    }
+
+    /**
+     * @param actions the actions by pattern, see {@link TraceRule}.
+     * @return TraceRules these rules with the rules set at runtime replaced
+     * by the rules of the given patterns and actions.
+     * @throws IllegalArgumentException when a pattern or an action is invalid.
+     */
+    TraceRules withRuntime(Map<String, String> actions) {
+        return new TraceRules(configured, parse(actions));
+    }
+
+    /**
+     * @param actions the actions by pattern, see {@link TraceRule}.
+     * @return TraceRules these rules with the configured rules replaced by
+     * the rules of the given patterns and actions.
+     * @throws IllegalArgumentException when a pattern or an action is invalid.
+     */
+    TraceRules withConfigured(Map<String, String> actions) {
+        return new TraceRules(parse(actions), runtime);
+    }
+
+    /**
+     * @param actions the actions by pattern, see {@link TraceRule}.
+     * @return TraceRules the rules of the given patterns and actions, set at runtime.
+     * @throws IllegalArgumentException when a pattern or an action is invalid.
+     */
+    static TraceRules of(Map<String, String> actions) {
+        return NONE.withRuntime(actions);
+    }
+
+    private static Map<String, TraceRule> parse(Map<String, String> actions) {
+        Map<String, TraceRule> rules = new LinkedHashMap<String, TraceRule>();
+        for (Map.Entry<String, String> action : actions.entrySet()) {
+            TraceRule rule = TraceRule.parse(action.getKey(), action.getValue());
+            rules.put(rule.getPattern(), rule);
+        }
+        return Collections.unmodifiableMap(rules);
+    }
+
+    /**
+     * @return Decision of the most specific rule that matches the traced
+     * method, tracing it as the factory does when none matches.
+     */
+    Decision decide(TracePoint tracePoint) {
+        TraceRule decisive = null;
+        int decisiveSpecificity = -1;
+        for (TraceRule rule : rules.values()) {
+            int specificity = rule.specificity(tracePoint);
+            if(specificity > decisiveSpecificity) {
+                decisive = rule;
+                decisiveSpecificity = specificity;
+            }
+        }
+        return decisive == null ? undecided : new Decision(generation, decisive.isEnabled(), decisive.getSampler());
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Map of the actions of the rules in force, by pattern, the
+     * configured ones first, in the order the rules were set.
+     */
+    Map<String, String> actions() {
+        return actions(rules);
+    }
+
+    private static Map<String, String> actions(Map<String, TraceRule> rules) {
+        Map<String, String> actions = new LinkedHashMap<String, String>();
+        for (TraceRule rule : rules.values()) {
+            actions.put(rule.getPattern(), rule.getAction());
+        }
+        return actions;
+    }
+
+    boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "TraceRules{generation=" + generation + ", rules=" + rules.values() + "}";
+    }
+
+    /**
+     * What the rules of a generation decided for a traced method.
+     * Immutable, so that a TracePoint can cache it and share it with
+     * every thread that traces it.
+     */
+    static final class Decision {
+        /** The decision of no generation, that every TracePoint starts with. */
+        static final Decision NONE = new Decision(0, true, null);
+
+        private final int generation;
+        private final boolean enabled;
+        private final Sampler sampler;
+
+        private Decision(int generation, boolean enabled, Sampler sampler) {
+            this.generation = generation;
+            this.enabled = enabled;
+            this.sampler = sampler;
+        }
+
+        int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * @return boolean whether the method is traced.
+         */
+        boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * @return Sampler of the method, null for the sampler of the factory.
+         */
+        Sampler getSampler() {
+            return sampler;
+        }
+    }
+}
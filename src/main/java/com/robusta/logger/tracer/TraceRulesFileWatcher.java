@@ -0,0 +1,153 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@link TraceRule}s of the {@link LoggerTracerFactory} in line
+ * with a rules file, a properties file of {@code pattern=action} lines,
+ * such as
+ * <pre>
+ *     *=off
+ *     com.acme.orders.*=oneIn:10
+ *     OrderService.place=always
+ * </pre>
+ *
+ * <p>The file is polled, its modification time and length compared, on a
+ * daemon thread, and its rules applied, on top of the base rules the
+ * watcher was started with, whenever it changed. A file that is missing
+ * applies the base rules only; a file with an invalid rule is reported
+ * with a warning and leaves the rules in force as they are, until it is
+ * fixed.</p>
+ *
+ * <p>The base rules and those of the file are the configured rules of
+ * the factory, which leave the rules set at runtime, through the factory
+ * or over JMX, alone, see {@link TraceRules}.</p>
+ *
+ * @see TracerRuntime
+ * @since 1.3
+ */
+final class TraceRulesFileWatcher implements AutoCloseable {
+    static final long DEFAULT_POLL_SECONDS = 5;
+    private static final String WATCHER_THREAD_NAME = "logger-tracer-rules";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TraceRulesFileWatcher.class);
+
+    private final File file;
+    private final Map<String, String> baseRules;
+    private final ScheduledExecutorService poller;
+    private long lastModified = -1;
+    private long length = -1;
+
+    private TraceRulesFileWatcher(File file, Map<String, String> baseRules, ScheduledExecutorService poller) {
+        this.file = file;
+        this.baseRules = baseRules;
+        this.poller = poller;
+    }
+
+    /**
+     * Applies the rules of the file, then polls it for changes.
+     *
+     * @param baseRules the actions by pattern the rules of the file add to or override.
+     * @param pollSeconds interval of the polls, 0 to apply the rules of the file once.
+     * @throws IllegalArgumentException when the file has an invalid rule to start with.
+     */
+    static TraceRulesFileWatcher start(File file, Map<String, String> baseRules, long pollSeconds) {
+        Assert.notNull(file, "Non-null trace rules file is mandatory");
+        Assert.checkArgument(pollSeconds >= 0, "Trace rules file poll interval must not be negative");
+        ScheduledExecutorService poller = pollSeconds == 0 ? null : Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, WATCHER_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final TraceRulesFileWatcher watcher = new TraceRulesFileWatcher(file,
+                new LinkedHashMap<String, String>(baseRules), poller);
+        try {
+            watcher.apply();
+        } catch (RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+        if(poller != null) {
+            poller.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    watcher.poll();
+                }
+            }, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+        }
+        return watcher;
+    }
+
+    /**
+     * Applies the rules of the file when it changed since it was last
+     * applied, reporting an invalid file rather than failing.
+     *
+     * @return boolean whether the file had changed.
+     */
+    synchronized boolean poll() {
+        if(file.lastModified() == lastModified && file.length() == length) {
+            return false;
+        }
+        try {
+            apply();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Trace rules file " + file + " not applied, the trace rules stay as they are.", e);
+        }
+        return true;
+    }
+
+    private synchronized void apply() {
+        lastModified = file.lastModified();
+        length = file.length();
+        Map<String, String> rules = new LinkedHashMap<String, String>(baseRules);
+        if(file.isFile()) {
+            rules.putAll(read());
+        }
+        LoggerTracerFactory.configuredTraceRules(rules);
+        LOGGER.trace("Trace rules file {} applied", file);
+    }
+
+    private Map<String, String> read() {
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read trace rules file " + file, e);
+        }
+        Map<String, String> rules = new LinkedHashMap<String, String>();
+        for (String pattern : properties.stringPropertyNames()) {
+            rules.put(pattern, properties.getProperty(pattern));
+        }
+        return rules;
+    }
+
+    /**
+     * Stops polling the file, the rules in force stay as they are.
+     */
+    @Override
+    public void close() {
+        if(poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
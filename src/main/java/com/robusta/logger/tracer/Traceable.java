@@ -9,6 +9,9 @@ package com.robusta.logger.tracer;
  * wrap it in an appropriate Traceable.
  * Traceable's output is better formatted with information
  * that is significant to tracing.</p>
+ *
+ * <p>Rendering is bounded by the budget method arguments are rendered
+ * within, see {@link #render(Object)}.</p>
  * @see Traceables
  * @author sudhir.ravindramohan
  * @since 1.0
@@ -34,6 +37,17 @@ public abstract class Traceable<T> {
     }
 
     protected String objectAsString() {
-        return traced == null ? nullAsString(): traced.toString();
+        return traced == null ? nullAsString(): render(traced);
+    }
+
+    /**
+     * Renders a value within the budget method arguments are rendered
+     * within: long strings are cut, collections, maps and arrays are
+     * rendered up to a number of elements and levels.
+     *
+     * @since 1.3
+     */
+    protected String render(Object value) {
+        return LoggerTracerFactory.argumentRenderer().render(value);
     }
 }
@@ -81,7 +81,7 @@ public abstract class Traceables {
                 for (String aParameterName : parametersToBeTraced) {
                     parameters.put(aParameterName, traced.getParameter(aParameterName));
                 }
-                return String.format("%s.params: [[%s]]", HttpServletRequest.class.getSimpleName(), parameters);
+                return String.format("%s.params: [[%s]]", HttpServletRequest.class.getSimpleName(), render(parameters));
             }
         }
     }
@@ -114,7 +114,7 @@ public abstract class Traceables {
                 for (String aParameterName : sessionAttributesToBeTraced) {
                     parameters.put(aParameterName, traced.getAttribute(aParameterName));
                 }
-                return String.format("%s.attrs: [[%s]]", HttpSession.class.getSimpleName(), parameters);
+                return String.format("%s.attrs: [[%s]]", HttpSession.class.getSimpleName(), render(parameters));
             }
         }
     }
@@ -151,7 +151,7 @@ public abstract class Traceables {
 							parameters.put(aParameterName, cookie.getValue());
 					}
 				}
-                return String.format("%s.attrs: [[%s]]", Cookie[].class.getSimpleName(), parameters);
+                return String.format("%s.attrs: [[%s]]", Cookie[].class.getSimpleName(), render(parameters));
             }
         }
     }    
@@ -0,0 +1,321 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The runtime configuration of the {@link LoggerTracerFactory}, as an
+ * immutable snapshot: whether and through which dispatcher trace logging
+ * is asynchronous, which logger tracers are produced, how executions are
+ * timed, sampled and their arguments captured and rendered.
+ *
+ * <p>The factory holds the current snapshot in a single volatile field.
+ * A traced execution reads it once, when it starts, and is traced
+ * according to that snapshot until it stops, however the factory is
+ * reconfigured meanwhile. Reconfiguring copies the current snapshot, through
+ * a builder, with a setting changed, see the {@code with} methods, and
+ * publishes the copy,
+ * so that an execution never sees some settings changed and others
+ * not.</p>
+ *
+ * <p>The per method slow call thresholds, the aggregated latencies and the
+ * call tree profile are state rather than settings, they are shared by the
+ * snapshots, not copied. The {@link TraceRules} are settings, each set of
+ * them stamped with a generation the TracePoints cache their decisions
+ * by.</p>
+ *
+ * @see LoggerTracerFactory#configuration()
+ * @since 1.3
+ */
+final class TracerConfig {
+    static final TracerConfig DEFAULTS = new Builder().build();
+
+    private final TraceEventDispatcher dispatcher;
+    private final boolean pooledTracers;
+    private final boolean virtualThreads;
+    private final boolean nestedTracing;
+    private final boolean aggregating;
+    private final boolean slowCallsOnly;
+    private final long slowCallThresholdNanos;
+    private final CallTreeProfile callTreeProfile;
+    private final TraceIdGenerator traceIdGenerator;
+    private final Ticker ticker;
+    private final TimeUnit timeUnit;
+    private final ArgumentCapture argumentCapture;
+    private final ArgumentRenderer argumentRenderer;
+    private final Sampler sampler;
+    private final long tailThresholdNanos;
+    private final TraceRules traceRules;
+
+    private TracerConfig(Builder builder) {
+        this.dispatcher = builder.dispatcher;
+        this.pooledTracers = builder.pooledTracers;
+        this.virtualThreads = builder.virtualThreads;
+        this.nestedTracing = builder.nestedTracing;
+        this.aggregating = builder.aggregating;
+        this.slowCallsOnly = builder.slowCallsOnly;
+        this.slowCallThresholdNanos = builder.slowCallThresholdNanos;
+        this.callTreeProfile = builder.callTreeProfile;
+        this.traceIdGenerator = builder.traceIdGenerator;
+        this.ticker = builder.ticker;
+        this.timeUnit = builder.timeUnit;
+        this.argumentCapture = builder.argumentCapture;
+        this.argumentRenderer = builder.argumentRenderer;
+        this.sampler = builder.sampler;
+        this.tailThresholdNanos = builder.tailThresholdNanos;
+        this.traceRules = builder.traceRules;
+    }
+
+    /**
+     * @return Builder of a copy of this snapshot, the single place the
+     * settings are copied from.
+     */
+    private Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @param dispatcher the asynchronous dispatcher to log through, null for synchronous logging.
+     */
+    TracerConfig withDispatcher(TraceEventDispatcher dispatcher) {
+        Builder builder = toBuilder();
+        builder.dispatcher = dispatcher;
+        return builder.build();
+    }
+
+    TracerConfig withPooledTracers(boolean pooledTracers) {
+        Builder builder = toBuilder();
+        builder.pooledTracers = pooledTracers;
+        return builder.build();
+    }
+
+    TracerConfig withVirtualThreads(boolean virtualThreads) {
+        Builder builder = toBuilder();
+        builder.virtualThreads = virtualThreads;
+        return builder.build();
+    }
+
+    TracerConfig withNestedTracing(boolean nestedTracing) {
+        Builder builder = toBuilder();
+        builder.nestedTracing = nestedTracing;
+        return builder.build();
+    }
+
+    TracerConfig withAggregating(boolean aggregating) {
+        Builder builder = toBuilder();
+        builder.aggregating = aggregating;
+        return builder.build();
+    }
+
+    /**
+     * @param slowCallThresholdNanos threshold of the methods without one of their own.
+     */
+    TracerConfig withSlowCallsOnly(boolean slowCallsOnly, long slowCallThresholdNanos) {
+        Builder builder = toBuilder();
+        builder.slowCallsOnly = slowCallsOnly;
+        builder.slowCallThresholdNanos = slowCallThresholdNanos;
+        return builder.build();
+    }
+
+    /**
+     * @param callTreeProfile the call tree to record the executions into, null when not profiled.
+     */
+    TracerConfig withCallTreeProfile(CallTreeProfile callTreeProfile) {
+        Builder builder = toBuilder();
+        builder.callTreeProfile = callTreeProfile;
+        return builder.build();
+    }
+
+    TracerConfig withTraceIdGenerator(TraceIdGenerator traceIdGenerator) {
+        Builder builder = toBuilder();
+        builder.traceIdGenerator = traceIdGenerator;
+        return builder.build();
+    }
+
+    TracerConfig withTicker(Ticker ticker) {
+        Builder builder = toBuilder();
+        builder.ticker = ticker;
+        return builder.build();
+    }
+
+    TracerConfig withTimeUnit(TimeUnit timeUnit) {
+        Builder builder = toBuilder();
+        builder.timeUnit = timeUnit;
+        return builder.build();
+    }
+
+    TracerConfig withArgumentCapture(ArgumentCapture argumentCapture) {
+        Builder builder = toBuilder();
+        builder.argumentCapture = argumentCapture;
+        return builder.build();
+    }
+
+    TracerConfig withArgumentRenderer(ArgumentRenderer argumentRenderer) {
+        Builder builder = toBuilder();
+        builder.argumentRenderer = argumentRenderer;
+        return builder.build();
+    }
+
+    /**
+     * @param tailThresholdNanos execution time above which sampled out executions are logged, 0 for never.
+     */
+    TracerConfig withSampling(Sampler sampler, long tailThresholdNanos) {
+        Builder builder = toBuilder();
+        builder.sampler = sampler;
+        builder.tailThresholdNanos = tailThresholdNanos;
+        return builder.build();
+    }
+
+    TracerConfig withTraceRules(TraceRules traceRules) {
+        Builder builder = toBuilder();
+        builder.traceRules = traceRules;
+        return builder.build();
+    }
+
+    /**
+     * @return boolean whether trace logging is asynchronous.
+     */
+    boolean isAsync() {
+        return dispatcher != null;
+    }
+
+    /**
+     * @return TraceEventDispatcher the asynchronous dispatcher, null for synchronous logging.
+     */
+    TraceEventDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    boolean isPooledTracers() {
+        return pooledTracers;
+    }
+
+    boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    boolean isNestedTracing() {
+        return nestedTracing;
+    }
+
+    boolean isAggregating() {
+        return aggregating;
+    }
+
+    boolean isSlowCallsOnly() {
+        return slowCallsOnly;
+    }
+
+    /**
+     * @return long the slow call threshold of the traced method, in nanoseconds.
+     */
+    long slowCallThresholdNanos(TracePoint tracePoint) {
+        return SlowCallThresholds.thresholdNanos(tracePoint, slowCallThresholdNanos);
+    }
+
+    /**
+     * @return CallTreeProfile the call tree being profiled, null when not profiled.
+     */
+    CallTreeProfile getCallTreeProfile() {
+        return callTreeProfile;
+    }
+
+    TraceIdGenerator getTraceIdGenerator() {
+        return traceIdGenerator;
+    }
+
+    Ticker getTicker() {
+        return ticker;
+    }
+
+    TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    ArgumentCapture getArgumentCapture() {
+        return argumentCapture;
+    }
+
+    ArgumentRenderer getArgumentRenderer() {
+        return argumentRenderer;
+    }
+
+    Sampler getSampler() {
+        return sampler;
+    }
+
+    long getTailThresholdNanos() {
+        return tailThresholdNanos;
+    }
+
+    /**
+     * @return TraceRules the rules of the runtime control of trace logging.
+     */
+    TraceRules getTraceRules() {
+        return traceRules;
+    }
+
+    @Override
+    public String toString() {
+        return "TracerConfig{async=" + isAsync() + ", pooledTracers=" + pooledTracers + ", virtualThreads=" + virtualThreads
+                + ", nestedTracing=" + nestedTracing + ", aggregating=" + aggregating + ", slowCallsOnly=" + slowCallsOnly
+                + ", callTreeProfiling=" + (callTreeProfile != null) + ", sampler=" + sampler + ", traceRules=" + traceRules.actions() + "}";
+    }
+
+    /**
+     * The settings of a snapshot being built.
+     */
+    private static final class Builder {
+        private TraceEventDispatcher dispatcher;
+        private boolean pooledTracers;
+        private boolean virtualThreads;
+        private boolean nestedTracing;
+        private boolean aggregating;
+        private boolean slowCallsOnly;
+        private long slowCallThresholdNanos;
+        private CallTreeProfile callTreeProfile;
+        private TraceIdGenerator traceIdGenerator;
+        private Ticker ticker;
+        private TimeUnit timeUnit;
+        private ArgumentCapture argumentCapture;
+        private ArgumentRenderer argumentRenderer;
+        private Sampler sampler;
+        private long tailThresholdNanos;
+        private TraceRules traceRules;
+
+        /**
+         * Builder of the default settings.
+         */
+        private Builder() {
+            this.traceIdGenerator = TraceIdGenerators.sequential();
+            this.ticker = Tickers.system();
+            this.timeUnit = TimeUnit.MILLISECONDS;
+            this.argumentCapture = ArgumentCaptures.snapshot();
+            this.argumentRenderer = new ArgumentRenderer();
+            this.sampler = Samplers.always();
+            this.traceRules = TraceRules.NONE;
+        }
+
+        private Builder(TracerConfig config) {
+            this.dispatcher = config.dispatcher;
+            this.pooledTracers = config.pooledTracers;
+            this.virtualThreads = config.virtualThreads;
+            this.nestedTracing = config.nestedTracing;
+            this.aggregating = config.aggregating;
+            this.slowCallsOnly = config.slowCallsOnly;
+            this.slowCallThresholdNanos = config.slowCallThresholdNanos;
+            this.callTreeProfile = config.callTreeProfile;
+            this.traceIdGenerator = config.traceIdGenerator;
+            this.ticker = config.ticker;
+            this.timeUnit = config.timeUnit;
+            this.argumentCapture = config.argumentCapture;
+            this.argumentRenderer = config.argumentRenderer;
+            this.sampler = config.sampler;
+            this.tailThresholdNanos = config.tailThresholdNanos;
+            this.traceRules = config.traceRules;
+        }
+
+        private TracerConfig build() {
+            return new TracerConfig(this);
+        }
+    }
+}
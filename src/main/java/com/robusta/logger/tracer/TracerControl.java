@@ -0,0 +1,123 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The {@link TracerControlMBean} implementation, over the
+ * {@link LoggerTracerFactory}, registered with the platform MBean server.
+ *
+ * <p>A single one is registered per JVM: when another class loader, say
+ * another web application, registered its own first, registering this one
+ * is given up with a warning.</p>
+ *
+ * @since 1.3
+ */
+final class TracerControl implements TracerControlMBean {
+    static final String OBJECT_NAME = "com.robusta.logger.tracer:type=TracerControl";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TracerControl.class);
+
+    @Override
+    public String[] getTraceRules() {
+        Map<String, String> actions = LoggerTracerFactory.traceRules();
+        String[] rules = new String[actions.size()];
+        int rule = 0;
+        for (Map.Entry<String, String> action : actions.entrySet()) {
+            rules[rule++] = action.getKey() + '=' + action.getValue();
+        }
+        return rules;
+    }
+
+    @Override
+    public void setTraceRule(String pattern, String action) {
+        LoggerTracerFactory.traceRule(pattern, action);
+    }
+
+    @Override
+    public void removeTraceRule(String pattern) {
+        LoggerTracerFactory.removeTraceRule(pattern);
+    }
+
+    @Override
+    public void clearTraceRules() {
+        LoggerTracerFactory.traceRules(Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public int getTraceRulesGeneration() {
+        return LoggerTracerFactory.configuration().getTraceRules().getGeneration();
+    }
+
+    @Override
+    public String getConfiguration() {
+        return LoggerTracerFactory.configuration().toString();
+    }
+
+    @Override
+    public boolean isAsync() {
+        return LoggerTracerFactory.configuration().isAsync();
+    }
+
+    /**
+     * @return boolean whether the MBean was registered, false when one was
+     * registered already under {@value #OBJECT_NAME}.
+     * @throws IllegalStateException when the MBean server rejects the MBean.
+     */
+    static boolean register() {
+        try {
+            return register(new StandardMBean(new TracerControl(), TracerControlMBean.class), OBJECT_NAME);
+        } catch (NotCompliantMBeanException e) {
+            throw new IllegalStateException("Cannot register the tracer control MBean as " + OBJECT_NAME, e);
+        }
+    }
+
+    static void unregister() {
+        unregister(OBJECT_NAME);
+    }
+
+    /**
+     * Registers an MBean of the logger tracers with the platform MBean server.
+     *
+     * @return boolean whether the MBean was registered, false when one was
+     * registered already under the name.
+     * @throws IllegalStateException when the MBean server rejects the MBean.
+     */
+    static boolean register(StandardMBean mbean, String objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, new ObjectName(objectName));
+            LOGGER.trace("MBean registered as {}", objectName);
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            LOGGER.warn("An MBean is registered as {} already, this one is not.", objectName);
+            return false;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register an MBean as " + objectName, e);
+        }
+    }
+
+    /**
+     * Unregisters an MBean of the logger tracers, when registered.
+     */
+    static void unregister(String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if(server.isRegistered(name)) {
+                server.unregisterMBean(name);
+                LOGGER.trace("MBean {} unregistered", objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Cannot unregister the MBean " + objectName, e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.robusta.logger.tracer;
+
+/**
+ * The JMX management interface of the logger tracers, registered by the
+ * {@link TracerRuntime} under {@value TracerControl#OBJECT_NAME} when its
+ * {@code loggerTracer.jmx} property is {@code true}.
+ *
+ * <p>Lets an operator switch tracing on and off, and sample it, per
+ * package, class or method of a running application, with
+ * {@link TraceRule}s, see {@link LoggerTracerFactory#traceRule(String, String)}.</p>
+ *
+ * @see TracerControl
+ * @since 1.3
+ */
+public interface TracerControlMBean {
+    /**
+     * @return String[] the trace rules in force, configured or set at
+     * runtime, as {@code pattern=action}.
+     */
+    String[] getTraceRules();
+
+    /**
+     * @see LoggerTracerFactory#traceRule(String, String)
+     */
+    void setTraceRule(String pattern, String action);
+
+    /**
+     * @see LoggerTracerFactory#removeTraceRule(String)
+     */
+    void removeTraceRule(String pattern);
+
+    /**
+     * Removes every trace rule set at runtime, the traced methods follow
+     * the configured rules, of the properties and rules file of the
+     * {@link TracerRuntime}, again.
+     */
+    void clearTraceRules();
+
+    /**
+     * @return int the generation of the trace rules in force, which
+     * changes with every change of the rules.
+     */
+    int getTraceRulesGeneration();
+
+    /**
+     * @return String the current configuration of the factory.
+     */
+    String getConfiguration();
+
+    /**
+     * @return boolean whether trace logging is asynchronous.
+     */
+    boolean isAsync();
+}
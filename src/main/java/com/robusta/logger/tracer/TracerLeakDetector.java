@@ -0,0 +1,128 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.robusta.logger.tracer.LoggingStopWatch.STOP_NOT_CALLED_ON_TRACER;
+
+/**
+ * Detects logger-tracers that were garbage collected without
+ * having been stopped.
+ *
+ * <p>A sample (one in {@code sampleInterval}) of the tracers is tracked
+ * with a {@link PhantomReference}, along with the stack trace of where
+ * the tracer was obtained. Stopping a tracer clears its reference, so a
+ * correctly used tracer costs the garbage collector nothing more than
+ * any other object; no tracer is ever put on the finalizer queue.</p>
+ *
+ * <p>Tracked tracers that are collected without having been stopped
+ * are reported as a warning, with their allocation site, on the
+ * tracer's own logger, and counted, see {@link #leakCount()}. Collected
+ * references are reaped whenever a new tracer is tracked or the leak
+ * count is read, there is no reaper thread. Both counts are published
+ * by the {@link TracerMetrics}.</p>
+ *
+ * @since 1.3
+ */
+final class TracerLeakDetector {
+    static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+    private static volatile boolean enabled = true;
+    private static volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+    private static final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<Object>();
+    private static final Set<LeakTracker> TRACKED = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+    private static final LongAdder LEAKS = new LongAdder();
+
+    private TracerLeakDetector() {}
+
+    /**
+     * Turns leak detection on or off and sets the sampling interval,
+     * one in {@code sampleInterval} tracers is tracked.
+     */
+    static void configure(boolean enabled, int sampleInterval) {
+        Assert.checkArgument(sampleInterval > 0, "Leak detection sample interval must be positive");
+        TracerLeakDetector.sampleInterval = sampleInterval;
+        TracerLeakDetector.enabled = enabled;
+    }
+
+    /**
+     * Possibly starts tracking a tracer.
+     *
+     * @param tracer the logger-tracer, not referenced strongly by the tracker.
+     * @param uuid the tracer's trace id, for reporting.
+     * @param logger the tracer's logger, to report on.
+     * @return LeakTracker to be closed when the tracer is stopped, {@code null}
+     * when the tracer is not tracked.
+     */
+    static LeakTracker track(Object tracer, String uuid, Logger logger) {
+        if(!enabled) {
+            return null;
+        }
+        reap();
+        int interval = sampleInterval;
+        if(interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0) {
+            return null;
+        }
+        LeakTracker tracker = new LeakTracker(tracer, uuid, logger);
+        TRACKED.add(tracker);
+        return tracker;
+    }
+
+    /**
+     * @return long number of tracked tracers that were collected without being stopped.
+     */
+    static long leakCount() {
+        reap();
+        return LEAKS.sum();
+    }
+
+    static int trackedCount() {
+        return TRACKED.size();
+    }
+
+    private static void reap() {
+        Reference<?> collected;
+        while ((collected = COLLECTED.poll()) != null) {
+            LeakTracker tracker = (LeakTracker) collected;
+            if(TRACKED.remove(tracker)) {
+                LEAKS.increment();
+                tracker.report();
+            }
+        }
+    }
+
+    /**
+     * Tracks one tracer, {@link #close()} when the tracer is stopped.
+     */
+    static final class LeakTracker extends PhantomReference<Object> {
+        private final String uuid;
+        private final Logger logger;
+        private final Throwable allocationSite;
+
+        private LeakTracker(Object tracer, String uuid, Logger logger) {
+            super(tracer, COLLECTED);
+            this.uuid = uuid;
+            this.logger = logger;
+            this.allocationSite = new Throwable("Logger tracer obtained here");
+        }
+
+        void close() {
+            if(TRACKED.remove(this)) {
+                clear();
+            }
+        }
+
+        private void report() {
+            logger.warn(STOP_NOT_CALLED_ON_TRACER, uuid, allocationSite);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.robusta.logger.tracer;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The self-instrumentation of the logger tracers: what tracing costs and
+ * how asynchronous logging keeps up, as counts and gauges, pulled with
+ * {@link #snapshot()} or read over JMX, see {@link TracerMetricsMBean}.
+ *
+ * <p>The counts are kept in {@link LongAdder}s, striped across the cells
+ * the threads that count contend on, so that instrumenting a traced
+ * execution adds an uncontended increment, not a point of contention
+ * between the traced threads. A count is cumulative since the JVM
+ * started, across asynchronous dispatchers.</p>
+ *
+ * <p>A {@link Snapshot} lists its values by metric name as well, see
+ * {@link Snapshot#toMap()}, for metrics libraries to bridge to, e.g. as a
+ * Micrometer {@code FunctionCounter} or {@code Gauge} per name.</p>
+ *
+ * @since 1.3
+ */
+public final class TracerMetrics implements TracerMetricsMBean {
+    static final String OBJECT_NAME = "com.robusta.logger.tracer:type=TracerMetrics";
+    public static final String STARTED_TRACERS = "loggerTracer.tracers.started";
+    public static final String RULED_OUT_EXECUTIONS = "loggerTracer.executions.ruledOut";
+    public static final String SAMPLED_OUT_EXECUTIONS = "loggerTracer.executions.sampledOut";
+    public static final String DISPATCHED_EVENTS = "loggerTracer.events.dispatched";
+    public static final String WRITTEN_EVENTS = "loggerTracer.events.written";
+    public static final String DROPPED_EVENTS = "loggerTracer.events.dropped";
+    public static final String DEGRADED_EVENTS = "loggerTracer.events.degraded";
+    public static final String PENDING_EVENTS = "loggerTracer.events.pending";
+    public static final String EVENT_CAPACITY = "loggerTracer.events.capacity";
+    public static final String LEAKED_TRACERS = "loggerTracer.tracers.leaked";
+    public static final String TRACKED_TRACERS = "loggerTracer.tracers.tracked";
+
+    private static final LongAdder STARTED = new LongAdder();
+    private static final LongAdder RULED_OUT = new LongAdder();
+    private static final LongAdder SAMPLED_OUT = new LongAdder();
+    private static final LongAdder DISPATCHED = new LongAdder();
+    private static final LongAdder WRITTEN = new LongAdder();
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final LongAdder DEGRADED = new LongAdder();
+
+    private Snapshot lastRead;
+
+    TracerMetrics() {
+        this.lastRead = snapshot();
+    }
+
+    static void tracerStarted() {
+        STARTED.increment();
+    }
+
+    static void ruledOut() {
+        RULED_OUT.increment();
+    }
+
+    static void sampledOut() {
+        SAMPLED_OUT.increment();
+    }
+
+    static void dispatched() {
+        DISPATCHED.increment();
+    }
+
+    static void written(long events) {
+        WRITTEN.add(events);
+    }
+
+    static void dropped() {
+        DROPPED.increment();
+    }
+
+    static void degraded() {
+        DEGRADED.increment();
+    }
+
+    /**
+     * @return Snapshot the counts and gauges as they are now.
+     */
+    public static Snapshot snapshot() {
+        TraceEventDispatcher dispatcher = LoggerTracerFactory.configuration().getDispatcher();
+        return new Snapshot(System.nanoTime(), STARTED.sum(), RULED_OUT.sum(), SAMPLED_OUT.sum(), DISPATCHED.sum(), WRITTEN.sum(),
+                DROPPED.sum(), DEGRADED.sum(), dispatcher != null ? dispatcher.pendingEvents() : 0,
+                dispatcher != null ? dispatcher.eventCapacity() : 0, TracerLeakDetector.leakCount(), TracerLeakDetector.trackedCount(),
+                dispatcher != null);
+    }
+
+    @Override
+    public long getStartedTracers() {
+        return STARTED.sum();
+    }
+
+    @Override
+    public long getRuledOutExecutions() {
+        return RULED_OUT.sum();
+    }
+
+    @Override
+    public long getSampledOutExecutions() {
+        return SAMPLED_OUT.sum();
+    }
+
+    @Override
+    public long getDispatchedEvents() {
+        return DISPATCHED.sum();
+    }
+
+    @Override
+    public long getWrittenEvents() {
+        return WRITTEN.sum();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return DROPPED.sum();
+    }
+
+    @Override
+    public long getDegradedEvents() {
+        return DEGRADED.sum();
+    }
+
+    @Override
+    public int getPendingEvents() {
+        return snapshot().getPendingEvents();
+    }
+
+    @Override
+    public int getEventCapacity() {
+        return snapshot().getEventCapacity();
+    }
+
+    @Override
+    public synchronized double getDispatchedEventsPerSecond() {
+        Snapshot now = snapshot();
+        double perSecond = now.dispatchedEventsPerSecondSince(lastRead);
+        lastRead = now;
+        return perSecond;
+    }
+
+    @Override
+    public long getLeakedTracers() {
+        return TracerLeakDetector.leakCount();
+    }
+
+    @Override
+    public int getTrackedTracers() {
+        return TracerLeakDetector.trackedCount();
+    }
+
+    @Override
+    public boolean isAsync() {
+        return LoggerTracerFactory.configuration().isAsync();
+    }
+
+    /**
+     * @return boolean whether the MBean was registered, false when one was
+     * registered already under {@value #OBJECT_NAME}.
+     */
+    static boolean register() {
+        try {
+            return TracerControl.register(new StandardMBean(new TracerMetrics(), TracerMetricsMBean.class), OBJECT_NAME);
+        } catch (NotCompliantMBeanException e) {
+            throw new IllegalStateException("Cannot register the tracer metrics MBean as " + OBJECT_NAME, e);
+        }
+    }
+
+    static void unregister() {
+        TracerControl.unregister(OBJECT_NAME);
+    }
+
+    /**
+     * The counts and gauges of the logger tracers at a point in time.
+     * Immutable.
+     */
+    public static final class Snapshot {
+        private final long nanoTime;
+        private final long startedTracers;
+        private final long ruledOutExecutions;
+        private final long sampledOutExecutions;
+        private final long dispatchedEvents;
+        private final long writtenEvents;
+        private final long droppedEvents;
+        private final long degradedEvents;
+        private final int pendingEvents;
+        private final int eventCapacity;
+        private final long leakedTracers;
+        private final int trackedTracers;
+        private final boolean async;
+
+        Snapshot(long nanoTime, long startedTracers, long ruledOutExecutions, long sampledOutExecutions, long dispatchedEvents,
+                 long writtenEvents, long droppedEvents, long degradedEvents, int pendingEvents, int eventCapacity, long leakedTracers,
+                 int trackedTracers, boolean async) {
+            this.nanoTime = nanoTime;
+            this.startedTracers = startedTracers;
+            this.ruledOutExecutions = ruledOutExecutions;
+            this.sampledOutExecutions = sampledOutExecutions;
+            this.dispatchedEvents = dispatchedEvents;
+            this.writtenEvents = writtenEvents;
+            this.droppedEvents = droppedEvents;
+            this.degradedEvents = degradedEvents;
+            this.pendingEvents = pendingEvents;
+            this.eventCapacity = eventCapacity;
+            this.leakedTracers = leakedTracers;
+            this.trackedTracers = trackedTracers;
+            this.async = async;
+        }
+
+        public long getStartedTracers() {
+            return startedTracers;
+        }
+
+        public long getRuledOutExecutions() {
+            return ruledOutExecutions;
+        }
+
+        public long getSampledOutExecutions() {
+            return sampledOutExecutions;
+        }
+
+        public long getDispatchedEvents() {
+            return dispatchedEvents;
+        }
+
+        public long getWrittenEvents() {
+            return writtenEvents;
+        }
+
+        public long getDroppedEvents() {
+            return droppedEvents;
+        }
+
+        public long getDegradedEvents() {
+            return degradedEvents;
+        }
+
+        /**
+         * @return int number of trace events waiting to be logged, 0 when logging synchronously.
+         */
+        public int getPendingEvents() {
+            return pendingEvents;
+        }
+
+        /**
+         * @return int number of trace events that can wait to be logged, -1 when unbounded or unknown.
+         */
+        public int getEventCapacity() {
+            return eventCapacity;
+        }
+
+        public long getLeakedTracers() {
+            return leakedTracers;
+        }
+
+        public int getTrackedTracers() {
+            return trackedTracers;
+        }
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        /**
+         * @return double trace events dispatched per second between the earlier snapshot and this one.
+         */
+        public double dispatchedEventsPerSecondSince(Snapshot earlier) {
+            long elapsedNanos = nanoTime - earlier.nanoTime;
+            return elapsedNanos <= 0 ? 0d : (dispatchedEvents - earlier.dispatchedEvents) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * @return Map of the values by metric name, in a stable order.
+         */
+        public Map<String, Long> toMap() {
+            Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+            metrics.put(STARTED_TRACERS, startedTracers);
+            metrics.put(RULED_OUT_EXECUTIONS, ruledOutExecutions);
+            metrics.put(SAMPLED_OUT_EXECUTIONS, sampledOutExecutions);
+            metrics.put(DISPATCHED_EVENTS, dispatchedEvents);
+            metrics.put(WRITTEN_EVENTS, writtenEvents);
+            metrics.put(DROPPED_EVENTS, droppedEvents);
+            metrics.put(DEGRADED_EVENTS, degradedEvents);
+            metrics.put(PENDING_EVENTS, (long) pendingEvents);
+            metrics.put(EVENT_CAPACITY, (long) eventCapacity);
+            metrics.put(LEAKED_TRACERS, leakedTracers);
+            metrics.put(TRACKED_TRACERS, (long) trackedTracers);
+            return Collections.unmodifiableMap(metrics);
+        }
+
+        @Override
+        public String toString() {
+            return "TracerMetrics" + toMap();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.robusta.logger.tracer;
+
+/**
+ * The JMX management interface of the self-instrumentation of the logger
+ * tracers, registered by the {@link TracerRuntime} under
+ * {@value TracerMetrics#OBJECT_NAME} when its {@code loggerTracer.jmx}
+ * property is {@code true}.
+ *
+ * <p>The counts are cumulative since the JVM started, the other attributes
+ * are read as they are at the time.</p>
+ *
+ * @see TracerMetrics
+ * @since 1.3
+ */
+public interface TracerMetricsMBean {
+    /**
+     * @return long number of logger tracers started by the factory.
+     */
+    long getStartedTracers();
+
+    /**
+     * @return long number of executions not traced because a trace rule turned their method off.
+     */
+    long getRuledOutExecutions();
+
+    /**
+     * @return long number of executions whose trace the sampler did not log.
+     */
+    long getSampledOutExecutions();
+
+    /**
+     * @return long number of trace events dispatched for asynchronous logging.
+     */
+    long getDispatchedEvents();
+
+    /**
+     * @return long number of trace events logged asynchronously.
+     */
+    long getWrittenEvents();
+
+    /**
+     * @return long number of trace events dispatched but not logged, see {@link OverflowPolicy}.
+     */
+    long getDroppedEvents();
+
+    /**
+     * @return long number of trace events whose dispatch cost the traced
+     * thread a wait or a synchronous log operation.
+     */
+    long getDegradedEvents();
+
+    /**
+     * @return int number of trace events dispatched and waiting to be
+     * logged, how far logging lags behind the traced threads.
+     */
+    int getPendingEvents();
+
+    /**
+     * @return int number of trace events that can wait to be logged, -1 when unbounded or unknown.
+     */
+    int getEventCapacity();
+
+    /**
+     * @return double trace events dispatched per second since the attribute was last read.
+     */
+    double getDispatchedEventsPerSecond();
+
+    /**
+     * @return long number of sampled logger tracers collected without having been stopped.
+     */
+    long getLeakedTracers();
+
+    /**
+     * @return int number of sampled logger tracers tracked for leaks.
+     */
+    int getTrackedTracers();
+
+    /**
+     * @return boolean whether trace logging is asynchronous.
+     */
+    boolean isAsync();
+}
@@ -0,0 +1,625 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts and stops asynchronous trace logging, and configures the
+ * {@link LoggerTracerFactory}, in any application: batch jobs, servers
+ * that are not servlet containers, tests. Web applications get the same
+ * with the {@link LoggerTracerServletContextListener}.
+ *
+ * <p>A runtime is started from properties, see {@link #start(Properties)},
+ * or from the system properties, see {@link #start()}, and closed when the
+ * application is done, which waits for the pending trace events to be
+ * logged and gives the factory the settings it had before back:
+ * <pre>
+ *     try (TracerRuntime runtime = TracerRuntime.start()) {
+ *         ...
+ *     }
+ * </pre>
+ * A single runtime runs at a time. With the system property
+ * {@value #AUTO_START_PROPERTY} set to {@code true}, a runtime is started
+ * from the system properties as soon as a logger tracer or a TracePoint is
+ * first asked for from the factory, and closed
+ * by a JVM shutdown hook, unless {@value #ASYNC_SHUTDOWN_HOOK_PROPERTY}
+ * is set to {@code false}.</p>
+ *
+ * <p>Before the properties are applied, the {@link TracerRuntimeCustomizer}s
+ * registered with the {@link ServiceLoader} of the context class loader can
+ * add to or override them.</p>
+ *
+ * <p>Asynchronous trace logging is on unless the property
+ * {@value #ASYNC_PROPERTY} is set to {@code false}. The ring buffer backing
+ * it can be tuned with the following optional properties:
+ * <ul>
+ *     <li>{@value #ASYNC_CAPACITY_PROPERTY} - a power of two, defaults to
+ *     {@value RingBufferTraceEventDispatcher#DEFAULT_CAPACITY}</li>
+ *     <li>{@value #ASYNC_STRIPES_PROPERTY} - the number of ring buffers the traced
+ *     threads are spread over, a power of two or {@code perProcessor}, defaults
+ *     to 1</li>
+ *     <li>{@value #ASYNC_WAIT_STRATEGY_PROPERTY} - one of SPIN, YIELD or PARK,
+ *     defaults to PARK</li>
+ *     <li>{@value #ASYNC_OVERFLOW_POLICY_PROPERTY} - one of DROP_NEWEST, DROP_OLDEST,
+ *     BLOCK, LOG_SYNCHRONOUSLY or SAMPLE, defaults to BLOCK</li>
+ *     <li>{@value #ASYNC_BLOCK_TIMEOUT_MILLIS_PROPERTY} - defaults to
+ *     {@value RingBufferTraceEventDispatcher#DEFAULT_BLOCK_TIMEOUT_MILLIS}</li>
+ *     <li>{@value #ASYNC_SAMPLE_RATE_PROPERTY} - defaults to
+ *     {@value RingBufferTraceEventDispatcher#DEFAULT_SAMPLE_RATE}</li>
+ *     <li>{@value #ASYNC_BATCH_SIZE_PROPERTY} - defaults to
+ *     {@value RingBufferTraceEventDispatcher#DEFAULT_BATCH_SIZE}</li>
+ *     <li>{@value #ASYNC_BATCH_TIME_BUDGET_MICROS_PROPERTY} - defaults to
+ *     {@value RingBufferTraceEventDispatcher#DEFAULT_BATCH_TIME_BUDGET_MICROS}</li>
+ *     <li>{@value #ASYNC_SINK_FILE_PROPERTY} - a file the trace events are
+ *     appended to, as lines of text, instead of being logged</li>
+ *     <li>{@value #ASYNC_JOURNAL_DIRECTORY_PROPERTY} - a directory the trace events
+ *     are journaled to, as binary records, instead of being logged; decoded
+ *     with the {@link TraceJournalDecoder}</li>
+ *     <li>{@value #ASYNC_JOURNAL_SEGMENT_BYTES_PROPERTY} - defaults to
+ *     {@value JournalTraceEventSink#DEFAULT_SEGMENT_BYTES}</li>
+ *     <li>{@value #ASYNC_JOURNAL_RETAINED_SEGMENTS_PROPERTY} - defaults to
+ *     {@value JournalTraceEventSink#DEFAULT_RETAINED_SEGMENTS}</li>
+ *     <li>{@value #ASYNC_DRAIN_TIMEOUT_MILLIS_PROPERTY} - how long the pending trace
+ *     events are waited for when the runtime is closed, the events still
+ *     pending then are abandoned, defaults to
+ *     {@value LoggerTracerFactory#DEFAULT_DRAIN_TIMEOUT_MILLIS}</li>
+ *     <li>{@value #ASYNC_SHUTDOWN_HOOK_PROPERTY} - whether asynchronous logging is
+ *     shut down by a JVM shutdown hook, defaults to {@code false} ({@code true}
+ *     when auto-started)</li>
+ * </ul></p>
+ *
+ * <p>Pooled logger tracers are enabled with the optional property
+ * {@value #POOLED_TRACERS_PROPERTY} set to {@code true}, and pooled from pools
+ * shared by the threads, for traced code running on virtual threads, with the
+ * optional property {@value #VIRTUAL_THREADS_PROPERTY} set to {@code true};
+ * nested tracing with the optional property {@value #NESTED_TRACING_PROPERTY}
+ * set to {@code true}. The call tree profile of the traced methods is enabled
+ * with the optional property {@value #CALL_TREE_PROFILING_PROPERTY} set to
+ * {@code true}, and holds up to {@value #CALL_TREE_MAX_NODES_PROPERTY} nodes,
+ * defaults to {@value CallTreeProfile#DEFAULT_MAX_NODES}.</p>
+ *
+ * <p>Detection of logger tracers that are never stopped is controlled with
+ * the optional properties {@value #LEAK_DETECTION_PROPERTY} ({@code true}
+ * or {@code false}, defaults to {@code true}) and
+ * {@value #LEAK_DETECTION_SAMPLE_INTERVAL_PROPERTY} (defaults to
+ * {@value TracerLeakDetector#DEFAULT_SAMPLE_INTERVAL}).</p>
+ *
+ * <p>Aggregation of the lap and execution latencies of the traced methods
+ * is enabled with the optional property {@value #LATENCY_AGGREGATION_PROPERTY}
+ * set to {@code true}. A latency summary is logged every
+ * {@value #LATENCY_SUMMARY_INTERVAL_SECONDS_PROPERTY} seconds, defaults to
+ * {@value LatencyAggregation#DEFAULT_SUMMARY_INTERVAL_SECONDS}, 0 for none.</p>
+ *
+ * <p>Lap and execution times are logged in the unit set with the optional
+ * property {@value #TIME_UNIT_PROPERTY}, one of {@code NANOSECONDS},
+ * {@code MICROSECONDS} or {@code MILLISECONDS} (the default).</p>
+ *
+ * <p>The trace id generator is chosen with the optional property
+ * {@value #TRACE_ID_GENERATOR_PROPERTY}, one of {@code sequential} (the default),
+ * {@code w3c} or the class name of a {@link TraceIdGenerator} implementation
+ * with a public no-argument constructor.</p>
+ *
+ * <p>Method arguments are captured as set with the optional property
+ * {@value #ARGUMENT_CAPTURE_PROPERTY}, one of {@code passThrough}, {@code snapshot}
+ * (the default), {@code deepCopy} or the class name of an {@link ArgumentCapture}
+ * implementation with a public no-argument constructor. A snapshot captures up to
+ * {@value #ARGUMENT_CAPTURE_MAX_ELEMENTS_PROPERTY} elements per argument, defaults to
+ * {@value ArgumentCaptures#DEFAULT_MAX_ELEMENTS}.</p>
+ *
+ * <p>Method arguments are rendered within the budget set with the optional
+ * properties {@value #ARGUMENT_RENDERING_MAX_LENGTH_PROPERTY} (chars per
+ * argument, defaults to {@value ArgumentRenderer#DEFAULT_MAX_LENGTH}),
+ * {@value #ARGUMENT_RENDERING_MAX_ELEMENTS_PROPERTY} (elements per collection,
+ * map or array, defaults to {@value ArgumentRenderer#DEFAULT_MAX_ELEMENTS}) and
+ * {@value #ARGUMENT_RENDERING_MAX_DEPTH_PROPERTY} (levels of nested collections,
+ * defaults to {@value ArgumentRenderer#DEFAULT_MAX_DEPTH}).</p>
+ *
+ * <p>Trace logging is sampled as set with the optional properties
+ * {@value #SAMPLING_ONE_IN_PROPERTY} (one in n executions, at random),
+ * {@value #SAMPLING_RATE_PER_SECOND_PROPERTY} (executions per second and traced
+ * method) with {@value #SAMPLING_BURST_PROPERTY} (defaults to 1) and
+ * {@value #SAMPLING_TAIL_THRESHOLD_MILLIS_PROPERTY} (executions sampled out are
+ * logged nevertheless when slower). All executions are logged by default.</p>
+ *
+ * <p>The slow-call-only mode, in which an execution is logged only when it is
+ * slower than the threshold of its method, is enabled with the optional
+ * property {@value #SLOW_CALLS_THRESHOLD_MILLIS_PROPERTY}, the default
+ * threshold. Methods get thresholds of their own with the optional property
+ * {@value #SLOW_CALLS_METHOD_THRESHOLDS_PROPERTY}, a comma separated
+ * list of {@code ClassName.methodName=millis}.</p>
+ *
+ * <p>Tracing is switched on and off, and sampled, per package, class or
+ * method with trace rules (see {@link TraceRule}), set with the optional
+ * property {@value #TRACE_RULES_PROPERTY}, a comma separated list of
+ * {@code pattern=action}, and with the optional property
+ * {@value #TRACE_RULES_FILE_PROPERTY}, a properties file of
+ * {@code pattern=action} lines that is watched for changes every
+ * {@value #TRACE_RULES_FILE_POLL_SECONDS_PROPERTY} seconds, defaults to
+ * {@value TraceRulesFileWatcher#DEFAULT_POLL_SECONDS}, 0 for never. The
+ * rules of the file replace those of the last change, not the rules set
+ * at runtime, which take precedence over them. With
+ * the optional property {@value #JMX_PROPERTY} set to {@code true} the
+ * {@link TracerControlMBean} is registered, to change the rules over JMX,
+ * along with the {@link TracerMetricsMBean}, until the runtime is
+ * closed.</p>
+ *
+ * @see OverflowPolicy
+ * @see TraceIdGenerators
+ * @see ArgumentCaptures
+ * @see Samplers
+ * @since 1.3
+ */
+public final class TracerRuntime implements AutoCloseable {
+    public static final String AUTO_START_PROPERTY = "loggerTracer.autoStart";
+    public static final String ASYNC_PROPERTY = "loggerTracer.async";
+    public static final String ASYNC_CAPACITY_PROPERTY = "loggerTracer.async.capacity";
+    public static final String ASYNC_STRIPES_PROPERTY = "loggerTracer.async.stripes";
+    public static final String ASYNC_WAIT_STRATEGY_PROPERTY = "loggerTracer.async.waitStrategy";
+    public static final String ASYNC_OVERFLOW_POLICY_PROPERTY = "loggerTracer.async.overflowPolicy";
+    public static final String ASYNC_BLOCK_TIMEOUT_MILLIS_PROPERTY = "loggerTracer.async.blockTimeoutMillis";
+    public static final String ASYNC_SAMPLE_RATE_PROPERTY = "loggerTracer.async.sampleRate";
+    public static final String ASYNC_BATCH_SIZE_PROPERTY = "loggerTracer.async.batchSize";
+    public static final String ASYNC_BATCH_TIME_BUDGET_MICROS_PROPERTY = "loggerTracer.async.batchTimeBudgetMicros";
+    public static final String ASYNC_SINK_FILE_PROPERTY = "loggerTracer.async.sinkFile";
+    public static final String ASYNC_JOURNAL_DIRECTORY_PROPERTY = "loggerTracer.async.journalDirectory";
+    public static final String ASYNC_JOURNAL_SEGMENT_BYTES_PROPERTY = "loggerTracer.async.journalSegmentBytes";
+    public static final String ASYNC_JOURNAL_RETAINED_SEGMENTS_PROPERTY = "loggerTracer.async.journalRetainedSegments";
+    public static final String ASYNC_DRAIN_TIMEOUT_MILLIS_PROPERTY = "loggerTracer.async.drainTimeoutMillis";
+    public static final String ASYNC_SHUTDOWN_HOOK_PROPERTY = "loggerTracer.async.shutdownHook";
+    public static final String POOLED_TRACERS_PROPERTY = "loggerTracer.pooled";
+    public static final String VIRTUAL_THREADS_PROPERTY = "loggerTracer.virtualThreads";
+    public static final String NESTED_TRACING_PROPERTY = "loggerTracer.nested";
+    public static final String CALL_TREE_PROFILING_PROPERTY = "loggerTracer.callTree";
+    public static final String CALL_TREE_MAX_NODES_PROPERTY = "loggerTracer.callTree.maxNodes";
+    public static final String LEAK_DETECTION_PROPERTY = "loggerTracer.leakDetection";
+    public static final String LEAK_DETECTION_SAMPLE_INTERVAL_PROPERTY = "loggerTracer.leakDetection.sampleInterval";
+    public static final String TRACE_ID_GENERATOR_PROPERTY = "loggerTracer.traceIdGenerator";
+    public static final String TIME_UNIT_PROPERTY = "loggerTracer.timeUnit";
+    public static final String ARGUMENT_CAPTURE_PROPERTY = "loggerTracer.argumentCapture";
+    public static final String ARGUMENT_CAPTURE_MAX_ELEMENTS_PROPERTY = "loggerTracer.argumentCapture.maxElements";
+    public static final String ARGUMENT_RENDERING_MAX_LENGTH_PROPERTY = "loggerTracer.argumentRendering.maxLength";
+    public static final String ARGUMENT_RENDERING_MAX_ELEMENTS_PROPERTY = "loggerTracer.argumentRendering.maxElements";
+    public static final String ARGUMENT_RENDERING_MAX_DEPTH_PROPERTY = "loggerTracer.argumentRendering.maxDepth";
+    public static final String SAMPLING_ONE_IN_PROPERTY = "loggerTracer.sampling.oneIn";
+    public static final String SAMPLING_RATE_PER_SECOND_PROPERTY = "loggerTracer.sampling.ratePerSecond";
+    public static final String SAMPLING_BURST_PROPERTY = "loggerTracer.sampling.burst";
+    public static final String SAMPLING_TAIL_THRESHOLD_MILLIS_PROPERTY = "loggerTracer.sampling.tailThresholdMillis";
+    public static final String SLOW_CALLS_THRESHOLD_MILLIS_PROPERTY = "loggerTracer.slowCallsOnly.thresholdMillis";
+    public static final String SLOW_CALLS_METHOD_THRESHOLDS_PROPERTY = "loggerTracer.slowCallsOnly.methodThresholds";
+    public static final String LATENCY_AGGREGATION_PROPERTY = "loggerTracer.latencyAggregation";
+    public static final String LATENCY_SUMMARY_INTERVAL_SECONDS_PROPERTY = "loggerTracer.latencyAggregation.summaryIntervalSeconds";
+    public static final String TRACE_RULES_PROPERTY = "loggerTracer.rules";
+    public static final String TRACE_RULES_FILE_PROPERTY = "loggerTracer.rules.file";
+    public static final String TRACE_RULES_FILE_POLL_SECONDS_PROPERTY = "loggerTracer.rules.file.pollSeconds";
+    public static final String JMX_PROPERTY = "loggerTracer.jmx";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TracerRuntime.class);
+    private static TracerRuntime current;
+    /** Whether the system properties were checked for auto-starting already, see {@link #autoStartOnce()}. */
+    private static volatile boolean autoStartAttempted;
+
+    private final TracerConfig previous;
+    private final List<String> slowCallMethods;
+    private final boolean async;
+    private final TraceRulesFileWatcher rulesFileWatcher;
+    private final boolean controlMBean;
+    private final boolean metricsMBean;
+    private boolean closed;
+
+    private TracerRuntime(TracerConfig previous, List<String> slowCallMethods, boolean async, TraceRulesFileWatcher rulesFileWatcher,
+                          boolean controlMBean, boolean metricsMBean) {
+        this.previous = previous;
+        this.slowCallMethods = slowCallMethods;
+        this.async = async;
+        this.rulesFileWatcher = rulesFileWatcher;
+        this.controlMBean = controlMBean;
+        this.metricsMBean = metricsMBean;
+    }
+
+    /**
+     * Starts a runtime configured by the system properties.
+     *
+     * @return TracerRuntime to be closed when the application is done.
+     * @throws IllegalStateException when a runtime is running already.
+     * @see #start(Properties)
+     */
+    public static TracerRuntime start() {
+        return start(System.getProperties());
+    }
+
+    /**
+     * Starts a runtime configured by the given properties, once customized
+     * by the registered {@link TracerRuntimeCustomizer}s. The properties
+     * that are not set leave the factory as it is.
+     *
+     * @param properties Properties, the {@code loggerTracer.*} ones are read.
+     * @return TracerRuntime to be closed when the application is done.
+     * @throws IllegalStateException when a runtime is running already.
+     * @throws IllegalArgumentException when a property has an invalid value.
+     */
+    public static synchronized TracerRuntime start(Properties properties) {
+        Assert.notNull(properties, "Non-null properties are mandatory to start the logger tracer runtime");
+        if(current != null) {
+            throw new IllegalStateException("The logger tracer runtime is running already, it must be closed first");
+        }
+        Properties customized = customize(properties);
+        boolean async = !"false".equalsIgnoreCase(property(customized, ASYNC_PROPERTY));
+        TracerConfig previous = LoggerTracerFactory.configuration();
+        if(async && previous.isAsync()) {
+            throw new IllegalStateException("Asynchronous logging was started without the logger tracer runtime, it must be shut down first");
+        }
+        List<String> slowCallMethods = new ArrayList<String>();
+        TraceRulesFileWatcher rulesFileWatcher = null;
+        boolean controlMBean = false;
+        boolean metricsMBean = false;
+        try {
+            configure(customized, slowCallMethods);
+            rulesFileWatcher = traceRules(customized);
+            if(Boolean.parseBoolean(property(customized, JMX_PROPERTY))) {
+                controlMBean = TracerControl.register();
+                metricsMBean = TracerMetrics.register();
+            }
+            if(async) {
+                startAsync(customized);
+            }
+        } catch (RuntimeException e) {
+            stopControl(rulesFileWatcher, controlMBean, metricsMBean);
+            restore(previous, slowCallMethods);
+            throw e;
+        }
+        current = new TracerRuntime(previous, slowCallMethods, async, rulesFileWatcher, controlMBean, metricsMBean);
+        LOGGER.trace("Logger tracer runtime started, asynchronous logging: {}", async);
+        return current;
+    }
+
+    private static void startAsync(Properties properties) {
+        LoggerTracerFactory.startAsync(
+                intProperty(properties, ASYNC_CAPACITY_PROPERTY, RingBufferTraceEventDispatcher.DEFAULT_CAPACITY),
+                WaitStrategy.valueOf(property(properties, ASYNC_WAIT_STRATEGY_PROPERTY, WaitStrategy.PARK.name()).toUpperCase()),
+                OverflowPolicy.valueOf(property(properties, ASYNC_OVERFLOW_POLICY_PROPERTY,
+                        RingBufferTraceEventDispatcher.DEFAULT_OVERFLOW_POLICY.name()).toUpperCase()),
+                longProperty(properties, ASYNC_BLOCK_TIMEOUT_MILLIS_PROPERTY, RingBufferTraceEventDispatcher.DEFAULT_BLOCK_TIMEOUT_MILLIS),
+                intProperty(properties, ASYNC_SAMPLE_RATE_PROPERTY, RingBufferTraceEventDispatcher.DEFAULT_SAMPLE_RATE),
+                intProperty(properties, ASYNC_BATCH_SIZE_PROPERTY, RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE),
+                longProperty(properties, ASYNC_BATCH_TIME_BUDGET_MICROS_PROPERTY, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS),
+                sink(properties),
+                stripes(property(properties, ASYNC_STRIPES_PROPERTY)));
+    }
+
+    /**
+     * Starts a runtime with the given properties, or, when one of them has
+     * an invalid value, logs it and starts a runtime with the defaults, so
+     * that a typo does not keep the application from starting.
+     *
+     * @return TracerRuntime started, null when a runtime is running
+     * already, which is left as it is.
+     */
+    static synchronized TracerRuntime startUnlessRunning(Properties properties) {
+        if(current != null) {
+            return null;
+        }
+        try {
+            return start(properties);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Logger tracer runtime could not be started with the given properties, it is started with the defaults.", e);
+            Properties defaults = new Properties();
+            String shutdownHook = property(properties, ASYNC_SHUTDOWN_HOOK_PROPERTY);
+            if(shutdownHook != null) {
+                defaults.setProperty(ASYNC_SHUTDOWN_HOOK_PROPERTY, shutdownHook);
+            }
+            return start(defaults);
+        }
+    }
+
+    /**
+     * Starts a runtime from the system properties, when the
+     * {@value #AUTO_START_PROPERTY} system property is {@code true} and
+     * none is running, the first time it is invoked. Invoked by the
+     * factory as the first logger tracer or TracePoint is asked for, not
+     * when the factory is initialized, so that loading the factory has no
+     * side effects; later invocations cost a volatile read.
+     */
+    static void autoStartOnce() {
+        if(!autoStartAttempted) {
+            autoStartFromSystemProperties();
+        }
+    }
+
+    private static synchronized void autoStartFromSystemProperties() {
+        if(autoStartAttempted) {
+            return;
+        }
+        autoStartAttempted = true;
+        try {
+            autoStart(System.getProperties());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Logger tracer runtime could not be started from the system properties, trace logging stays synchronous.", e);
+        }
+    }
+
+    static TracerRuntime autoStart(Properties properties) {
+        if(!Boolean.parseBoolean(property(properties, AUTO_START_PROPERTY))) {
+            return null;
+        }
+        Properties withShutdownHook = new Properties();
+        withShutdownHook.setProperty(ASYNC_SHUTDOWN_HOOK_PROPERTY, Boolean.TRUE.toString());
+        for (String name : properties.stringPropertyNames()) {
+            withShutdownHook.setProperty(name, properties.getProperty(name));
+        }
+        return startUnlessRunning(withShutdownHook);
+    }
+
+    /**
+     * @return boolean whether a runtime is running.
+     */
+    public static synchronized boolean isRunning() {
+        return current != null;
+    }
+
+    /**
+     * @return boolean whether trace logging is asynchronous while the runtime runs.
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Stops the runtime: stops watching the trace rules file, unregisters
+     * the MBeans, shuts asynchronous logging down,
+     * waiting for the pending trace events up to the drain timeout, and
+     * gives the factory the settings it had before the runtime was
+     * started back, trace rules included, leak detection aside, and
+     * releases the closing thread's tracing state, see
+     * {@link LoggerTracerFactory#releaseThreadLocals()}. Closing a closed
+     * runtime does nothing.
+     */
+    @Override
+    public void close() {
+        synchronized (TracerRuntime.class) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            current = null;
+            stopControl(rulesFileWatcher, controlMBean, metricsMBean);
+            if(async) {
+                LoggerTracerFactory.shutdownAsync();
+            }
+            restore(previous, slowCallMethods);
+            LoggerTracerFactory.releaseThreadLocals();
+            LOGGER.trace("Logger tracer runtime closed.");
+        }
+    }
+
+    private static Properties customize(Properties properties) {
+        Properties customized = new Properties();
+        for (String name : properties.stringPropertyNames()) {
+            customized.setProperty(name, properties.getProperty(name));
+        }
+        for (TracerRuntimeCustomizer customizer : ServiceLoader.load(TracerRuntimeCustomizer.class,
+                Thread.currentThread().getContextClassLoader())) {
+            LOGGER.trace("Logger tracer runtime properties customized by {}", customizer);
+            customizer.customize(customized);
+        }
+        return customized;
+    }
+
+    private static TraceRulesFileWatcher traceRules(Properties properties) {
+        String rules = property(properties, TRACE_RULES_PROPERTY);
+        Map<String, String> actions = new LinkedHashMap<String, String>();
+        if(rules != null) {
+            for (String rule : rules.split(",")) {
+                int separator = rule.indexOf('=');
+                if(separator < 0) {
+                    throw new IllegalArgumentException("Trace rule '" + rule + "' is not pattern=action");
+                }
+                actions.put(rule.substring(0, separator).trim(), rule.substring(separator + 1).trim());
+            }
+        }
+        String rulesFile = property(properties, TRACE_RULES_FILE_PROPERTY);
+        if(rulesFile != null) {
+            return TraceRulesFileWatcher.start(new File(rulesFile), actions,
+                    longProperty(properties, TRACE_RULES_FILE_POLL_SECONDS_PROPERTY, TraceRulesFileWatcher.DEFAULT_POLL_SECONDS));
+        }
+        if(rules != null) {
+            LoggerTracerFactory.configuredTraceRules(actions);
+        }
+        return null;
+    }
+
+    private static void stopControl(TraceRulesFileWatcher rulesFileWatcher, boolean controlMBean, boolean metricsMBean) {
+        if(rulesFileWatcher != null) {
+            rulesFileWatcher.close();
+        }
+        if(controlMBean) {
+            TracerControl.unregister();
+        }
+        if(metricsMBean) {
+            TracerMetrics.unregister();
+        }
+    }
+
+    private static void restore(TracerConfig previous, List<String> slowCallMethods) {
+        LoggerTracerFactory.asyncShutdown(LoggerTracerFactory.DEFAULT_DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, false);
+        for (String classDotMethodName : slowCallMethods) {
+            LoggerTracerFactory.removeSlowCallThreshold(classDotMethodName);
+        }
+        LoggerTracerFactory.configure(previous);
+    }
+
+    private static void configure(Properties properties, List<String> slowCallMethods) {
+        String drainTimeoutMillis = property(properties, ASYNC_DRAIN_TIMEOUT_MILLIS_PROPERTY);
+        String shutdownHook = property(properties, ASYNC_SHUTDOWN_HOOK_PROPERTY);
+        if(drainTimeoutMillis != null || shutdownHook != null) {
+            LoggerTracerFactory.asyncShutdown(
+                    drainTimeoutMillis == null ? LoggerTracerFactory.DEFAULT_DRAIN_TIMEOUT_MILLIS : Long.parseLong(drainTimeoutMillis),
+                    TimeUnit.MILLISECONDS, Boolean.parseBoolean(shutdownHook));
+        }
+        String pooledTracers = property(properties, POOLED_TRACERS_PROPERTY);
+        if(pooledTracers != null) {
+            LoggerTracerFactory.pooledTracers(Boolean.parseBoolean(pooledTracers));
+        }
+        String virtualThreads = property(properties, VIRTUAL_THREADS_PROPERTY);
+        if(virtualThreads != null) {
+            LoggerTracerFactory.virtualThreads(Boolean.parseBoolean(virtualThreads));
+        }
+        String nestedTracing = property(properties, NESTED_TRACING_PROPERTY);
+        if(nestedTracing != null) {
+            LoggerTracerFactory.nestedTracing(Boolean.parseBoolean(nestedTracing));
+        }
+        String callTreeProfiling = property(properties, CALL_TREE_PROFILING_PROPERTY);
+        if(callTreeProfiling != null) {
+            LoggerTracerFactory.callTreeProfiling(Boolean.parseBoolean(callTreeProfiling),
+                    intProperty(properties, CALL_TREE_MAX_NODES_PROPERTY, CallTreeProfile.DEFAULT_MAX_NODES));
+        }
+        String leakDetection = property(properties, LEAK_DETECTION_PROPERTY);
+        String leakDetectionSampleInterval = property(properties, LEAK_DETECTION_SAMPLE_INTERVAL_PROPERTY);
+        if(leakDetection != null || leakDetectionSampleInterval != null) {
+            LoggerTracerFactory.leakDetection(leakDetection == null || Boolean.parseBoolean(leakDetection),
+                    leakDetectionSampleInterval == null ? TracerLeakDetector.DEFAULT_SAMPLE_INTERVAL : Integer.parseInt(leakDetectionSampleInterval));
+        }
+        String traceIdGenerator = property(properties, TRACE_ID_GENERATOR_PROPERTY);
+        if(traceIdGenerator != null) {
+            LoggerTracerFactory.traceIdGenerator(traceIdGenerator(traceIdGenerator));
+        }
+        String timeUnit = property(properties, TIME_UNIT_PROPERTY);
+        if(timeUnit != null) {
+            LoggerTracerFactory.timeUnit(TimeUnit.valueOf(timeUnit.toUpperCase()));
+        }
+        String argumentCapture = property(properties, ARGUMENT_CAPTURE_PROPERTY);
+        String argumentCaptureMaxElements = property(properties, ARGUMENT_CAPTURE_MAX_ELEMENTS_PROPERTY);
+        if(argumentCapture != null || argumentCaptureMaxElements != null) {
+            LoggerTracerFactory.argumentCapture(argumentCapture(argumentCapture == null ? "snapshot" : argumentCapture,
+                    argumentCaptureMaxElements == null ? ArgumentCaptures.DEFAULT_MAX_ELEMENTS : Integer.parseInt(argumentCaptureMaxElements)));
+        }
+        String renderingMaxLength = property(properties, ARGUMENT_RENDERING_MAX_LENGTH_PROPERTY);
+        String renderingMaxElements = property(properties, ARGUMENT_RENDERING_MAX_ELEMENTS_PROPERTY);
+        String renderingMaxDepth = property(properties, ARGUMENT_RENDERING_MAX_DEPTH_PROPERTY);
+        if(renderingMaxLength != null || renderingMaxElements != null || renderingMaxDepth != null) {
+            LoggerTracerFactory.argumentRendering(
+                    renderingMaxLength == null ? ArgumentRenderer.DEFAULT_MAX_LENGTH : Integer.parseInt(renderingMaxLength),
+                    renderingMaxElements == null ? ArgumentRenderer.DEFAULT_MAX_ELEMENTS : Integer.parseInt(renderingMaxElements),
+                    renderingMaxDepth == null ? ArgumentRenderer.DEFAULT_MAX_DEPTH : Integer.parseInt(renderingMaxDepth));
+        }
+        String samplingOneIn = property(properties, SAMPLING_ONE_IN_PROPERTY);
+        String samplingRatePerSecond = property(properties, SAMPLING_RATE_PER_SECOND_PROPERTY);
+        String tailThresholdMillis = property(properties, SAMPLING_TAIL_THRESHOLD_MILLIS_PROPERTY);
+        if(samplingOneIn != null || samplingRatePerSecond != null || tailThresholdMillis != null) {
+            LoggerTracerFactory.sampling(sampler(samplingOneIn, samplingRatePerSecond, property(properties, SAMPLING_BURST_PROPERTY)),
+                    tailThresholdMillis == null ? 0 : Long.parseLong(tailThresholdMillis), TimeUnit.MILLISECONDS);
+        }
+        String slowCallsThresholdMillis = property(properties, SLOW_CALLS_THRESHOLD_MILLIS_PROPERTY);
+        if(slowCallsThresholdMillis != null) {
+            LoggerTracerFactory.slowCallsOnly(true, Long.parseLong(slowCallsThresholdMillis), TimeUnit.MILLISECONDS);
+        }
+        String slowCallsMethodThresholds = property(properties, SLOW_CALLS_METHOD_THRESHOLDS_PROPERTY);
+        if(slowCallsMethodThresholds != null) {
+            for (String methodThreshold : slowCallsMethodThresholds.split(",")) {
+                int separator = methodThreshold.lastIndexOf('=');
+                if(separator < 0) {
+                    throw new IllegalArgumentException("Slow call threshold '" + methodThreshold + "' is not ClassName.methodName=millis");
+                }
+                String classDotMethodName = methodThreshold.substring(0, separator).trim();
+                LoggerTracerFactory.slowCallThreshold(classDotMethodName,
+                        Long.parseLong(methodThreshold.substring(separator + 1).trim()), TimeUnit.MILLISECONDS);
+                slowCallMethods.add(classDotMethodName);
+            }
+        }
+        String latencyAggregation = property(properties, LATENCY_AGGREGATION_PROPERTY);
+        if(latencyAggregation != null) {
+            LoggerTracerFactory.latencyAggregation(Boolean.parseBoolean(latencyAggregation),
+                    longProperty(properties, LATENCY_SUMMARY_INTERVAL_SECONDS_PROPERTY, LatencyAggregation.DEFAULT_SUMMARY_INTERVAL_SECONDS));
+        }
+    }
+
+    private static TraceEventSink sink(Properties properties) {
+        String journalDirectory = property(properties, ASYNC_JOURNAL_DIRECTORY_PROPERTY);
+        if(journalDirectory != null) {
+            return new JournalTraceEventSink(new File(journalDirectory),
+                    intProperty(properties, ASYNC_JOURNAL_SEGMENT_BYTES_PROPERTY, JournalTraceEventSink.DEFAULT_SEGMENT_BYTES),
+                    intProperty(properties, ASYNC_JOURNAL_RETAINED_SEGMENTS_PROPERTY, JournalTraceEventSink.DEFAULT_RETAINED_SEGMENTS));
+        }
+        String sinkFile = property(properties, ASYNC_SINK_FILE_PROPERTY);
+        return sinkFile == null ? new LoggerTraceEventSink() : WriterTraceEventSink.toFile(sinkFile);
+    }
+
+    private static int stripes(String stripes) {
+        return stripes == null ? 1 : "perProcessor".equalsIgnoreCase(stripes) ? Stripes.perProcessor() : Integer.parseInt(stripes);
+    }
+
+    private static Sampler sampler(String oneIn, String ratePerSecond, String burst) {
+        Sampler random = oneIn == null ? Samplers.always() : Samplers.oneIn(Integer.parseInt(oneIn));
+        if(ratePerSecond == null) {
+            return random;
+        }
+        Sampler rateLimited = Samplers.rateLimited(Double.parseDouble(ratePerSecond), burst == null ? 1 : Integer.parseInt(burst));
+        return oneIn == null ? rateLimited : Samplers.allOf(random, rateLimited);
+    }
+
+    private static TraceIdGenerator traceIdGenerator(String name) {
+        if("sequential".equalsIgnoreCase(name)) {
+            return TraceIdGenerators.sequential();
+        }
+        if("w3c".equalsIgnoreCase(name)) {
+            return TraceIdGenerators.w3cTraceparent();
+        }
+        return newInstance(name, TraceIdGenerator.class, "trace id generator");
+    }
+
+    private static ArgumentCapture argumentCapture(String name, int maxElements) {
+        if("passThrough".equalsIgnoreCase(name)) {
+            return ArgumentCaptures.passThrough();
+        }
+        if("snapshot".equalsIgnoreCase(name)) {
+            return ArgumentCaptures.snapshot(maxElements);
+        }
+        if("deepCopy".equalsIgnoreCase(name)) {
+            return ArgumentCaptures.deepCopy();
+        }
+        return newInstance(name, ArgumentCapture.class, "argument capture");
+    }
+
+    /**
+     * @return T a new instance of the named class, loaded with the context
+     * class loader, created with its no-argument constructor.
+     */
+    private static <T> T newInstance(String className, Class<T> type, String description) {
+        try {
+            return Class.forName(className, true, Thread.currentThread().getContextClassLoader())
+                    .asSubclass(type).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + description + " " + className, e);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + description + " " + className + ", it is not a " + type.getSimpleName(), e);
+        }
+    }
+
+    private static int intProperty(Properties properties, String name, int defaultValue) {
+        String value = property(properties, name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long longProperty(Properties properties, String name, long defaultValue) {
+        String value = property(properties, name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    private static String property(Properties properties, String name, String defaultValue) {
+        String value = property(properties, name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static String property(Properties properties, String name) {
+        String value = properties.getProperty(name);
+        return value == null ? null : value.trim();
+    }
+}
@@ -0,0 +1,26 @@
+package com.robusta.logger.tracer;
+
+import java.util.Properties;
+
+/**
+ * Adds to or overrides the properties a {@link TracerRuntime} is started
+ * with, before they are applied. Customizers are registered with the
+ * {@link java.util.ServiceLoader}, as a
+ * {@code META-INF/services/com.robusta.logger.tracer.TracerRuntimeCustomizer}
+ * resource listing their class names, and need a public no-argument
+ * constructor.
+ *
+ * <p>Lets a library or a deployment configure logger tracers the same way
+ * for every application it is part of, say turn nested tracing on or
+ * direct the trace events to a file.</p>
+ *
+ * @see TracerRuntime
+ * @since 1.3
+ */
+public interface TracerRuntimeCustomizer {
+    /**
+     * @param properties the properties the runtime is started with, a copy
+     * of the ones it was given, to be modified in place.
+     */
+    void customize(Properties properties);
+}
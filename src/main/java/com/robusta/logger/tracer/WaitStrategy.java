@@ -0,0 +1,50 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits when the {@link TraceEventRingBuffer} it works on
+ * has nothing for it: the consumer when the buffer is empty, a producer
+ * when the buffer is full.
+ *
+ * <p>{@link #SPIN} gives the lowest latency at the cost of a busy core,
+ * {@link #YIELD} gives the core away between attempts and {@link #PARK}
+ * sleeps briefly between attempts, which is the right choice for most
+ * applications since tracing is rarely latency critical.</p>
+ *
+ * @since 1.3
+ */
+enum WaitStrategy {
+    SPIN {
+        @Override
+        void idle(int attempt) {
+            // busy spin.
+        }
+    },
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            Thread.yield();
+        }
+    },
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if(attempt < SPIN_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 100000L;
+
+    /**
+     * Waits once.
+     *
+     * @param attempt number of consecutive unsuccessful attempts so far.
+     */
+    abstract void idle(int attempt);
+}
@@ -0,0 +1,132 @@
+package com.robusta.logger.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link TraceEventSink} that renders trace events as lines of text
+ * into a {@link Writer}, bypassing the logging framework.
+ *
+ * <p>The events of a batch are rendered into a reusable buffer, which
+ * is written out with a single {@link Writer#write(char[], int, int)}
+ * per batch, and the writer is only flushed when the consumer runs out
+ * of events. Each line is the trace message, prefixed with the wall
+ * clock time (milliseconds since the epoch) the batch was drained.</p>
+ *
+ * <p>Failures to write are reported (once) and the lines are lost, the
+ * traced application is never affected.</p>
+ *
+ * @since 1.3
+ */
+class WriterTraceEventSink extends TraceEventSink {
+    static final int INITIAL_BUFFER_CAPACITY = 64 * 1024;
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriterTraceEventSink.class);
+
+    private final Writer writer;
+    private final StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_CAPACITY);
+    private char[] chars = new char[INITIAL_BUFFER_CAPACITY];
+    private long batchMillis = -1;
+    private boolean failed;
+
+    WriterTraceEventSink(Writer writer) {
+        Assert.notNull(writer, "Non-null writer is mandatory");
+        this.writer = writer;
+    }
+
+    /**
+     * @return WriterTraceEventSink appending UTF-8 lines to the given file.
+     * @throws IllegalArgumentException when the file cannot be opened for writing.
+     */
+    static WriterTraceEventSink toFile(String path) {
+        try {
+            return new WriterTraceEventSink(new OutputStreamWriter(new FileOutputStream(path, true), Charset.forName("UTF-8")));
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Cannot open trace event file " + path, e);
+        }
+    }
+
+    @Override
+    void write(TraceEvent event) {
+        if(batchMillis < 0) {
+            batchMillis = System.currentTimeMillis();
+        }
+        renderLine(buffer, batchMillis, event);
+    }
+
+    @Override
+    void writeSynchronously(TraceEvent event) {
+        StringBuilder line = new StringBuilder();
+        renderLine(line, System.currentTimeMillis(), event);
+        synchronized (writer) {
+            try {
+                writer.write(line.toString());
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+    }
+
+    @Override
+    void endBatch() {
+        batchMillis = -1;
+        if(buffer.length() > 0) {
+            if(chars.length < buffer.length()) {
+                chars = new char[Math.max(buffer.length(), chars.length * 2)];
+            }
+            int length = buffer.length();
+            buffer.getChars(0, length, chars, 0);
+            buffer.setLength(0);
+            synchronized (writer) {
+                try {
+                    writer.write(chars, 0, length);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    void flush() {
+        endBatch();
+        synchronized (writer) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+    }
+
+    @Override
+    void close() {
+        flush();
+        synchronized (writer) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+    }
+
+    private static void renderLine(StringBuilder builder, long millis, TraceEvent event) {
+        builder.append(millis).append(' ');
+        event.render(builder);
+        builder.append('\n');
+    }
+
+    private void failed(IOException e) {
+        if(!failed) {
+            failed = true;
+            LOGGER.warn("Writing trace events has failed, trace logs will be incomplete.", e);
+        }
+    }
+}
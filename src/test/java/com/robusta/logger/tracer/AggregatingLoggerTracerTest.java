@@ -0,0 +1,84 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class AggregatingLoggerTracerTest {
+    @Mock private LoggerTracer delegate;
+    private org.apache.log4j.Logger tracerLogger;
+    private Level level;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        level = tracerLogger.getLevel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggerTracerFactory.latencyAggregation(false, 0);
+        LoggerTracerFactory.pooledTracers(false);
+        tracerLogger.setLevel(level);
+        LoggerTracerFactory.refreshTraceEnabled();
+    }
+
+    @Test
+    public void testLapAndStop_shouldAggregateIntoTheTracePoint_andDelegate() throws Exception {
+        TracePoint tracePoint = TracePointRegistry.tracePoint(AggregatingLoggerTracerTest.class, "decorated");
+        FakeTicker ticker = new FakeTicker();
+        LoggerTracer tracer = new AggregatingLoggerTracer(tracePoint, ticker, delegate);
+        ticker.advance(7, NANOSECONDS);
+        tracer.lap("lap");
+        ticker.advance(5, NANOSECONDS);
+        assertThat(tracer.stop().stop(), is(sameInstance(tracer)));
+        verify(delegate).lap("lap");
+        verify(delegate, times(2)).stop();
+        assertThat(tracePoint.getExecutionLatency().getCount(), is(equalTo(1L)));
+        assertThat(tracePoint.getExecutionLatency().getMaxNanos(), is(equalTo(12L)));
+        assertThat(tracePoint.getLapLatencies().get("lap").getMaxNanos(), is(equalTo(7L)));
+    }
+
+    @Test
+    public void testLatencyAggregation_withTraceLoggingDisabled_shouldStillAggregate() throws Exception {
+        tracerLogger.setLevel(Level.ERROR);
+        LoggerTracerFactory.latencyAggregation(true, 0);
+        LoggerTracerFactory.loggerTracer(AggregatingLoggerTracerTest.class, "notLogged", 1).lap("lap").stop();
+        TracePoint tracePoint = TracePointRegistry.tracePoint(AggregatingLoggerTracerTest.class, "notLogged");
+        assertThat(tracePoint.getExecutionLatency().getCount(), is(equalTo(1L)));
+        assertThat(LoggerTracerFactory.executionLatencies().get("AggregatingLoggerTracerTest.notLogged").getCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testLatencyAggregation_withPooledTracers_shouldAggregate() throws Exception {
+        tracerLogger.setLevel(Level.ERROR);
+        LoggerTracerFactory.latencyAggregation(true, 0);
+        LoggerTracerFactory.pooledTracers(true);
+        TracePoint tracePoint = LoggerTracerFactory.tracePoint(AggregatingLoggerTracerTest.class, "pooled");
+        for (int call = 0; call < 10; call++) {
+            tracePoint.start(call).lap("lap").stop();
+        }
+        assertThat(tracePoint.getExecutionLatency().getCount(), is(equalTo(10L)));
+        assertThat(tracePoint.getLapLatencies().get("lap").getCount(), is(equalTo(10L)));
+    }
+
+    @Test
+    public void testLatencyAggregation_whenDisabled_shouldNotAggregate() throws Exception {
+        tracerLogger.setLevel(Level.ERROR);
+        LoggerTracerFactory.refreshTraceEnabled();
+        TracePoint tracePoint = LoggerTracerFactory.tracePoint(AggregatingLoggerTracerTest.class, "notAggregated");
+        assertThat(tracePoint.start().stop(), is(sameInstance(LoggerTracerFactory.NO_OP_TRACER)));
+        assertThat(tracePoint.getExecutionLatency().getCount(), is(equalTo(0L)));
+    }
+}
@@ -0,0 +1,156 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Test;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ArgumentCapturesTest {
+
+    @Test
+    public void testCapture_whenNoArgumentIsReplaced_shouldNotCopyTheArguments() throws Exception {
+        Object[] arguments = {1L, "AString", null, TimeUnit.SECONDS, new Object()};
+        assertThat(ArgumentCaptures.capture(ArgumentCaptures.snapshot(), arguments), is(sameInstance(arguments)));
+        assertThat(ArgumentCaptures.capture(ArgumentCaptures.deepCopy(), arguments), is(sameInstance(arguments)));
+        assertThat(ArgumentCaptures.capture(ArgumentCaptures.passThrough(), arguments), is(sameInstance(arguments)));
+    }
+
+    @Test
+    public void testCapture_whenAnArgumentIsReplaced_shouldNotModifyTheCallersArguments() throws Exception {
+        List<Integer> list = Arrays.asList(1, 2, 3);
+        String[] arguments = {"a", "b"};
+        Object[] withList = {list};
+        Object[] captured = ArgumentCaptures.capture(ArgumentCaptures.snapshot(), withList);
+        assertThat(captured, is(not(sameInstance(withList))));
+        assertThat(withList[0], is(sameInstance((Object) list)));
+        assertThat(String.valueOf(captured[0]), is(equalTo("[1, 2, 3]")));
+        assertThat(ArgumentCaptures.capture(ArgumentCaptures.snapshot(), arguments), is(sameInstance((Object[]) arguments)));
+    }
+
+    @Test
+    public void testCapture_whenTheCaptureFails_shouldKeepTheArgument() throws Exception {
+        Object argument = new ArrayList<Object>();
+        Object[] captured = ArgumentCaptures.capture(new ArgumentCapture() {
+            @Override
+            public Object capture(Object argument) {
+                throw new IllegalStateException("Simulation of a failing capture");
+            }
+        }, new Object[]{argument});
+        assertThat(captured[0], is(sameInstance(argument)));
+    }
+
+    @Test
+    public void testSnapshot_whenNotTruncated_shouldRenderAsTheArgumentDoes() throws Exception {
+        ArgumentCapture snapshot = ArgumentCaptures.snapshot();
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        map.put("a", 1);
+        map.put("b", 2);
+        List<Object> list = new ArrayList<Object>(Arrays.<Object>asList(1L, "AString", null, map));
+        assertThat(String.valueOf(snapshot.capture(list)), is(equalTo(list.toString())));
+        assertThat(String.valueOf(snapshot.capture(map)), is(equalTo(map.toString())));
+        assertThat(String.valueOf(snapshot.capture(new ArrayList<Object>())), is(equalTo("[]")));
+        assertThat(String.valueOf(snapshot.capture(new int[]{1, 2, 3})), is(equalTo("[1, 2, 3]")));
+        assertThat(String.valueOf(snapshot.capture(new String[]{"a", null})), is(equalTo("[a, null]")));
+    }
+
+    @Test
+    public void testSnapshot_whenLargerThanTheMaxElements_shouldRenderTheFirstElementsAndCountTheRest() throws Exception {
+        ArgumentCapture snapshot = ArgumentCaptures.snapshot(3);
+        List<Integer> list = new ArrayList<Integer>();
+        Map<Integer, Integer> map = new LinkedHashMap<Integer, Integer>();
+        for (int element = 0; element < 1000; element++) {
+            list.add(element);
+            map.put(element, element);
+        }
+        assertThat(String.valueOf(snapshot.capture(list)), is(equalTo("[0, 1, 2, ... 997 more]")));
+        assertThat(String.valueOf(snapshot.capture(map)), is(equalTo("{0=0, 1=1, 2=2, ... 997 more}")));
+        assertThat(String.valueOf(snapshot.capture(new long[1000])), is(equalTo("[0, 0, 0, ... 997 more]")));
+        assertThat(String.valueOf(ArgumentCaptures.snapshot(0).capture(list)), is(equalTo("[... 1000 more]")));
+    }
+
+    @Test
+    public void testSnapshot_shouldShareTheMaxElementsWithNestedCollections() throws Exception {
+        List<List<Integer>> nested = Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6));
+        assertThat(String.valueOf(ArgumentCaptures.snapshot(4).capture(nested)), is(equalTo("[[1, 2, ... 1 more], [... 3 more]]")));
+    }
+
+    @Test
+    public void testSnapshot_shouldOnlyIterateOverTheCapturedElements_andNotSeeLaterModifications() throws Exception {
+        CountingCollection collection = new CountingCollection(1000000);
+        Object captured = ArgumentCaptures.snapshot(5).capture(collection);
+        assertThat(collection.iterated, is(equalTo(5)));
+        List<Integer> list = new ArrayList<Integer>(Arrays.asList(1, 2));
+        Object capturedList = ArgumentCaptures.snapshot().capture(list);
+        list.add(3);
+        assertThat(String.valueOf(captured), is(equalTo("[0, 1, 2, 3, 4, ... 999995 more]")));
+        assertThat(String.valueOf(capturedList), is(equalTo("[1, 2]")));
+    }
+
+    @Test
+    public void testDeepCopy_shouldRenderAsTheArgumentDid_whenItWasCaptured() throws Exception {
+        Map<String, List<Integer>> map = new LinkedHashMap<String, List<Integer>>();
+        List<Integer> list = new ArrayList<Integer>();
+        for (int element = 0; element < 100; element++) {
+            list.add(element);
+        }
+        map.put("a", list);
+        String rendered = map.toString();
+        Object captured = ArgumentCaptures.deepCopy().capture(map);
+        list.clear();
+        map.put("b", list);
+        assertThat(String.valueOf(captured), is(equalTo(rendered)));
+        assertThat(String.valueOf(ArgumentCaptures.deepCopy().capture(new int[]{1, 2})), is(equalTo("[1, 2]")));
+    }
+
+    @Test
+    public void testPassThrough_shouldKeepTheArguments() throws Exception {
+        List<Integer> list = new ArrayList<Integer>();
+        assertThat(ArgumentCaptures.passThrough().capture(list), is(sameInstance((Object) list)));
+    }
+
+    private static class CountingCollection extends AbstractCollection<Integer> {
+        private final int size;
+        private int iterated;
+
+        CountingCollection(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Integer next() {
+                    iterated++;
+                    return next++;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
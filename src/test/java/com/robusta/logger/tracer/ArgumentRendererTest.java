@@ -0,0 +1,130 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ArgumentRendererTest {
+    private final ArgumentRenderer renderer = new ArgumentRenderer();
+
+    @Test
+    public void testRender_withinTheBudget_shouldRenderAsAListOfTheArguments() throws Exception {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        map.put("a", 1);
+        List<Object> list = Arrays.<Object>asList(1L, "AString", null, map);
+        Object[] arguments = {1L, "AString", null, list, map};
+        assertThat(renderer.render(arguments), is(equalTo(Arrays.asList(arguments).toString())));
+        assertThat(renderer.render((Object[]) null), is(equalTo("[]")));
+        assertThat(renderer.render(new Object[0]), is(equalTo("[]")));
+    }
+
+    @Test
+    public void testRender_shouldPreviewArrays() throws Exception {
+        assertThat(renderer.render(new Object[]{new String[]{"a", "b"}, new int[]{1, 2}, new long[0]}), is(equalTo("[[a, b], [1, 2], []]")));
+    }
+
+    @Test
+    public void testRender_whenAnArgumentIsLongerThanTheMaxLength_shouldCutIt() throws Exception {
+        ArgumentRenderer renderer = new ArgumentRenderer(5, 10, 2);
+        assertThat(renderer.render(new Object[]{"0123456789", "abc", 1234567L}), is(equalTo("[01234..., abc, 12345...]")));
+        assertThat(renderer.render((Object) Arrays.asList("ab", "cd")), is(equalTo("[ab, ...")));
+    }
+
+    @Test
+    public void testRender_whenLargerThanTheMaxElements_shouldRenderTheFirstElementsAndCountTheRest() throws Exception {
+        ArgumentRenderer renderer = new ArgumentRenderer(1024, 2, 4);
+        List<Integer> list = new ArrayList<Integer>();
+        Map<Integer, Integer> map = new LinkedHashMap<Integer, Integer>();
+        for (int element = 0; element < 50000; element++) {
+            list.add(element);
+            map.put(element, element);
+        }
+        assertThat(renderer.render(list), is(equalTo("[0, 1, ... 49998 more]")));
+        assertThat(renderer.render(map), is(equalTo("{0=0, 1=1, ... 49998 more}")));
+        assertThat(new ArgumentRenderer(1024, 0, 4).render(list), is(equalTo("[... 50000 more]")));
+    }
+
+    @Test
+    public void testRender_whenNestedDeeperThanTheMaxDepth_shouldCountTheDeeperElements() throws Exception {
+        List<Object> nested = Collections.<Object>singletonList(Collections.singletonList(Collections.singletonList(1)));
+        assertThat(new ArgumentRenderer(1024, 10, 2).render(nested), is(equalTo("[[[... 1 more]]]")));
+        assertThat(new ArgumentRenderer(1024, 10, 3).render(nested), is(equalTo("[[[1]]]")));
+    }
+
+    @Test
+    public void testRender_whenACollectionContainsItself_shouldRenderTheCycle() throws Exception {
+        List<Object> outer = new ArrayList<Object>();
+        List<Object> inner = new ArrayList<Object>();
+        outer.add(1);
+        outer.add(inner);
+        inner.add(outer);
+        inner.add(inner);
+        assertThat(renderer.render(outer), is(equalTo("[1, [(cycle), (cycle)]]")));
+        List<Integer> shared = Arrays.asList(1, 2);
+        assertThat(renderer.render(Arrays.asList(shared, shared)), is(equalTo("[[1, 2], [1, 2]]")));
+    }
+
+    @Test
+    public void testRender_shouldStopIteratingOnceTheBudgetIsSpent() throws Exception {
+        final int[] got = new int[1];
+        List<String> huge = new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                got[0]++;
+                return "element-" + index;
+            }
+
+            @Override
+            public int size() {
+                return 1000000;
+            }
+        };
+        String rendered = new ArgumentRenderer(50, 1000000, 2).render(huge);
+        assertThat(rendered.length(), is(equalTo(50 + ArgumentRenderer.TRUNCATED.length())));
+        assertThat(got[0], is(lessThan(10)));
+    }
+
+    @Test
+    public void testRender_whenToStringFails_shouldRenderTheFailure() throws Exception {
+        Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("Simulation of a failing toString");
+            }
+        };
+        assertThat(renderer.render(new Object[]{1, failing}),
+                is(equalTo("[1, (IllegalStateException rendering " + failing.getClass().getName() + ")]")));
+    }
+
+    @Test
+    public void testRender_whenAnArgumentRendersArgumentsItself_shouldNotCorruptTheRendering() throws Exception {
+        Object rendering = new Object() {
+            @Override
+            public String toString() {
+                return renderer.render(Arrays.asList("inner"));
+            }
+        };
+        assertThat(renderer.render(new Object[]{"outer", rendering}), is(equalTo("[outer, [inner]]")));
+        assertThat(renderer.render(new Object[]{"again"}), is(equalTo("[again]")));
+    }
+
+    @Test
+    public void testRender_ofASnapshot_shouldBeBoundedByTheSnapshotAndTheRenderer() throws Exception {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int element = 0; element < 100; element++) {
+            list.add(element);
+        }
+        Object snapshot = ArgumentCaptures.snapshot(10).capture(list);
+        assertThat(new ArgumentRenderer(1024, 3, 2).render(snapshot), is(equalTo("[0, 1, 2, ... 97 more]")));
+        assertThat(new ArgumentRenderer(1024, 30, 2).render(snapshot), is(equalTo("[0, 1, 2, 3, 4, 5, 6, 7, 8, 9, ... 90 more]")));
+    }
+}
@@ -34,7 +34,7 @@ public class AsyncLoggingMethodArgumentHandlerTest {
         methodArgumentsAsArrayList = LoggingMethodArgumentHandlerTest.<Object>newArrayList(1L, "AString");
         methodName = "AsyncLoggingMethodArgumentHandlerTest.someMethod";
         uuid = randomUUID().toString();
-        handler = new AsyncLoggingMethodArgumentHandler(logger, methodName, uuid, service);
+        handler = new AsyncLoggingMethodArgumentHandler(logger, methodName, uuid, new ExecutorTraceEventDispatcher(service));
     }
 
     @SuppressWarnings("unchecked")
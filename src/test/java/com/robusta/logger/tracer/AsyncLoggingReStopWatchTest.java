@@ -8,6 +8,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.verify;
@@ -19,13 +20,13 @@ public class AsyncLoggingReStopWatchTest extends LoggingStopWatchTestBase {
 
     @Override
     protected void doSpecificSetup() throws Exception {
-        loggerTracer = new AsyncLoggingReStopWatch(stopWatch, logger, methodName, uuid, executor);
+        loggerTracer = new AsyncLoggingReStopWatch(ticker, MILLISECONDS, logger, methodName, uuid, new ExecutorTraceEventDispatcher(executor));
     }
 
     @Test
     public void testLogLapTime() throws Exception {
         whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
-        loggerTracer.logLapTime(lapTime, LAP_DESCRIPTION, logger);
+        loggerTracer.logLapTime(nanos(lapTime), nanos(lapTime), LAP_DESCRIPTION, logger);
         captureCallableSubmittedToExecutorAndCall();
         verifyThatLapCompletionWithLapDescriptionWasLoggedIntoTheLogger();
     }
@@ -42,7 +43,7 @@ public class AsyncLoggingReStopWatchTest extends LoggingStopWatchTestBase {
     @Test
     public void testLogExecutionTime() throws Exception {
         whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
-        loggerTracer.logExecutionTime(executionTime, logger);
+        loggerTracer.logExecutionTime(nanos(executionTime), logger);
         captureCallableSubmittedToExecutorAndCall();
         verifyThatExecutionCompletionWasLoggedIntoTheLogger();
     }
@@ -52,6 +53,16 @@ public class AsyncLoggingReStopWatchTest extends LoggingStopWatchTestBase {
     public void testLogExecutionTime_whenCallableSubmissionThrowsRejectedExecutionException() throws Exception {
         whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
         when(executor.submit(any(Callable.class))).thenThrow(new RejectedExecutionException("Simulation of Callable submission rejection"));
-        loggerTracer.logExecutionTime(executionTime, logger);
+        loggerTracer.logExecutionTime(nanos(executionTime), logger);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testLogExecutionTime_whenTheExecutorIsShutdown_shouldLogOnTheCallersThread() throws Exception {
+        whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
+        when(executor.submit(any(Callable.class))).thenThrow(new RejectedExecutionException("Simulation of a shut down executor"));
+        when(executor.isShutdown()).thenReturn(true);
+        loggerTracer.logExecutionTime(nanos(executionTime), logger);
+        verifyThatExecutionCompletionWasLoggedIntoTheLogger();
     }
 }
@@ -0,0 +1,114 @@
+package com.robusta.logger.tracer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+
+import static com.robusta.logger.tracer.LoggingMethodArgumentHandler.METHOD_ARGUMENT_TRACE_LOG_MESSAGE;
+import static com.robusta.logger.tracer.LoggingStopWatch.EXECUTION_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.LAP_COMPLETION_TRACE_MSG;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class BufferingLoggerTracerTest {
+    private static final TracePoint TRACE_POINT = TracePointRegistry.tracePoint(BufferingLoggerTracerTest.class, "aMethod");
+    private static final TracePoint OTHER_TRACE_POINT = TracePointRegistry.tracePoint(BufferingLoggerTracerTest.class, "otherMethod");
+    @Mock private Logger logger;
+    private FakeTicker ticker;
+    private LoggerTracerPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        ticker = new FakeTicker();
+        pool = LoggerTracerPool.current();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggerTracerFactory.slowCallsOnly(false, 0, MILLISECONDS);
+        SlowCallThresholds.clear();
+    }
+
+    private LoggerTracer tracer() {
+        return pool.acquireBuffering().start(logger, TRACE_POINT, TraceIdGenerators.sequential(), ticker, MILLISECONDS, null, false, false, null, true,
+                MILLISECONDS.toNanos(10), new Object[]{1L, "AString"});
+    }
+
+    @Test
+    public void testStop_whenFasterThanTheThreshold_shouldLogNothing() throws Exception {
+        LoggerTracer tracer = tracer();
+        ticker.advance(2, MILLISECONDS);
+        tracer.lap("lap");
+        ticker.advance(8, MILLISECONDS);
+        tracer.stop();
+        verifyZeroInteractions(logger);
+    }
+
+    @Test
+    public void testStop_whenSlowerThanTheThreshold_shouldLogTheArguments_everyLap_andTheExecution() throws Exception {
+        LoggerTracer tracer = tracer();
+        ticker.advance(2, MILLISECONDS);
+        tracer.lap("first");
+        ticker.advance(3, MILLISECONDS);
+        tracer.lap("second");
+        ticker.advance(6, MILLISECONDS);
+        verifyZeroInteractions(logger);
+        tracer.stop();
+        verify(logger).trace(eq(METHOD_ARGUMENT_TRACE_LOG_MESSAGE), anyString(), eq("BufferingLoggerTracerTest.aMethod"),
+                eq(LoggingMethodArgumentHandlerTest.<Object>newArrayList(1L, "AString")));
+        verify(logger).trace(eq(LAP_COMPLETION_TRACE_MSG), anyString(), eq("first"), eq(2L), eq("ms"), eq(2L), eq("ms"));
+        verify(logger).trace(eq(LAP_COMPLETION_TRACE_MSG), anyString(), eq("second"), eq(5L), eq("ms"), eq(3L), eq("ms"));
+        verify(logger).trace(eq(EXECUTION_COMPLETION_TRACE_MSG), anyString(), eq("BufferingLoggerTracerTest.aMethod"), eq(11L), eq("ms"));
+    }
+
+    @Test
+    public void testStop_whenSlowerThanTheThreshold_shouldLogUpToMaxLaps_andStopOnlyOnce() throws Exception {
+        LoggerTracer tracer = tracer();
+        for (int lap = 0; lap < BufferingLoggerTracer.MAX_LAPS + 10; lap++) {
+            tracer.lap("lap");
+        }
+        ticker.advance(20, MILLISECONDS);
+        tracer.stop().stop();
+        verify(logger, times(BufferingLoggerTracer.MAX_LAPS)).trace(eq(LAP_COMPLETION_TRACE_MSG), anyString(), eq("lap"),
+                eq(0L), eq("ms"), eq(0L), eq("ms"));
+        verify(logger).trace(eq(EXECUTION_COMPLETION_TRACE_MSG), anyString(), eq("BufferingLoggerTracerTest.aMethod"), eq(20L), eq("ms"));
+    }
+
+    @Test
+    public void testStop_shouldReturnTheTracerToThePool_andANoOpTracerToChainOn() throws Exception {
+        BufferingLoggerTracer tracer = pool.acquireBuffering();
+        int available = pool.availableBuffering();
+        LoggerTracer stopped = tracer.start(logger, TRACE_POINT, TraceIdGenerators.sequential(), ticker, MILLISECONDS, null, false, false, null, true,
+                0, new Object[0]).stop();
+        assertThat(stopped, is(sameInstance(LoggerTracerFactory.NO_OP_TRACER)));
+        assertThat(tracer.isStarted(), is(false));
+        assertThat(pool.availableBuffering(), is(equalTo(available + 1)));
+        assertThat(pool.acquireBuffering(), is(sameInstance(tracer)));
+    }
+
+    @Test
+    public void testThresholds_shouldBeTheDefault_unlessSetForTheMethod_andOverridableAtRuntime() throws Exception {
+        LoggerTracerFactory.slowCallsOnly(true, 50, MILLISECONDS);
+        assertThat(LoggerTracerFactory.configuration().slowCallThresholdNanos(TRACE_POINT), is(equalTo(MILLISECONDS.toNanos(50))));
+        LoggerTracerFactory.slowCallThreshold("BufferingLoggerTracerTest.aMethod", 5, MILLISECONDS);
+        assertThat(LoggerTracerFactory.configuration().slowCallThresholdNanos(TRACE_POINT), is(equalTo(MILLISECONDS.toNanos(5))));
+        assertThat(LoggerTracerFactory.configuration().slowCallThresholdNanos(OTHER_TRACE_POINT), is(equalTo(MILLISECONDS.toNanos(50))));
+        LoggerTracerFactory.slowCallThreshold("BufferingLoggerTracerTest.aMethod", 500, MILLISECONDS);
+        assertThat(LoggerTracerFactory.configuration().slowCallThresholdNanos(TRACE_POINT), is(equalTo(MILLISECONDS.toNanos(500))));
+        LoggerTracerFactory.removeSlowCallThreshold("BufferingLoggerTracerTest.aMethod");
+        assertThat(LoggerTracerFactory.configuration().slowCallThresholdNanos(TRACE_POINT), is(equalTo(MILLISECONDS.toNanos(50))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThreshold_whenNegative_shouldRaiseIllegalArgumentException() throws Exception {
+        LoggerTracerFactory.slowCallThreshold("BufferingLoggerTracerTest.aMethod", -1, MILLISECONDS);
+    }
+}
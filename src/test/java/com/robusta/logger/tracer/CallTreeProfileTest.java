@@ -0,0 +1,129 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CallTreeProfileTest {
+    private static final TracePoint SERVICE = TracePointRegistry.tracePoint(CallTreeProfileTest.class, "service");
+    private static final TracePoint DAO = TracePointRegistry.tracePoint(CallTreeProfileTest.class, "dao");
+    private static final TracePoint QUERY = TracePointRegistry.tracePoint(CallTreeProfileTest.class, "query");
+    private FakeTicker ticker;
+    private CallTreeProfile profile;
+    private org.apache.log4j.Logger tracerLogger;
+    private Level level;
+
+    @Before
+    public void setUp() throws Exception {
+        ticker = new FakeTicker();
+        profile = new CallTreeProfile(CallTreeProfile.DEFAULT_MAX_NODES);
+        tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        level = tracerLogger.getLevel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggerTracerFactory.callTreeProfiling(false, CallTreeProfile.DEFAULT_MAX_NODES);
+        LoggerTracerFactory.ticker(Tickers.system());
+        tracerLogger.setLevel(level);
+        LoggerTracerFactory.refreshTraceEnabled();
+    }
+
+    private LoggerTracer start(TracePoint tracePoint) {
+        return new PooledLoggerTracer(null).start(null, tracePoint, TraceIdGenerators.sequential(), ticker, MILLISECONDS, null, false,
+                false, profile, null);
+    }
+
+    /**
+     * service (10 ms) calls dao twice (3 ms and 4 ms), the second dao call runs a query (1 ms).
+     */
+    private void traceAServiceCall() {
+        LoggerTracer service = start(SERVICE);
+        ticker.advance(1, MILLISECONDS);
+        LoggerTracer dao = start(DAO);
+        ticker.advance(3, MILLISECONDS);
+        dao.stop();
+        dao = start(DAO);
+        ticker.advance(3, MILLISECONDS);
+        LoggerTracer query = start(QUERY);
+        ticker.advance(1, MILLISECONDS);
+        query.stop();
+        dao.stop();
+        ticker.advance(2, MILLISECONDS);
+        service.stop();
+    }
+
+    @Test
+    public void testNestedExecutions_shouldBeMergedIntoACallTree_withCountsTotalSelfAndMaxTimes() throws Exception {
+        traceAServiceCall();
+        traceAServiceCall();
+        CallTreeProfile.Node service = profile.root().getChild(SERVICE);
+        assertThat(service.getCount(), is(equalTo(2L)));
+        assertThat(service.getTotalNanos(), is(equalTo(MILLISECONDS.toNanos(20))));
+        assertThat(service.getSelfNanos(), is(equalTo(MILLISECONDS.toNanos(6))));
+        assertThat(service.getMaxNanos(), is(equalTo(MILLISECONDS.toNanos(10))));
+        CallTreeProfile.Node dao = service.getChild(DAO);
+        assertThat(dao.getCount(), is(equalTo(4L)));
+        assertThat(dao.getTotalNanos(), is(equalTo(MILLISECONDS.toNanos(14))));
+        assertThat(dao.getSelfNanos(), is(equalTo(MILLISECONDS.toNanos(12))));
+        assertThat(dao.getMaxNanos(), is(equalTo(MILLISECONDS.toNanos(4))));
+        assertThat(dao.getChild(QUERY).getCount(), is(equalTo(2L)));
+        assertThat(profile.root().getChild(DAO), is(nullValue()));
+        assertThat(profile.nodeCount(), is(equalTo(3)));
+        assertThat(SpanStack.current().depth(), is(equalTo(0)));
+    }
+
+    @Test
+    public void testDumpCollapsedStacks_shouldWriteALinePerPath_withTheSelfTimeInMicroseconds() throws Exception {
+        traceAServiceCall();
+        StringBuilder dump = new StringBuilder();
+        profile.dumpCollapsedStacks(dump);
+        assertThat(dump.toString(), is(equalTo(
+                "CallTreeProfileTest.service 3000\n" +
+                "CallTreeProfileTest.service;CallTreeProfileTest.dao 6000\n" +
+                "CallTreeProfileTest.service;CallTreeProfileTest.dao;CallTreeProfileTest.query 1000\n")));
+    }
+
+    @Test
+    public void testNodeCap_shouldAggregateCallsOnNewPaths_intoTheOtherNodeOfTheirParent() throws Exception {
+        profile = new CallTreeProfile(2);
+        traceAServiceCall();
+        CallTreeProfile.Node service = profile.root().getChild(SERVICE);
+        CallTreeProfile.Node dao = service.getChild(DAO);
+        assertThat(dao.getChild(QUERY), is(nullValue()));
+        CallTreeProfile.Node other = dao.getOtherChild();
+        assertThat(other.getName(), is(equalTo(CallTreeProfile.OTHER)));
+        assertThat(other.getCount(), is(equalTo(1L)));
+        assertThat(profile.child(other, SERVICE), is(sameInstance(other)));
+        assertThat(profile.nodeCount(), is(equalTo(2)));
+        StringBuilder dump = new StringBuilder();
+        profile.dumpCollapsedStacks(dump);
+        assertThat(dump.toString(), containsString("CallTreeProfileTest.service;CallTreeProfileTest.dao;(other) 1000\n"));
+    }
+
+    @Test
+    public void testFactory_whenProfiling_shouldTraceWithoutTraceLogging_andDumpTheCallTree() throws Exception {
+        tracerLogger.setLevel(Level.ERROR);
+        LoggerTracerFactory.ticker(ticker);
+        LoggerTracerFactory.callTreeProfiling(true, CallTreeProfile.DEFAULT_MAX_NODES);
+        LoggerTracer service = SERVICE.start();
+        assertThat(service, is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+        LoggerTracer dao = DAO.start();
+        ticker.advance(2, MILLISECONDS);
+        dao.stop();
+        service.stop();
+        StringBuilder dump = new StringBuilder();
+        LoggerTracerFactory.dumpCallTree(dump);
+        assertThat(dump.toString(), is(equalTo("CallTreeProfileTest.service;CallTreeProfileTest.dao 2000\n")));
+        LoggerTracerFactory.resetCallTree();
+        dump.setLength(0);
+        LoggerTracerFactory.dumpCallTree(dump);
+        assertThat(dump.toString(), isEmptyString());
+    }
+}
@@ -0,0 +1,27 @@
+package com.robusta.logger.tracer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Ticker} whose time only moves when advanced by the test.
+ */
+public class FakeTicker implements Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+
+    @Override
+    public long read() {
+        reads.incrementAndGet();
+        return nanos.get();
+    }
+
+    public FakeTicker advance(long time, TimeUnit timeUnit) {
+        nanos.addAndGet(timeUnit.toNanos(time));
+        return this;
+    }
+
+    public long reads() {
+        return reads.get();
+    }
+}
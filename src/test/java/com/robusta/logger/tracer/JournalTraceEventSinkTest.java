@@ -0,0 +1,178 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class JournalTraceEventSinkTest {
+    private static final TracePoint TRACE_POINT = LoggerTracerFactory.tracePoint(JournalTraceEventSinkTest.class, "journaled");
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+    @Mock private Logger logger;
+    private File directory;
+    private final TraceEvent event = new TraceEvent(false);
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        directory = new File(folder.getRoot(), "journal");
+    }
+
+    @Test
+    public void testJournal_shouldDecodeToTheTraceMessagesOfTheTextSink() throws Exception {
+        long before = System.currentTimeMillis();
+        JournalTraceEventSink journal = new JournalTraceEventSink(directory, JournalTraceEventSink.MIN_SEGMENT_BYTES, 1);
+        StringWriter text = new StringWriter();
+        WriterTraceEventSink writer = new WriterTraceEventSink(text);
+        TraceIdGenerator sequential = TraceIdGenerators.sequential();
+        TraceIdGenerator w3c = TraceIdGenerators.w3cTraceparent();
+        TraceIdGenerator custom = new TraceIdGenerator() {
+            @Override
+            public long nextTraceId() {
+                return 42L;
+            }
+
+            @Override
+            public String format(long traceId) {
+                return "custom-" + traceId;
+            }
+        };
+
+        event.arguments(logger, sequential, sequential.nextTraceId(), TRACE_POINT, new Object[]{1L, "AString", null});
+        write(event, journal, writer);
+        event.lap(logger, sequential, sequential.nextTraceId(), "lap", MILLISECONDS.toNanos(3), MILLISECONDS.toNanos(2), MILLISECONDS);
+        write(event, journal, writer);
+        event.execution(logger, w3c, w3c.nextTraceId(), TRACE_POINT, 1500L, MICROSECONDS);
+        write(event, journal, writer);
+        event.execution(logger, custom, custom.nextTraceId(), TRACE_POINT, 10L, NANOSECONDS);
+        write(event, journal, writer);
+        event.arguments(logger, "uuid", "AClass.aMethod", null);
+        write(event, journal, writer);
+        event.lap(logger, "uuid", "lap", 7L, 7L, NANOSECONDS);
+        writeSynchronously(event, journal, writer);
+        event.execution(logger, "uuid", "AClass.aMethod", 9L, NANOSECONDS);
+        write(event, journal, writer);
+        long parentTraceId = w3c.nextTraceId();
+        event.arguments(logger, w3c, w3c.nextTraceId(), TRACE_POINT, new Object[]{2L}, parentTraceId, 1);
+        write(event, journal, writer);
+        event.execution(logger, w3c, parentTraceId, TRACE_POINT, MILLISECONDS.toNanos(8), MILLISECONDS.toNanos(3), MILLISECONDS);
+        write(event, journal, writer);
+        journal.close();
+        writer.close();
+        long after = System.currentTimeMillis();
+
+        String[] expected = text.toString().split("\n");
+        String[] decoded = decode().split("\n");
+        assertThat(decoded.length, is(equalTo(expected.length)));
+        for (int index = 0; index < decoded.length; index++) {
+            assertThat(message(decoded[index]), is(equalTo(message(expected[index]))));
+            long millis = Long.parseLong(decoded[index].substring(0, decoded[index].indexOf(' ')));
+            assertThat(millis, is(both(greaterThanOrEqualTo(before)).and(lessThanOrEqualTo(after))));
+        }
+        assertThat(decoded[3], endsWith("Execution: 'custom-42' for 'JournalTraceEventSinkTest.journaled' completed in '10' ns"));
+        assertThat(decoded[7], endsWith("(parent '" + w3c.format(parentTraceId) + "', depth 1)"));
+        assertThat(decoded[8], endsWith("completed in '8' ms (self '3' ms)"));
+        verifyZeroInteractions(logger);
+    }
+
+    @Test
+    public void testSegments_shouldRoll_andOnlyTheRetainedSegmentsBeKept() throws Exception {
+        JournalTraceEventSink journal = new JournalTraceEventSink(directory, JournalTraceEventSink.MIN_SEGMENT_BYTES, 2);
+        int laps = 5000;
+        for (int lap = 0; lap < laps; lap++) {
+            event.lap(logger, "0123456789abcdef", "lap", lap, lap, NANOSECONDS);
+            journal.write(event);
+        }
+        journal.close();
+        File[] segments = JournalTraceEventSink.segments(directory);
+        assertThat(segments.length, is(equalTo(2)));
+        assertThat(segments[1].getName().compareTo(JournalTraceEventSink.segmentName(2)), is(greaterThan(0)));
+        String[] decoded = decode().split("\n");
+        int first = laps - decoded.length;
+        assertThat(first, is(greaterThan(0)));
+        for (int index = 0; index < decoded.length; index++) {
+            long lap = first + index;
+            assertThat(decoded[index], endsWith("Lap: 'lap' completed in '" + lap + "' ns (split '" + lap + "' ns)"));
+        }
+    }
+
+    @Test
+    public void testNewJournal_shouldStartAfterTheSegmentsOfThePreviousOne() throws Exception {
+        for (int journals = 0; journals < 2; journals++) {
+            JournalTraceEventSink journal = new JournalTraceEventSink(directory, JournalTraceEventSink.MIN_SEGMENT_BYTES, 3);
+            event.execution(logger, "uuid-" + journals, "AClass.aMethod", 1L, NANOSECONDS);
+            journal.write(event);
+            journal.close();
+        }
+        File[] segments = JournalTraceEventSink.segments(directory);
+        assertThat(segments.length, is(equalTo(2)));
+        assertThat(segments[0].getName(), is(equalTo("trace-0000000000000000.journal")));
+        assertThat(segments[1].getName(), is(equalTo("trace-0000000000000001.journal")));
+        String[] decoded = decode().split("\n");
+        assertThat(decoded[0], containsString("'uuid-0'"));
+        assertThat(decoded[1], containsString("'uuid-1'"));
+    }
+
+    @Test
+    public void testEvent_tooLargeForASegment_shouldBeLost_andNotAffectTheFollowingEvents() throws Exception {
+        JournalTraceEventSink journal = new JournalTraceEventSink(directory, JournalTraceEventSink.MIN_SEGMENT_BYTES, 4);
+        char[] chars = new char[JournalTraceEventSink.MAX_STRING_CHARS];
+        Arrays.fill(chars, 'x');
+        Object[] arguments = new Object[64];
+        Arrays.fill(arguments, new String(chars));
+        event.arguments(logger, "uuid", "AClass.aMethod", arguments);
+        journal.write(event);
+        event.execution(logger, "uuid", "AClass.aMethod", 1L, NANOSECONDS);
+        journal.write(event);
+        journal.close();
+        String[] decoded = decode().split("\n");
+        assertThat(decoded.length, is(equalTo(1)));
+        assertThat(decoded[0], endsWith("Execution: 'uuid' for 'AClass.aMethod' completed in '1' ns"));
+    }
+
+    @Test
+    public void testWrite_afterClose_shouldBeIgnored() throws Exception {
+        JournalTraceEventSink journal = new JournalTraceEventSink(directory, JournalTraceEventSink.MIN_SEGMENT_BYTES, 1);
+        journal.close();
+        event.execution(logger, "uuid", "AClass.aMethod", 1L, NANOSECONDS);
+        journal.write(event);
+        assertThat(JournalTraceEventSink.segments(directory).length, is(equalTo(0)));
+    }
+
+    private void write(TraceEvent event, TraceEventSink... sinks) {
+        for (TraceEventSink sink : sinks) {
+            sink.write(event);
+            sink.endBatch();
+        }
+    }
+
+    private void writeSynchronously(TraceEvent event, TraceEventSink... sinks) {
+        for (TraceEventSink sink : sinks) {
+            sink.writeSynchronously(event);
+        }
+    }
+
+    private String decode() throws Exception {
+        StringBuilder decoded = new StringBuilder();
+        TraceJournalDecoder.decode(directory, decoded);
+        return decoded.toString();
+    }
+
+    private static String message(String line) {
+        return line.substring(line.indexOf(' ') + 1);
+    }
+}
@@ -0,0 +1,88 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketIndex_shouldBeLinearBelowTheSubBuckets_andContinuousAbove() throws Exception {
+        for (long value = 0; value < LatencyHistogram.SUB_BUCKETS; value++) {
+            assertThat(LatencyHistogram.bucketIndex(value), is(equalTo((int) value)));
+        }
+        for (int index = 1; index < LatencyHistogram.BUCKETS; index++) {
+            long lowerBound = LatencyHistogram.bucketUpperBound(index - 1) + 1;
+            assertThat(LatencyHistogram.bucketIndex(lowerBound), is(equalTo(index)));
+            assertThat(LatencyHistogram.bucketIndex(LatencyHistogram.bucketUpperBound(index)), is(equalTo(index)));
+        }
+        assertThat(LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_NANOS), is(equalTo(LatencyHistogram.BUCKETS - 1)));
+    }
+
+    @Test
+    public void testSnapshot_shouldReportPercentilesWithinTheBucketPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(2);
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1000000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(equalTo(1000L)));
+        assertThat(snapshot.getMaxNanos(), is(equalTo(1000000000L)));
+        assertThat(snapshot.getMeanNanos(), is(equalTo(500500000L)));
+        assertWithinPrecision(snapshot.getP50Nanos(), 500000000L);
+        assertWithinPrecision(snapshot.getP90Nanos(), 900000000L);
+        assertWithinPrecision(snapshot.getP99Nanos(), 990000000L);
+        assertWithinPrecision(snapshot.getP999Nanos(), 999000000L);
+        assertThat(snapshot.getValueAtPercentile(100), is(equalTo(1000000000L)));
+    }
+
+    @Test
+    public void testSnapshot_whenNothingRecorded_shouldBeEmpty() throws Exception {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram(1).snapshot();
+        assertThat(snapshot.getCount(), is(equalTo(0L)));
+        assertThat(snapshot.getP99Nanos(), is(equalTo(0L)));
+        assertThat(snapshot.getMeanNanos(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testRecord_shouldClampNegativeAndHugeLatencies() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(equalTo(2L)));
+        assertThat(snapshot.getValueAtPercentile(50), is(equalTo(0L)));
+        assertThat(snapshot.getMaxNanos(), is(equalTo(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testRecord_fromConcurrentThreads_shouldCountEveryLatency() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram(4);
+        final int threads = 4;
+        final int recordsPerThread = 100000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            final long latency = (thread + 1) * 1000L;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int record = 0; record < recordsPerThread; record++) {
+                        histogram.record(latency);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(equalTo((long) threads * recordsPerThread)));
+        assertThat(snapshot.getMaxNanos(), is(equalTo(threads * 1000L)));
+    }
+
+    private void assertWithinPrecision(long actual, long expected) {
+        assertThat(actual, is(allOf(greaterThanOrEqualTo(expected), lessThanOrEqualTo(expected + expected / LatencyHistogram.SUB_BUCKETS))));
+    }
+}
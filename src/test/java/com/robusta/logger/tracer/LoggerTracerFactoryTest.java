@@ -1,12 +1,34 @@
 package com.robusta.logger.tracer;
 
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
 import org.junit.Before;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
 import org.springframework.mock.web.MockHttpServletRequest;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
 import static com.robusta.logger.tracer.LoggerTracerFactory.loggerTracer;
+import static com.robusta.logger.tracer.LoggingStopWatch.EXECUTION_COMPLETION_TRACE_MSG;
 import static com.robusta.logger.tracer.Traceables.requestParams;
 import static com.robusta.logger.tracer.Traceables.sessionAttrs;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Not exactly a unit test, but a LoggerTracerFactory
@@ -96,4 +118,209 @@ public class LoggerTracerFactoryTest {
         invokeAMethodWithArguments("One", "Two", "Three", new String[]{"a", "b", "c"}, objectThatTakesTimeToString, new LoggerTracerFactoryTest());
         LoggerTracerFactory.shutdownAsync();
     }
+
+    @Test
+    public void testShutdownAsync_thenStartAsyncAgain_shouldLeaveNoConsumerThreadBehind() throws Exception {
+        int consumerThreads = consumerThreads();
+        for (int restart = 0; restart < 3; restart++) {
+            LoggerTracerFactory.startAsync();
+            loggerTracer(LoggerTracerFactoryTest.class, "restartedAsync", "One", "Two").lap("lap").stop();
+            DrainReport report = LoggerTracerFactory.shutdownAsync(10, TimeUnit.SECONDS);
+            assertThat(report.isTimedOut(), is(false));
+            assertThat(report.getAbandonedEvents(), is(equalTo(0L)));
+        }
+        assertThat(consumerThreads(), is(equalTo(consumerThreads)));
+        assertThat(LoggerTracerFactory.shutdownAsync(), is(sameInstance(DrainReport.NOTHING_TO_DRAIN)));
+    }
+
+    @Test
+    public void testAsyncShutdown_withTheShutdownHook_shouldRegisterItUntilTurnedOff() throws Exception {
+        LoggerTracerFactory.asyncShutdown(1, TimeUnit.SECONDS, true);
+        try {
+            assertThat(LoggerTracerFactory.isShutdownHookEnabled(), is(true));
+        } finally {
+            LoggerTracerFactory.asyncShutdown(LoggerTracerFactory.DEFAULT_DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, false);
+        }
+        assertThat(LoggerTracerFactory.isShutdownHookEnabled(), is(false));
+    }
+
+    @Test
+    public void testSwitchAsync_whileExecutionsAreTraced_shouldLogTheEventsOfTheOldDispatcherOnTheTracedThread() throws Exception {
+        Logger logger = mock(Logger.class);
+        when(logger.isTraceEnabled()).thenReturn(true);
+        CountingSink oldSink = new CountingSink();
+        CountingSink newSink = new CountingSink();
+        LoggerTracerFactory.startAsync(dispatcher(oldSink));
+        try {
+            TraceEventDispatcher inFlight = LoggerTracerFactory.configuration().getDispatcher();
+            inFlight.dispatchArguments(NOPLogger.NOP_LOGGER, "uuid", "LoggerTracerFactoryTest.switchAsync", new Object[]{"One"});
+            DrainReport report = LoggerTracerFactory.switchAsync(dispatcher(newSink));
+            assertThat(report.isTimedOut(), is(false));
+            assertThat(LoggerTracerFactory.configuration().getDispatcher(), is(not(sameInstance(inFlight))));
+            inFlight.dispatchExecution(logger, "uuid", "LoggerTracerFactoryTest.switchAsync", TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS);
+            LoggerTracerFactory.configuration().getDispatcher().dispatchArguments(NOPLogger.NOP_LOGGER, "uuid2",
+                    "LoggerTracerFactoryTest.switchAsync", new Object[]{"Two"});
+        } finally {
+            LoggerTracerFactory.shutdownAsync(10, TimeUnit.SECONDS);
+        }
+        assertThat(oldSink.written.get(), is(equalTo(1L)));
+        assertThat(newSink.written.get(), is(equalTo(1L)));
+        verify(logger).trace(EXECUTION_COMPLETION_TRACE_MSG, "uuid", "LoggerTracerFactoryTest.switchAsync", 1L, "ms");
+        assertThat(LoggerTracerFactory.configuration().isAsync(), is(false));
+    }
+
+    @Test
+    public void testReconfiguration_whileExecutionsAreTraced_shouldTraceEachExecutionByASingleConfiguration() throws Exception {
+        final TracePoint tracePoint = LoggerTracerFactory.tracePoint(LoggerTracerFactoryTest.class, "reconfigured");
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+        final AtomicLong executions = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(4);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        LoggerTracerFactory.callTreeProfiling(true, CallTreeProfile.DEFAULT_MAX_NODES);
+        try {
+            for (int thread = 0; thread < 4; thread++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            while (System.nanoTime() < deadline) {
+                                LoggerTracer outer = tracePoint.start("outer");
+                                tracePoint.start("inner").lap("lap").stop();
+                                outer.stop();
+                                executions.incrementAndGet();
+                            }
+                            assertThat(SpanStack.current().depth(), is(equalTo(0)));
+                        } catch (Throwable failure) {
+                            failures.add(failure);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+            for (int change = 0; done.getCount() > 0; change++) {
+                LoggerTracerFactory.pooledTracers(change % 2 == 0);
+                LoggerTracerFactory.nestedTracing(change % 3 == 0);
+                LoggerTracerFactory.virtualThreads(change % 5 == 0);
+                LoggerTracerFactory.sampling(change % 7 == 0 ? Samplers.oneIn(2) : Samplers.always(), 0, TimeUnit.MILLISECONDS);
+                Thread.yield();
+            }
+        } finally {
+            LoggerTracerFactory.pooledTracers(false);
+            LoggerTracerFactory.nestedTracing(false);
+            LoggerTracerFactory.virtualThreads(false);
+            LoggerTracerFactory.sampling(Samplers.always(), 0, TimeUnit.MILLISECONDS);
+            LoggerTracerFactory.callTreeProfiling(false, CallTreeProfile.DEFAULT_MAX_NODES);
+        }
+        assertThat(failures, is(empty()));
+        assertThat(executions.get(), is(greaterThan(0L)));
+    }
+
+    private static RingBufferTraceEventDispatcher dispatcher(TraceEventSink sink) {
+        return new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1,
+                RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS, sink, 1);
+    }
+
+    private static class CountingSink extends TraceEventSink {
+        private final AtomicLong written = new AtomicLong();
+
+        @Override
+        void write(TraceEvent event) {
+            written.incrementAndGet();
+        }
+
+        @Override
+        void writeSynchronously(TraceEvent event) {
+            written.incrementAndGet();
+        }
+    }
+
+    private static int consumerThreads() {
+        int consumerThreads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if(RingBufferTraceEventDispatcher.CONSUMER_THREAD_NAME.equals(thread.getName()) && thread.isAlive()) {
+                consumerThreads++;
+            }
+        }
+        return consumerThreads;
+    }
+
+    @Test
+    public void testNestedTracing_withASampledOutParent_shouldNotLogItsChildren_onItsThreadOrAnother() throws Exception {
+        List<String> messages = traceNested(new Sampler() {
+            @Override
+            public boolean sample(TracePoint tracePoint) {
+                return !"parent".equals(tracePoint.getMethodName());
+            }
+        });
+        assertThat(messages, is(empty()));
+    }
+
+    @Test
+    public void testNestedTracing_withASampledInParent_shouldLogItsChildren_whateverTheSamplerSaysOfThem() throws Exception {
+        List<String> messages = traceNested(new Sampler() {
+            @Override
+            public boolean sample(TracePoint tracePoint) {
+                return "parent".equals(tracePoint.getMethodName());
+            }
+        });
+        assertThat(messages, hasItem(containsString("LoggerTracerFactoryTest.parent")));
+        assertThat(messages, hasItem(containsString("LoggerTracerFactoryTest.child")));
+        assertThat(messages, hasItem(containsString("LoggerTracerFactoryTest.worker")));
+    }
+
+    /**
+     * Traces a parent, a child on the same thread and a worker on another
+     * thread, in the context of the parent.
+     *
+     * @return List of the messages of the methods logged.
+     */
+    private static List<String> traceNested(Sampler sampler) throws Exception {
+        org.apache.log4j.Logger tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        Level level = tracerLogger.getLevel();
+        final Queue<String> messages = new ConcurrentLinkedQueue<String>();
+        AppenderSkeleton appender = new AppenderSkeleton() {
+            @Override
+            protected void append(LoggingEvent event) {
+                String message = event.getRenderedMessage();
+                if(message.contains("LoggerTracerFactoryTest.")) {
+                    messages.add(message);
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public boolean requiresLayout() {
+                return false;
+            }
+        };
+        ExecutorService executor = TraceContexts.propagating(Executors.newSingleThreadExecutor());
+        tracerLogger.addAppender(appender);
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.refreshTraceEnabled();
+        LoggerTracerFactory.nestedTracing(true);
+        LoggerTracerFactory.sampling(sampler, 0, TimeUnit.MILLISECONDS);
+        try {
+            LoggerTracer parent = loggerTracer(LoggerTracerFactoryTest.class, "parent");
+            loggerTracer(LoggerTracerFactoryTest.class, "child").stop();
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    loggerTracer(LoggerTracerFactoryTest.class, "worker").stop();
+                }
+            }).get();
+            parent.stop();
+        } finally {
+            executor.shutdown();
+            LoggerTracerFactory.nestedTracing(false);
+            LoggerTracerFactory.sampling(Samplers.always(), 0, TimeUnit.MILLISECONDS);
+            tracerLogger.removeAppender(appender);
+            tracerLogger.setLevel(level);
+            LoggerTracerFactory.refreshTraceEnabled();
+        }
+        return new ArrayList<String>(messages);
+    }
 }
@@ -0,0 +1,109 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LoggerTracerPoolTest {
+    private LoggerTracerPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new LoggerTracerPool(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialization_withANonPositivePoolSize_shouldRaiseException() throws Exception {
+        new LoggerTracerPool(0);
+    }
+
+    @Test
+    public void testCurrent_shouldBeOnePoolPerThread() throws Exception {
+        assertThat(LoggerTracerPool.current(), is(sameInstance(LoggerTracerPool.current())));
+        final LoggerTracerPool[] otherThreadsPool = new LoggerTracerPool[1];
+        Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                otherThreadsPool[0] = LoggerTracerPool.current();
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        assertThat(otherThreadsPool[0], is(not(sameInstance(LoggerTracerPool.current()))));
+    }
+
+    @Test
+    public void testAcquire_andRelease_shouldReuseTheSameTracers() throws Exception {
+        PooledLoggerTracer first = pool.acquire();
+        PooledLoggerTracer second = pool.acquire();
+        assertThat(pool.available(), is(equalTo(0)));
+        pool.release(second);
+        pool.release(first);
+        assertThat(pool.acquire(), is(sameInstance(first)));
+        assertThat(pool.acquire(), is(sameInstance(second)));
+    }
+
+    @Test
+    public void testAcquire_whenExhausted_shouldServeAFreshTracer_andPoolItOnlyWhileThereIsRoom() throws Exception {
+        PooledLoggerTracer first = pool.acquire();
+        PooledLoggerTracer second = pool.acquire();
+        PooledLoggerTracer third = pool.acquire();
+        assertThat(third, is(notNullValue()));
+        pool.release(third);
+        pool.release(second);
+        pool.release(first);
+        assertThat(pool.available(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testRelease_fromAnotherThread_shouldNotReturnTheTracerToThePool() throws Exception {
+        final PooledLoggerTracer tracer = pool.acquire();
+        Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pool.release(tracer);
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        assertThat(pool.available(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testStriped_shouldBeSharedByTheThreads_andTakeBackTracersReleasedOnAnyThread() throws Exception {
+        final LoggerTracerPool striped = LoggerTracerPool.striped();
+        assertThat(striped.isStriped(), is(true));
+        assertThat(LoggerTracerPool.striped(), is(sameInstance(striped)));
+        int available = striped.available();
+        final PooledLoggerTracer tracer = striped.acquire();
+        Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                striped.release(tracer);
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        assertThat(striped.available(), is(equalTo(available)));
+        assertThat(striped.acquire(), is(sameInstance(tracer)));
+        striped.release(tracer);
+    }
+
+    @Test
+    public void testCurrentIfAny_onAThreadThatNeverAskedForItsPool_shouldBeNull() throws Exception {
+        final LoggerTracerPool[] otherThreadsPool = new LoggerTracerPool[]{pool};
+        Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                LoggerTracerPool.striped().release(LoggerTracerPool.striped().acquire());
+                otherThreadsPool[0] = LoggerTracerPool.currentIfAny();
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        assertThat(otherThreadsPool[0], is(nullValue()));
+        assertThat(LoggerTracerPool.current(), is(sameInstance(LoggerTracerPool.currentIfAny())));
+    }
+}
@@ -3,9 +3,14 @@ package com.robusta.logger.tracer;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.servlet.ServletContext;
+import java.util.Collections;
+
 import static com.robusta.logger.tracer.LoggerTracerFactory.loggerTracer;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class LoggerTracerServletContextListenerTest extends ServletContextListenerTestBase {
     private LoggerTracerServletContextListener listener;
@@ -19,8 +24,8 @@ public class LoggerTracerServletContextListenerTest extends ServletContextListen
     @Test
     public void testLoggerTracerServletContextListener() throws Exception {
         listener.contextInitialized(context);
-        assertThat((Boolean) staticFieldValueByName("asyncEnabled", LoggerTracerFactory.class), equalTo(true));
-        assertNotNull("LoggerTracerFactory's executor service must be initialized.", staticFieldValueByName("executor", LoggerTracerFactory.class));
+        assertThat(LoggerTracerFactory.configuration().isAsync(), equalTo(true));
+        assertNotNull("LoggerTracerFactory's trace event dispatcher must be initialized.", LoggerTracerFactory.configuration().getDispatcher());
         loggerTracer(LoggerTracerServletContextListenerTest.class,
                 "testContextInitialized",
                 "arg1",
@@ -31,8 +36,22 @@ public class LoggerTracerServletContextListenerTest extends ServletContextListen
                 .lap("Lap 1")
                 .stop();
         listener.contextDestroyed(context);
-        assertThat((Boolean) staticFieldValueByName("asyncEnabled", LoggerTracerFactory.class), equalTo(false));
-        assertNull("LoggerTracerFactory's executor service must be tear down (must be null).", staticFieldValueByName("executor", LoggerTracerFactory.class));
+        assertThat(LoggerTracerFactory.configuration().isAsync(), equalTo(false));
+        assertNull("LoggerTracerFactory's trace event dispatcher must be tear down (must be null).", LoggerTracerFactory.configuration().getDispatcher());
     }
 
+    @Test
+    public void testContextInitialized_withAnInvalidContextParameter_shouldStartAsyncLoggingWithTheDefaults() throws Exception {
+        ServletContext servletContext = mock(ServletContext.class);
+        when(servletContext.getInitParameterNames()).thenReturn(Collections.enumeration(Collections.singleton(TracerRuntime.ASYNC_CAPACITY_PROPERTY)));
+        when(servletContext.getInitParameter(TracerRuntime.ASYNC_CAPACITY_PROPERTY)).thenReturn("notANumber");
+        when(context.getServletContext()).thenReturn(servletContext);
+        listener.contextInitialized(context);
+        try {
+            assertThat(LoggerTracerFactory.configuration().isAsync(), equalTo(true));
+        } finally {
+            listener.contextDestroyed(context);
+        }
+        assertThat(LoggerTracerFactory.configuration().isAsync(), equalTo(false));
+    }
 }
@@ -1,9 +1,9 @@
 package com.robusta.logger.tracer;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.junit.Before;
 import org.junit.Test;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.mockito.Mockito.when;
 
 public class LoggingReStopWatchTest extends LoggingStopWatchTestBase {
@@ -11,7 +11,7 @@ public class LoggingReStopWatchTest extends LoggingStopWatchTestBase {
 
 	@Before
 	public void doSpecificSetup() throws Exception {
-		loggingReStopWatch = new LoggingReStopWatch(new StopWatch(), logger, methodName, uuid);
+		loggingReStopWatch = new LoggingReStopWatch(ticker, MILLISECONDS, logger, methodName, uuid);
 	}
 
 	@Test
@@ -1,127 +1,148 @@
 package com.robusta.logger.tracer;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.junit.Test;
 
+import static com.robusta.logger.tracer.LoggingStopWatch.EXECUTION_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.LAP_COMPLETION_TRACE_MSG;
+import static java.util.concurrent.TimeUnit.*;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 public class LoggingStopWatchTest extends LoggingStopWatchTestBase {
     private LoggingStopWatch loggingStopWatch;
-    private LoggingStopWatch loggingWStopWatch;
 
     @Override
     protected void doSpecificSetup() throws Exception {
-        loggingStopWatch = new LoggingStopWatch(stopWatch, logger, methodName, uuid);        
-        loggingWStopWatch = new LoggingStopWatch(new StopWatch(), logger, methodName, uuid);
+        loggingStopWatch = new LoggingStopWatch(ticker, MILLISECONDS, logger, methodName, uuid);
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testInitializationWithoutAStopWatch_shouldRaiseException() throws Exception {
-        new LoggingStopWatch(null, logger, methodName, uuid);
+    public void testInitializationWithoutATicker_shouldRaiseException() throws Exception {
+        new LoggingStopWatch(null, MILLISECONDS, logger, methodName, uuid);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitializationWithoutATimeUnit_shouldRaiseException() throws Exception {
+        new LoggingStopWatch(ticker, null, logger, methodName, uuid);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testInitializationWithoutALogger_shouldRaiseException() throws Exception {
-        new LoggingStopWatch(stopWatch, null, methodName, uuid);
+        new LoggingStopWatch(ticker, MILLISECONDS, null, methodName, uuid);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testInitializationWithoutAMethodName_shouldRaiseException() throws Exception {
-        new LoggingStopWatch(stopWatch, logger, null, uuid);
+        new LoggingStopWatch(ticker, MILLISECONDS, logger, null, uuid);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testInitializationWithAnEmptyMethodName_shouldRaiseException() throws Exception {
-        new LoggingStopWatch(stopWatch, logger, "", uuid);
+        new LoggingStopWatch(ticker, MILLISECONDS, logger, "", uuid);
     }
 
     @Test
     public void testStop_whenTraceIsNotEnabled_shouldBeANoOp() throws Exception {
         loggingStopWatch.stop();
         verifyThatIsTraceEnabled_invokedOnTheLogger();
-        verifyNoMoreInteractions(logger, stopWatch);
+        verifyNoMoreInteractions(logger);
+        verifyThatTickerWasNotRead();
     }
 
     @Test
     public void testLap_whenTraceIsNotEnabled_shouldBeANoOp() throws Exception {
         loggingStopWatch.lap("test");
         verifyThatIsTraceEnabled_invokedOnTheLogger();
-        verifyNoMoreInteractions(logger, stopWatch);
+        verifyNoMoreInteractions(logger);
+        verifyThatTickerWasNotRead();
     }
 
     @Test
-    public void testLap_stopWatchStarted_notStopped_gotTime_loggedUsingLogger() throws Exception {
+    public void testLap_started_notStopped_timedWithTheTicker_loggedUsingLogger() throws Exception {
         whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
-        whenGetTime_invokedOnStopWatch_shouldReturn(lapTime);
-        new LoggingStopWatch(stopWatch, logger, methodName, uuid).lap("test");
+        LoggingStopWatch tracer = new LoggingStopWatch(ticker, MILLISECONDS, logger, methodName, uuid);
+        ticker.advance(lapTime, MILLISECONDS);
+        tracer.lap("test");
         verifyThatIsTraceEnabled_invokedOnTheLogger();
-        verifyThatStopWatchWasStarted();
-        verifyThatStopWatchWasNotStoppedToAllowFurtherLapCalls();
-        verifyThatTimingInfoWasObtainedFromStopWatch_invocationOfGetTime();
         verifyThatLapCompletionWithLapDescriptionWasLoggedIntoTheLogger();
-        verifyNoMoreInteractions(logger, stopWatch);
-    }
-
-    private void verifyThatStopWatchWasNotStoppedToAllowFurtherLapCalls() {
-        verify(stopWatch, never()).stop();
+        verifyNoMoreInteractions(logger);
     }
 
-    private void verifyThatStopWatchWasStarted() {
-        verify(stopWatch).start();
-    }
-
-    private void whenGetTime_invokedOnStopWatch_shouldReturn(long time) {
-        when(stopWatch.getTime()).thenReturn(time);
+    @Test
+    public void testLap_shouldLogTheTotalSinceStart_andTheSplitSinceThePreviousLap() throws Exception {
+        whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
+        LoggingStopWatch tracer = new LoggingStopWatch(ticker, MILLISECONDS, logger, methodName, uuid);
+        ticker.advance(3, MILLISECONDS);
+        tracer.lap("first");
+        ticker.advance(4, MILLISECONDS);
+        tracer.lap(LAP_DESCRIPTION);
+        verify(logger).trace(LAP_COMPLETION_TRACE_MSG, uuid, "first", 3L, "ms", 3L, "ms");
+        verifyThatLapCompletionWithLapDescriptionWasLoggedIntoTheLogger(7L, 4L);
     }
 
     @Test
-    public void testStop_stopWatch_started_stopped_gotTime_loggedExectionTime_usingLogger() throws Exception {
+    public void testStop_started_stopped_timedWithTheTicker_loggedExectionTime_usingLogger() throws Exception {
         whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
-        whenGetTime_invokedOnStopWatch_shouldReturn(executionTime);
-        new LoggingStopWatch(stopWatch, logger, methodName, uuid).stop();
+        LoggingStopWatch tracer = new LoggingStopWatch(ticker, MILLISECONDS, logger, methodName, uuid);
+        ticker.advance(executionTime, MILLISECONDS);
+        tracer.stop();
         verifyThatIsTraceEnabled_invokedOnTheLogger();
-        verifyThatStopWatchWasStarted();
-        verifyThatStopWatchWasStoppedToPreventFurtherLapCalls();
-        verifyThatTimingInfoWasObtainedFromStopWatch_invocationOfGetTime();
         verifyThatExecutionCompletionWasLoggedIntoTheLogger();
-        verifyNoMoreInteractions(logger, stopWatch);
+        verifyNoMoreInteractions(logger);
+    }
+
+    @Test
+    public void testStop_shouldLogInTheConfiguredTimeUnit_withSubMillisecondResolution() throws Exception {
+        whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
+        LoggingStopWatch inNanos = new LoggingStopWatch(ticker, NANOSECONDS, logger, methodName, uuid);
+        LoggingStopWatch inMicros = new LoggingStopWatch(ticker, MICROSECONDS, logger, methodName, uuid);
+        ticker.advance(1500, NANOSECONDS);
+        inNanos.stop();
+        inMicros.stop();
+        verify(logger).trace(EXECUTION_COMPLETION_TRACE_MSG, uuid, methodName, 1500L, "ns");
+        verify(logger).trace(EXECUTION_COMPLETION_TRACE_MSG, uuid, methodName, 1L, "\u00b5s");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnitSymbol_forAnUnsupportedTimeUnit_shouldRaiseException() throws Exception {
+        LoggingStopWatch.unitSymbol(SECONDS);
     }
 
     @Test(expected = IllegalStateException.class)
     public void testLoggingStopWatch_ReStop_shouldRaiseException() {
     	when(logger.isTraceEnabled()).thenReturn(true);
-    	loggingWStopWatch.stop();
-    	loggingWStopWatch.stop();
-    }  
-    
-    private void verifyThatTimingInfoWasObtainedFromStopWatch_invocationOfGetTime() {
-        verify(stopWatch).getTime();
+        LoggingStopWatch tracer = new LoggingStopWatch(ticker, MILLISECONDS, logger, methodName, uuid);
+    	tracer.stop();
+    	tracer.stop();
     }
 
-    private void verifyThatStopWatchWasStoppedToPreventFurtherLapCalls() {
-        verify(stopWatch).stop();
+    private void verifyThatTickerWasNotRead() {
+        assertThat(ticker.reads(), is(equalTo(0L)));
     }
 
     private void verifyThatIsTraceEnabled_invokedOnTheLogger() {
         verify(logger, atLeastOnce()).isTraceEnabled();
     }
 
-    @SuppressWarnings("FinalizeCalledExplicitly")
-    @Test
-    public void testThatWhenLoggerTracerIsNotStopped_warningMessageIsPrintedOnFinally() throws Throwable {
-    	whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
-    	loggingStopWatch.finalize();
-    	verify(logger).warn(LoggingStopWatch.STOP_NOT_CALLED_ON_TRACER, uuid);
-    }
-    
-    @SuppressWarnings("FinalizeCalledExplicitly")
     @Test
-    public void testThatWhenLoggerTracerIsStopped_jvmCallsFinalizeOnGC_noWarningMessageIsPrintedOnFinally() throws Throwable {
-    	whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
-    	whenGetTime_invokedOnStopWatch_shouldReturn(executionTime);
-    	loggingStopWatch.stop().finalize();
-    	verifyThatIsTraceEnabled_invokedOnTheLogger();
-    	verifyThatExecutionCompletionWasLoggedIntoTheLogger();    	
-    	verifyNoMoreInteractions(logger);
+    public void testThatWhenLoggerTracerIsStopped_itIsNoLongerTrackedForLeaks() throws Throwable {
+        TracerLeakDetector.configure(true, 1);
+        try {
+            whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue();
+            int tracked = TracerLeakDetector.trackedCount();
+            LoggingStopWatch tracer = new LoggingStopWatch(ticker, MILLISECONDS, logger, methodName, uuid);
+            assertThat(TracerLeakDetector.trackedCount(), is(equalTo(tracked + 1)));
+            ticker.advance(executionTime, MILLISECONDS);
+            tracer.stop();
+            assertThat(TracerLeakDetector.trackedCount(), is(equalTo(tracked)));
+            verifyThatExecutionCompletionWasLoggedIntoTheLogger();
+            verify(logger, never()).warn(anyString(), anyObject(), anyObject());
+        } finally {
+            TracerLeakDetector.configure(true, TracerLeakDetector.DEFAULT_SAMPLE_INTERVAL);
+        }
     }
 }
@@ -1,6 +1,5 @@
 package com.robusta.logger.tracer;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.junit.Before;
 import org.mockito.Mock;
 import org.slf4j.Logger;
@@ -10,23 +9,25 @@ import java.util.Random;
 import static com.robusta.logger.tracer.LoggingStopWatch.EXECUTION_COMPLETION_TRACE_MSG;
 import static com.robusta.logger.tracer.LoggingStopWatch.LAP_COMPLETION_TRACE_MSG;
 import static java.util.UUID.randomUUID;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class LoggingStopWatchTestBase {
-	@Mock protected StopWatch stopWatch;
+    protected FakeTicker ticker;
     @Mock protected Logger logger;
     protected String methodName;
     protected String uuid;
 
-    protected long lapTime = new Random().nextLong();
-    protected long executionTime = new Random().nextLong();
+    protected long lapTime = 1 + new Random().nextInt(1000);
+    protected long executionTime = lapTime + new Random().nextInt(1000);
     protected static final String LAP_DESCRIPTION = "test";
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
+        ticker = new FakeTicker();
         methodName = "LoggingStopWatchTest.aMethod";
         uuid = randomUUID().toString();
         doSpecificSetup();
@@ -37,7 +38,7 @@ public class LoggingStopWatchTestBase {
 	}
 
     protected void verifyThatExecutionCompletionWasLoggedIntoTheLogger() {
-        verify(logger).trace(EXECUTION_COMPLETION_TRACE_MSG, uuid, methodName, executionTime);
+        verify(logger).trace(EXECUTION_COMPLETION_TRACE_MSG, uuid, methodName, executionTime, "ms");
     }
 
     protected void whenIsTraceEnabled_InvokedOnLogger_shouldReturnTrue() {
@@ -45,6 +46,14 @@ public class LoggingStopWatchTestBase {
     }
 
     protected void verifyThatLapCompletionWithLapDescriptionWasLoggedIntoTheLogger() {
-        verify(logger).trace(LAP_COMPLETION_TRACE_MSG, uuid, LAP_DESCRIPTION, lapTime);
+        verifyThatLapCompletionWithLapDescriptionWasLoggedIntoTheLogger(lapTime, lapTime);
+    }
+
+    protected void verifyThatLapCompletionWithLapDescriptionWasLoggedIntoTheLogger(long lapTime, long splitTime) {
+        verify(logger).trace(LAP_COMPLETION_TRACE_MSG, uuid, LAP_DESCRIPTION, lapTime, "ms", splitTime, "ms");
+    }
+
+    protected long nanos(long millis) {
+        return MILLISECONDS.toNanos(millis);
     }
 }
@@ -0,0 +1,182 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.Level;
+import org.apache.log4j.varia.NullAppender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static com.robusta.logger.tracer.LoggerTracerFactory.loggerTracer;
+import static com.robusta.logger.tracer.LoggingMethodArgumentHandler.METHOD_ARGUMENT_TRACE_LOG_MESSAGE;
+import static com.robusta.logger.tracer.LoggingMethodArgumentHandler.NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE;
+import static com.robusta.logger.tracer.LoggingStopWatch.EXECUTION_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.LAP_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.NESTED_EXECUTION_COMPLETION_TRACE_MSG;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class PooledLoggerTracerTest {
+    private static final int WARM_UP_CALLS = 200000;
+    private static final int MEASURED_CALLS = 100000;
+    private static final long ALLOCATION_BUDGET_BYTES = 1024L;
+    private static volatile Object[] escapedArguments;
+    @Mock private Logger logger;
+    private LoggerTracerPool pool;
+    private FakeTicker ticker;
+    private final Object[] methodArguments = new Object[]{1L, "AString"};
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        pool = LoggerTracerPool.current();
+        ticker = new FakeTicker();
+    }
+
+    @Test
+    public void testSynchronousTracing_shouldLogArguments_lap_andExecution_withARenderedTraceIdAndMethodName() throws Exception {
+        LoggerTracer tracer = pool.acquire().start(logger, TracePointRegistry.tracePoint(PooledLoggerTracerTest.class, "aMethod"),
+                TraceIdGenerators.sequential(), ticker, MILLISECONDS, null, false, false, null, methodArguments);
+        ticker.advance(2, MILLISECONDS);
+        tracer.lap("lap");
+        ticker.advance(3, MILLISECONDS);
+        tracer.stop();
+        verify(logger).trace(eq(METHOD_ARGUMENT_TRACE_LOG_MESSAGE), anyString(), eq("PooledLoggerTracerTest.aMethod"),
+                eq(LoggingMethodArgumentHandlerTest.<Object>newArrayList(1L, "AString")));
+        verify(logger).trace(eq(LAP_COMPLETION_TRACE_MSG), anyString(), eq("lap"), eq(2L), eq("ms"), eq(2L), eq("ms"));
+        verify(logger).trace(eq(EXECUTION_COMPLETION_TRACE_MSG), anyString(), eq("PooledLoggerTracerTest.aMethod"), eq(5L), eq("ms"));
+    }
+
+    @Test
+    public void testStop_shouldReturnTheTracerToThePool_andANoOpTracerToChainOn() throws Exception {
+        PooledLoggerTracer tracer = pool.acquire();
+        int available = pool.available();
+        LoggerTracer stopped = tracer.start(logger, TracePointRegistry.tracePoint(PooledLoggerTracerTest.class, "aMethod"), TraceIdGenerators.sequential(), ticker, MILLISECONDS, null, false, false, null, methodArguments).stop();
+        assertThat(stopped, is(sameInstance(LoggerTracerFactory.NO_OP_TRACER)));
+        assertThat(tracer.isStarted(), is(false));
+        assertThat(pool.available(), is(equalTo(available + 1)));
+        assertThat(pool.acquire(), is(sameInstance(tracer)));
+    }
+
+    @Test
+    public void testNestedTracing_shouldLogTheParentAndDepthOfTheChild_andTheSelfTimeOfEachExecution() throws Exception {
+        TraceIdGenerator generator = new TraceIdGenerators.SequentialTraceIdGenerator(0L);
+        PooledLoggerTracer parent = pool.acquire().start(logger, TracePointRegistry.tracePoint(PooledLoggerTracerTest.class, "parent"),
+                generator, ticker, MILLISECONDS, null, false, true, null, methodArguments);
+        ticker.advance(2, MILLISECONDS);
+        PooledLoggerTracer child = pool.acquire().start(logger, TracePointRegistry.tracePoint(PooledLoggerTracerTest.class, "child"),
+                generator, ticker, MILLISECONDS, null, false, true, null, methodArguments);
+        ticker.advance(5, MILLISECONDS);
+        child.stop();
+        ticker.advance(3, MILLISECONDS);
+        parent.stop();
+        String parentId = generator.format(0L);
+        String childId = generator.format(1L);
+        verify(logger).trace(eq(METHOD_ARGUMENT_TRACE_LOG_MESSAGE), eq(parentId), eq("PooledLoggerTracerTest.parent"),
+                eq(LoggingMethodArgumentHandlerTest.<Object>newArrayList(1L, "AString")));
+        verify(logger).trace(eq(NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE), eq(childId), eq("PooledLoggerTracerTest.child"),
+                eq(LoggingMethodArgumentHandlerTest.<Object>newArrayList(1L, "AString")), eq(parentId), eq(1));
+        verify(logger).trace(eq(NESTED_EXECUTION_COMPLETION_TRACE_MSG), eq(childId), eq("PooledLoggerTracerTest.child"),
+                eq(5L), eq("ms"), eq(5L), eq("ms"));
+        verify(logger).trace(eq(NESTED_EXECUTION_COMPLETION_TRACE_MSG), eq(parentId), eq("PooledLoggerTracerTest.parent"),
+                eq(10L), eq("ms"), eq(5L), eq("ms"));
+        assertThat(SpanStack.current().depth(), is(equalTo(0)));
+    }
+
+    /**
+     * Not a JMH benchmark, asserts on the bytes the JVM accounts to
+     * the traced thread across a steady state run of traced calls,
+     * less the varargs arrays the traced calls pass, which a run of
+     * untraced calls with the same arguments allocates.
+     */
+    @Test
+    public void testTracedCall_withPooledTracersAndAsyncLogging_allocatesNothingOnTheTracedThread() throws Exception {
+        assertTracedCallsAllocateNothing(false);
+    }
+
+    @Test
+    public void testNestedTracedCall_withPooledTracersAndAsyncLogging_allocatesNothingOnTheTracedThread() throws Exception {
+        assertTracedCallsAllocateNothing(true);
+    }
+
+    private void assertTracedCallsAllocateNothing(boolean nested) throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        org.apache.log4j.Logger tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        Level level = tracerLogger.getLevel();
+        List<Appender> appenders = appendersOf(tracerLogger);
+        for (Appender appender : appenders) {
+            tracerLogger.removeAppender(appender);
+        }
+        Appender nullAppender = new NullAppender();
+        tracerLogger.addAppender(nullAppender);
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.pooledTracers(true);
+        LoggerTracerFactory.nestedTracing(nested);
+        LoggerTracerFactory.startAsync();
+        try {
+            traceCalls(WARM_UP_CALLS);
+            passArguments(WARM_UP_CALLS);
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            passArguments(MEASURED_CALLS);
+            long argumentsAllocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            traceCalls(MEASURED_CALLS);
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            assertThat("Bytes allocated by " + MEASURED_CALLS + " traced calls besides their arguments",
+                    allocated - argumentsAllocated, is(lessThanOrEqualTo(ALLOCATION_BUDGET_BYTES)));
+        } finally {
+            LoggerTracerFactory.shutdownAsync();
+            LoggerTracerFactory.pooledTracers(false);
+            LoggerTracerFactory.nestedTracing(false);
+            tracerLogger.setLevel(level);
+            tracerLogger.removeAppender(nullAppender);
+            for (Appender appender : appenders) {
+                tracerLogger.addAppender(appender);
+            }
+        }
+    }
+
+    private void traceCalls(int calls) {
+        for (int call = 0; call < calls; call++) {
+            LoggerTracer tracer = loggerTracer(PooledLoggerTracerTest.class, "tracedCall", 1L, "AString");
+            loggerTracer(PooledLoggerTracerTest.class, "nestedCall", 1L, "AString").stop();
+            tracer.lap("lap").stop();
+        }
+    }
+
+    private void passArguments(int calls) {
+        for (int call = 0; call < calls; call++) {
+            escape(1L, "AString");
+            escape(1L, "AString");
+        }
+    }
+
+    private static void escape(Object... arguments) {
+        escapedArguments = arguments;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Appender> appendersOf(org.apache.log4j.Logger logger) {
+        return new ArrayList<Appender>(Collections.list((Enumeration<Appender>) logger.getAllAppenders()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggerTracerFactory.pooledTracers(false);
+    }
+}
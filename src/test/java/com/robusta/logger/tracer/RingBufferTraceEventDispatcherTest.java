@@ -0,0 +1,513 @@
+package com.robusta.logger.tracer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.NOPLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.robusta.logger.tracer.LoggingStopWatch.EXECUTION_COMPLETION_TRACE_MSG;
+import static com.robusta.logger.tracer.LoggingStopWatch.LAP_COMPLETION_TRACE_MSG;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RingBufferTraceEventDispatcherTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RingBufferTraceEventDispatcherTest.class);
+    private static final int EVENTS_PER_PRODUCER = 2000;
+    private static final int THROUGHPUT_EVENTS_PER_PRODUCER = 100000;
+    private RingBufferTraceEventDispatcher dispatcher;
+    @Mock private Logger logger;
+    private List<Object[]> loggedLaps;
+    private static final String BLOCKING_LAP = "blocking";
+    private final CountDownLatch consumerBlocked = new CountDownLatch(1);
+    private final CountDownLatch releaseConsumer = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        loggedLaps = Collections.synchronizedList(new ArrayList<Object[]>());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Object[] arguments = invocation.getArguments();
+                loggedLaps.add(new Object[]{arguments[1], arguments[2], arguments[3]});
+                if(BLOCKING_LAP.equals(arguments[2])) {
+                    consumerBlocked.countDown();
+                    releaseConsumer.await();
+                }
+                return null;
+            }
+        }).when(logger).trace(eq(LAP_COMPLETION_TRACE_MSG), Matchers.<Object[]>anyVararg());
+        dispatcher = new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        releaseConsumer.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testEventsOfEachProducer_areLoggedInFifoOrder_evenWhenTheRingBufferWrapsAround() throws Exception {
+        assertEventsOfEachProducerAreLoggedInFifoOrder();
+    }
+
+    @Test
+    public void testEventsOfEachProducer_withStripedRingBuffers_areLoggedInFifoOrder() throws Exception {
+        dispatcher.shutdown();
+        dispatcher = new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1,
+                RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS,
+                new LoggerTraceEventSink(), 4);
+        assertThat(dispatcher.stripes(), is(equalTo(4)));
+        assertEventsOfEachProducerAreLoggedInFifoOrder();
+    }
+
+    @Test
+    public void testConsumer_withStripedRingBuffers_shouldMergeThemInPublicationOrder() throws Exception {
+        dispatcher.shutdown();
+        dispatcher = new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1,
+                RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS,
+                new LoggerTraceEventSink(), 8);
+        dispatcher.dispatchLap(logger, "uuid", BLOCKING_LAP, 0L, 0L, NANOSECONDS);
+        consumerBlocked.await();
+        for (long lapTime = 1L; lapTime <= 8L; lapTime++) {
+            final long lap = lapTime;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    dispatcher.dispatchLap(logger, "uuid", "lap", lap, lap, NANOSECONDS);
+                }
+            });
+            producer.start();
+            producer.join();
+        }
+        releaseConsumerAndShutdown();
+        assertThatLoggedLapTimesAre(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+    }
+
+    @Test
+    public void testShutdown_shouldDrainThePendingEvents_andReportThemFlushed() throws Exception {
+        dispatcher.shutdown();
+        final StuckSink sink = new StuckSink();
+        dispatcher = new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1, 4, 10000000L, sink);
+        for (long lapTime = 0L; lapTime < 4L; lapTime++) {
+            dispatcher.dispatchLap(logger, "uuid", "lap", lapTime, lapTime, NANOSECONDS);
+        }
+        sink.entered.await();
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException ignored) {
+                }
+                sink.release.countDown();
+            }
+        });
+        releaser.start();
+        DrainReport report = dispatcher.shutdown(10, SECONDS);
+        assertThat(report.isTimedOut(), is(false));
+        assertThat(report.getFlushedEvents(), is(equalTo(4L)));
+        assertThat(report.getAbandonedEvents(), is(equalTo(0L)));
+        assertThat(sink.written.get(), is(equalTo(4L)));
+        assertThat(sink.closed, is(true));
+    }
+
+    @Test
+    public void testShutdown_withAStuckSink_shouldAbandonThePendingEventsAtTheDeadline() throws Exception {
+        dispatcher.shutdown();
+        StuckSink sink = new StuckSink();
+        dispatcher = new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1, 4, 10000000L, sink);
+        for (long lapTime = 0L; lapTime < 6L; lapTime++) {
+            dispatcher.dispatchLap(logger, "uuid", "lap", lapTime, lapTime, NANOSECONDS);
+        }
+        sink.entered.await();
+        long start = System.nanoTime();
+        DrainReport report = dispatcher.shutdown(100, MILLISECONDS);
+        assertThat(NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(5000L)));
+        assertThat(report.isTimedOut(), is(true));
+        assertThat(report.getFlushedEvents(), is(equalTo(0L)));
+        assertThat(report.getAbandonedEvents(), is(equalTo(5L)));
+        sink.release.countDown();
+        sink.closing.await(10, SECONDS);
+        assertThat(sink.written.get(), is(equalTo(1L)));
+        assertThat(sink.interrupted, is(true));
+    }
+
+    @Test
+    public void testShutdown_whileProducersArePublishing_shouldLogOrDropEveryEvent() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            assertEveryEventIsLoggedOrDropped(new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1,
+                    RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS,
+                    new LoggerTraceEventSink(), round % 2 == 0 ? 1 : 4));
+        }
+    }
+
+    private static void assertEveryEventIsLoggedOrDropped(final TraceEventDispatcher dispatcher) throws Exception {
+        AtomicLong logged = new AtomicLong();
+        final Logger countingLogger = countingLogger(logged);
+        final AtomicLong published = new AtomicLong();
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!stop.get()) {
+                        dispatcher.dispatchLap(countingLogger, "uuid", "lap", 1L, 1L, NANOSECONDS);
+                        published.incrementAndGet();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        while (published.get() < 1000) {
+            Thread.yield();
+        }
+        DrainReport report = dispatcher.shutdown();
+        Thread.sleep(5L);
+        stop.set(true);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertThat(report.isTimedOut(), is(false));
+        assertThat(logged.get() + dispatcher.droppedEventCount(), is(equalTo(published.get())));
+    }
+
+    /**
+     * Not a JMH benchmark: the time it takes 1 to N producers to dispatch
+     * (and the consumer to write) their events through a single ring
+     * buffer, striped ring buffers and the executor dispatcher. Asserts
+     * that every event reached the sink or the logger, the timings are
+     * logged.
+     */
+    @Test
+    public void testThroughput_fromOneToManyProducers_singleVersusStripedRingBuffersVersusExecutor() throws Exception {
+        int maxProducers = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int producers = 1; producers <= maxProducers; producers *= 2) {
+            CountingSink single = new CountingSink();
+            long singleNanos = dispatchFrom(producers, new RingBufferTraceEventDispatcher(1024, WaitStrategy.YIELD, OverflowPolicy.BLOCK,
+                    60000L, 1, RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS,
+                    single, 1), NOPLogger.NOP_LOGGER);
+            CountingSink striped = new CountingSink();
+            long stripedNanos = dispatchFrom(producers, new RingBufferTraceEventDispatcher(1024, WaitStrategy.YIELD, OverflowPolicy.BLOCK,
+                    60000L, 1, RingBufferTraceEventDispatcher.DEFAULT_BATCH_SIZE, RingBufferTraceEventDispatcher.DEFAULT_BATCH_TIME_BUDGET_MICROS,
+                    striped, Stripes.perProcessor()), NOPLogger.NOP_LOGGER);
+            AtomicLong executorLogged = new AtomicLong();
+            long executorNanos = dispatchFrom(producers, new ExecutorTraceEventDispatcher(Executors.newSingleThreadExecutor()),
+                    countingLogger(executorLogged));
+            LOGGER.info("Throughput of {} producer(s) x {} events: single {} ms, striped {} ms, executor {} ms", producers,
+                    THROUGHPUT_EVENTS_PER_PRODUCER, NANOSECONDS.toMillis(singleNanos), NANOSECONDS.toMillis(stripedNanos),
+                    NANOSECONDS.toMillis(executorNanos));
+            long events = (long) producers * THROUGHPUT_EVENTS_PER_PRODUCER;
+            assertThat(single.written.get(), is(equalTo(events)));
+            assertThat(striped.written.get(), is(equalTo(events)));
+            assertThat(executorLogged.get(), is(equalTo(events)));
+        }
+    }
+
+    private static long dispatchFrom(int producerCount, final TraceEventDispatcher dispatcher, final Logger logger) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < THROUGHPUT_EVENTS_PER_PRODUCER; i++) {
+                        dispatcher.dispatchLap(logger, "uuid", "lap", i, i, NANOSECONDS);
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        dispatcher.shutdown();
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return Logger a logger that counts the trace messages logged into it.
+     */
+    private static Logger countingLogger(final AtomicLong logged) {
+        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[]{Logger.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+                        if("trace".equals(method.getName())) {
+                            logged.incrementAndGet();
+                        }
+                        return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+                    }
+                });
+    }
+
+    private void assertEventsOfEachProducerAreLoggedInFifoOrder() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            final String uuid = "producer-" + p;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                        dispatcher.dispatchLap(logger, uuid, "lap", i, i, NANOSECONDS);
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        dispatcher.shutdown();
+        int[] expectedLapTime = new int[producers.length];
+        for (Object[] loggedArguments : loggedLaps) {
+            int producer = Integer.parseInt(((String) loggedArguments[0]).substring("producer-".length()));
+            assertThat((Long) loggedArguments[2], is(equalTo((long) expectedLapTime[producer]++)));
+        }
+        for (int lapsLogged : expectedLapTime) {
+            assertThat(lapsLogged, is(equalTo(EVENTS_PER_PRODUCER)));
+        }
+    }
+
+    @Test
+    public void testDispatch_afterShutdown_shouldLogOnTheCallerThread() throws Exception {
+        dispatcher.shutdown();
+        dispatcher.dispatchExecution(logger, "uuid", "aMethod", 10L, NANOSECONDS);
+        verify(logger).trace(EXECUTION_COMPLETION_TRACE_MSG, "uuid", "aMethod", 10L, "ns");
+    }
+
+    @Test
+    public void testOverflow_dropNewest_shouldDropTheEventBeingDispatched() throws Exception {
+        fillRingBufferWhileConsumerIsBlocked(OverflowPolicy.DROP_NEWEST, 0L);
+        dispatcher.dispatchLap(logger, "uuid", "lap", 4L, 4L, NANOSECONDS);
+        assertThat(dispatcher.droppedEventCount(), is(equalTo(1L)));
+        releaseConsumerAndShutdown();
+        assertThatLoggedLapTimesAre(0L, 1L, 2L, 3L);
+    }
+
+    @Test
+    public void testOverflow_dropOldest_whenTheSlotNeededIsBeingLogged_shouldDropTheEventBeingDispatched() throws Exception {
+        fillRingBufferWhileConsumerIsBlocked(OverflowPolicy.DROP_OLDEST, 0L);
+        dispatcher.dispatchLap(logger, "uuid", "lap", 4L, 4L, NANOSECONDS);
+        assertThat(dispatcher.droppedEventCount(), is(equalTo(1L)));
+        releaseConsumerAndShutdown();
+        assertThatLoggedLapTimesAre(0L, 1L, 2L, 3L);
+    }
+
+    @Test
+    public void testOverflow_block_shouldWaitForTheTimeout_andThenDrop() throws Exception {
+        fillRingBufferWhileConsumerIsBlocked(OverflowPolicy.BLOCK, 10L);
+        dispatcher.dispatchLap(logger, "uuid", "lap", 4L, 4L, NANOSECONDS);
+        assertThat(dispatcher.degradedEventCount(), is(equalTo(0L)));
+        assertThat(dispatcher.droppedEventCount(), is(equalTo(1L)));
+        releaseConsumerAndShutdown();
+        assertThatLoggedLapTimesAre(0L, 1L, 2L, 3L);
+    }
+
+    @Test
+    public void testOverflow_block_shouldWaitForRoom_andCountTheEventAsDegraded() throws Exception {
+        fillRingBufferWhileConsumerIsBlocked(OverflowPolicy.BLOCK, 60000L);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                releaseConsumer.countDown();
+            }
+        }).start();
+        dispatcher.dispatchLap(logger, "uuid", "lap", 4L, 4L, NANOSECONDS);
+        assertThat(dispatcher.degradedEventCount(), is(equalTo(1L)));
+        releaseConsumerAndShutdown();
+        assertThat(dispatcher.droppedEventCount(), is(equalTo(0L)));
+        assertThatLoggedLapTimesAre(0L, 1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    public void testOverflow_logSynchronously_shouldLogOnTheCallerThread() throws Exception {
+        fillRingBufferWhileConsumerIsBlocked(OverflowPolicy.LOG_SYNCHRONOUSLY, 0L);
+        dispatcher.dispatchLap(logger, "uuid", "lap", 4L, 4L, NANOSECONDS);
+        assertThatLoggedLapTimesAre(0L, 4L);
+        assertThat(dispatcher.degradedEventCount(), is(equalTo(1L)));
+        releaseConsumerAndShutdown();
+        assertThat(dispatcher.droppedEventCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testOverflow_sample_shouldDropMostEventsUnderPressure() throws Exception {
+        fillRingBufferWhileConsumerIsBlocked(OverflowPolicy.SAMPLE, 0L);
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatchLap(logger, "uuid", "lap", 4L, 4L, NANOSECONDS);
+        }
+        // pressure builds up once the ring buffer is half full, the third lap is already sampled out.
+        assertThat(dispatcher.droppedEventCount(), is(equalTo(101L)));
+        releaseConsumerAndShutdown();
+        assertThatLoggedLapTimesAre(0L, 1L, 2L);
+    }
+
+    @Test
+    public void testConsumer_shouldDrainQueuedEventsInBatches_andFlushTheSinkWhenIdleAndOnShutdown() throws Exception {
+        dispatcher.shutdown();
+        RecordingSink sink = new RecordingSink();
+        dispatcher = new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD, OverflowPolicy.BLOCK, 60000L, 1, 4, 10000000L, sink);
+        dispatcher.dispatchLap(logger, "uuid", BLOCKING_LAP, 0L, 0L, NANOSECONDS);
+        consumerBlocked.await();
+        for (long lapTime = 1L; lapTime <= 9L; lapTime++) {
+            dispatcher.dispatchLap(logger, "uuid", "lap", lapTime, lapTime, NANOSECONDS);
+        }
+        releaseConsumerAndShutdown();
+        assertThatLoggedLapTimesAre(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        List<String> calls = sink.calls;
+        int firstBatch = calls.indexOf("batch of 4");
+        assertThat(calls.subList(firstBatch, firstBatch + 3), is(equalTo(Arrays.asList("batch of 4", "batch of 4", "batch of 2"))));
+        assertThat(calls.subList(calls.size() - 2, calls.size()), is(equalTo(Arrays.asList("flush", "close"))));
+    }
+
+    private static class CountingSink extends TraceEventSink {
+        private final AtomicLong written = new AtomicLong();
+
+        @Override
+        void write(TraceEvent event) {
+            written.incrementAndGet();
+        }
+
+        @Override
+        void writeSynchronously(TraceEvent event) {
+            written.incrementAndGet();
+        }
+    }
+
+    /**
+     * Blocks the consumer in its first write until released, ignoring interrupts, as a stuck appender would.
+     */
+    private static class StuckSink extends TraceEventSink {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch closing = new CountDownLatch(1);
+        private final AtomicLong written = new AtomicLong();
+        private volatile boolean interrupted;
+        private volatile boolean closed;
+
+        @Override
+        void write(TraceEvent event) {
+            entered.countDown();
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            written.incrementAndGet();
+        }
+
+        @Override
+        void writeSynchronously(TraceEvent event) {
+            written.incrementAndGet();
+        }
+
+        @Override
+        void close() {
+            closed = true;
+            closing.countDown();
+        }
+    }
+
+    /**
+     * Logs like the default sink, records the batches, flushes and close.
+     */
+    private static class RecordingSink extends LoggerTraceEventSink {
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        private int batched;
+
+        @Override
+        void write(TraceEvent event) {
+            batched++;
+            super.write(event);
+        }
+
+        @Override
+        void endBatch() {
+            calls.add("batch of " + batched);
+            batched = 0;
+        }
+
+        @Override
+        void flush() {
+            calls.add("flush");
+        }
+
+        @Override
+        void close() {
+            calls.add("close");
+        }
+    }
+
+    private void fillRingBufferWhileConsumerIsBlocked(OverflowPolicy overflowPolicy, long blockTimeoutMillis) throws InterruptedException {
+        dispatcher.shutdown();
+        dispatcher = new RingBufferTraceEventDispatcher(4, WaitStrategy.YIELD, overflowPolicy, blockTimeoutMillis, Integer.MAX_VALUE);
+        dispatcher.dispatchLap(logger, "uuid", BLOCKING_LAP, 0L, 0L, NANOSECONDS);
+        consumerBlocked.await();
+        // the consumer holds on to the slot of the blocking lap, three more fill up the ring buffer.
+        for (long lapTime = 1L; lapTime <= 3L; lapTime++) {
+            dispatcher.dispatchLap(logger, "uuid", "lap", lapTime, lapTime, NANOSECONDS);
+        }
+    }
+
+    private void releaseConsumerAndShutdown() {
+        releaseConsumer.countDown();
+        dispatcher.shutdown();
+    }
+
+    private void assertThatLoggedLapTimesAre(Long... lapTimes) {
+        List<Long> logged = new ArrayList<Long>();
+        for (Object[] loggedArguments : loggedLaps) {
+            logged.add((Long) loggedArguments[2]);
+        }
+        assertThat(logged, is(equalTo(Arrays.asList(lapTimes))));
+    }
+}
@@ -0,0 +1,118 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SamplersTest {
+    private static final TracePoint TRACE_POINT = LoggerTracerFactory.tracePoint(SamplersTest.class, "sampledCall");
+    private static final TracePoint OTHER_TRACE_POINT = LoggerTracerFactory.tracePoint(SamplersTest.class, "otherSampledCall");
+    private static final Sampler NEVER = new Sampler() {
+        @Override
+        public boolean sample(TracePoint tracePoint) {
+            return false;
+        }
+    };
+    private FakeTicker ticker;
+    private org.apache.log4j.Logger tracerLogger;
+    private Level level;
+
+    @Before
+    public void setUp() throws Exception {
+        ticker = new FakeTicker();
+        tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        level = tracerLogger.getLevel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggerTracerFactory.sampling(Samplers.always(), 0, MILLISECONDS);
+        tracerLogger.setLevel(level);
+        LoggerTracerFactory.refreshTraceEnabled();
+    }
+
+    @Test
+    public void testAlways_shouldSampleEveryExecution() throws Exception {
+        for (int call = 0; call < 100; call++) {
+            assertThat(Samplers.always().sample(TRACE_POINT), is(true));
+        }
+    }
+
+    @Test
+    public void testOneIn_shouldSampleAboutOneInNExecutions() throws Exception {
+        Sampler sampler = Samplers.oneIn(10);
+        int sampled = 0;
+        for (int call = 0; call < 100000; call++) {
+            if(sampler.sample(TRACE_POINT)) {
+                sampled++;
+            }
+        }
+        assertThat(sampled, is(both(greaterThan(9000)).and(lessThan(11000))));
+        assertThat(Samplers.oneIn(1), is(sameInstance(Samplers.always())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOneIn_whenNIsNotPositive_shouldRaiseIllegalArgumentException() throws Exception {
+        Samplers.oneIn(0);
+    }
+
+    @Test
+    public void testRateLimited_shouldSampleTheBurst_thenOneExecutionPerInterval() throws Exception {
+        Sampler sampler = Samplers.rateLimited(10, 3, ticker);
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(false));
+        ticker.advance(50, MILLISECONDS);
+        assertThat(sampler.sample(TRACE_POINT), is(false));
+        ticker.advance(50, MILLISECONDS);
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(false));
+        ticker.advance(1000, MILLISECONDS);
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(false));
+    }
+
+    @Test
+    public void testRateLimited_shouldLimitEachTracePointSeparately() throws Exception {
+        Sampler sampler = Samplers.rateLimited(1, 1, ticker);
+        assertThat(sampler.sample(TRACE_POINT), is(true));
+        assertThat(sampler.sample(TRACE_POINT), is(false));
+        assertThat(sampler.sample(OTHER_TRACE_POINT), is(true));
+        assertThat(sampler.sample(OTHER_TRACE_POINT), is(false));
+    }
+
+    @Test
+    public void testAllOf_shouldSampleOnlyWhatEverySamplerSamples_andStopAtTheFirstRefusal() throws Exception {
+        Sampler rateLimited = Samplers.rateLimited(1, 1, ticker);
+        assertThat(Samplers.allOf(NEVER, rateLimited).sample(TRACE_POINT), is(false));
+        assertThat(Samplers.allOf(Samplers.always(), rateLimited).sample(TRACE_POINT), is(true));
+        assertThat(Samplers.allOf(Samplers.always(), rateLimited).sample(TRACE_POINT), is(false));
+    }
+
+    @Test
+    public void testFactory_whenSampledOut_shouldReturnTheNoOpLoggerTracer_forTheWholeExecution() throws Exception {
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.refreshTraceEnabled();
+        LoggerTracerFactory.sampling(NEVER, 0, MILLISECONDS);
+        assertThat(TRACE_POINT.start(1, 2), is(sameInstance(LoggerTracerFactory.NO_OP_TRACER)));
+        LoggerTracerFactory.sampling(Samplers.always(), 0, MILLISECONDS);
+        assertThat(TRACE_POINT.start(1, 2), is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+    }
+
+    @Test
+    public void testFactory_whenSampledOut_withATailThreshold_shouldReturnABufferingLoggerTracer() throws Exception {
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.refreshTraceEnabled();
+        LoggerTracerFactory.sampling(NEVER, 100, MILLISECONDS);
+        assertThat(TRACE_POINT.start(1, 2), is(instanceOf(BufferingLoggerTracer.class)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SpanStackTest {
+    private SpanStack stack;
+    private final Object parent = new Object();
+    private final Object child = new Object();
+    private final Object grandChild = new Object();
+
+    @Before
+    public void setUp() throws Exception {
+        stack = new SpanStack();
+    }
+
+    @Test
+    public void testPush_shouldReturnTheDepth_andKeepTheParentTraceId() throws Exception {
+        assertThat(stack.push(parent, 11L, null, true), is(equalTo(0)));
+        assertThat(stack.push(child, 12L, null, true), is(equalTo(1)));
+        assertThat(stack.parentTraceId(0), is(equalTo(SpanStack.NO_PARENT)));
+        assertThat(stack.parentTraceId(1), is(equalTo(11L)));
+        assertThat(stack.depth(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testPop_shouldReturnTheTimeSpentInChildren_andAccountForTheExecutionInTheParent() throws Exception {
+        stack.push(parent, 11L, null, true);
+        stack.push(child, 12L, null, true);
+        assertThat(stack.pop(child, 1, 30L), is(equalTo(0L)));
+        stack.push(child, 13L, null, true);
+        assertThat(stack.pop(child, 1, 20L), is(equalTo(0L)));
+        assertThat(stack.pop(parent, 0, 100L), is(equalTo(50L)));
+        assertThat(stack.depth(), is(equalTo(0)));
+    }
+
+    @Test
+    public void testPop_ofAParentWhoseChildWasNeverStopped_shouldPopBoth_andIgnoreTheChildsLateStop() throws Exception {
+        stack.push(parent, 11L, null, true);
+        stack.push(child, 12L, null, true);
+        stack.push(grandChild, 13L, null, true);
+        assertThat(stack.pop(grandChild, 2, 10L), is(equalTo(0L)));
+        assertThat(stack.pop(parent, 0, 100L), is(equalTo(0L)));
+        assertThat(stack.depth(), is(equalTo(0)));
+        assertThat(stack.pop(child, 1, 40L), is(equalTo(0L)));
+        assertThat(stack.depth(), is(equalTo(0)));
+    }
+
+    @Test
+    public void testPush_beyondTheInitialCapacity_shouldGrow() throws Exception {
+        int depth = 4 * SpanStack.INITIAL_CAPACITY;
+        Object[] spans = new Object[depth];
+        for (int index = 0; index < depth; index++) {
+            spans[index] = new Object();
+            assertThat(stack.push(spans[index], index, null, true), is(equalTo(index)));
+        }
+        for (int index = depth - 1; index > 0; index--) {
+            assertThat(stack.parentTraceId(index), is(equalTo(index - 1L)));
+            stack.pop(spans[index], index, 1L);
+        }
+        assertThat(stack.pop(spans[0], 0, 100L), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testPushRestored_shouldContinueTheDepthOfTheCapturedExecution() throws Exception {
+        stack.push(parent, 11L, null, true);
+        stack.push(child, 12L, null, true);
+        TraceContext context = stack.capture();
+        assertThat(context.getTraceId(), is(equalTo(12L)));
+        assertThat(context.getDepth(), is(equalTo(1)));
+        SpanStack worker = new SpanStack();
+        int frame = worker.pushRestored(context, context.getTraceId(), context.getNode(), context.isSampled(), context.getDepth());
+        int depth = worker.push(grandChild, 13L, null, true);
+        assertThat(worker.nestingDepth(depth), is(equalTo(2)));
+        assertThat(worker.parentTraceId(depth), is(equalTo(12L)));
+        assertThat(worker.capture().getDepth(), is(equalTo(2)));
+        assertThat(worker.pop(context, frame, 0L), is(equalTo(0L)));
+        assertThat(worker.depth(), is(equalTo(0)));
+        assertThat(worker.capture(), is(nullValue()));
+    }
+
+    @Test
+    public void testPop_onAnotherThread_shouldPopNothing() throws Exception {
+        stack.push(parent, 11L, null, true);
+        final AtomicLong children = new AtomicLong(-1L);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                children.set(stack.pop(parent, 0, 10L));
+            }
+        });
+        thread.start();
+        thread.join();
+        assertThat(children.get(), is(equalTo(0L)));
+        assertThat(stack.depth(), is(equalTo(1)));
+    }
+}
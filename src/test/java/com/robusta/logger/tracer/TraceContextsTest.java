@@ -0,0 +1,144 @@
+package com.robusta.logger.tracer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static com.robusta.logger.tracer.LoggingMethodArgumentHandler.NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TraceContextsTest {
+    private static final TracePoint PARENT = TracePointRegistry.tracePoint(TraceContextsTest.class, "parent");
+    private static final TracePoint CHILD = TracePointRegistry.tracePoint(TraceContextsTest.class, "child");
+    private static final TracePoint WORKER = TracePointRegistry.tracePoint(TraceContextsTest.class, "worker");
+    @Mock private Logger logger;
+    private ExecutorService executor;
+    private TraceIdGenerator generator;
+    private FakeTicker ticker;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        LoggerTracerFactory.nestedTracing(true);
+        executor = TraceContexts.propagating(Executors.newSingleThreadExecutor());
+        generator = new TraceIdGenerators.SequentialTraceIdGenerator(0L);
+        ticker = new FakeTicker();
+    }
+
+    @Test
+    public void testSubmit_shouldLogTheExecutionsOfTheTaskAsChildrenOfTheSubmittingExecution() throws Exception {
+        PooledLoggerTracer parent = start(PARENT, null);
+        PooledLoggerTracer child = start(CHILD, null);
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                start(WORKER, null).stop();
+            }
+        }).get();
+        child.stop();
+        parent.stop();
+        verify(logger).trace(eq(NESTED_METHOD_ARGUMENT_TRACE_LOG_MESSAGE), anyString(), eq("TraceContextsTest.worker"),
+                eq(LoggingMethodArgumentHandlerTest.<Object>newArrayList()), eq(generator.format(1L)), eq(2));
+        assertThat(SpanStack.current().depth(), is(equalTo(0)));
+        assertThat(executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return SpanStack.current().depth();
+            }
+        }).get(), is(equalTo(0)));
+    }
+
+    @Test
+    public void testSupplyAsync_shouldRecordTheExecutionsOfTheSupplierUnderTheCallTreeNodeOfTheCaller() throws Exception {
+        CallTreeProfile profile = new CallTreeProfile(CallTreeProfile.DEFAULT_MAX_NODES);
+        PooledLoggerTracer parent = start(PARENT, profile);
+        ticker.advance(1, MILLISECONDS);
+        String result = TraceContexts.supplyAsync(new Supplier<String>() {
+            @Override
+            public String get() {
+                PooledLoggerTracer worker = start(WORKER, profile);
+                ticker.advance(5, MILLISECONDS);
+                worker.stop();
+                return "done";
+            }
+        }, executor).get();
+        parent.stop();
+        assertThat(result, is(equalTo("done")));
+        CallTreeProfile.Node parentNode = profile.root().getChild(PARENT);
+        assertThat(parentNode.getChild(WORKER).getCount(), is(equalTo(1L)));
+        assertThat(parentNode.getSelfNanos(), is(equalTo(parentNode.getTotalNanos())));
+        assertThat(profile.root().getChild(WORKER), is(nullValue()));
+    }
+
+    @Test
+    public void testInvokeAll_shouldRunEachTaskInTheContextOfTheCaller() throws Exception {
+        PooledLoggerTracer parent = start(PARENT, null);
+        Callable<Long> parentTraceId = new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                SpanStack spanStack = SpanStack.current();
+                return spanStack.parentTraceId(spanStack.depth());
+            }
+        };
+        List<Future<Long>> futures = executor.invokeAll(Arrays.asList(parentTraceId, parentTraceId));
+        parent.stop();
+        for (Future<Long> future : futures) {
+            assertThat(future.get(), is(equalTo(0L)));
+        }
+        assertThat(futures.size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testPropagating_withoutATracedExecution_shouldReturnTheTaskItself() throws Exception {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        assertThat(TraceContexts.propagating(task), is(sameInstance(task)));
+        assertThat(TraceContexts.propagating(executor), is(sameInstance(executor)));
+    }
+
+    @Test
+    public void testCapture_withoutNestedTracingNorProfiling_shouldNotCreateAStackForTheSubmittingThread() throws Exception {
+        LoggerTracerFactory.nestedTracing(false);
+        ExecutorService submitter = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(submitter.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return TraceContext.capture() == null && SpanStack.currentIfAny() == null;
+                }
+            }).get(), is(true));
+        } finally {
+            submitter.shutdownNow();
+        }
+    }
+
+    private PooledLoggerTracer start(TracePoint tracePoint, CallTreeProfile profile) {
+        return new PooledLoggerTracer(null).start(logger, tracePoint, generator, ticker, MILLISECONDS, null, false, true, profile,
+                new Object[0]);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        LoggerTracerFactory.nestedTracing(false);
+    }
+}
@@ -0,0 +1,104 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+
+import static com.robusta.logger.tracer.LoggingStopWatch.LAP_COMPLETION_TRACE_MSG;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TraceEventRingBufferTest {
+    private TraceEventRingBuffer ringBuffer;
+    @Mock private Logger logger;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        ringBuffer = new TraceEventRingBuffer(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialization_whenCapacityIsNotAPowerOfTwo_shouldRaiseException() throws Exception {
+        new TraceEventRingBuffer(6);
+    }
+
+    @Test
+    public void testPoll_whenNothingIsPublished_shouldReturnNull() throws Exception {
+        assertThat(ringBuffer.poll(), is(nullValue()));
+        ringBuffer.tryClaim();
+        assertThat("A claimed but unpublished slot must not be handed to the consumer", ringBuffer.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void testTryClaim_whenFull_shouldReturnNull_untilASlotIsReleased() throws Exception {
+        for (int i = 0; i < ringBuffer.capacity(); i++) {
+            ringBuffer.publish(ringBuffer.tryClaim());
+        }
+        assertThat(ringBuffer.tryClaim(), is(nullValue()));
+        assertThat(ringBuffer.size(), is(equalTo(4)));
+        ringBuffer.release(ringBuffer.poll());
+        assertThat(ringBuffer.tryClaim(), is(notNullValue()));
+    }
+
+    @Test
+    public void testSlotsAreReused_andPolledInClaimOrder() throws Exception {
+        TraceEvent first = null;
+        for (int i = 0; i < 10; i++) {
+            TraceEvent slot = ringBuffer.tryClaim();
+            slot.lap(logger, "uuid", "lap " + i, i, i, NANOSECONDS);
+            ringBuffer.publish(slot);
+            if(i == 0) {
+                first = slot;
+            }
+            if(i == ringBuffer.capacity()) {
+                assertThat("Slots must be recycled once around the ring", slot, is(sameInstance(first)));
+            }
+            TraceEvent polled = ringBuffer.poll();
+            polled.log();
+            ringBuffer.release(polled);
+        }
+        assertThat(ringBuffer.isEmpty(), is(true));
+        InOrder inOrder = inOrder(logger);
+        for (int i = 0; i < 10; i++) {
+            inOrder.verify(logger).trace(LAP_COMPLETION_TRACE_MSG, "uuid", "lap " + i, (long) i, "ns", (long) i, "ns");
+        }
+    }
+
+    @Test
+    public void testDiscardOldest_whenFull_shouldMakeRoomForTheNextClaim() throws Exception {
+        for (int i = 0; i < ringBuffer.capacity(); i++) {
+            TraceEvent slot = ringBuffer.tryClaim();
+            slot.lap(logger, "uuid", "lap " + i, i, i, NANOSECONDS);
+            ringBuffer.publish(slot);
+        }
+        assertThat(ringBuffer.discardOldest(), is(true));
+        TraceEvent slot = ringBuffer.tryClaim();
+        slot.lap(logger, "uuid", "lap 4", 4, 4, NANOSECONDS);
+        ringBuffer.publish(slot);
+        TraceEvent polled;
+        while ((polled = ringBuffer.poll()) != null) {
+            polled.log();
+            ringBuffer.release(polled);
+        }
+        InOrder inOrder = inOrder(logger);
+        for (int i = 1; i <= 4; i++) {
+            inOrder.verify(logger).trace(LAP_COMPLETION_TRACE_MSG, "uuid", "lap " + i, (long) i, "ns", (long) i, "ns");
+        }
+    }
+
+    @Test
+    public void testDiscardOldest_whenTheSlotNeededIsStillBeingConsumed_shouldNotDiscard() throws Exception {
+        for (int i = 0; i < ringBuffer.capacity(); i++) {
+            ringBuffer.publish(ringBuffer.tryClaim());
+        }
+        ringBuffer.poll();
+        assertThat(ringBuffer.discardOldest(), is(false));
+        assertThat(ringBuffer.tryClaim(), is(nullValue()));
+    }
+}
@@ -0,0 +1,123 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TraceIdGeneratorsTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TraceIdGeneratorsTest.class);
+    private static final int THREADS = 4;
+    private static final int IDS_PER_THREAD = 10000;
+    private static final int BENCHMARK_CALLS = 200000;
+
+    @Test
+    public void testToHex_shouldBeFixedWidthLowerCaseHex() throws Exception {
+        assertThat(TraceIdGenerators.toHex(255L), is(equalTo("00000000000000ff")));
+        assertThat(TraceIdGenerators.toHex(-1L), is(equalTo("ffffffffffffffff")));
+    }
+
+    @Test
+    public void testSequential_shouldShareTheProcessPrefix_andCountWithinAThreadBlock() throws Exception {
+        TraceIdGenerator generator = new TraceIdGenerators.SequentialTraceIdGenerator(0xabcdL);
+        long first = generator.nextTraceId();
+        long second = generator.nextTraceId();
+        assertThat(first >>> 48, is(equalTo(0xabcdL)));
+        assertThat(second >>> 48, is(equalTo(0xabcdL)));
+        assertThat(second, is(equalTo(first + 1)));
+        assertThat(generator.format(first), is(equalTo("abcd000000000000")));
+    }
+
+    @Test
+    public void testSequential_shouldBeUniqueAcrossThreads() throws Exception {
+        assertUniqueAcrossThreads(TraceIdGenerators.sequential());
+    }
+
+    @Test
+    public void testW3cTraceparent_shouldBeUniqueAcrossThreads() throws Exception {
+        assertUniqueAcrossThreads(TraceIdGenerators.w3cTraceparent());
+    }
+
+    @Test
+    public void testW3cTraceparent_shouldBeFormattedAsATraceparentHeader() throws Exception {
+        TraceIdGenerator generator = TraceIdGenerators.w3cTraceparent();
+        String first = generator.format(generator.nextTraceId());
+        String second = generator.format(generator.nextTraceId());
+        assertTrue(first, first.matches("00-[0-9a-f]{32}-[0-9a-f]{16}-01"));
+        assertThat("Process half of the trace-id must be stable", second.substring(0, 19), is(equalTo(first.substring(0, 19))));
+        assertThat(second, is(not(equalTo(first))));
+    }
+
+    /**
+     * Not a JMH benchmark: a rough comparison of the cost of an id,
+     * generated and formatted, against the UUID it replaces. Asserts that
+     * the sequential generator beats randomUUID over the timed round, the
+     * timings are logged.
+     */
+    @Test
+    public void testGenerateAndFormat_comparedToRandomUUID() throws Exception {
+        final TraceIdGenerator sequential = TraceIdGenerators.sequential();
+        final TraceIdGenerator w3c = TraceIdGenerators.w3cTraceparent();
+        long sequentialNanos = 0L;
+        long w3cNanos = 0L;
+        long uuidNanos = 0L;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int call = 0; call < BENCHMARK_CALLS; call++) {
+                sequential.format(sequential.nextTraceId());
+            }
+            sequentialNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int call = 0; call < BENCHMARK_CALLS; call++) {
+                w3c.format(w3c.nextTraceId());
+            }
+            w3cNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int call = 0; call < BENCHMARK_CALLS; call++) {
+                UUID.randomUUID().toString();
+            }
+            uuidNanos = System.nanoTime() - start;
+        }
+        LOGGER.info("Trace ids, ns/op: sequential {}, w3c {}, randomUUID {}",
+                sequentialNanos / BENCHMARK_CALLS, w3cNanos / BENCHMARK_CALLS, uuidNanos / BENCHMARK_CALLS);
+        assertThat(sequentialNanos, is(lessThan(uuidNanos)));
+    }
+
+    private void assertUniqueAcrossThreads(final TraceIdGenerator generator) throws InterruptedException {
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int thread = 0; thread < THREADS; thread++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Set<Long> generated = new HashSet<Long>();
+                        for (int index = 0; index < IDS_PER_THREAD; index++) {
+                            generated.add(generator.nextTraceId());
+                        }
+                        ids.addAll(generated);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        assertThat(ids.size(), is(equalTo(THREADS * IDS_PER_THREAD)));
+    }
+}
@@ -0,0 +1,68 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TraceJournalDecoderTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(expected = IOException.class)
+    public void testDecode_whenNotAJournalSegment_shouldThrowAnIOException() throws Exception {
+        File file = folder.newFile("trace.log");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("Execution: 'uuid' for 'AClass.aMethod' completed in '1' ms\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        TraceJournalDecoder.decode(file, new StringBuilder());
+    }
+
+    @Test
+    public void testDecode_shouldStopAtTheFirstRecordThatWasNotCompletelyWritten() throws Exception {
+        File directory = folder.newFolder("journal");
+        JournalTraceEventSink journal = new JournalTraceEventSink(directory, JournalTraceEventSink.MIN_SEGMENT_BYTES, 1);
+        TraceEvent event = new TraceEvent(false);
+        for (int execution = 0; execution < 3; execution++) {
+            event.execution(null, "uuid-" + execution, "AClass.aMethod", 1L, NANOSECONDS);
+            journal.write(event);
+        }
+        journal.close();
+        File segment = JournalTraceEventSink.segments(directory)[0];
+        long thirdRecord = JournalTraceEventSink.SEGMENT_HEADER_BYTES + recordBytes("uuid-0", "AClass.aMethod") + recordBytes("uuid-1", null);
+        RandomAccessFile segmentFile = new RandomAccessFile(segment, "rw");
+        try {
+            segmentFile.seek(thirdRecord);
+            segmentFile.writeByte(JournalTraceEventSink.END);
+        } finally {
+            segmentFile.close();
+        }
+        StringBuilder decoded = new StringBuilder();
+        TraceJournalDecoder.decode(segment, decoded);
+        String[] lines = decoded.toString().split("\n");
+        assertThat(lines.length, is(equalTo(2)));
+        assertThat(lines[1], containsString("'uuid-1'"));
+    }
+
+    /**
+     * Bytes of an execution record with its uuid in the payload,
+     * preceded by the definition of its name, when given.
+     */
+    private static int recordBytes(String uuid, String definedName) {
+        int bytes = JournalTraceEventSink.RECORD_HEADER_BYTES + 4 + uuid.length() * 2;
+        if(definedName != null) {
+            bytes += JournalTraceEventSink.RECORD_HEADER_BYTES + 4 + definedName.length() * 2;
+        }
+        return bytes;
+    }
+}
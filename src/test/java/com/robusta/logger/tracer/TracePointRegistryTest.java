@@ -0,0 +1,52 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TracePointRegistryTest {
+
+    @Test
+    public void testTracePoint_shouldComputeTheClassDotMethodName() throws Exception {
+        TracePoint tracePoint = TracePointRegistry.tracePoint(TracePointRegistryTest.class, "aMethod");
+        assertThat(tracePoint.getName(), is(equalTo("TracePointRegistryTest.aMethod")));
+        assertThat(tracePoint.getMethodName(), is(equalTo("aMethod")));
+        assertThat(tracePoint.getTracedClass(), is(equalTo((Object) TracePointRegistryTest.class)));
+    }
+
+    @Test
+    public void testTracePoint_shouldHandOutTheSameTracePoint_forTheSameClassAndMethod() throws Exception {
+        assertThat(TracePointRegistry.tracePoint(TracePointRegistryTest.class, "aMethod"),
+                is(sameInstance(TracePointRegistry.tracePoint(TracePointRegistryTest.class, "aMethod"))));
+        assertThat(TracePointRegistry.tracePoint(TracePointRegistryTest.class, "aMethod"),
+                is(not(sameInstance(TracePointRegistry.tracePoint(TracePointRegistryTest.class, "anotherMethod")))));
+        assertThat(TracePointRegistry.tracePoint(TracePointRegistryTest.class, "aMethod"),
+                is(not(sameInstance(TracePointRegistry.tracePoint(TracePoint.class, "aMethod")))));
+    }
+
+    @Test
+    public void testTracePoint_shouldHandOutTheSameTracePoint_acrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Callable<TracePoint> register = new Callable<TracePoint>() {
+                @Override
+                public TracePoint call() throws Exception {
+                    return TracePointRegistry.tracePoint(TracePointRegistryTest.class, "concurrentlyRegistered");
+                }
+            };
+            Future<TracePoint> first = executor.submit(register);
+            Future<TracePoint> second = executor.submit(register);
+            Future<TracePoint> third = executor.submit(register);
+            assertThat(second.get(), is(sameInstance(first.get())));
+            assertThat(third.get(), is(sameInstance(first.get())));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TracePointTest {
+    private static final TracePoint TRACE_POINT = LoggerTracerFactory.tracePoint(TracePointTest.class, "tracedCall");
+    private static final int WARM_UP_CALLS = 200000;
+    private static final int MEASURED_CALLS = 100000;
+    private org.apache.log4j.Logger tracerLogger;
+    private Level level;
+
+    @Before
+    public void setUp() throws Exception {
+        tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        level = tracerLogger.getLevel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tracerLogger.setLevel(level);
+        LoggerTracerFactory.refreshTraceEnabled();
+    }
+
+    @Test
+    public void testTracePoint_shouldBeTheRegisteredTracePoint() throws Exception {
+        assertThat(TRACE_POINT, is(sameInstance(TracePointRegistry.tracePoint(TracePointTest.class, "tracedCall"))));
+        assertThat(TRACE_POINT.getName(), is(equalTo("TracePointTest.tracedCall")));
+    }
+
+    @Test
+    public void testStart_whenTraceEnabled_shouldReturnAnOperativeLoggerTracer_forEveryArity() throws Exception {
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.refreshTraceEnabled();
+        assertThat(TRACE_POINT.start(), is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+        assertThat(TRACE_POINT.start(1), is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+        assertThat(TRACE_POINT.start(1, 2), is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+        assertThat(TRACE_POINT.start(1, 2, 3), is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+        assertThat(TRACE_POINT.start(1, 2, 3, 4), is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+        assertThat(TRACE_POINT.start(1, 2, 3, 4, 5), is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+    }
+
+    @Test
+    public void testStart_whenTraceDisabled_shouldReturnTheNoOpLoggerTracer_andSwitchTheCachedFlagOff() throws Exception {
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.refreshTraceEnabled();
+        tracerLogger.setLevel(Level.ERROR);
+        assertThat(LoggerTracerFactory.isTraceEnabled(), is(true));
+        assertThat(TRACE_POINT.start(1, 2), is(sameInstance(LoggerTracerFactory.NO_OP_TRACER)));
+        assertThat(LoggerTracerFactory.isTraceEnabled(), is(false));
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.refreshTraceEnabled();
+        assertThat(LoggerTracerFactory.isTraceEnabled(), is(true));
+    }
+
+    /**
+     * Not a JMH benchmark, asserts on the bytes the JVM accounts to the
+     * traced thread across a run of disabled TracePoint starts.
+     */
+    @Test
+    public void testStart_whenTraceDisabled_allocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        tracerLogger.setLevel(Level.ERROR);
+        LoggerTracerFactory.refreshTraceEnabled();
+        Object argument = new Object();
+        startCalls(WARM_UP_CALLS, argument);
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        startCalls(MEASURED_CALLS, argument);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        assertThat("Bytes allocated per disabled start", allocated / MEASURED_CALLS, is(equalTo(0L)));
+    }
+
+    private void startCalls(int calls, Object argument) {
+        for (int call = 0; call < calls; call++) {
+            TRACE_POINT.start(argument, argument, argument).lap("lap").stop();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TraceRuleTest {
+    private static final TracePoint TRACE_POINT = LoggerTracerFactory.tracePoint(TraceRuleTest.class, "ruled");
+
+    @Test
+    public void testSpecificity_shouldRankMethodOverClassOverLongerPackageOverShorterPackageOverAll() throws Exception {
+        int all = TraceRule.parse("*", "on").specificity(TRACE_POINT);
+        int shorterPackage = TraceRule.parse("com.robusta.*", "on").specificity(TRACE_POINT);
+        int longerPackage = TraceRule.parse("com.robusta.logger.tracer.*", "on").specificity(TRACE_POINT);
+        int simpleClass = TraceRule.parse("TraceRuleTest", "on").specificity(TRACE_POINT);
+        int qualifiedClass = TraceRule.parse("com.robusta.logger.tracer.TraceRuleTest", "on").specificity(TRACE_POINT);
+        int simpleMethod = TraceRule.parse("TraceRuleTest.ruled", "on").specificity(TRACE_POINT);
+        int qualifiedMethod = TraceRule.parse("com.robusta.logger.tracer.TraceRuleTest.ruled", "on").specificity(TRACE_POINT);
+        assertThat(all, is(equalTo(0)));
+        assertThat(shorterPackage, is(greaterThan(all)));
+        assertThat(longerPackage, is(greaterThan(shorterPackage)));
+        assertThat(simpleClass, is(greaterThan(longerPackage)));
+        assertThat(qualifiedClass, is(equalTo(simpleClass)));
+        assertThat(simpleMethod, is(greaterThan(simpleClass)));
+        assertThat(qualifiedMethod, is(equalTo(simpleMethod)));
+    }
+
+    @Test
+    public void testSpecificity_shouldNotMatchOtherPackagesClassesOrMethods() throws Exception {
+        assertThat(TraceRule.parse("com.acme.*", "on").specificity(TRACE_POINT), is(lessThan(0)));
+        assertThat(TraceRule.parse("com.robusta.logger.tracerx.*", "on").specificity(TRACE_POINT), is(lessThan(0)));
+        assertThat(TraceRule.parse("TraceRule", "on").specificity(TRACE_POINT), is(lessThan(0)));
+        assertThat(TraceRule.parse("TraceRuleTest.other", "on").specificity(TRACE_POINT), is(lessThan(0)));
+        assertThat(TraceRule.parse("com.robusta.logger.tracer.TraceRuleTest.rule", "on").specificity(TRACE_POINT), is(lessThan(0)));
+    }
+
+    @Test
+    public void testParse_shouldTurnTheActionIntoWhetherTracedAndTheSampler() throws Exception {
+        TraceRule on = TraceRule.parse(" TraceRuleTest ", " on ");
+        assertThat(on.getPattern(), is(equalTo("TraceRuleTest")));
+        assertThat(on.isEnabled(), is(true));
+        assertThat(on.getSampler(), is(nullValue()));
+        assertThat(TraceRule.parse("*", "OFF").isEnabled(), is(false));
+        assertThat(TraceRule.parse("*", "always").getSampler(), is(sameInstance(Samplers.always())));
+        assertThat(TraceRule.parse("*", "oneIn:10").getSampler(), is(notNullValue()));
+        assertThat(TraceRule.parse("*", "rate:2.5").getSampler(), is(notNullValue()));
+        assertThat(TraceRule.parse("*", "oneIn:10").toString(), is(equalTo("*=oneIn:10")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withAnUnknownAction_shouldThrow() throws Exception {
+        TraceRule.parse("*", "debug");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withoutANumber_shouldThrow() throws Exception {
+        TraceRule.parse("*", "oneIn:ten");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withAWildcardInsideThePattern_shouldThrow() throws Exception {
+        TraceRule.parse("com.*.tracer", "on");
+    }
+}
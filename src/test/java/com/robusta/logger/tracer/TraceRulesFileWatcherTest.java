@@ -0,0 +1,110 @@
+package com.robusta.logger.tracer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TraceRulesFileWatcherTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+    private TraceRulesFileWatcher watcher;
+
+    @After
+    public void tearDown() throws Exception {
+        if(watcher != null) {
+            watcher.close();
+        }
+        LoggerTracerFactory.traceRules(Collections.<String, String>emptyMap());
+        LoggerTracerFactory.configuredTraceRules(Collections.<String, String>emptyMap());
+    }
+
+    @Test
+    public void testStart_shouldApplyTheRulesOfTheFile_onTopOfTheBaseRules() throws Exception {
+        File file = write(new File(folder.getRoot(), "rules.properties"), "*=off\nTraceRulesFileWatcherTest=oneIn:5\n");
+        watcher = TraceRulesFileWatcher.start(file, Collections.singletonMap("*", "on"), 0);
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("*", "off");
+        expected.put("TraceRulesFileWatcherTest", "oneIn:5");
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(expected)));
+    }
+
+    @Test
+    public void testStart_withoutTheFile_shouldApplyTheBaseRules_andTheFileOnceItAppears() throws Exception {
+        File file = new File(folder.getRoot(), "rules.properties");
+        watcher = TraceRulesFileWatcher.start(file, Collections.singletonMap("*", "on"), 0);
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(Collections.singletonMap("*", "on"))));
+        write(file, "*=off\n");
+        assertThat(watcher.poll(), is(true));
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(Collections.singletonMap("*", "off"))));
+    }
+
+    @Test
+    public void testPoll_shouldApplyTheFileOnlyWhenChanged() throws Exception {
+        File file = write(new File(folder.getRoot(), "rules.properties"), "*=off\n");
+        watcher = TraceRulesFileWatcher.start(file, Collections.<String, String>emptyMap(), 0);
+        assertThat(watcher.poll(), is(false));
+        write(file, "*=always\n");
+        file.setLastModified(file.lastModified() + 2000);
+        assertThat(watcher.poll(), is(true));
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(Collections.singletonMap("*", "always"))));
+        assertThat(watcher.poll(), is(false));
+    }
+
+    @Test
+    public void testPoll_withAnInvalidRule_shouldKeepTheRulesInForce() throws Exception {
+        File file = write(new File(folder.getRoot(), "rules.properties"), "*=off\n");
+        watcher = TraceRulesFileWatcher.start(file, Collections.<String, String>emptyMap(), 0);
+        write(file, "*=off\nTraceRulesFileWatcherTest=sometimes\n");
+        assertThat(watcher.poll(), is(true));
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(Collections.singletonMap("*", "off"))));
+    }
+
+    @Test
+    public void testPoll_shouldKeepTheRulesSetOverJmx_whichOverrideTheRulesOfTheFile() throws Exception {
+        File file = write(new File(folder.getRoot(), "rules.properties"), "*=off\n");
+        watcher = TraceRulesFileWatcher.start(file, Collections.<String, String>emptyMap(), 0);
+        TracerControl control = new TracerControl();
+        control.setTraceRule("TraceRulesFileWatcherTest", "always");
+        control.setTraceRule("*", "on");
+        write(file, "*=oneIn:10\nTraceRulesFileWatcherTest.poll=off\n");
+        file.setLastModified(file.lastModified() + 2000);
+        assertThat(watcher.poll(), is(true));
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("*", "on");
+        expected.put("TraceRulesFileWatcherTest.poll", "off");
+        expected.put("TraceRulesFileWatcherTest", "always");
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(expected)));
+        control.clearTraceRules();
+        expected.clear();
+        expected.put("*", "oneIn:10");
+        expected.put("TraceRulesFileWatcherTest.poll", "off");
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(expected)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStart_withAnInvalidRule_shouldThrow() throws Exception {
+        watcher = TraceRulesFileWatcher.start(write(new File(folder.getRoot(), "rules.properties"), "*=sometimes\n"),
+                Collections.<String, String>emptyMap(), 0);
+    }
+
+    private static File write(File file, String content) throws IOException {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
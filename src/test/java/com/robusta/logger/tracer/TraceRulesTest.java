@@ -0,0 +1,129 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TraceRulesTest {
+    private static final TracePoint TRACE_POINT = LoggerTracerFactory.tracePoint(TraceRulesTest.class, "ruled");
+    private static final TracePoint OTHER_TRACE_POINT = LoggerTracerFactory.tracePoint(TraceRulesTest.class, "otherRuled");
+    private static final Sampler NEVER = new Sampler() {
+        @Override
+        public boolean sample(TracePoint tracePoint) {
+            return false;
+        }
+    };
+    private org.apache.log4j.Logger tracerLogger;
+    private Level level;
+
+    @Before
+    public void setUp() throws Exception {
+        tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        level = tracerLogger.getLevel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggerTracerFactory.traceRules(Collections.<String, String>emptyMap());
+        LoggerTracerFactory.sampling(Samplers.always(), 0, MILLISECONDS);
+        LoggerTracerFactory.latencyAggregation(false, 0);
+        tracerLogger.setLevel(level);
+        LoggerTracerFactory.refreshTraceEnabled();
+    }
+
+    @Test
+    public void testDecide_shouldFollowTheMostSpecificMatchingRule_whateverTheOrderTheyWereSetIn() throws Exception {
+        Map<String, String> actions = new LinkedHashMap<String, String>();
+        actions.put("TraceRulesTest.ruled", "on");
+        actions.put("TraceRulesTest", "always");
+        actions.put("*", "off");
+        TraceRules rules = TraceRules.of(actions);
+        TraceRules.Decision decision = rules.decide(TRACE_POINT);
+        assertThat(decision.isEnabled(), is(true));
+        assertThat(decision.getSampler(), is(nullValue()));
+        assertThat(decision.getGeneration(), is(equalTo(rules.getGeneration())));
+        assertThat(rules.decide(OTHER_TRACE_POINT).getSampler(), is(sameInstance(Samplers.always())));
+        assertThat(rules.decide(LoggerTracerFactory.tracePoint(TraceRuleTest.class, "any")).isEnabled(), is(false));
+    }
+
+    @Test
+    public void testDecide_withoutAMatchingRule_shouldTraceAsTheFactoryIsSet() throws Exception {
+        TraceRules.Decision decision = TraceRules.NONE.with(TraceRule.parse("com.acme.*", "off")).decide(TRACE_POINT);
+        assertThat(decision.isEnabled(), is(true));
+        assertThat(decision.getSampler(), is(nullValue()));
+    }
+
+    @Test
+    public void testWithAndWithout_shouldMakeNewRulesOfANewGeneration_leavingTheOriginalAsItWas() throws Exception {
+        TraceRules rules = TraceRules.NONE.with(TraceRule.parse("TraceRulesTest", "off"));
+        TraceRules replaced = rules.with(TraceRule.parse("TraceRulesTest", "oneIn:2"));
+        TraceRules removed = replaced.without("TraceRulesTest");
+        assertThat(replaced.getGeneration(), is(not(equalTo(rules.getGeneration()))));
+        assertThat(removed.getGeneration(), is(not(equalTo(replaced.getGeneration()))));
+        assertThat(rules.actions(), is(equalTo(Collections.singletonMap("TraceRulesTest", "off"))));
+        assertThat(replaced.actions(), is(equalTo(Collections.singletonMap("TraceRulesTest", "oneIn:2"))));
+        assertThat(removed.isEmpty(), is(true));
+        assertThat(TraceRules.NONE.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDecision_shouldBeCachedByTheTracePoint_untilTheRulesChange() throws Exception {
+        TraceRules rules = TraceRules.NONE.with(TraceRule.parse("TraceRulesTest.ruled", "off"));
+        TraceRules.Decision decision = TRACE_POINT.decision(rules);
+        assertThat(decision.isEnabled(), is(false));
+        assertThat(TRACE_POINT.decision(rules), is(sameInstance(decision)));
+        assertThat(TRACE_POINT.decision(rules.without("TraceRulesTest.ruled")).isEnabled(), is(true));
+    }
+
+    @Test
+    public void testFactory_withARuleOff_shouldNotTraceTheMethod_untilTheRuleIsRemoved() throws Exception {
+        tracerLogger.setLevel(Level.ERROR);
+        LoggerTracerFactory.latencyAggregation(true, 0);
+        TracePoint tracePoint = LoggerTracerFactory.tracePoint(TraceRulesTest.class, "switchedOff");
+        LoggerTracerFactory.traceRule("TraceRulesTest.switchedOff", "off");
+        assertThat(tracePoint.start(1), is(sameInstance(LoggerTracerFactory.NO_OP_TRACER)));
+        LoggerTracerFactory.loggerTracer(TraceRulesTest.class, "switchedOff", 1).stop();
+        assertThat(tracePoint.getExecutionLatency().getCount(), is(equalTo(0L)));
+        LoggerTracerFactory.removeTraceRule("TraceRulesTest.switchedOff");
+        tracePoint.start(1).stop();
+        assertThat(tracePoint.getExecutionLatency().getCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testFactory_withASamplingRule_shouldSampleTheMatchedMethodsByTheRule_andTheOthersByTheFactory() throws Exception {
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.refreshTraceEnabled();
+        LoggerTracerFactory.sampling(NEVER, 0, MILLISECONDS);
+        LoggerTracerFactory.traceRule("TraceRulesTest.ruled", "always");
+        LoggerTracer tracer = TRACE_POINT.start(1);
+        assertThat(tracer, is(not(sameInstance(LoggerTracerFactory.NO_OP_TRACER))));
+        tracer.stop();
+        assertThat(OTHER_TRACE_POINT.start(1), is(sameInstance(LoggerTracerFactory.NO_OP_TRACER)));
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(Collections.singletonMap("TraceRulesTest.ruled", "always"))));
+    }
+
+    @Test
+    public void testFactory_withAnInvalidRuleAmongOthers_shouldApplyNone() throws Exception {
+        LoggerTracerFactory.traceRule("TraceRulesTest", "off");
+        Map<String, String> actions = new LinkedHashMap<String, String>();
+        actions.put("*", "on");
+        actions.put("TraceRulesTest.ruled", "sometimes");
+        try {
+            LoggerTracerFactory.traceRules(actions);
+        } catch (IllegalArgumentException expected) {
+            assertThat(LoggerTracerFactory.traceRules(), is(equalTo(Collections.singletonMap("TraceRulesTest", "off"))));
+            return;
+        }
+        throw new AssertionError("Invalid trace rules were applied");
+    }
+}
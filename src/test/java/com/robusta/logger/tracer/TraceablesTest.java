@@ -8,6 +8,8 @@ import org.mockito.MockitoAnnotations;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
@@ -57,6 +59,19 @@ public class TraceablesTest {
         assertThat(Traceables.sessionAttrs(request).asString(), is(equalTo("[null - HttpSession]")));
     }
 
+    @Test
+    public void testSessionAttributes_whenAnAttributeIsLarge_shouldRenderItWithinTheArgumentRenderingBudget() throws Exception {
+        List<Integer> large = new ArrayList<Integer>();
+        for (int element = 0; element < 50000; element++) {
+            large.add(element);
+        }
+        when(request.getSession(false)).thenReturn(session);
+        when(session.getAttribute("large")).thenReturn(large);
+        assertThat(Traceables.sessionAttrs(request, "large").asString(),
+                is(equalTo("HttpSession.attrs: [[{large=" + LoggerTracerFactory.argumentRenderer().render(large) + "}]]")));
+        assertThat(Traceables.sessionAttrs(request, "large").asString(), containsString(", ... 49968 more]"));
+    }
+
     @Test
     public void testSessionAttributes_whenSesessionHasSomeAttributesAndDoesNotHaveSome() throws Exception {
         when(request.getSession(false)).thenReturn(session);
@@ -0,0 +1,88 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TracerConfigTest {
+
+    @Test
+    public void testDefaults_shouldTraceSynchronouslyWithUnpooledTracersInMilliseconds() throws Exception {
+        TracerConfig config = TracerConfig.DEFAULTS;
+        assertThat(config.isAsync(), is(false));
+        assertThat(config.isPooledTracers(), is(false));
+        assertThat(config.isNestedTracing(), is(false));
+        assertThat(config.isAggregating(), is(false));
+        assertThat(config.isSlowCallsOnly(), is(false));
+        assertThat(config.getCallTreeProfile(), is(nullValue()));
+        assertThat(config.getTimeUnit(), is(TimeUnit.MILLISECONDS));
+        assertThat(config.getSampler(), is(sameInstance(Samplers.always())));
+        assertThat(config.getTailThresholdNanos(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testWith_shouldCopyTheSnapshotWithASettingChanged_leavingTheOriginalAsItWas() throws Exception {
+        Sampler sampler = Samplers.oneIn(10);
+        TracerConfig config = TracerConfig.DEFAULTS.withPooledTracers(true).withSampling(sampler, 5L);
+        TracerConfig changed = config.withNestedTracing(true).withTimeUnit(TimeUnit.MICROSECONDS);
+        assertThat(changed, is(not(sameInstance(config))));
+        assertThat(changed.isNestedTracing(), is(true));
+        assertThat(changed.getTimeUnit(), is(TimeUnit.MICROSECONDS));
+        assertThat(changed.isPooledTracers(), is(true));
+        assertThat(changed.getSampler(), is(sameInstance(sampler)));
+        assertThat(changed.getTailThresholdNanos(), is(equalTo(5L)));
+        assertThat(config.isNestedTracing(), is(false));
+        assertThat(config.getTimeUnit(), is(TimeUnit.MILLISECONDS));
+        assertThat(TracerConfig.DEFAULTS.isPooledTracers(), is(false));
+    }
+
+    @Test
+    public void testWith_shouldKeepEveryOtherSetting() throws Exception {
+        TraceEventDispatcher dispatcher = mock(TraceEventDispatcher.class);
+        CallTreeProfile callTreeProfile = new CallTreeProfile(10);
+        TraceIdGenerator traceIdGenerator = mock(TraceIdGenerator.class);
+        Ticker ticker = mock(Ticker.class);
+        ArgumentCapture argumentCapture = mock(ArgumentCapture.class);
+        ArgumentRenderer argumentRenderer = new ArgumentRenderer(10, 2, 1);
+        Sampler sampler = Samplers.oneIn(10);
+        TraceRules traceRules = TraceRules.NONE.with(TraceRule.parse("TracerConfigTest.aMethod", "off"));
+        TracerConfig config = TracerConfig.DEFAULTS.withDispatcher(dispatcher).withPooledTracers(true).withVirtualThreads(true)
+                .withNestedTracing(true).withAggregating(true).withSlowCallsOnly(true, 7L).withCallTreeProfile(callTreeProfile)
+                .withTraceIdGenerator(traceIdGenerator).withTicker(ticker).withTimeUnit(TimeUnit.NANOSECONDS)
+                .withArgumentCapture(argumentCapture).withArgumentRenderer(argumentRenderer).withSampling(sampler, 9L)
+                .withTraceRules(traceRules);
+        assertThat(config.getDispatcher(), is(sameInstance(dispatcher)));
+        assertThat(config.isPooledTracers(), is(true));
+        assertThat(config.isVirtualThreads(), is(true));
+        assertThat(config.isNestedTracing(), is(true));
+        assertThat(config.isAggregating(), is(true));
+        assertThat(config.isSlowCallsOnly(), is(true));
+        assertThat(config.slowCallThresholdNanos(LoggerTracerFactory.tracePoint(TracerConfigTest.class, "anotherMethod")), is(equalTo(7L)));
+        assertThat(config.getCallTreeProfile(), is(sameInstance(callTreeProfile)));
+        assertThat(config.getTraceIdGenerator(), is(sameInstance(traceIdGenerator)));
+        assertThat(config.getTicker(), is(sameInstance(ticker)));
+        assertThat(config.getTimeUnit(), is(TimeUnit.NANOSECONDS));
+        assertThat(config.getArgumentCapture(), is(sameInstance(argumentCapture)));
+        assertThat(config.getArgumentRenderer(), is(sameInstance(argumentRenderer)));
+        assertThat(config.getSampler(), is(sameInstance(sampler)));
+        assertThat(config.getTailThresholdNanos(), is(equalTo(9L)));
+        assertThat(config.getTraceRules(), is(sameInstance(traceRules)));
+    }
+
+    @Test
+    public void testSlowCallThreshold_shouldBeTheDefaultOfTheSnapshot_unlessSetForTheMethod() throws Exception {
+        TracePoint tracePoint = LoggerTracerFactory.tracePoint(TracerConfigTest.class, "aMethod");
+        TracerConfig config = TracerConfig.DEFAULTS.withSlowCallsOnly(true, 50L);
+        assertThat(config.slowCallThresholdNanos(tracePoint), is(equalTo(50L)));
+        SlowCallThresholds.threshold("TracerConfigTest.aMethod", 5L);
+        try {
+            assertThat(config.slowCallThresholdNanos(tracePoint), is(equalTo(5L)));
+        } finally {
+            SlowCallThresholds.removeThreshold("TracerConfigTest.aMethod");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.robusta.logger.tracer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TracerControlTest {
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @After
+    public void tearDown() throws Exception {
+        TracerControl.unregister();
+        LoggerTracerFactory.traceRules(Collections.<String, String>emptyMap());
+    }
+
+    @Test
+    public void testRegister_shouldExposeTheTraceRulesOverJmx() throws Exception {
+        assertThat(TracerControl.register(), is(true));
+        ObjectName name = new ObjectName(TracerControl.OBJECT_NAME);
+        server.invoke(name, "setTraceRule", new Object[]{"TracerControlTest", "off"}, new String[]{String.class.getName(), String.class.getName()});
+        assertThat(LoggerTracerFactory.traceRules(), is(equalTo(Collections.singletonMap("TracerControlTest", "off"))));
+        assertThat((String[]) server.getAttribute(name, "TraceRules"), is(arrayContaining("TracerControlTest=off")));
+        assertThat((Integer) server.getAttribute(name, "TraceRulesGeneration"),
+                is(equalTo(LoggerTracerFactory.configuration().getTraceRules().getGeneration())));
+        assertThat((Boolean) server.getAttribute(name, "Async"), is(false));
+        assertThat((String) server.getAttribute(name, "Configuration"), containsString("TracerControlTest=off"));
+        server.invoke(name, "clearTraceRules", new Object[0], new String[0]);
+        assertThat(LoggerTracerFactory.traceRules().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRegister_whenRegisteredAlready_shouldGiveUp() throws Exception {
+        assertThat(TracerControl.register(), is(true));
+        assertThat(TracerControl.register(), is(false));
+        TracerControl.unregister();
+        assertThat(server.isRegistered(new ObjectName(TracerControl.OBJECT_NAME)), is(false));
+    }
+
+    @Test
+    public void testRemoveTraceRule_shouldRemoveTheRuleOfThePattern() throws Exception {
+        TracerControlMBean control = new TracerControl();
+        control.setTraceRule("*", "oneIn:3");
+        control.setTraceRule("TracerControlTest", "always");
+        control.removeTraceRule("*");
+        assertThat(control.getTraceRules(), is(arrayContaining("TracerControlTest=always")));
+    }
+}
@@ -0,0 +1,69 @@
+package com.robusta.logger.tracer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+
+import static com.robusta.logger.tracer.LoggingStopWatch.STOP_NOT_CALLED_ON_TRACER;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TracerLeakDetectorTest {
+    private static final long GC_WAIT_MILLIS = 10000L;
+    @Mock private Logger logger;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        TracerLeakDetector.configure(true, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TracerLeakDetector.configure(true, TracerLeakDetector.DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConfigure_withANonPositiveSampleInterval_shouldRaiseException() throws Exception {
+        TracerLeakDetector.configure(true, 0);
+    }
+
+    @Test
+    public void testTrack_whenDisabled_shouldNotTrack() throws Exception {
+        TracerLeakDetector.configure(false, 1);
+        assertThat(TracerLeakDetector.track(new Object(), "uuid", logger), is(nullValue()));
+    }
+
+    @Test
+    public void testThatWhenATrackedTracerIsCollectedWithoutBeingStopped_aWarningWithTheAllocationSiteIsLogged_andTheLeakIsCounted() throws Exception {
+        long leaks = TracerLeakDetector.leakCount();
+        assertThat(TracerLeakDetector.track(new Object(), "leaked-uuid", logger), is(notNullValue()));
+        long deadline = System.currentTimeMillis() + GC_WAIT_MILLIS;
+        while (TracerLeakDetector.leakCount() == leaks && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(TracerLeakDetector.leakCount(), is(equalTo(leaks + 1)));
+        verify(logger).warn(eq(STOP_NOT_CALLED_ON_TRACER), eq("leaked-uuid"), any(Throwable.class));
+    }
+
+    @Test
+    public void testThatAClosedTracker_isNeverReported() throws Exception {
+        long leaks = TracerLeakDetector.leakCount();
+        Object tracer = new Object();
+        TracerLeakDetector.track(tracer, "stopped-uuid", logger).close();
+        tracer = null;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(TracerLeakDetector.leakCount(), is(equalTo(leaks)));
+        assertThat(tracer, is(nullValue()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TracerMetricsTest {
+    private static final Sampler NEVER = new Sampler() {
+        @Override
+        public boolean sample(TracePoint tracePoint) {
+            return false;
+        }
+    };
+    private org.apache.log4j.Logger tracerLogger;
+    private Level level;
+
+    @Before
+    public void setUp() throws Exception {
+        tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        level = tracerLogger.getLevel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TracerMetrics.unregister();
+        LoggerTracerFactory.shutdownAsync();
+        LoggerTracerFactory.traceRules(Collections.<String, String>emptyMap());
+        LoggerTracerFactory.sampling(Samplers.always(), 0, MILLISECONDS);
+        LoggerTracerFactory.latencyAggregation(false, 0);
+        tracerLogger.setLevel(level);
+        LoggerTracerFactory.refreshTraceEnabled();
+    }
+
+    @Test
+    public void testFactory_shouldCountTheStartedTracersAndTheExecutionsRuledOutOrSampledOut() throws Exception {
+        tracerLogger.setLevel(Level.ERROR);
+        LoggerTracerFactory.latencyAggregation(true, 0);
+        LoggerTracerFactory.traceRule("TracerMetricsTest.ruledOut", "off");
+        TracerMetrics.Snapshot before = TracerMetrics.snapshot();
+        LoggerTracerFactory.tracePoint(TracerMetricsTest.class, "ruledOut").start().stop();
+        LoggerTracerFactory.tracePoint(TracerMetricsTest.class, "aggregated").start().stop();
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.latencyAggregation(false, 0);
+        LoggerTracerFactory.sampling(NEVER, 0, MILLISECONDS);
+        LoggerTracerFactory.tracePoint(TracerMetricsTest.class, "sampledOut").start().stop();
+        TracerMetrics.Snapshot after = TracerMetrics.snapshot();
+        assertThat(after.getRuledOutExecutions() - before.getRuledOutExecutions(), is(equalTo(1L)));
+        assertThat(after.getStartedTracers() - before.getStartedTracers(), is(equalTo(2L)));
+        assertThat(after.getSampledOutExecutions() - before.getSampledOutExecutions(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testDispatcher_shouldCountTheDispatchedAndWrittenEvents() throws Exception {
+        RingBufferTraceEventDispatcher dispatcher = new RingBufferTraceEventDispatcher(16, WaitStrategy.YIELD);
+        TracerMetrics.Snapshot before = TracerMetrics.snapshot();
+        for (int lap = 0; lap < 10; lap++) {
+            dispatcher.dispatchLap(NOPLogger.NOP_LOGGER, "uuid", "lap", lap, 1L, NANOSECONDS);
+        }
+        dispatcher.shutdown();
+        TracerMetrics.Snapshot after = TracerMetrics.snapshot();
+        assertThat(after.getDispatchedEvents() - before.getDispatchedEvents(), is(equalTo(10L)));
+        assertThat(after.getWrittenEvents() - before.getWrittenEvents(), is(equalTo(10L)));
+        assertThat(after.getDroppedEvents() - before.getDroppedEvents(), is(equalTo(0L)));
+        assertThat(after.dispatchedEventsPerSecondSince(before), is(greaterThan(0d)));
+    }
+
+    @Test
+    public void testSnapshot_shouldReadTheQueueOfTheAsyncDispatcher() throws Exception {
+        assertThat(TracerMetrics.snapshot().isAsync(), is(false));
+        assertThat(TracerMetrics.snapshot().getPendingEvents(), is(equalTo(0)));
+        LoggerTracerFactory.startAsync(new RingBufferTraceEventDispatcher(64, WaitStrategy.YIELD));
+        TracerMetrics.Snapshot snapshot = TracerMetrics.snapshot();
+        assertThat(snapshot.isAsync(), is(true));
+        assertThat(snapshot.getEventCapacity(), is(equalTo(64)));
+        assertThat(snapshot.toMap().get(TracerMetrics.EVENT_CAPACITY), is(equalTo(64L)));
+        assertThat(snapshot.toMap().keySet(), hasItems(TracerMetrics.STARTED_TRACERS, TracerMetrics.DISPATCHED_EVENTS,
+                TracerMetrics.PENDING_EVENTS, TracerMetrics.LEAKED_TRACERS));
+    }
+
+    @Test
+    public void testRegister_shouldExposeTheMetricsOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat(TracerMetrics.register(), is(true));
+        ObjectName name = new ObjectName(TracerMetrics.OBJECT_NAME);
+        assertThat((Long) server.getAttribute(name, "DispatchedEvents"), is(equalTo(TracerMetrics.snapshot().getDispatchedEvents())));
+        assertThat((Integer) server.getAttribute(name, "EventCapacity"), is(equalTo(0)));
+        assertThat((Double) server.getAttribute(name, "DispatchedEventsPerSecond"), is(greaterThanOrEqualTo(0d)));
+        assertThat((Boolean) server.getAttribute(name, "Async"), is(false));
+        TracerMetrics.unregister();
+        assertThat(server.isRegistered(name), is(false));
+    }
+}
@@ -0,0 +1,170 @@
+package com.robusta.logger.tracer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TracerRuntimeTest {
+    static final String CUSTOMIZE_PROPERTY = "loggerTracer.test.customize";
+
+    private TracerRuntime runtime;
+
+    @After
+    public void tearDown() throws Exception {
+        if(runtime != null) {
+            runtime.close();
+        }
+    }
+
+    @Test
+    public void testStart_shouldStartAsyncLoggingAndConfigureTheFactory_andClose_shouldGiveThePreviousSettingsBack() throws Exception {
+        TracerConfig before = LoggerTracerFactory.configuration();
+        runtime = TracerRuntime.start(properties(TracerRuntime.NESTED_TRACING_PROPERTY, "true",
+                TracerRuntime.TIME_UNIT_PROPERTY, "microseconds", TracerRuntime.ASYNC_CAPACITY_PROPERTY, "64"));
+        assertThat(runtime.isAsync(), is(true));
+        assertThat(TracerRuntime.isRunning(), is(true));
+        assertThat(LoggerTracerFactory.configuration().isAsync(), is(true));
+        assertThat(LoggerTracerFactory.configuration().isNestedTracing(), is(true));
+        assertThat(LoggerTracerFactory.configuration().getTimeUnit(), is(TimeUnit.MICROSECONDS));
+        LoggerTracerFactory.loggerTracer(TracerRuntimeTest.class, "started", "One").lap("lap").stop();
+        runtime.close();
+        assertThat(TracerRuntime.isRunning(), is(false));
+        assertThat(LoggerTracerFactory.configuration().isAsync(), is(false));
+        assertThat(LoggerTracerFactory.configuration().isNestedTracing(), is(before.isNestedTracing()));
+        assertThat(LoggerTracerFactory.configuration().getTimeUnit(), is(before.getTimeUnit()));
+        runtime.close();
+    }
+
+    @Test
+    public void testStart_whileARuntimeIsRunning_shouldRaiseException_untilItIsClosed() throws Exception {
+        runtime = TracerRuntime.start(new Properties());
+        try {
+            TracerRuntime.start(new Properties());
+            fail("A second runtime must not start");
+        } catch (IllegalStateException expected) {
+            assertThat(LoggerTracerFactory.configuration().isAsync(), is(true));
+        }
+        runtime.close();
+        runtime = TracerRuntime.start(new Properties());
+        assertThat(runtime.isAsync(), is(true));
+    }
+
+    @Test
+    public void testStart_withAsyncOff_shouldConfigureTheFactoryOnly() throws Exception {
+        runtime = TracerRuntime.start(properties(TracerRuntime.ASYNC_PROPERTY, "false", TracerRuntime.POOLED_TRACERS_PROPERTY, "true"));
+        assertThat(runtime.isAsync(), is(false));
+        assertThat(LoggerTracerFactory.configuration().isAsync(), is(false));
+        assertThat(LoggerTracerFactory.configuration().isPooledTracers(), is(true));
+        runtime.close();
+        assertThat(LoggerTracerFactory.configuration().isPooledTracers(), is(false));
+    }
+
+    @Test
+    public void testClose_shouldReleaseTheTracerPoolAndSpanStackOfTheClosingThread() throws Exception {
+        runtime = TracerRuntime.start(properties(TracerRuntime.ASYNC_PROPERTY, "false", TracerRuntime.POOLED_TRACERS_PROPERTY, "true"));
+        LoggerTracerPool pool = LoggerTracerPool.current();
+        SpanStack stack = SpanStack.current();
+        runtime.close();
+        assertThat(LoggerTracerPool.currentIfAny(), is(nullValue()));
+        assertThat(SpanStack.current(), is(not(sameInstance(stack))));
+        assertThat(LoggerTracerPool.current(), is(not(sameInstance(pool))));
+    }
+
+    @Test
+    public void testStart_withAnInvalidProperty_shouldRaiseException_andLeaveTheFactoryAsItWas() throws Exception {
+        try {
+            TracerRuntime.start(properties(TracerRuntime.NESTED_TRACING_PROPERTY, "true", TracerRuntime.TIME_UNIT_PROPERTY, "fortnights"));
+            fail("An invalid time unit must not start a runtime");
+        } catch (IllegalArgumentException expected) {
+            assertThat(TracerRuntime.isRunning(), is(false));
+            assertThat(LoggerTracerFactory.configuration().isNestedTracing(), is(false));
+            assertThat(LoggerTracerFactory.configuration().isAsync(), is(false));
+        }
+    }
+
+    @Test
+    public void testClose_shouldRemoveTheSlowCallThresholdsOfTheRuntime() throws Exception {
+        TracePoint tracePoint = LoggerTracerFactory.tracePoint(TracerRuntimeTest.class, "slow");
+        runtime = TracerRuntime.start(properties(TracerRuntime.ASYNC_PROPERTY, "false", TracerRuntime.SLOW_CALLS_THRESHOLD_MILLIS_PROPERTY, "50",
+                TracerRuntime.SLOW_CALLS_METHOD_THRESHOLDS_PROPERTY, "TracerRuntimeTest.slow=5"));
+        assertThat(LoggerTracerFactory.configuration().isSlowCallsOnly(), is(true));
+        assertThat(LoggerTracerFactory.configuration().slowCallThresholdNanos(tracePoint), is(equalTo(TimeUnit.MILLISECONDS.toNanos(5))));
+        runtime.close();
+        assertThat(LoggerTracerFactory.configuration().isSlowCallsOnly(), is(false));
+        assertThat(LoggerTracerFactory.configuration().slowCallThresholdNanos(tracePoint), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testStart_withTraceRulesAndJmx_shouldApplyTheRulesAndRegisterTheMBeans_untilClosed() throws Exception {
+        ObjectName name = new ObjectName(TracerControl.OBJECT_NAME);
+        runtime = TracerRuntime.start(properties(TracerRuntime.ASYNC_PROPERTY, "false", TracerRuntime.JMX_PROPERTY, "true",
+                TracerRuntime.TRACE_RULES_PROPERTY, "*=off, TracerRuntimeTest.ruled=oneIn:4"));
+        assertThat(LoggerTracerFactory.traceRules().get("*"), is(equalTo("off")));
+        assertThat(LoggerTracerFactory.traceRules().get("TracerRuntimeTest.ruled"), is(equalTo("oneIn:4")));
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(true));
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(TracerMetrics.OBJECT_NAME)), is(true));
+        runtime.close();
+        assertThat(LoggerTracerFactory.traceRules().isEmpty(), is(true));
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(false));
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(TracerMetrics.OBJECT_NAME)), is(false));
+    }
+
+    @Test
+    public void testStart_shouldApplyTheCustomizersOfTheServiceLoader() throws Exception {
+        runtime = TracerRuntime.start(properties(TracerRuntime.ASYNC_PROPERTY, "false", CUSTOMIZE_PROPERTY, "true"));
+        assertThat(LoggerTracerFactory.configuration().isNestedTracing(), is(true));
+    }
+
+    @Test
+    public void testStart_withTheClassNameOfAnArgumentCapture_shouldInstantiateIt() throws Exception {
+        runtime = TracerRuntime.start(properties(TracerRuntime.ASYNC_PROPERTY, "false",
+                TracerRuntime.ARGUMENT_CAPTURE_PROPERTY, ArgumentCaptures.DeepCopyArgumentCapture.class.getName()));
+        assertThat(LoggerTracerFactory.configuration().getArgumentCapture(), is(instanceOf(ArgumentCaptures.DeepCopyArgumentCapture.class)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStart_withTheClassNameOfAClassThatIsNotATraceIdGenerator_shouldRaiseIllegalArgumentException() throws Exception {
+        runtime = TracerRuntime.start(properties(TracerRuntime.ASYNC_PROPERTY, "false",
+                TracerRuntime.TRACE_ID_GENERATOR_PROPERTY, String.class.getName()));
+    }
+
+    @Test
+    public void testAutoStart_shouldStartOnlyWhenTheAutoStartPropertyIsSet_withTheShutdownHook() throws Exception {
+        assertThat(TracerRuntime.autoStart(properties(TracerRuntime.NESTED_TRACING_PROPERTY, "true")), is(nullValue()));
+        assertThat(TracerRuntime.isRunning(), is(false));
+        runtime = TracerRuntime.autoStart(properties(TracerRuntime.AUTO_START_PROPERTY, "true"));
+        assertThat(runtime, is(notNullValue()));
+        assertThat(LoggerTracerFactory.isShutdownHookEnabled(), is(true));
+        assertThat(TracerRuntime.autoStart(properties(TracerRuntime.AUTO_START_PROPERTY, "true")), is(nullValue()));
+        runtime.close();
+        assertThat(LoggerTracerFactory.isShutdownHookEnabled(), is(false));
+    }
+
+    private static Properties properties(String... namesAndValues) {
+        Properties properties = new Properties();
+        for (int index = 0; index < namesAndValues.length; index += 2) {
+            properties.setProperty(namesAndValues[index], namesAndValues[index + 1]);
+        }
+        return properties;
+    }
+
+    /**
+     * Registered with the ServiceLoader, turns nested tracing on when asked to.
+     */
+    public static class NestingCustomizer implements TracerRuntimeCustomizer {
+        @Override
+        public void customize(Properties properties) {
+            if(Boolean.parseBoolean(properties.getProperty(CUSTOMIZE_PROPERTY))) {
+                properties.setProperty(TracerRuntime.NESTED_TRACING_PROPERTY, "true");
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.robusta.logger.tracer;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.Level;
+import org.apache.log4j.varia.NullAppender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.robusta.logger.tracer.LoggerTracerFactory.LOGGER_NAME;
+import static com.robusta.logger.tracer.LoggerTracerFactory.loggerTracer;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Traces calls on many threads, each tracing a few calls then ending, the
+ * way virtual threads are used. The virtual thread runs are skipped on
+ * JVMs without virtual threads.
+ */
+public class VirtualThreadTracingTest {
+    private static final int VIRTUAL_THREADS = 100000;
+    private static final int PLATFORM_THREADS = 2000;
+    private static final int PLATFORM_POOL_SIZE = 64;
+    private final Object[] methodArguments = new Object[]{1L, "AString"};
+    private org.apache.log4j.Logger tracerLogger;
+    private Level level;
+    private List<Appender> appenders;
+    private Appender nullAppender;
+
+    @Before
+    public void setUp() throws Exception {
+        tracerLogger = org.apache.log4j.Logger.getLogger(LOGGER_NAME);
+        level = tracerLogger.getLevel();
+        appenders = appendersOf(tracerLogger);
+        for (Appender appender : appenders) {
+            tracerLogger.removeAppender(appender);
+        }
+        nullAppender = new NullAppender();
+        tracerLogger.addAppender(nullAppender);
+        tracerLogger.setLevel(Level.TRACE);
+        LoggerTracerFactory.pooledTracers(true);
+        LoggerTracerFactory.nestedTracing(true);
+        LoggerTracerFactory.virtualThreads(true);
+        LoggerTracerFactory.startAsync();
+    }
+
+    @Test
+    public void testTracedCalls_onManyShortLivedThreads_shouldLeaveNoPoolPerThread() throws Exception {
+        final AtomicInteger threadsWithAPool = new AtomicInteger();
+        Thread[] threads = new Thread[PLATFORM_THREADS];
+        for (int index = 0; index < threads.length; index++) {
+            threads[index] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    traceCall();
+                    if(LoggerTracerPool.currentIfAny() != null) {
+                        threadsWithAPool.incrementAndGet();
+                    }
+                }
+            });
+            threads[index].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(threadsWithAPool.get(), is(equalTo(0)));
+        assertThat(LoggerTracerPool.striped().available(), is(lessThanOrEqualTo(LoggerTracerPool.DEFAULT_POOL_SIZE)));
+    }
+
+    @Test
+    public void testTracedCalls_onVirtualThreads_shouldKeepUpWithPlatformThreads_withoutAPoolPerThread() throws Exception {
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        assumeNotNull(virtualThreads);
+        ExecutorService platformThreads = Executors.newFixedThreadPool(PLATFORM_POOL_SIZE);
+        try {
+            AtomicInteger threadsWithAPool = new AtomicInteger();
+            long platformNanos = traceCallsOn(platformThreads, new AtomicInteger());
+            long virtualNanos = traceCallsOn(virtualThreads, threadsWithAPool);
+            assertThat(threadsWithAPool.get(), is(equalTo(0)));
+            assertThat("Virtual threads took " + virtualNanos + " ns, platform threads " + platformNanos + " ns",
+                    virtualNanos, is(lessThan(10 * platformNanos)));
+        } finally {
+            virtualThreads.shutdownNow();
+            platformThreads.shutdownNow();
+        }
+    }
+
+    private long traceCallsOn(ExecutorService executor, final AtomicInteger threadsWithAPool) throws Exception {
+        final CountDownLatch done = new CountDownLatch(VIRTUAL_THREADS);
+        long start = System.nanoTime();
+        for (int call = 0; call < VIRTUAL_THREADS; call++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        traceCall();
+                        if(LoggerTracerPool.currentIfAny() != null) {
+                            threadsWithAPool.incrementAndGet();
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        assertThat(done.await(5, TimeUnit.MINUTES), is(true));
+        return System.nanoTime() - start;
+    }
+
+    private void traceCall() {
+        LoggerTracer tracer = loggerTracer(VirtualThreadTracingTest.class, "tracedCall", methodArguments);
+        loggerTracer(VirtualThreadTracingTest.class, "nestedCall", methodArguments).stop();
+        tracer.lap("lap").stop();
+    }
+
+    /**
+     * @return ExecutorService {@code Executors.newVirtualThreadPerTaskExecutor()}, null when the JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Appender> appendersOf(org.apache.log4j.Logger logger) {
+        return new ArrayList<Appender>(Collections.list((Enumeration<Appender>) logger.getAllAppenders()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggerTracerFactory.shutdownAsync();
+        LoggerTracerFactory.pooledTracers(false);
+        LoggerTracerFactory.nestedTracing(false);
+        LoggerTracerFactory.virtualThreads(false);
+        tracerLogger.setLevel(level);
+        tracerLogger.removeAppender(nullAppender);
+        for (Appender appender : appenders) {
+            tracerLogger.addAppender(appender);
+        }
+    }
+}
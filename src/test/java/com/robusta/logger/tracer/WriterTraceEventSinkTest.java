@@ -0,0 +1,127 @@
+package com.robusta.logger.tracer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class WriterTraceEventSinkTest {
+    @Mock private Logger logger;
+    private CountingWriter writer;
+    private WriterTraceEventSink sink;
+    private final TraceEvent event = new TraceEvent(false);
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        writer = new CountingWriter();
+        sink = new WriterTraceEventSink(writer);
+    }
+
+    @Test
+    public void testBatch_shouldBeRenderedAsLines_andWrittenOnce() throws Exception {
+        event.arguments(logger, "uuid", "AClass.aMethod", new Object[]{1L, "AString"});
+        sink.write(event);
+        event.lap(logger, "uuid", "lap", MILLISECONDS.toNanos(3), MILLISECONDS.toNanos(2), MILLISECONDS);
+        sink.write(event);
+        event.execution(logger, "uuid", "AClass.aMethod", 1500L, MICROSECONDS);
+        sink.write(event);
+        assertThat(writer.writes, is(equalTo(0)));
+        sink.endBatch();
+        assertThat(writer.writes, is(equalTo(1)));
+        String[] lines = writer.toString().split("\n");
+        assertThat(lines.length, is(equalTo(3)));
+        assertThat(lines[0], endsWith(" Execution: 'uuid' of 'AClass.aMethod' started with arguments '[1, AString]'"));
+        assertThat(lines[1], endsWith(" Execution: 'uuid', Lap: 'lap' completed in '3' ms (split '2' ms)"));
+        assertThat(lines[2], endsWith(" Execution: 'uuid' for 'AClass.aMethod' completed in '1' \u00b5s"));
+        assertThat(lines[0].substring(0, lines[0].indexOf(' ')), is(equalTo(lines[2].substring(0, lines[2].indexOf(' ')))));
+        verifyZeroInteractions(logger);
+    }
+
+    @Test
+    public void testEndBatch_whenNothingWasWritten_shouldNotWrite() throws Exception {
+        sink.endBatch();
+        assertThat(writer.writes, is(equalTo(0)));
+    }
+
+    @Test
+    public void testFlushAndClose_shouldFlushAndCloseTheWriter() throws Exception {
+        event.execution(logger, "uuid", "AClass.aMethod", 1L, MILLISECONDS);
+        sink.write(event);
+        sink.flush();
+        assertThat(writer.writes, is(equalTo(1)));
+        assertThat(writer.flushes, is(equalTo(1)));
+        sink.close();
+        assertThat(writer.closed, is(true));
+    }
+
+    @Test
+    public void testWriteSynchronously_shouldWriteTheLineRightAway() throws Exception {
+        event.execution(logger, "uuid", "AClass.aMethod", MILLISECONDS.toNanos(5), MILLISECONDS);
+        sink.writeSynchronously(event);
+        assertThat(writer.writes, is(equalTo(1)));
+        assertThat(writer.toString(), endsWith(" Execution: 'uuid' for 'AClass.aMethod' completed in '5' ms\n"));
+    }
+
+    @Test
+    public void testWriteFailures_shouldNotPropagate() throws Exception {
+        sink = new WriterTraceEventSink(new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                throw new IOException("Simulation of a write failure");
+            }
+
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("Simulation of a flush failure");
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        });
+        event.execution(logger, "uuid", "AClass.aMethod", 1L, MILLISECONDS);
+        sink.write(event);
+        sink.endBatch();
+        sink.flush();
+    }
+
+    private static class CountingWriter extends StringWriter {
+        private int writes;
+        private int flushes;
+        private boolean closed;
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            writes++;
+            super.write(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string) {
+            writes++;
+            super.write(string);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+}